@@ -107,6 +107,8 @@ stmt
     | liststmt
     | dictstmt
     | setstmt
+    | dequestmt
+    | pqstmt
     | structstmt
     | structinstancestmt
     | func
@@ -620,13 +622,21 @@ liststmt
     ;
 
 dictstmt
-    : DICT RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT dictname=varname
+    : (DICT | SORTEDDICT) RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT dictname=varname
     ;
 
 setstmt
     : SET RELLT (typesuffix=varsuffix) RELGT setname=varname
     ;
 
+dequestmt
+    : DEQUE RELLT (typesuffix=varsuffix) RELGT dequename=varname
+    ;
+
+pqstmt
+    : PQ RELLT (typesuffix=varsuffix) RELGT pqname=varname
+    ;
+
 structstmt
     : STRUCT structname=varname LBRACE compositetype (COMMA compositetype)* RBRACE
     ;
@@ -637,7 +647,9 @@ compositetype
         | struct1=varname elem=varname
         | LIST RELLT (list1=varname|list2=varsuffix|DIM list3=varsuffix) RELGT elem=varname
         | SET RELLT (set1=varname|set2=varsuffix) RELGT elem=varname
-        | DICT RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT elem=varname)
+        | DEQUE RELLT (deque1=varsuffix) RELGT elem=varname
+        | PQ RELLT (pq1=varsuffix) RELGT elem=varname
+        | (DICT | SORTEDDICT) RELLT (dictk1=varsuffix) COMMA (dictv1=varname|dictv2=varsuffix) RELGT elem=varname)
     ;
 
 structinstancestmt
@@ -651,10 +663,22 @@ DICT
     : D I C T
     ;
 
+SORTEDDICT
+    : S O R T E D D I C T
+    ;
+
 SET
     : S E T
     ;
 
+DEQUE
+    : D E Q U E
+    ;
+
+PQ
+    : P Q
+    ;
+
 EQGT
     : '=' '>'
     ;
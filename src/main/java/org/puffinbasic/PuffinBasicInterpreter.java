@@ -6,7 +6,15 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinTask;
 import java.util.stream.Stream;
 
 import com.google.common.base.Strings;
@@ -15,12 +23,16 @@ import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
+import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.BaseErrorListener;
 import org.antlr.v4.runtime.CharStream;
 import org.antlr.v4.runtime.CharStreams;
 import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 import org.puffinbasic.antlr4.PuffinBasicLexer;
 import org.puffinbasic.antlr4.PuffinBasicParser;
@@ -28,15 +40,19 @@ import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.domain.STObjects;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.error.PuffinBasicSyntaxError;
+import org.puffinbasic.parser.IRPipeline;
 import org.puffinbasic.parser.LinenumberListener;
 import org.puffinbasic.parser.LinenumberListener.ThrowOnDuplicate;
+import org.puffinbasic.parser.PuffinBasicCompiledProgram;
 import org.puffinbasic.parser.PuffinBasicIR;
+import org.puffinbasic.parser.PuffinBasicIRCache;
 import org.puffinbasic.parser.PuffinBasicIRListener;
 import org.puffinbasic.parser.PuffinBasicImportPath;
 import org.puffinbasic.parser.PuffinBasicSourceFile;
 import org.puffinbasic.runtime.Environment;
 import org.puffinbasic.runtime.Environment.SystemEnv;
 import org.puffinbasic.runtime.PuffinBasicRuntime;
+import org.puffinbasic.runtime.PuffinBasicRuntime.Engine;
 
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IMPORT_ERROR;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
@@ -47,6 +63,9 @@ public final class PuffinBasicInterpreter {
 
     private static final String UNKNOWN_SOURCE_FILE = "<UNKNOWN>";
 
+    private int numCacheHits;
+    private int numCacheMisses;
+
     private enum SourceFileMode {
         MAIN,
         LIB
@@ -58,6 +77,10 @@ public final class PuffinBasicInterpreter {
         UserOptions userOptions = app.parseCommandLineArgs(args);
 
         String mainSource = userOptions.filename;
+        if (PuffinBasicCompiledProgram.isCompiledProgram(mainSource)) {
+            app.runCompiled(userOptions, mainSource, System.out, new SystemEnv());
+            return;
+        }
 
         Instant t0 = Instant.now();
         String sourceCode = app.loadSource(mainSource);
@@ -85,6 +108,27 @@ public final class PuffinBasicInterpreter {
         parser.addArgument("-g", "--graphics")
                 .help("Enable graphics")
                 .action(Arguments.storeTrue());
+        parser.addArgument("-e", "--engine")
+                .help("Execution engine")
+                .choices("switch", "closure", "tiered", "bytecode")
+                .setDefault("switch");
+        parser.addArgument("--tier-threshold")
+                .help("Number of entries after which the tiered engine compiles a region")
+                .type(Integer.class)
+                .setDefault(PuffinBasicRuntime.DEFAULT_COMPILE_THRESHOLD);
+        parser.addArgument("-O", "--optimize")
+                .help("IR optimization level")
+                .type(Integer.class)
+                .choices(0, 1, 2)
+                .setDefault(IRPipeline.DEFAULT_LEVEL);
+        parser.addArgument("--compile")
+                .help("Write the compiled program to the given .pbc file instead of running it");
+        parser.addArgument("--cache")
+                .help("Cache the compiled program, and reuse it while the source and imports are unchanged")
+                .action(Arguments.storeTrue());
+        parser.addArgument("--cache-dir")
+                .help("Directory of the compiled program cache")
+                .setDefault(PuffinBasicIRCache.DEFAULT_DIR);
         parser.addArgument("file").nargs(1);
         Namespace res = null;
         try {
@@ -103,6 +147,11 @@ public final class PuffinBasicInterpreter {
                 res.getBoolean("ir"),
                 res.getBoolean("timing"),
                 res.getBoolean("graphics"),
+                Engine.valueOf(res.getString("engine").toUpperCase()),
+                res.getInt("tier_threshold"),
+                res.getInt("optimize"),
+                res.getString("compile"),
+                res.getBoolean("cache") ? res.getString("cache_dir") : null,
                 (String) res.getList("file").get(0)
         );
     }
@@ -138,27 +187,121 @@ public final class PuffinBasicInterpreter {
     {
         PuffinBasicImportPath importPath = new PuffinBasicImportPath(sourceFilename);
 
+        PuffinBasicIRCache cache = null;
+        String cacheKey = null;
+        if (userOptions.cacheDir != null) {
+            Instant tc = Instant.now();
+            cache = new PuffinBasicIRCache(userOptions.cacheDir, importPath);
+            cacheKey = cache.getKey(sourceFilename, sourceCode, userOptions.optLevel, userOptions.graphics);
+            // The listing needs the parsed source.
+            PuffinBasicIR cached = userOptions.listSourceCode ? null : cache.get(cacheKey);
+            if (cached != null) {
+                ++numCacheHits;
+            } else {
+                ++numCacheMisses;
+            }
+            logTimeTaken("CACHE", tc, userOptions.timing);
+            log("[CACHE] hits = " + numCacheHits + ", misses = " + numCacheMisses, userOptions.timing);
+            if (cached != null) {
+                return compileOrLinkAndRun(
+                        userOptions, cached, Collections.emptyList(),
+                        cached.getSymbolTable().getNumTmps(), out, env);
+            }
+        }
+
         Instant t1 = Instant.now();
         PuffinBasicSourceFile sourceFile = syntaxCheckAndSortByLineNumber(
                 importPath,
                 sourceFilename,
                 sourceCode,
-                userOptions.logOnDuplicate ? LOG : THROW,
-                SourceFileMode.MAIN);
-        if (sourceFile.getSourceCode().isEmpty()) {
+                userOptions.logOnDuplicate ? LOG : THROW);
+        if (sourceFile.getLines().isEmpty()) {
             throw new PuffinBasicSyntaxError(
                     "Failed to parse source code! Check if a linenumber is missing");
         }
         logTimeTaken("SORT", t1, userOptions.timing);
 
         log("LIST", userOptions.listSourceCode);
-        log(sourceFile.getSourceCode(), userOptions.listSourceCode);
+        if (userOptions.listSourceCode) {
+            log(sourceFile.getSourceCode(), true);
+        }
 
         Instant t2 = Instant.now();
         PuffinBasicIR ir = generateIR(sourceFile, userOptions.graphics);
         logTimeTaken("IR", t2, userOptions.timing);
+        log("[REGISTERS] " + ir.getSymbolTable().getRegisters(), userOptions.timing);
+
+        int numTmpsBefore = ir.getSymbolTable().getNumTmps();
+        Instant to = Instant.now();
+        List<IRPipeline.PassResult> passResults = IRPipeline.forLevel(userOptions.optLevel).run(ir);
+        logTimeTaken("OPT", to, userOptions.timing);
+
+        if (cache != null) {
+            Instant tc = Instant.now();
+            cache.put(cacheKey, ir, sourceFile);
+            logTimeTaken("CACHE PUT", tc, userOptions.timing);
+        }
+
+        return compileOrLinkAndRun(userOptions, ir, passResults, numTmpsBefore, out, env);
+    }
+
+    private static Object compileOrLinkAndRun(
+            UserOptions userOptions,
+            PuffinBasicIR ir,
+            List<IRPipeline.PassResult> passResults,
+            int numTmpsBefore,
+            PrintStream out,
+            Environment env)
+    {
+        if (userOptions.compileTo != null) {
+            Instant tc = Instant.now();
+            PuffinBasicCompiledProgram.write(ir, userOptions.compileTo);
+            logTimeTaken("COMPILE", tc, userOptions.timing);
+            return null;
+        }
+        return linkAndRun(userOptions, ir, passResults, numTmpsBefore, out, env);
+    }
+
+    /**
+     * Runs a program compiled with --compile, which is already optimized.
+     */
+    public Object runCompiled(
+            UserOptions userOptions,
+            String filename,
+            PrintStream out,
+            Environment env)
+    {
+        Instant t0 = Instant.now();
+        PuffinBasicIR ir = PuffinBasicCompiledProgram.read(filename);
+        logTimeTaken("LOAD", t0, userOptions.timing);
+        log("[REGISTERS] " + ir.getSymbolTable().getRegisters(), userOptions.timing);
+
+        return linkAndRun(
+                userOptions, ir, Collections.emptyList(), ir.getSymbolTable().getNumTmps(), out, env);
+    }
+
+    private static Object linkAndRun(
+            UserOptions userOptions,
+            PuffinBasicIR ir,
+            List<IRPipeline.PassResult> passResults,
+            int numTmpsBefore,
+            PrintStream out,
+            Environment env)
+    {
+        Instant t3 = Instant.now();
+        ir.link();
+        logTimeTaken("LINK", t3, userOptions.timing);
+
+        Instant t4 = Instant.now();
+        ir.resolveBranchTargets();
+        logTimeTaken("BRANCH", t4, userOptions.timing);
+
         log("IR", userOptions.printIR);
         if (userOptions.printIR) {
+            for (IRPipeline.PassResult passResult : passResults) {
+                log("[PASS] " + passResult, true);
+            }
+            log("[TEMPS] " + numTmpsBefore + " -> " + ir.getSymbolTable().getNumTmps(), true);
             int i = 0;
             for (PuffinBasicIR.Instruction instruction : ir.getInstructions()) {
                 log(i++ + ": " + instruction, true);
@@ -166,12 +309,20 @@ public final class PuffinBasicInterpreter {
         }
 
         log("RUN", userOptions.timing);
-        Instant t3 = Instant.now();
-        Object result = run(ir, out, env);
-        logTimeTaken("RUN", t3, userOptions.timing);
+        Instant t5 = Instant.now();
+        Object result = run(ir, out, env, userOptions);
+        logTimeTaken("RUN", t5, userOptions.timing);
         return result;
     }
 
+    int getNumCacheHits() {
+        return numCacheHits;
+    }
+
+    int getNumCacheMisses() {
+        return numCacheMisses;
+    }
+
     private static void log(String s, boolean log) {
         if (log) {
             System.out.println(s);
@@ -184,9 +335,18 @@ public final class PuffinBasicInterpreter {
         log("[" + tag + "] time taken = " + timeSec + " s", log);
     }
 
-    private static Object run(PuffinBasicIR ir, PrintStream out, Environment env) {
-        PuffinBasicRuntime runtime = new PuffinBasicRuntime(ir, out, env);
+    private static Object run(PuffinBasicIR ir, PrintStream out, Environment env, UserOptions userOptions) {
+        PuffinBasicRuntime runtime = new PuffinBasicRuntime(
+                ir, out, env, userOptions.engine, userOptions.tierThreshold, userOptions.timing);
         STObjects.STEntry entry = runtime.run();
+        log("[JUMP] taken = " + runtime.getNumJumps()
+                + ", computed = " + runtime.getNumComputedJumps(), userOptions.timing);
+        if (userOptions.engine == Engine.TIERED) {
+            log("[TIER] " + runtime.getTieredMetrics(), userOptions.timing);
+        }
+        if (entry == null) {
+            return null;
+        }
         // TODO complete
         switch (entry.getType().getTypeId()) {
         case SCALAR:
@@ -216,20 +376,104 @@ public final class PuffinBasicInterpreter {
         return ir;
     }
 
+    // Walks the lines parsed by the syntax check, in line number order.
     private static void generateIR(PuffinBasicSourceFile sourceFile, PuffinBasicIR ir, boolean graphics) {
-        CharStream in = sourceFile.getSourceCodeStream();
-        PuffinBasicLexer lexer = new PuffinBasicLexer(in);
-        CommonTokenStream tokens = new CommonTokenStream(lexer);
-        PuffinBasicParser parser = new PuffinBasicParser(tokens);
-        PuffinBasicParser.ProgContext tree = parser.prog();
         ParseTreeWalker walker = new ParseTreeWalker();
-        PuffinBasicIRListener irListener = new PuffinBasicIRListener(sourceFile, in, ir, graphics);
-        walker.walk(irListener, tree);
+        PuffinBasicIRListener irListener = new PuffinBasicIRListener(
+                sourceFile, sourceFile.getSourceCodeStream(), ir, graphics);
+        for (PuffinBasicParser.LineContext line : sourceFile.getLines()) {
+            walker.walk(irListener, line);
+        }
         irListener.semanticCheckAfterParsing();
     }
 
     private PuffinBasicSourceFile syntaxCheckAndSortByLineNumber(
             PuffinBasicImportPath importPath,
+            String sourceFile,
+            String input,
+            ThrowOnDuplicate throwOnDuplicate)
+    {
+        ParsedSourceFile main = parseAndSortByLineNumber(
+                sourceFile, input, throwOnDuplicate, SourceFileMode.MAIN);
+        Map<String, ParsedSourceFile> libs = syntaxCheckImports(importPath, main, throwOnDuplicate);
+        return toSourceFile(main, libs, new HashMap<>(), new HashSet<>());
+    }
+
+    /**
+     * Loads and parses the libs imported by the main source file, directly or
+     * through other libs. The libs are parsed one level of the import graph at a
+     * time, the libs of a level are independent of each other and are parsed
+     * in parallel on the common fork-join pool.
+     */
+    private Map<String, ParsedSourceFile> syntaxCheckImports(
+            PuffinBasicImportPath importPath,
+            ParsedSourceFile main,
+            ThrowOnDuplicate throwOnDuplicate)
+    {
+        Map<String, ParsedSourceFile> libs = new HashMap<>();
+        List<ParsedSourceFile> level = Collections.singletonList(main);
+        while (!level.isEmpty()) {
+            List<ForkJoinTask<ParsedSourceFile>> tasks = new ArrayList<>();
+            Set<String> nextLevel = new LinkedHashSet<>();
+            for (ParsedSourceFile parsed : level) {
+                for (String importFilename : parsed.linenumListener.getImportFiles()) {
+                    if (!libs.containsKey(importFilename) && nextLevel.add(importFilename)) {
+                        tasks.add(ForkJoinTask.adapt(() -> parseAndSortByLineNumber(
+                                importFilename,
+                                loadSource(importPath.find(importFilename)),
+                                throwOnDuplicate,
+                                SourceFileMode.LIB)));
+                    }
+                }
+            }
+            ForkJoinTask.invokeAll(tasks);
+            level = new ArrayList<>(tasks.size());
+            for (ForkJoinTask<ParsedSourceFile> task : tasks) {
+                ParsedSourceFile lib = task.join();
+                libs.put(lib.sourceFile, lib);
+                level.add(lib);
+            }
+        }
+        return libs;
+    }
+
+    // Each lib becomes one source file, in the order of the imports.
+    private static PuffinBasicSourceFile toSourceFile(
+            ParsedSourceFile parsed,
+            Map<String, ParsedSourceFile> libs,
+            Map<String, PuffinBasicSourceFile> libSourceFiles,
+            Set<String> libsInProgress)
+    {
+        LinkedHashSet<PuffinBasicSourceFile> importSourceFiles = new LinkedHashSet<>();
+        for (String importFilename : parsed.linenumListener.getImportFiles()) {
+            PuffinBasicSourceFile importSourceFile = libSourceFiles.get(importFilename);
+            if (importSourceFile == null) {
+                if (!libsInProgress.add(importFilename)) {
+                    throw new PuffinBasicRuntimeError(
+                            IMPORT_ERROR,
+                            "Lib " + importFilename + " imports itself through " + parsed.sourceFile
+                    );
+                }
+                importSourceFile = toSourceFile(
+                        libs.get(importFilename), libs, libSourceFiles, libsInProgress);
+                libsInProgress.remove(importFilename);
+                libSourceFiles.put(importFilename, importSourceFile);
+            }
+            importSourceFiles.add(importSourceFile);
+            importSourceFiles.addAll(importSourceFile.getImportFiles());
+        }
+
+        return new PuffinBasicSourceFile(
+                parsed.sourceFile,
+                parsed.linenumListener.getLibtag(),
+                parsed.linenumListener.getSortedLines(),
+                parsed.in,
+                importSourceFiles);
+    }
+
+    // Only the DFA cache of the generated parser, which is thread safe, is shared
+    // with other source files, so that libs can be parsed in parallel.
+    private static ParsedSourceFile parseAndSortByLineNumber(
             String sourceFile,
             String input,
             ThrowOnDuplicate throwOnDuplicate,
@@ -242,9 +486,7 @@ public final class PuffinBasicInterpreter {
         lexer.addErrorListener(syntaxErrorListener);
         CommonTokenStream tokens = new CommonTokenStream(lexer);
         PuffinBasicParser parser = new PuffinBasicParser(tokens);
-        parser.removeErrorListeners();
-        parser.addErrorListener(syntaxErrorListener);
-        PuffinBasicParser.ProgContext tree = parser.prog();
+        PuffinBasicParser.ProgContext tree = parse(parser, syntaxErrorListener);
         ParseTreeWalker walker = new ParseTreeWalker();
         LinenumberListener linenumListener = new LinenumberListener(in, throwOnDuplicate);
         walker.walk(linenumListener, tree);
@@ -264,23 +506,42 @@ public final class PuffinBasicInterpreter {
             }
         }
 
-        LinkedHashSet<PuffinBasicSourceFile> importSourceFiles = new LinkedHashSet<>();
-        for (String importFilename : linenumListener.getImportFiles()) {
-            String importedInput = loadSource(importPath.find(importFilename));
-            PuffinBasicSourceFile importSourceFile = syntaxCheckAndSortByLineNumber(
-                    importPath, importFilename, importedInput,
-                    throwOnDuplicate, SourceFileMode.LIB);
-            importSourceFiles.add(importSourceFile);
-            importSourceFiles.addAll(importSourceFile.getImportFiles());
+        return new ParsedSourceFile(sourceFile, in, linenumListener);
+    }
+
+    /**
+     * Parses with SLL prediction first, which is much faster and succeeds for
+     * almost all programs. Only when it fails, the input is parsed again with
+     * full LL prediction, which reports the syntax error if there's one.
+     */
+    private static PuffinBasicParser.ProgContext parse(
+            PuffinBasicParser parser, ThrowingErrorListener syntaxErrorListener)
+    {
+        parser.removeErrorListeners();
+        parser.setErrorHandler(new BailErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        try {
+            return parser.prog();
+        } catch (ParseCancellationException e) {
+            parser.reset();
+            parser.addErrorListener(syntaxErrorListener);
+            parser.setErrorHandler(new DefaultErrorStrategy());
+            parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+            return parser.prog();
         }
+    }
 
-        String sortedCode = linenumListener.getSortedCode();
-        return new PuffinBasicSourceFile(
-                sourceFile,
-                linenumListener.getLibtag(),
-                sortedCode,
-                CharStreams.fromString(sortedCode),
-                importSourceFiles);
+    private static final class ParsedSourceFile {
+
+        final String sourceFile;
+        final CharStream in;
+        final LinenumberListener linenumListener;
+
+        ParsedSourceFile(String sourceFile, CharStream in, LinenumberListener linenumListener) {
+            this.sourceFile = sourceFile;
+            this.in = in;
+            this.linenumListener = linenumListener;
+        }
     }
 
     private static final class ThrowingErrorListener extends BaseErrorListener {
@@ -322,14 +583,38 @@ public final class PuffinBasicInterpreter {
     public static final class UserOptions {
 
         static UserOptions ofTest() {
+            return ofTest(Engine.SWITCH);
+        }
+
+        static UserOptions ofTest(Engine engine) {
+            return ofTest(engine, IRPipeline.DEFAULT_LEVEL);
+        }
+
+        static UserOptions ofTest(Engine engine, int optLevel) {
+            return new UserOptions(
+                    false, false, false, false, false, engine, 2, optLevel, null, null, null
+            );
+        }
+
+        static UserOptions ofTestCache(Engine engine, int optLevel, String cacheDir) {
+            return new UserOptions(
+                    false, false, false, false, false,
+                    engine, 2, optLevel, null, cacheDir, null
+            );
+        }
+
+        static UserOptions ofTestCompile(int optLevel, String compileTo) {
             return new UserOptions(
-                    false, false, false, false, false, null
+                    false, false, false, false, false,
+                    Engine.SWITCH, 2, optLevel, compileTo, null, null
             );
         }
 
         public static UserOptions ofScript() {
             return new UserOptions(
-                    false, false, false, false, true, null
+                    false, false, false, false, true,
+                    Engine.SWITCH, PuffinBasicRuntime.DEFAULT_COMPILE_THRESHOLD,
+                    IRPipeline.DEFAULT_LEVEL, null, null, null
             );
         }
 
@@ -338,6 +623,11 @@ public final class PuffinBasicInterpreter {
         final boolean printIR;
         final boolean timing;
         final boolean graphics;
+        final Engine engine;
+        final int tierThreshold;
+        final int optLevel;
+        final String compileTo;
+        final String cacheDir;
         public final String filename;
 
         UserOptions(
@@ -346,6 +636,11 @@ public final class PuffinBasicInterpreter {
                 boolean printIR,
                 boolean timing,
                 boolean graphics,
+                Engine engine,
+                int tierThreshold,
+                int optLevel,
+                String compileTo,
+                String cacheDir,
                 String filename)
         {
             this.logOnDuplicate = logOnDuplicate;
@@ -353,6 +648,11 @@ public final class PuffinBasicInterpreter {
             this.printIR = printIR;
             this.timing = timing;
             this.graphics = graphics;
+            this.engine = engine;
+            this.tierThreshold = tierThreshold;
+            this.optLevel = optLevel;
+            this.compileTo = compileTo;
+            this.cacheDir = cacheDir;
             this.filename = filename;
         }
     }
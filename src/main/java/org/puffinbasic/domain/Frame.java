@@ -0,0 +1,243 @@
+package org.puffinbasic.domain;
+
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectList;
+import it.unimi.dsi.fastutil.objects.ReferenceSet;
+import org.puffinbasic.domain.STObjects.AbstractSTEntry;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STTmp;
+import org.puffinbasic.domain.STObjects.STUDF;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.domain.STObjects.STVariable;
+
+import java.io.Serializable;
+
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.ARRAY;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.SCALAR;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.UDF;
+
+/**
+ * Activation record of a FUNCTION or DEF FN call.
+ * Instructions are linked to the entries of the function's declaration scope,
+ * so a call doesn't create new entries. When the function is already active,
+ * i.e. it's called recursively, the scalar slots of the caller's activation
+ * are saved in the frame and restored when the call returns, including
+ * whether they were initialized. The values of composite locals, i.e. arrays,
+ * structs and collections, are saved as well. A local array which isn't a
+ * parameter gets a new value for the call, since DIM sizes an array in place.
+ * Frames are pooled by the symbol table and reused across calls.
+ */
+public final class Frame {
+
+    /**
+     * Scalar parameters, locals and temporaries of a function,
+     * assigned to slots in declaration order, and its composite ones.
+     */
+    public static final class Layout implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final ObjectList<STEntry> entries;
+        private final ObjectList<AbstractSTEntry> compositeEntries;
+        private PuffinBasicAtomTypeId[] types;
+        private boolean[] newValueOnCall;
+        private int activations;
+
+        Layout() {
+            this.entries = new ObjectArrayList<>();
+            this.compositeEntries = new ObjectArrayList<>();
+            this.types = new PuffinBasicAtomTypeId[0];
+            this.newValueOnCall = new boolean[0];
+        }
+
+        void add(STEntry entry) {
+            if (entry instanceof STTmp || entry.getClass() == STVariable.class) {
+                if (entry.getType().getTypeId() == SCALAR) {
+                    entries.add(entry);
+                } else if (entry.getType().getTypeId() != UDF) {
+                    compositeEntries.add((AbstractSTEntry) entry);
+                }
+            }
+        }
+
+        void removeAll(ReferenceSet<STEntry> removed) {
+            if (entries.removeIf(removed::contains)) {
+                types = new PuffinBasicAtomTypeId[0];
+            }
+            if (compositeEntries.removeIf(removed::contains)) {
+                newValueOnCall = new boolean[0];
+            }
+        }
+
+        private PuffinBasicAtomTypeId[] getTypes() {
+            if (types.length != entries.size()) {
+                types = new PuffinBasicAtomTypeId[entries.size()];
+                for (int i = 0; i < types.length; i++) {
+                    types[i] = entries.get(i).getType().getAtomTypeId();
+                }
+            }
+            return types;
+        }
+
+        // Parameters are bound by PARAM_COPY, possibly to the caller's own value.
+        private boolean[] getNewValueOnCall(PuffinBasicSymbolTable symbolTable, STUDF function) {
+            if (newValueOnCall.length != compositeEntries.size()) {
+                newValueOnCall = new boolean[compositeEntries.size()];
+                for (int i = 0; i < newValueOnCall.length; i++) {
+                    STEntry entry = compositeEntries.get(i);
+                    boolean param = false;
+                    for (int j = 0; j < function.getNumDeclaredParams(); j++) {
+                        param |= symbolTable.get(function.getDeclaredParam(j)) == entry;
+                    }
+                    newValueOnCall[i] = !param
+                            && entry.getClass() == STVariable.class
+                            && entry.getType().getTypeId() == ARRAY;
+                }
+            }
+            return newValueOnCall;
+        }
+    }
+
+    private Scope scope;
+    private Scope callerScope;
+    private int callerInstrId;
+    private boolean saved;
+    private int numSaved;
+    private long[] numbers;
+    private String[] strings;
+    private boolean[] initialized;
+    private int numSavedComposites;
+    private STValue[] composites;
+
+    Frame() {
+        this.numbers = new long[0];
+        this.strings = new String[0];
+        this.initialized = new boolean[0];
+        this.composites = new STValue[0];
+    }
+
+    void push(
+            PuffinBasicSymbolTable symbolTable,
+            STUDF function,
+            Scope scope,
+            Scope callerScope,
+            int callerInstrId)
+    {
+        this.scope = scope;
+        this.callerScope = callerScope;
+        this.callerInstrId = callerInstrId;
+        Layout layout = scope.getFrameLayout();
+        saved = layout.activations++ > 0;
+        if (saved) {
+            save(layout);
+            saveComposites(layout, symbolTable, function);
+        }
+    }
+
+    Scope pop() {
+        Layout layout = scope.getFrameLayout();
+        layout.activations--;
+        if (saved) {
+            restore(layout);
+            restoreComposites(layout);
+        }
+        Scope caller = callerScope;
+        scope = callerScope = null;
+        return caller;
+    }
+
+    int getCallerInstrId() {
+        return callerInstrId;
+    }
+
+    private void save(Layout layout) {
+        PuffinBasicAtomTypeId[] types = layout.getTypes();
+        int numSlots = types.length;
+        if (numbers.length < numSlots) {
+            numbers = new long[numSlots];
+            strings = new String[numSlots];
+            initialized = new boolean[numSlots];
+        }
+        numSaved = numSlots;
+        for (int i = 0; i < numSlots; i++) {
+            STValue value = layout.entries.get(i).getValue();
+            initialized[i] = value.isInitialized();
+            if (!initialized[i]) {
+                continue;
+            }
+            switch (types[i]) {
+                case INT32:
+                    numbers[i] = value.getInt32();
+                    break;
+                case INT64:
+                    numbers[i] = value.getInt64();
+                    break;
+                case FLOAT:
+                    numbers[i] = Float.floatToRawIntBits(value.getFloat32());
+                    break;
+                case DOUBLE:
+                    numbers[i] = Double.doubleToRawLongBits(value.getFloat64());
+                    break;
+                case STRING:
+                    strings[i] = value.getString();
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void restore(Layout layout) {
+        PuffinBasicAtomTypeId[] types = layout.getTypes();
+        for (int i = 0; i < numSaved; i++) {
+            STValue value = layout.entries.get(i).getValue();
+            if (!initialized[i]) {
+                value.setUninitialized();
+                continue;
+            }
+            switch (types[i]) {
+                case INT32:
+                    value.setInt32((int) numbers[i]);
+                    break;
+                case INT64:
+                    value.setInt64(numbers[i]);
+                    break;
+                case FLOAT:
+                    value.setFloat32(Float.intBitsToFloat((int) numbers[i]));
+                    break;
+                case DOUBLE:
+                    value.setFloat64(Double.longBitsToDouble(numbers[i]));
+                    break;
+                case STRING:
+                    value.setString(strings[i]);
+                    strings[i] = null;
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void saveComposites(Layout layout, PuffinBasicSymbolTable symbolTable, STUDF function) {
+        boolean[] newValueOnCall = layout.getNewValueOnCall(symbolTable, function);
+        int numEntries = newValueOnCall.length;
+        if (composites.length < numEntries) {
+            composites = new STValue[numEntries];
+        }
+        numSavedComposites = numEntries;
+        for (int i = 0; i < numEntries; i++) {
+            AbstractSTEntry entry = layout.compositeEntries.get(i);
+            composites[i] = entry.getNullableValue();
+            if (newValueOnCall[i]) {
+                entry.createAndSetInstance(symbolTable);
+            }
+        }
+    }
+
+    private void restoreComposites(Layout layout) {
+        for (int i = 0; i < numSavedComposites; i++) {
+            layout.compositeEntries.get(i).setValue(composites[i]);
+            composites[i] = null;
+        }
+    }
+}
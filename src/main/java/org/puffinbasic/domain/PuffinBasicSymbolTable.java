@@ -2,10 +2,15 @@ package org.puffinbasic.domain;
 
 import it.unimi.dsi.fastutil.chars.Char2ObjectMap;
 import it.unimi.dsi.fastutil.chars.Char2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ReferenceOpenHashSet;
+import it.unimi.dsi.fastutil.objects.ReferenceSet;
 import org.puffinbasic.domain.STObjects.ArrayReferenceValue;
 import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
 import org.puffinbasic.domain.STObjects.PuffinBasicType;
@@ -13,6 +18,7 @@ import org.puffinbasic.domain.STObjects.STEntry;
 import org.puffinbasic.domain.STObjects.STLValue;
 import org.puffinbasic.domain.STObjects.STRef;
 import org.puffinbasic.domain.STObjects.STTmp;
+import org.puffinbasic.domain.STObjects.STUDF;
 import org.puffinbasic.domain.STObjects.STVariable;
 import org.puffinbasic.domain.STObjects.StructType;
 import org.puffinbasic.domain.Scope.GlobalScope;
@@ -20,6 +26,10 @@ import org.puffinbasic.domain.Variable.VariableName;
 import org.puffinbasic.error.PuffinBasicInternalError;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -32,31 +42,46 @@ import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.BAD_FIELD;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.MISSING_STRUCT;
 
-public class PuffinBasicSymbolTable {
+public class PuffinBasicSymbolTable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     public interface VariableConsumer {
         void consume(int id, STVariable entry, Variable variable);
     }
 
     public static final int NULL_ID = -1;
+    private static final int INITIAL_ENTRY_TABLE_SIZE = 1024;
+    private static final int INITIAL_FUNC_TABLE_SIZE = 256;
+    private static final int INITIAL_FRAME_STACK_SIZE = 64;
 
     private final Char2ObjectMap<PuffinBasicAtomTypeId> defaultDataTypes;
     private final Object2ObjectMap<String, StructType> userDefinedTypes;
     private final Object2IntMap<String> labelNameToId;
     private final AtomicInteger idmaker;
+    private final RegisterFile registers;
     private Scope currentScope;
-    private int lastId;
-    private int lastLastId;
-    private STEntry lastEntry;
-    private STEntry lastLastEntry;
+    private STEntry[] entries;
+    private Scope[] funcIdToDeclScope;
+    // Runtime state, not written to compiled programs.
+    private transient Frame[] frames;
+    private transient int numFrames;
 
     public PuffinBasicSymbolTable() {
         this.defaultDataTypes = new Char2ObjectOpenHashMap<>();
         this.userDefinedTypes = new Object2ObjectOpenHashMap<>();
         this.labelNameToId = new Object2IntOpenHashMap<>();
         this.idmaker = new AtomicInteger();
+        this.registers = new RegisterFile();
         this.currentScope = new GlobalScope();
-        this.lastId = this.lastLastId = -1;
+        this.entries = new STEntry[INITIAL_ENTRY_TABLE_SIZE];
+        this.funcIdToDeclScope = new Scope[INITIAL_FUNC_TABLE_SIZE];
+        this.frames = new Frame[INITIAL_FRAME_STACK_SIZE];
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.frames = new Frame[INITIAL_FRAME_STACK_SIZE];
     }
 
     private int generateNextId() {
@@ -79,37 +104,51 @@ public class PuffinBasicSymbolTable {
         return Optional.empty();
     }
 
-    private STEntry getEntry(int id) {
+    /**
+     * A FUNCTION's local scope doesn't search its parent, but functions
+     * declared in the global scope (including the function itself) can be called.
+     */
+    private Scope findFunctionScope(VariableName variableName) {
         Scope scope = getCurrentScope();
-        STEntry entry = scope.getNullableEntry(id);
-        if (entry != null) {
-            return entry;
-        } else {
+        while (scope.getParent() != null) {
             scope = scope.getParent();
-            while (scope != null) {
-                entry = scope.getNullableEntry(id);
-                if (entry != null) {
-                    return entry;
-                }
-                scope = scope.getParent();
-            }
         }
-        throw new PuffinBasicInternalError("Failed to find entry for id: " + id);
+        int id = scope.getIdForVariable(variableName);
+        if (id != NULL_ID && get(id) instanceof STUDF) {
+            return scope;
+        }
+        return getCurrentScope();
     }
 
     public STEntry get(int id) {
-        // Cache for better performance
-        if (id == lastId) {
-            return lastEntry;
+        STEntry entry = id >= 0 && id < entries.length ? entries[id] : null;
+        if (entry == null) {
+            throw new PuffinBasicInternalError("Failed to find entry for id: " + id);
         }
-        if (id == lastLastId) {
-            return lastLastEntry;
+        return entry;
+    }
+
+    // Ids are unique across scopes, so an id is the address of its entry.
+    private void putEntry(Scope scope, int id, STEntry entry) {
+        if (id >= entries.length) {
+            entries = Arrays.copyOf(entries, Math.max(id + 1, entries.length << 1));
         }
-        lastLastId = lastId;
-        lastLastEntry = lastEntry;
-        lastId = id;
-        lastEntry = getEntry(id);
-        return lastEntry;
+        entries[id] = entry;
+        scope.putEntry(id, entry);
+    }
+
+    public RegisterFile getRegisters() {
+        return registers;
+    }
+
+    public Int2ObjectMap<STEntry> getAllEntries() {
+        Int2ObjectMap<STEntry> allEntries = new Int2ObjectOpenHashMap<>();
+        for (int id = 0; id < entries.length; id++) {
+            if (entries[id] != null) {
+                allEntries.put(id, entries[id]);
+            }
+        }
+        return allEntries;
     }
 
     public int getCompositeVariableIdForVariable(VariableName variableName) {
@@ -137,15 +176,15 @@ public class PuffinBasicSymbolTable {
             Function<VariableName, Variable> variableCreator,
             VariableConsumer consumer)
     {
-        Scope scope = findScope(s -> s.containsVariable(variableName)).orElse(getCurrentScope());
+        Scope scope = findScope(s -> s.containsVariable(variableName)).orElseGet(() -> findFunctionScope(variableName));
         int id = scope.getIdForVariable(variableName);
         STVariable entry;
         if (id == -1) {
             id = generateNextId();
             scope.putVariable(variableName, id);
             Variable variable = variableCreator.apply(variableName);
-            entry = variableName.getDataType().createVariableEntry(variable);
-            scope.putEntry(id, entry);
+            entry = variableName.getDataType().createVariableEntry(variable, registers);
+            putEntry(scope, id, entry);
         } else {
             entry = (STVariable) get(id);
         }
@@ -160,7 +199,7 @@ public class PuffinBasicSymbolTable {
         Scope scope = findScope(s -> s.containsVariable(variableName)).orElse(getCurrentScope());
         int id = generateNextId();
         scope.putVariable(variableName, id);
-        scope.putEntry(id, variable);
+        putEntry(scope, id, variable);
         return id;
     }
 
@@ -177,15 +216,15 @@ public class PuffinBasicSymbolTable {
         Scope scope = getCurrentScope();
         int id = generateNextId();
         STObjects.STLabel entry = new STObjects.STLabel();
-        scope.putEntry(id, entry);
+        putEntry(scope, id, entry);
         return id;
     }
 
     public int addGotoTarget() {
         Scope scope = getCurrentScope();
         int id = generateNextId();
-        STTmp entry = PuffinBasicAtomTypeId.INT32.createTmpEntry();
-        scope.putEntry(id, entry);
+        STTmp entry = PuffinBasicAtomTypeId.INT32.createTmpEntry(registers);
+        putEntry(scope, id, entry);
         return id;
     }
 
@@ -193,7 +232,7 @@ public class PuffinBasicSymbolTable {
         STObjects.STValue ref = new ArrayReferenceValue(lvalue);
         int id = generateNextId();
         STEntry entry = new STLValue(ref, lvalue.getType());
-        getCurrentScope().putEntry(id, entry);
+        putEntry(getCurrentScope(), id, entry);
         return id;
     }
 
@@ -202,7 +241,7 @@ public class PuffinBasicSymbolTable {
         int id = generateNextId();
         STObjects.AbstractSTEntry entry = type.canBeLValue() ? new STLValue(null, type) : new STTmp(null, type);
         entry.createAndSetInstance(this);
-        scope.putEntry(id, entry);
+        putEntry(scope, id, entry);
         consumer.accept(entry);
         return id;
     }
@@ -210,8 +249,8 @@ public class PuffinBasicSymbolTable {
     public int addTmp(PuffinBasicAtomTypeId dataType, Consumer<STEntry> consumer) {
         Scope scope = getCurrentScope();
         int id = generateNextId();
-        STTmp entry = dataType.createTmpEntry();
-        scope.putEntry(id, entry);
+        STTmp entry = dataType.createTmpEntry(registers);
+        putEntry(scope, id, entry);
         consumer.accept(entry);
         return id;
     }
@@ -220,18 +259,55 @@ public class PuffinBasicSymbolTable {
         Scope scope = getCurrentScope();
         int id = generateNextId();
         STRef entry = new STRef(type);
-        scope.putEntry(id, entry);
+        putEntry(scope, id, entry);
+        return id;
+    }
+
+    public int addMemberFuncCall(PuffinBasicType objectType, String funcName, int numParams) {
+        Scope scope = getCurrentScope();
+        int id = generateNextId();
+        putEntry(scope, id, objectType.bindFuncCall(funcName, numParams));
         return id;
     }
 
     public int addTmpCompatibleWith(int srcId) {
         Scope scope = getCurrentScope();
-        PuffinBasicAtomTypeId dataType = scope.getEntry(srcId).getType().getAtomTypeId();
+        PuffinBasicAtomTypeId dataType = get(srcId).getType().getAtomTypeId();
         int id = generateNextId();
-        scope.putEntry(id, dataType.createTmpEntry());
+        putEntry(scope, id, dataType.createTmpEntry(registers));
         return id;
     }
 
+    /**
+     * Removes temporaries which are no longer referenced by the IR.
+     */
+    public void removeTmps(IntSet ids) {
+        ReferenceSet<STEntry> removed = new ReferenceOpenHashSet<>(ids.size());
+        for (int id : ids) {
+            STEntry entry = get(id);
+            if (!(entry instanceof STTmp)) {
+                throw new PuffinBasicInternalError("Not a temporary: " + id);
+            }
+            entries[id] = null;
+            removed.add(entry);
+        }
+        for (Scope scope : funcIdToDeclScope) {
+            if (scope != null) {
+                scope.getFrameLayout().removeAll(removed);
+            }
+        }
+    }
+
+    public int getNumTmps() {
+        int numTmps = 0;
+        for (STEntry entry : entries) {
+            if (entry instanceof STTmp) {
+                ++numTmps;
+            }
+        }
+        return numTmps;
+    }
+
     public PuffinBasicAtomTypeId getDataTypeFor(String varname, String suffix) {
         Scope scope = getCurrentScope();
         if (scope.containsVariable(new VariableName(varname, null, COMPOSITE))) {
@@ -278,14 +354,41 @@ public class PuffinBasicSymbolTable {
 
     public void pushDeclarationScope(int funcId, boolean localScope) {
         currentScope = getCurrentScope().createChild(funcId, localScope);
+        if (funcId >= funcIdToDeclScope.length) {
+            funcIdToDeclScope = Arrays.copyOf(funcIdToDeclScope, Math.max(funcId + 1, funcIdToDeclScope.length << 1));
+        }
+        funcIdToDeclScope[funcId] = currentScope;
     }
 
     public void pushRuntimeScope(int funcId, int callerInstrId) {
-        Scope funcDeclScope = getCurrentScope().getChild(funcId);
+        Scope funcDeclScope = funcId >= 0 && funcId < funcIdToDeclScope.length ? funcIdToDeclScope[funcId] : null;
         if (funcDeclScope == null) {
             throw new PuffinBasicInternalError("Failed to find scope for id: " + funcId);
         }
-        currentScope = funcDeclScope.createRuntimeScope(callerInstrId);
+        if (numFrames == frames.length) {
+            frames = Arrays.copyOf(frames, frames.length << 1);
+        }
+        Frame frame = frames[numFrames];
+        if (frame == null) {
+            frame = frames[numFrames] = new Frame();
+        }
+        ++numFrames;
+        frame.push(this, (STUDF) get(funcId), funcDeclScope, currentScope, callerInstrId);
+        currentScope = funcDeclScope;
+    }
+
+    public void popRuntimeScope() {
+        if (numFrames == 0) {
+            throw new PuffinBasicInternalError("Scope underflow!");
+        }
+        currentScope = frames[--numFrames].pop();
+    }
+
+    public int getCallerInstrId() {
+        if (numFrames == 0) {
+            throw new PuffinBasicInternalError("Function return without a call!");
+        }
+        return frames[numFrames - 1].getCallerInstrId();
     }
 
     public void popScope() {
@@ -295,8 +398,4 @@ public class PuffinBasicSymbolTable {
         }
         currentScope = parent;
     }
-
-    public STEntry getLastEntry() {
-        return lastEntry;
-    }
 }
@@ -0,0 +1,124 @@
+package org.puffinbasic.domain;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Primitive storage for scalar numeric temps and variables.
+ * Each type has its own register array indexed by slot, and a parallel
+ * array which tracks whether a register was assigned.
+ * Registers are only allocated while the IR is generated, hence
+ * the arrays don't change once the program runs.
+ */
+public final class RegisterFile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    int[] int32s = new int[INITIAL_CAPACITY];
+    boolean[] int32sSet = new boolean[INITIAL_CAPACITY];
+    private int numInt32s;
+
+    long[] int64s = new long[INITIAL_CAPACITY];
+    boolean[] int64sSet = new boolean[INITIAL_CAPACITY];
+    private int numInt64s;
+
+    float[] float32s = new float[INITIAL_CAPACITY];
+    boolean[] float32sSet = new boolean[INITIAL_CAPACITY];
+    private int numFloat32s;
+
+    double[] float64s = new double[INITIAL_CAPACITY];
+    boolean[] float64sSet = new boolean[INITIAL_CAPACITY];
+    private int numFloat64s;
+
+    int allocateInt32() {
+        if (numInt32s == int32s.length) {
+            int32s = Arrays.copyOf(int32s, numInt32s * 2);
+            int32sSet = Arrays.copyOf(int32sSet, numInt32s * 2);
+        }
+        return numInt32s++;
+    }
+
+    int allocateInt64() {
+        if (numInt64s == int64s.length) {
+            int64s = Arrays.copyOf(int64s, numInt64s * 2);
+            int64sSet = Arrays.copyOf(int64sSet, numInt64s * 2);
+        }
+        return numInt64s++;
+    }
+
+    int allocateFloat32() {
+        if (numFloat32s == float32s.length) {
+            float32s = Arrays.copyOf(float32s, numFloat32s * 2);
+            float32sSet = Arrays.copyOf(float32sSet, numFloat32s * 2);
+        }
+        return numFloat32s++;
+    }
+
+    int allocateFloat64() {
+        if (numFloat64s == float64s.length) {
+            float64s = Arrays.copyOf(float64s, numFloat64s * 2);
+            float64sSet = Arrays.copyOf(float64sSet, numFloat64s * 2);
+        }
+        return numFloat64s++;
+    }
+
+    public int[] getInt32s() {
+        return int32s;
+    }
+
+    public boolean[] getInt32sSet() {
+        return int32sSet;
+    }
+
+    public long[] getInt64s() {
+        return int64s;
+    }
+
+    public boolean[] getInt64sSet() {
+        return int64sSet;
+    }
+
+    public float[] getFloat32s() {
+        return float32s;
+    }
+
+    public boolean[] getFloat32sSet() {
+        return float32sSet;
+    }
+
+    public double[] getFloat64s() {
+        return float64s;
+    }
+
+    public boolean[] getFloat64sSet() {
+        return float64sSet;
+    }
+
+    /**
+     * @return the assigned flags of the registers of the given type, null if it has no registers.
+     */
+    public boolean[] getSet(STObjects.PuffinBasicAtomTypeId type) {
+        switch (type) {
+            case INT32:
+                return int32sSet;
+            case INT64:
+                return int64sSet;
+            case FLOAT:
+                return float32sSet;
+            case DOUBLE:
+                return float64sSet;
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "int32=" + numInt32s
+                + ", int64=" + numInt64s
+                + ", float32=" + numFloat32s
+                + ", float64=" + numFloat64s;
+    }
+}
@@ -1,23 +1,49 @@
 package org.puffinbasic.domain;
 
 import com.google.common.collect.ImmutableList;
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.PriorityQueue;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleList;
+import it.unimi.dsi.fastutil.floats.FloatArrayList;
+import it.unimi.dsi.fastutil.floats.FloatList;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
 import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2LongAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.Long2LongOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectAVLTreeMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayFIFOQueue;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongCollection;
+import it.unimi.dsi.fastutil.longs.LongHeapPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongPriorityQueue;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import it.unimi.dsi.fastutil.longs.LongSortedSet;
 import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
-import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2LongAVLTreeMap;
+import it.unimi.dsi.fastutil.objects.Object2LongMap;
+import it.unimi.dsi.fastutil.objects.Object2LongOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectAVLTreeMap;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectArrayFIFOQueue;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
+import it.unimi.dsi.fastutil.objects.ObjectList;
 import it.unimi.dsi.fastutil.objects.ObjectOpenHashSet;
-import it.unimi.dsi.fastutil.objects.ObjectSet;
 import org.puffinbasic.domain.Variable.VariableName;
 import org.puffinbasic.error.PuffinBasicInternalError;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.runtime.Formatter;
 
+import java.io.Serializable;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
@@ -29,8 +55,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedSet;
 
-import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.COMPOSITE;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.DOUBLE;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.FLOAT;
@@ -39,6 +65,7 @@ import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.BAD_FIELD;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.BAD_FUNCTION_CALL;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DATA_TYPE_MISMATCH;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.ILLEGAL_FUNCTION_PARAM;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.INDEX_OUT_OF_BOUNDS;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.NOT_INITIALIZED;
 
 public class STObjects {
@@ -51,6 +78,8 @@ public class STObjects {
         LIST,
         SET,
         DICT,
+        DEQUE,
+        PQ,
     }
 
     public enum PuffinBasicAtomTypeId {
@@ -74,6 +103,20 @@ public class STObjects {
                 return new STTmp(new STInt32ScalarValue(), ScalarType.INT32);
             }
 
+            @Override
+            public STVariable createVariableEntry(Variable variable, RegisterFile registers) {
+                if (variable.isScalar() && !variable.isUDF()) {
+                    return new STVariable(new STInt32RegisterValue(registers), variable);
+                } else {
+                    return createVariableEntry(variable);
+                }
+            }
+
+            @Override
+            public STTmp createTmpEntry(RegisterFile registers) {
+                return new STTmp(new STInt32RegisterValue(registers), ScalarType.INT32);
+            }
+
             @Override
             public STTmp createArrayEntry() {
                 return new STTmp(new STInt32ArrayValue(), ScalarType.INT32);
@@ -94,12 +137,58 @@ public class STObjects {
                 dst.setInt32((int) value);
             }
 
+            @Override
+            public List<?> createList() {
+                return new IntArrayList();
+            }
+
+            @Override
+            public void addToList(List<?> list, int index, STValue src) {
+                ((IntList) list).add(index, src.getInt32());
+            }
+
+            @Override
+            public void getFromList(List<?> list, int index, STValue dst) {
+                dst.setInt32(((IntList) list).getInt(index));
+            }
+
+            @Override
+            public boolean hasBits() {
+                return true;
+            }
+
+            @Override
+            public long toBits(STValue src) {
+                return src.getInt32();
+            }
+
+            @Override
+            public void setFromBits(long bits, STValue dst) {
+                dst.setInt32((int) bits);
+            }
+
+            @Override
+            public void copyBitsArray(LongCollection src, STValue dst) {
+                IntArrayList dims = new IntArrayList(1);
+                dims.add(src.size());
+                dst.setArrayDimensions(dims);
+                int[] array = ((STInt32ArrayValue) dst).getValue();
+                int i = 0;
+                for (LongIterator it = src.iterator(); it.hasNext(); ) {
+                    array[i++] = (int) it.nextLong();
+                }
+            }
+
             @Override
             public void copyArray(Collection<?> src, STValue dst) {
                 IntArrayList dims = new IntArrayList(1);
                 dims.add(src.size());
                 dst.setArrayDimensions(dims);
                 int[] array = ((STInt32ArrayValue) dst).getValue();
+                if (src instanceof IntList) {
+                    ((IntList) src).getElements(0, array, 0, array.length);
+                    return;
+                }
                 int i = 0;
                 for (Object o : src) {
                     array[i++] = (int) o;
@@ -143,6 +232,20 @@ public class STObjects {
                 return new STTmp(new STInt64ScalarValue(), ScalarType.INT64);
             }
 
+            @Override
+            public STVariable createVariableEntry(Variable variable, RegisterFile registers) {
+                if (variable.isScalar() && !variable.isUDF()) {
+                    return new STVariable(new STInt64RegisterValue(registers), variable);
+                } else {
+                    return createVariableEntry(variable);
+                }
+            }
+
+            @Override
+            public STTmp createTmpEntry(RegisterFile registers) {
+                return new STTmp(new STInt64RegisterValue(registers), ScalarType.INT64);
+            }
+
             @Override
             public STTmp createArrayEntry() {
                 return new STTmp(new STInt64ArrayValue(), ScalarType.INT64);
@@ -163,12 +266,58 @@ public class STObjects {
                 dst.setInt64((long) value);
             }
 
+            @Override
+            public List<?> createList() {
+                return new LongArrayList();
+            }
+
+            @Override
+            public void addToList(List<?> list, int index, STValue src) {
+                ((LongList) list).add(index, src.getInt64());
+            }
+
+            @Override
+            public void getFromList(List<?> list, int index, STValue dst) {
+                dst.setInt64(((LongList) list).getLong(index));
+            }
+
+            @Override
+            public boolean hasBits() {
+                return true;
+            }
+
+            @Override
+            public long toBits(STValue src) {
+                return src.getInt64();
+            }
+
+            @Override
+            public void setFromBits(long bits, STValue dst) {
+                dst.setInt64(bits);
+            }
+
+            @Override
+            public void copyBitsArray(LongCollection src, STValue dst) {
+                IntArrayList dims = new IntArrayList(1);
+                dims.add(src.size());
+                dst.setArrayDimensions(dims);
+                long[] array = ((STInt64ArrayValue) dst).getValue();
+                int i = 0;
+                for (LongIterator it = src.iterator(); it.hasNext(); ) {
+                    array[i++] = it.nextLong();
+                }
+            }
+
             @Override
             public void copyArray(Collection<?> src, STValue dst) {
                 IntArrayList dims = new IntArrayList(1);
                 dims.add(src.size());
                 dst.setArrayDimensions(dims);
                 long[] array = ((STInt64ArrayValue) dst).getValue();
+                if (src instanceof LongList) {
+                    ((LongList) src).getElements(0, array, 0, array.length);
+                    return;
+                }
                 int i = 0;
                 for (Object o : src) {
                     array[i++] = (long) o;
@@ -212,6 +361,20 @@ public class STObjects {
                 return new STTmp(new STFloat32ScalarValue(), ScalarType.FLOAT32);
             }
 
+            @Override
+            public STVariable createVariableEntry(Variable variable, RegisterFile registers) {
+                if (variable.isScalar() && !variable.isUDF()) {
+                    return new STVariable(new STFloat32RegisterValue(registers), variable);
+                } else {
+                    return createVariableEntry(variable);
+                }
+            }
+
+            @Override
+            public STTmp createTmpEntry(RegisterFile registers) {
+                return new STTmp(new STFloat32RegisterValue(registers), ScalarType.FLOAT32);
+            }
+
             @Override
             public STTmp createArrayEntry() {
                 return new STTmp(new STFloat32ArrayValue(), ScalarType.FLOAT32);
@@ -232,12 +395,58 @@ public class STObjects {
                 dst.setFloat32((float) value);
             }
 
+            @Override
+            public List<?> createList() {
+                return new FloatArrayList();
+            }
+
+            @Override
+            public void addToList(List<?> list, int index, STValue src) {
+                ((FloatList) list).add(index, src.getFloat32());
+            }
+
+            @Override
+            public void getFromList(List<?> list, int index, STValue dst) {
+                dst.setFloat32(((FloatList) list).getFloat(index));
+            }
+
+            @Override
+            public boolean hasBits() {
+                return true;
+            }
+
+            @Override
+            public long toBits(STValue src) {
+                return toOrderedBits(src.getFloat32());
+            }
+
+            @Override
+            public void setFromBits(long bits, STValue dst) {
+                dst.setFloat32((float) fromOrderedBits(bits));
+            }
+
+            @Override
+            public void copyBitsArray(LongCollection src, STValue dst) {
+                IntArrayList dims = new IntArrayList(1);
+                dims.add(src.size());
+                dst.setArrayDimensions(dims);
+                float[] array = ((STFloat32ArrayValue) dst).getValue();
+                int i = 0;
+                for (LongIterator it = src.iterator(); it.hasNext(); ) {
+                    array[i++] = (float) fromOrderedBits(it.nextLong());
+                }
+            }
+
             @Override
             public void copyArray(Collection<?> src, STValue dst) {
                 IntArrayList dims = new IntArrayList(1);
                 dims.add(src.size());
                 dst.setArrayDimensions(dims);
                 float[] array = ((STFloat32ArrayValue) dst).getValue();
+                if (src instanceof FloatList) {
+                    ((FloatList) src).getElements(0, array, 0, array.length);
+                    return;
+                }
                 int i = 0;
                 for (Object o : src) {
                     array[i++] = (float) o;
@@ -281,6 +490,20 @@ public class STObjects {
                 return new STTmp(new STFloat64ScalarValue(), ScalarType.FLOAT64);
             }
 
+            @Override
+            public STVariable createVariableEntry(Variable variable, RegisterFile registers) {
+                if (variable.isScalar() && !variable.isUDF()) {
+                    return new STVariable(new STFloat64RegisterValue(registers), variable);
+                } else {
+                    return createVariableEntry(variable);
+                }
+            }
+
+            @Override
+            public STTmp createTmpEntry(RegisterFile registers) {
+                return new STTmp(new STFloat64RegisterValue(registers), ScalarType.FLOAT64);
+            }
+
             @Override
             public STTmp createArrayEntry() {
                 return new STTmp(new STFloat64ArrayValue(), ScalarType.FLOAT64);
@@ -301,12 +524,58 @@ public class STObjects {
                 dst.setFloat64((double) value);
             }
 
+            @Override
+            public List<?> createList() {
+                return new DoubleArrayList();
+            }
+
+            @Override
+            public void addToList(List<?> list, int index, STValue src) {
+                ((DoubleList) list).add(index, src.getFloat64());
+            }
+
+            @Override
+            public void getFromList(List<?> list, int index, STValue dst) {
+                dst.setFloat64(((DoubleList) list).getDouble(index));
+            }
+
+            @Override
+            public boolean hasBits() {
+                return true;
+            }
+
+            @Override
+            public long toBits(STValue src) {
+                return toOrderedBits(src.getFloat64());
+            }
+
+            @Override
+            public void setFromBits(long bits, STValue dst) {
+                dst.setFloat64(fromOrderedBits(bits));
+            }
+
+            @Override
+            public void copyBitsArray(LongCollection src, STValue dst) {
+                IntArrayList dims = new IntArrayList(1);
+                dims.add(src.size());
+                dst.setArrayDimensions(dims);
+                double[] array = ((STFloat64ArrayValue) dst).getValue();
+                int i = 0;
+                for (LongIterator it = src.iterator(); it.hasNext(); ) {
+                    array[i++] = fromOrderedBits(it.nextLong());
+                }
+            }
+
             @Override
             public void copyArray(Collection<?> src, STValue dst) {
                 IntArrayList dims = new IntArrayList(1);
                 dims.add(src.size());
                 dst.setArrayDimensions(dims);
                 double[] array = ((STFloat64ArrayValue) dst).getValue();
+                if (src instanceof DoubleList) {
+                    ((DoubleList) src).getElements(0, array, 0, array.length);
+                    return;
+                }
                 int i = 0;
                 for (Object o : src) {
                     array[i++] = (double) o;
@@ -480,6 +749,14 @@ public class STObjects {
 
         public abstract STTmp createTmpEntry();
 
+        public STVariable createVariableEntry(Variable variable, RegisterFile registers) {
+            return createVariableEntry(variable);
+        }
+
+        public STTmp createTmpEntry(RegisterFile registers) {
+            return createTmpEntry();
+        }
+
         public abstract STTmp createArrayEntry();
 
         public abstract STValue createValue();
@@ -494,6 +771,50 @@ public class STObjects {
 
         public abstract void copyArray(Object[] src, STValue dst);
 
+        // Backing list of a LIST of this type, numeric lists hold unboxed values.
+        public List<?> createList() {
+            return new ArrayList<>();
+        }
+
+        @SuppressWarnings("unchecked")
+        public void addToList(List<?> list, int index, STValue src) {
+            ((List<Object>) list).add(index, getValueFrom(src));
+        }
+
+        public void getFromList(List<?> list, int index, STValue dst) {
+            setValueIn(list.get(index), dst);
+        }
+
+        /**
+         * Numeric values are stored in a SET, DICT, DEQUE or PQ as the bits of a long,
+         * which compare and order the same as the boxed values.
+         */
+        public boolean hasBits() {
+            return false;
+        }
+
+        public long toBits(STValue src) {
+            throw new PuffinBasicInternalError("Not implemented");
+        }
+
+        public void setFromBits(long bits, STValue dst) {
+            throw new PuffinBasicInternalError("Not implemented");
+        }
+
+        public void copyBitsArray(LongCollection src, STValue dst) {
+            throw new PuffinBasicInternalError("Not implemented");
+        }
+
+        // Flips the magnitude bits of negative values, so the bits order like Double.compare().
+        private static long toOrderedBits(double value) {
+            long bits = Double.doubleToLongBits(value);
+            return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+        }
+
+        private static double fromOrderedBits(long bits) {
+            return Double.longBitsToDouble(bits ^ ((bits >> 63) & Long.MAX_VALUE));
+        }
+
         public static PuffinBasicAtomTypeId lookup(String repr) {
             if (repr == null || repr.length() != 1) {
                 throw new PuffinBasicInternalError(
@@ -510,7 +831,7 @@ public class STObjects {
         }
     }
 
-    public interface PuffinBasicType {
+    public interface PuffinBasicType extends Serializable {
         PuffinBasicTypeId getTypeId();
 
         PuffinBasicAtomTypeId getAtomTypeId();
@@ -530,6 +851,13 @@ public class STObjects {
 
         default void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {}
 
+        default STEntry bindFuncCall(String funcName, int numParams) {
+            throw new PuffinBasicRuntimeError(
+                    BAD_FIELD,
+                    "Unsupported function: " + funcName + " in type: " + this
+            );
+        }
+
         default boolean isCompatibleWith(PuffinBasicType other) {
             return this.equals(other);
         }
@@ -546,6 +874,8 @@ public class STObjects {
     }
 
     public static class ScalarType implements PuffinBasicType {
+        private static final long serialVersionUID = 1L;
+
         static final ScalarType INT32 = new ScalarType(PuffinBasicAtomTypeId.INT32);
         static final ScalarType INT64 = new ScalarType(PuffinBasicAtomTypeId.INT64);
         static final ScalarType FLOAT32 = new ScalarType(FLOAT);
@@ -598,6 +928,8 @@ public class STObjects {
     }
 
     public static class ArrayType implements PuffinBasicType {
+        private static final long serialVersionUID = 1L;
+
         private final PuffinBasicAtomTypeId atomType;
         private final IntList dims;
         private final boolean canBeLValue;
@@ -673,6 +1005,8 @@ public class STObjects {
     }
 
     public static class UDFType implements PuffinBasicType {
+        private static final long serialVersionUID = 1L;
+
         private final PuffinBasicAtomTypeId atomType;
 
         UDFType(PuffinBasicAtomTypeId atomType) {
@@ -719,15 +1053,20 @@ public class STObjects {
         }
     }
 
+    /**
+     * Fields are laid out in declaration order when the type is declared,
+     * and a member's ref id is its offset in an instance's field array.
+     */
     public static final class StructType implements PuffinBasicType {
+        private static final long serialVersionUID = 1L;
+
         private final String typeName;
-        private final Int2ObjectMap<PuffinBasicType> refIdToTypeMap;
+        private final ObjectList<PuffinBasicType> fieldTypes;
         private final Object2IntMap<VariableName> nameToRefIdMap;
-        private int counter;
 
         public StructType(String typeName) {
             this.typeName = typeName;
-            this.refIdToTypeMap = new Int2ObjectOpenHashMap<>();
+            this.fieldTypes = new ObjectArrayList<>();
             this.nameToRefIdMap = new Object2IntOpenHashMap<>();
         }
 
@@ -736,7 +1075,7 @@ public class STObjects {
         }
 
         public PuffinBasicType getMemberType(VariableName memberName) {
-            return refIdToTypeMap.get(getMemberRefId(memberName));
+            return fieldTypes.get(getMemberRefId(memberName));
         }
 
         public boolean containsMember(VariableName memberName) {
@@ -755,9 +1094,12 @@ public class STObjects {
         }
 
         public void declareField(VariableName memberName, PuffinBasicType type) {
-            int refId = counter++;
-            refIdToTypeMap.put(refId, type);
-            nameToRefIdMap.put(memberName, refId);
+            nameToRefIdMap.put(memberName, fieldTypes.size());
+            fieldTypes.add(type);
+        }
+
+        int getNumFields() {
+            return fieldTypes.size();
         }
 
         @Override
@@ -799,11 +1141,22 @@ public class STObjects {
         void call(Object o, STValue[] params, STValue result);
     }
 
-    private static final class MemberFunction {
+    /**
+     * A type with member functions. The functions are rebuilt when the type
+     * is read from a compiled program, see {@link SerializedMemberFunction}.
+     */
+    private interface MemberFunctionOwner extends PuffinBasicType {
+        MemberFunctions getMemberFunctions();
+    }
+
+    private static final class MemberFunction implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         private final String functionName;
         private final PuffinBasicType[] paramTypes;
         private final PuffinBasicType returnType;
-        private final MemberCallHandler callHandler;
+        private final transient MemberCallHandler callHandler;
+        private MemberFunctionOwner owner;
 
         MemberFunction(
                 String functionName,
@@ -816,14 +1169,42 @@ public class STObjects {
             this.returnType = returnType;
             this.callHandler = callHandler;
         }
+
+        private Object writeReplace() {
+            return new SerializedMemberFunction(owner, functionName);
+        }
+    }
+
+    /**
+     * A member function is written as its owner type and name, and bound
+     * again when read. The handler lambdas aren't written, since their
+     * synthetic names change whenever this file is edited.
+     */
+    private static final class SerializedMemberFunction implements Serializable {
+        private static final long serialVersionUID = 1L;
+
+        private final MemberFunctionOwner owner;
+        private final String functionName;
+
+        SerializedMemberFunction(MemberFunctionOwner owner, String functionName) {
+            this.owner = owner;
+            this.functionName = functionName;
+        }
+
+        private Object readResolve() {
+            return owner.getMemberFunctions().get(functionName);
+        }
     }
 
     private static final class MemberFunctions {
         private final Map<String, MemberFunction> memberFunctions;
 
-        MemberFunctions(List<MemberFunction> memberFunctions) {
+        MemberFunctions(MemberFunctionOwner owner, List<MemberFunction> memberFunctions) {
             this.memberFunctions = new HashMap<>();
-            memberFunctions.forEach(mf -> this.memberFunctions.put(mf.functionName, mf));
+            memberFunctions.forEach(mf -> {
+                mf.owner = owner;
+                this.memberFunctions.put(mf.functionName, mf);
+            });
         }
 
         public MemberFunction get(String funcName) {
@@ -858,47 +1239,63 @@ public class STObjects {
         }
     }
 
-    public static final class ListType implements PuffinBasicType {
+    private static PriorityQueue<?> getNonEmptyQueue(Object queue, String typeName) {
+        PriorityQueue<?> q = (PriorityQueue<?>) queue;
+        if (q.isEmpty()) {
+            throw new PuffinBasicRuntimeError(
+                    INDEX_OUT_OF_BOUNDS,
+                    typeName + " is empty!"
+            );
+        }
+        return q;
+    }
+
+    public static final class ListType implements MemberFunctionOwner {
+
+        private static final long serialVersionUID = 1L;
 
         private final PuffinBasicType type;
-        private final MemberFunctions memberFunctions;
+        private final transient MemberFunctions memberFunctions;
 
         public ListType(PuffinBasicType type) {
             this.type = type;
             ArrayType valuesType = new ArrayType(type.getAtomTypeId());
+            boolean scalar = type.getTypeId() == PuffinBasicTypeId.SCALAR;
+            PuffinBasicAtomTypeId atomType = type.getAtomTypeId();
             this.memberFunctions = new MemberFunctions(
+                    this,
                     ImmutableList.<MemberFunction>builder()
                             .add(new MemberFunction(
                                     "append", new PuffinBasicType[] {type}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        List<Object> list = (List<Object>) obj;
-                                        if (type.getTypeId() == PuffinBasicTypeId.SCALAR) {
-                                            list.add(type.getAtomTypeId().getValueFrom(params[0]));
+                                        List<?> list = (List<?>) obj;
+                                        if (scalar) {
+                                            atomType.addToList(list, list.size(), params[0]);
                                         } else {
-                                            list.add(params[0]);
+                                            @SuppressWarnings("unchecked")
+                                            List<Object> objects = (List<Object>) obj;
+                                            objects.add(params[0]);
                                         }
                                         result.setInt32(0);
                                     }))
                             .add(new MemberFunction(
                                     "insert", new PuffinBasicType[] {ScalarType.INT32, type}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        List<Object> list = (List<Object>) obj;
+                                        List<?> list = (List<?>) obj;
                                         int index = params[0].getInt32();
-                                        if (type.getTypeId() == PuffinBasicTypeId.SCALAR) {
-                                            Object value = type.getAtomTypeId().getValueFrom(params[1]);
-                                            list.add(index, value);
+                                        if (scalar) {
+                                            atomType.addToList(list, index, params[1]);
                                         } else {
-                                            list.add(index, params[1]);
+                                            @SuppressWarnings("unchecked")
+                                            List<Object> objects = (List<Object>) obj;
+                                            objects.add(index, params[1]);
                                         }
                                         result.setInt32(0);
                                     }))
                             .add(new MemberFunction(
                                     "get", new PuffinBasicType[] {ScalarType.INT32}, type,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        List<Object> list = (List<Object>) obj;
+                                        List<?> list = (List<?>) obj;
                                         int index = params[0].getInt32();
                                         if (index < 0 || index >= list.size()) {
                                             throw new PuffinBasicRuntimeError(
@@ -907,8 +1304,8 @@ public class STObjects {
                                                             + " is out of bounds, list size: " + list.size()
                                             );
                                         }
-                                        if (type.getTypeId() == PuffinBasicTypeId.SCALAR) {
-                                            type.getAtomTypeId().setValueIn(list.get(index), result);
+                                        if (scalar) {
+                                            atomType.getFromList(list, index, result);
                                         } else {
                                             STValue item = (STValue) list.get(index);
                                             if (item == null) {
@@ -924,10 +1321,9 @@ public class STObjects {
                             .add(new MemberFunction(
                                     "values", new PuffinBasicType[] {}, valuesType,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        List<Object> list = (List<Object>) obj;
-                                        if (type.getTypeId() == PuffinBasicTypeId.SCALAR) {
-                                            type.getAtomTypeId().copyArray(list, result);
+                                        List<?> list = (List<?>) obj;
+                                        if (scalar) {
+                                            atomType.copyArray(list, result);
                                         } else {
                                             throw new PuffinBasicRuntimeError(
                                                     BAD_FUNCTION_CALL,
@@ -938,8 +1334,7 @@ public class STObjects {
                             .add(new MemberFunction(
                                     "clear", new PuffinBasicType[] {}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        List<Object> list = (List<Object>) obj;
+                                        List<?> list = (List<?>) obj;
                                         list.clear();
                                         result.setInt32(0);
                                     }))
@@ -959,7 +1354,16 @@ public class STObjects {
 
         @Override
         public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
-            return new STList(type, memberFunctions);
+            return new STList(type);
+        }
+
+        @Override
+        public MemberFunctions getMemberFunctions() {
+            return memberFunctions;
+        }
+
+        private Object readResolve() {
+            return new ListType(type);
         }
 
         @Override
@@ -972,6 +1376,11 @@ public class STObjects {
             memberFunctions.checkFuncCallArguments(funcName, paramTypes);
         }
 
+        @Override
+        public STEntry bindFuncCall(String funcName, int numParams) {
+            return new STMemberFuncCall(getTypeId(), memberFunctions.get(funcName), numParams);
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -991,55 +1400,62 @@ public class STObjects {
         }
     }
 
-    public static final class SetType implements PuffinBasicType {
+    public static final class SetType implements MemberFunctionOwner {
+
+        private static final long serialVersionUID = 1L;
 
         private final PuffinBasicType type;
-        private final MemberFunctions memberFunctions;
+        private final transient MemberFunctions memberFunctions;
 
         public SetType(PuffinBasicType type) {
             this.type = type;
             ArrayType valuesType = new ArrayType(type.getAtomTypeId());
+            PuffinBasicAtomTypeId atomType = type.getAtomTypeId();
+            boolean bits = atomType.hasBits();
             this.memberFunctions = new MemberFunctions(
+                    this,
                     ImmutableList.<MemberFunction>builder()
                             .add(new MemberFunction(
                                     "add", new PuffinBasicType[] {type}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Set<Object> set = (Set<Object>) obj;
-                                        Object value = type.getAtomTypeId().getValueFrom(params[0]);
-                                        set.add(value);
+                                        if (bits) {
+                                            ((LongSet) obj).add(atomType.toBits(params[0]));
+                                        } else {
+                                            @SuppressWarnings("unchecked")
+                                            Set<Object> set = (Set<Object>) obj;
+                                            set.add(atomType.getValueFrom(params[0]));
+                                        }
                                         result.setInt32(0);
                                     }))
                             .add(new MemberFunction(
                                     "remove", new PuffinBasicType[] {type}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Set<Object> set = (Set<Object>) obj;
-                                        Object value = type.getAtomTypeId().getValueFrom(params[0]);
-                                        boolean removeRes = set.remove(value);
+                                        boolean removeRes = bits
+                                                ? ((LongSet) obj).remove(atomType.toBits(params[0]))
+                                                : ((Set<?>) obj).remove(atomType.getValueFrom(params[0]));
                                         result.setInt32(removeRes ? -1 : 0);
                                     }))
                             .add(new MemberFunction(
                                     "contains", new PuffinBasicType[] {type}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Set<Object> set = (Set<Object>) obj;
-                                        Object value = type.getAtomTypeId().getValueFrom(params[0]);
-                                        result.setInt32(set.contains(value) ? -1 : 0);
+                                        boolean containsRes = bits
+                                                ? ((LongSet) obj).contains(atomType.toBits(params[0]))
+                                                : ((Set<?>) obj).contains(atomType.getValueFrom(params[0]));
+                                        result.setInt32(containsRes ? -1 : 0);
                                     }))
                             .add(new MemberFunction(
                                     "values", new PuffinBasicType[] {}, valuesType,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Set<Object> set = (Set<Object>) obj;
-                                        type.getAtomTypeId().copyArray(set, result);
+                                        if (bits) {
+                                            atomType.copyBitsArray((LongSet) obj, result);
+                                        } else {
+                                            atomType.copyArray((Set<?>) obj, result);
+                                        }
                                     }))
                             .add(new MemberFunction(
                                     "clear", new PuffinBasicType[] {}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Set<Object> set = (Set<Object>) obj;
-                                        set.clear();
+                                        ((Set<?>) obj).clear();
                                         result.setInt32(0);
                                     }))
                             .build()
@@ -1058,7 +1474,16 @@ public class STObjects {
 
         @Override
         public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
-            return new STSet(type, memberFunctions);
+            return new STSet(type);
+        }
+
+        @Override
+        public MemberFunctions getMemberFunctions() {
+            return memberFunctions;
+        }
+
+        private Object readResolve() {
+            return new SetType(type);
         }
 
         @Override
@@ -1071,6 +1496,11 @@ public class STObjects {
             memberFunctions.checkFuncCallArguments(funcName, paramTypes);
         }
 
+        @Override
+        public STEntry bindFuncCall(String funcName, int numParams) {
+            return new STMemberFuncCall(getTypeId(), memberFunctions.get(funcName), numParams);
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -1090,72 +1520,205 @@ public class STObjects {
         }
     }
 
-    public static final class DictType implements PuffinBasicType {
+    public static final class DictType implements MemberFunctionOwner {
+
+        private static final long serialVersionUID = 1L;
 
         private final PuffinBasicType keyType;
         private final PuffinBasicType valueType;
-        private final MemberFunctions memberFunctions;
+        private final boolean sorted;
+        private final transient MemberFunctions memberFunctions;
 
         public DictType(PuffinBasicType keyType, PuffinBasicType valueType) {
+            this(keyType, valueType, false);
+        }
+
+        /**
+         * Numeric keys and values are stored unboxed, so a dict is
+         * backed by one of Long2Long, Long2Object, Object2Long or Object2Object maps.
+         * A SORTEDDICT uses the AVL tree variants, and adds member functions
+         * which find keys in order.
+         */
+        @SuppressWarnings("unchecked")
+        public DictType(PuffinBasicType keyType, PuffinBasicType valueType, boolean sorted) {
             this.keyType = keyType;
             this.valueType = valueType;
+            this.sorted = sorted;
             ArrayType valuesType = new ArrayType(keyType.getAtomTypeId());
-            this.memberFunctions = new MemberFunctions(
-                    ImmutableList.<MemberFunction>builder()
+            PuffinBasicAtomTypeId keyAtomType = keyType.getAtomTypeId();
+            PuffinBasicAtomTypeId valueAtomType = valueType.getAtomTypeId();
+            boolean keyBits = keyAtomType.hasBits();
+            boolean valueBits = valueAtomType.hasBits();
+            ImmutableList.Builder<MemberFunction> functions = ImmutableList.<MemberFunction>builder()
                             .add(new MemberFunction(
                                     "put", new PuffinBasicType[] {keyType, valueType}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Map<Object, Object> dict = (Map<Object, Object>) obj;
-                                        Object key = keyType.getAtomTypeId().getValueFrom(params[0]);
-                                        Object value = valueType.getAtomTypeId().getValueFrom(params[1]);
-                                        dict.put(key, value);
+                                        if (keyBits) {
+                                            long key = keyAtomType.toBits(params[0]);
+                                            if (valueBits) {
+                                                ((Long2LongMap) obj).put(key, valueAtomType.toBits(params[1]));
+                                            } else {
+                                                ((Long2ObjectMap<Object>) obj).put(key, valueAtomType.getValueFrom(params[1]));
+                                            }
+                                        } else {
+                                            Object key = keyAtomType.getValueFrom(params[0]);
+                                            if (valueBits) {
+                                                ((Object2LongMap<Object>) obj).put(key, valueAtomType.toBits(params[1]));
+                                            } else {
+                                                ((Map<Object, Object>) obj).put(key, valueAtomType.getValueFrom(params[1]));
+                                            }
+                                        }
                                         result.setInt32(0);
                                     }))
                             .add(new MemberFunction(
                                     "removeKey", new PuffinBasicType[] {keyType}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Map<Object, Object> dict = (Map<Object, Object>) obj;
-                                        Object key = keyType.getAtomTypeId().getValueFrom(params[0]);
-                                        Object removeRes = dict.remove(key);
-                                        result.setInt32(removeRes != null ? -1 : 0);
+                                        boolean removeRes;
+                                        if (keyBits) {
+                                            long key = keyAtomType.toBits(params[0]);
+                                            removeRes = ((LongSet) ((Map<?, ?>) obj).keySet()).remove(key);
+                                        } else {
+                                            Object key = keyAtomType.getValueFrom(params[0]);
+                                            removeRes = ((Map<?, ?>) obj).keySet().remove(key);
+                                        }
+                                        result.setInt32(removeRes ? -1 : 0);
                                     }))
                             .add(new MemberFunction(
                                     "getOrDefault", new PuffinBasicType[] {keyType, valueType}, valueType,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Map<Object, Object> dict = (Map<Object, Object>) obj;
-                                        Object key = keyType.getAtomTypeId().getValueFrom(params[0]);
-                                        Object value = valueType.getAtomTypeId().getValueFrom(params[1]);
-                                        Object getRes = dict.getOrDefault(key, value);
-                                        valueType.getAtomTypeId().setValueIn(getRes, result);
+                                        if (keyBits) {
+                                            long key = keyAtomType.toBits(params[0]);
+                                            if (valueBits) {
+                                                long value = ((Long2LongMap) obj).getOrDefault(
+                                                        key, valueAtomType.toBits(params[1]));
+                                                valueAtomType.setFromBits(value, result);
+                                            } else {
+                                                Object value = ((Long2ObjectMap<Object>) obj).getOrDefault(
+                                                        key, valueAtomType.getValueFrom(params[1]));
+                                                valueAtomType.setValueIn(value, result);
+                                            }
+                                        } else {
+                                            Object key = keyAtomType.getValueFrom(params[0]);
+                                            if (valueBits) {
+                                                long value = ((Object2LongMap<Object>) obj).getOrDefault(
+                                                        key, valueAtomType.toBits(params[1]));
+                                                valueAtomType.setFromBits(value, result);
+                                            } else {
+                                                Object value = ((Map<Object, Object>) obj).getOrDefault(
+                                                        key, valueAtomType.getValueFrom(params[1]));
+                                                valueAtomType.setValueIn(value, result);
+                                            }
+                                        }
                                     }))
                             .add(new MemberFunction(
                                     "containsKey", new PuffinBasicType[] {keyType}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Map<Object, Object> dict = (Map<Object, Object>) obj;
-                                        Object key = keyType.getAtomTypeId().getValueFrom(params[0]);
-                                        result.setInt32(dict.containsKey(key) ? -1 : 0);
+                                        boolean containsRes = keyBits
+                                                ? ((LongSet) ((Map<?, ?>) obj).keySet()).contains(keyAtomType.toBits(params[0]))
+                                                : ((Map<?, ?>) obj).containsKey(keyAtomType.getValueFrom(params[0]));
+                                        result.setInt32(containsRes ? -1 : 0);
                                     }))
                             .add(new MemberFunction(
                                     "keys", new PuffinBasicType[] {}, valuesType,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Map<Object, Object> dict = (Map<Object, Object>) obj;
-                                        keyType.getAtomTypeId().copyArray(dict.keySet(), result);
+                                        Set<?> keys = ((Map<?, ?>) obj).keySet();
+                                        if (keyBits) {
+                                            keyAtomType.copyBitsArray((LongSet) keys, result);
+                                        } else {
+                                            keyAtomType.copyArray(keys, result);
+                                        }
                                     }))
                             .add(new MemberFunction(
                                     "clear", new PuffinBasicType[] {}, ScalarType.INT32,
                                     (obj, params, result) -> {
-                                        @SuppressWarnings("unchecked")
-                                        Map<Object, Object> dict = (Map<Object, Object>) obj;
-                                        dict.clear();
+                                        ((Map<?, ?>) obj).clear();
                                         result.setInt32(0);
-                                    }))
-                            .build()
-            );
+                                    }));
+            if (sorted) {
+                functions
+                        .add(new MemberFunction(
+                                "firstKey", new PuffinBasicType[] {}, keyType,
+                                (obj, params, result) -> {
+                                    Set<?> keys = getNonEmptyKeys(obj);
+                                    if (keyBits) {
+                                        keyAtomType.setFromBits(((LongSortedSet) keys).firstLong(), result);
+                                    } else {
+                                        keyAtomType.setValueIn(((SortedSet<?>) keys).first(), result);
+                                    }
+                                }))
+                        .add(new MemberFunction(
+                                "lastKey", new PuffinBasicType[] {}, keyType,
+                                (obj, params, result) -> {
+                                    Set<?> keys = getNonEmptyKeys(obj);
+                                    if (keyBits) {
+                                        keyAtomType.setFromBits(((LongSortedSet) keys).lastLong(), result);
+                                    } else {
+                                        keyAtomType.setValueIn(((SortedSet<?>) keys).last(), result);
+                                    }
+                                }))
+                        .add(new MemberFunction(
+                                "floorKey", new PuffinBasicType[] {keyType, keyType}, keyType,
+                                (obj, params, result) -> {
+                                    if (keyBits) {
+                                        LongSortedSet keys = (LongSortedSet) ((Map<?, ?>) obj).keySet();
+                                        long key = keyAtomType.toBits(params[0]);
+                                        LongSortedSet lower = keys.headSet(key);
+                                        long floor = keys.contains(key) ? key
+                                                : lower.isEmpty() ? keyAtomType.toBits(params[1]) : lower.lastLong();
+                                        keyAtomType.setFromBits(floor, result);
+                                    } else {
+                                        SortedSet<Object> keys = (SortedSet<Object>) ((Map<?, ?>) obj).keySet();
+                                        Object key = keyAtomType.getValueFrom(params[0]);
+                                        SortedSet<Object> lower = keys.headSet(key);
+                                        Object floor = keys.contains(key) ? key
+                                                : lower.isEmpty() ? keyAtomType.getValueFrom(params[1]) : lower.last();
+                                        keyAtomType.setValueIn(floor, result);
+                                    }
+                                }))
+                        .add(new MemberFunction(
+                                "ceilingKey", new PuffinBasicType[] {keyType, keyType}, keyType,
+                                (obj, params, result) -> {
+                                    if (keyBits) {
+                                        LongSortedSet keys = (LongSortedSet) ((Map<?, ?>) obj).keySet();
+                                        LongSortedSet higher = keys.tailSet(keyAtomType.toBits(params[0]));
+                                        long ceiling = higher.isEmpty() ? keyAtomType.toBits(params[1]) : higher.firstLong();
+                                        keyAtomType.setFromBits(ceiling, result);
+                                    } else {
+                                        SortedSet<Object> keys = (SortedSet<Object>) ((Map<?, ?>) obj).keySet();
+                                        SortedSet<Object> higher = keys.tailSet(keyAtomType.getValueFrom(params[0]));
+                                        Object ceiling = higher.isEmpty() ? keyAtomType.getValueFrom(params[1]) : higher.first();
+                                        keyAtomType.setValueIn(ceiling, result);
+                                    }
+                                }))
+                        .add(new MemberFunction(
+                                "rangeKeys", new PuffinBasicType[] {keyType, keyType}, valuesType,
+                                (obj, params, result) -> {
+                                    // Keys in [from, to), empty if to <= from.
+                                    if (keyBits) {
+                                        LongSortedSet keys = (LongSortedSet) ((Map<?, ?>) obj).keySet();
+                                        long from = keyAtomType.toBits(params[0]);
+                                        long to = keyAtomType.toBits(params[1]);
+                                        keyAtomType.copyBitsArray(keys.subSet(from, Math.max(from, to)), result);
+                                    } else {
+                                        SortedSet<Object> keys = (SortedSet<Object>) ((Map<?, ?>) obj).keySet();
+                                        Comparable<Object> from = (Comparable<Object>) keyAtomType.getValueFrom(params[0]);
+                                        Object to = keyAtomType.getValueFrom(params[1]);
+                                        keyAtomType.copyArray(keys.subSet(from, from.compareTo(to) < 0 ? to : from), result);
+                                    }
+                                }));
+            }
+            this.memberFunctions = new MemberFunctions(this, functions.build());
+        }
+
+        private static Set<?> getNonEmptyKeys(Object dict) {
+            Set<?> keys = ((Map<?, ?>) dict).keySet();
+            if (keys.isEmpty()) {
+                throw new PuffinBasicRuntimeError(
+                        INDEX_OUT_OF_BOUNDS,
+                        "SORTEDDICT is empty!"
+                );
+            }
+            return keys;
         }
 
         @Override
@@ -1170,7 +1733,16 @@ public class STObjects {
 
         @Override
         public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
-            return new STDict(valueType, memberFunctions);
+            return new STDict(keyType, valueType, sorted);
+        }
+
+        @Override
+        public MemberFunctions getMemberFunctions() {
+            return memberFunctions;
+        }
+
+        private Object readResolve() {
+            return new DictType(keyType, valueType, sorted);
         }
 
         @Override
@@ -1183,6 +1755,11 @@ public class STObjects {
             memberFunctions.checkFuncCallArguments(funcName, paramTypes);
         }
 
+        @Override
+        public STEntry bindFuncCall(String funcName, int numParams) {
+            return new STMemberFuncCall(getTypeId(), memberFunctions.get(funcName), numParams);
+        }
+
         @Override
         public boolean equals(Object obj) {
             if (this == obj) {
@@ -1194,16 +1771,277 @@ public class STObjects {
             DictType o = (DictType) obj;
             return getTypeId() == o.getTypeId()
                     && keyType == o.keyType
-                    && valueType == o.valueType;
+                    && valueType == o.valueType
+                    && sorted == o.sorted;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTypeId(), keyType, valueType, sorted);
+        }
+    }
+
+    public static final class DequeType implements MemberFunctionOwner {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PuffinBasicType type;
+        private final transient MemberFunctions memberFunctions;
+
+        public DequeType(PuffinBasicType type) {
+            this.type = type;
+            PuffinBasicAtomTypeId atomType = type.getAtomTypeId();
+            boolean bits = atomType.hasBits();
+            this.memberFunctions = new MemberFunctions(
+                    this,
+                    ImmutableList.<MemberFunction>builder()
+                            .add(new MemberFunction(
+                                    "pushFront", new PuffinBasicType[] {type}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        if (bits) {
+                                            ((LongArrayFIFOQueue) obj).enqueueFirst(atomType.toBits(params[0]));
+                                        } else {
+                                            @SuppressWarnings("unchecked")
+                                            ObjectArrayFIFOQueue<Object> deque = (ObjectArrayFIFOQueue<Object>) obj;
+                                            deque.enqueueFirst(atomType.getValueFrom(params[0]));
+                                        }
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "pushBack", new PuffinBasicType[] {type}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        if (bits) {
+                                            ((LongArrayFIFOQueue) obj).enqueue(atomType.toBits(params[0]));
+                                        } else {
+                                            @SuppressWarnings("unchecked")
+                                            ObjectArrayFIFOQueue<Object> deque = (ObjectArrayFIFOQueue<Object>) obj;
+                                            deque.enqueue(atomType.getValueFrom(params[0]));
+                                        }
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "popFront", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        PriorityQueue<?> deque = getNonEmptyQueue(obj, "DEQUE");
+                                        if (bits) {
+                                            atomType.setFromBits(((LongArrayFIFOQueue) deque).dequeueLong(), result);
+                                        } else {
+                                            atomType.setValueIn(deque.dequeue(), result);
+                                        }
+                                    }))
+                            .add(new MemberFunction(
+                                    "popBack", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        PriorityQueue<?> deque = getNonEmptyQueue(obj, "DEQUE");
+                                        if (bits) {
+                                            atomType.setFromBits(((LongArrayFIFOQueue) deque).dequeueLastLong(), result);
+                                        } else {
+                                            atomType.setValueIn(((ObjectArrayFIFOQueue<?>) deque).dequeueLast(), result);
+                                        }
+                                    }))
+                            .add(new MemberFunction(
+                                    "front", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        PriorityQueue<?> deque = getNonEmptyQueue(obj, "DEQUE");
+                                        if (bits) {
+                                            atomType.setFromBits(((LongArrayFIFOQueue) deque).firstLong(), result);
+                                        } else {
+                                            atomType.setValueIn(deque.first(), result);
+                                        }
+                                    }))
+                            .add(new MemberFunction(
+                                    "back", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        PriorityQueue<?> deque = getNonEmptyQueue(obj, "DEQUE");
+                                        if (bits) {
+                                            atomType.setFromBits(((LongArrayFIFOQueue) deque).lastLong(), result);
+                                        } else {
+                                            atomType.setValueIn(deque.last(), result);
+                                        }
+                                    }))
+                            .add(new MemberFunction(
+                                    "clear", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        ((PriorityQueue<?>) obj).clear();
+                                        result.setInt32(0);
+                                    }))
+                            .build()
+            );
+        }
+
+        @Override
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.DEQUE;
+        }
+
+        @Override
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
+        }
+
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STDeque(type);
+        }
+
+        @Override
+        public MemberFunctions getMemberFunctions() {
+            return memberFunctions;
+        }
+
+        private Object readResolve() {
+            return new DequeType(type);
+        }
+
+        @Override
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
+        }
+
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
+        }
+
+        @Override
+        public STEntry bindFuncCall(String funcName, int numParams) {
+            return new STMemberFuncCall(getTypeId(), memberFunctions.get(funcName), numParams);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != DequeType.class) {
+                return false;
+            }
+            DequeType o = (DequeType) obj;
+            return getTypeId() == o.getTypeId()
+                    && getAtomTypeId() == o.getAtomTypeId();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(getTypeId(), getAtomTypeId());
+        }
+    }
+
+    public static final class PriorityQueueType implements MemberFunctionOwner {
+
+        private static final long serialVersionUID = 1L;
+
+        private final PuffinBasicType type;
+        private final transient MemberFunctions memberFunctions;
+
+        public PriorityQueueType(PuffinBasicType type) {
+            this.type = type;
+            PuffinBasicAtomTypeId atomType = type.getAtomTypeId();
+            boolean bits = atomType.hasBits();
+            this.memberFunctions = new MemberFunctions(
+                    this,
+                    ImmutableList.<MemberFunction>builder()
+                            .add(new MemberFunction(
+                                    "push", new PuffinBasicType[] {type}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        if (bits) {
+                                            ((LongPriorityQueue) obj).enqueue(atomType.toBits(params[0]));
+                                        } else {
+                                            @SuppressWarnings("unchecked")
+                                            PriorityQueue<Object> pq = (PriorityQueue<Object>) obj;
+                                            pq.enqueue(atomType.getValueFrom(params[0]));
+                                        }
+                                        result.setInt32(0);
+                                    }))
+                            .add(new MemberFunction(
+                                    "pop", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        PriorityQueue<?> pq = getNonEmptyQueue(obj, "PQ");
+                                        if (bits) {
+                                            atomType.setFromBits(((LongPriorityQueue) pq).dequeueLong(), result);
+                                        } else {
+                                            atomType.setValueIn(pq.dequeue(), result);
+                                        }
+                                    }))
+                            .add(new MemberFunction(
+                                    "peek", new PuffinBasicType[] {}, type,
+                                    (obj, params, result) -> {
+                                        PriorityQueue<?> pq = getNonEmptyQueue(obj, "PQ");
+                                        if (bits) {
+                                            atomType.setFromBits(((LongPriorityQueue) pq).firstLong(), result);
+                                        } else {
+                                            atomType.setValueIn(pq.first(), result);
+                                        }
+                                    }))
+                            .add(new MemberFunction(
+                                    "clear", new PuffinBasicType[] {}, ScalarType.INT32,
+                                    (obj, params, result) -> {
+                                        ((PriorityQueue<?>) obj).clear();
+                                        result.setInt32(0);
+                                    }))
+                            .build()
+            );
+        }
+
+        @Override
+        public PuffinBasicTypeId getTypeId() {
+            return PuffinBasicTypeId.PQ;
+        }
+
+        @Override
+        public PuffinBasicAtomTypeId getAtomTypeId() {
+            return COMPOSITE;
+        }
+
+        @Override
+        public STValue newInstance(PuffinBasicSymbolTable symbolTable) {
+            return new STPriorityQueue(type);
+        }
+
+        @Override
+        public MemberFunctions getMemberFunctions() {
+            return memberFunctions;
+        }
+
+        private Object readResolve() {
+            return new PriorityQueueType(type);
+        }
+
+        @Override
+        public PuffinBasicType getFuncCallReturnType(String funcName) {
+            return memberFunctions.get(funcName).returnType;
+        }
+
+        @Override
+        public void checkFuncCallArguments(String funcName, List<PuffinBasicType> paramTypes) {
+            memberFunctions.checkFuncCallArguments(funcName, paramTypes);
+        }
+
+        @Override
+        public STEntry bindFuncCall(String funcName, int numParams) {
+            return new STMemberFuncCall(getTypeId(), memberFunctions.get(funcName), numParams);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != PriorityQueueType.class) {
+                return false;
+            }
+            PriorityQueueType o = (PriorityQueueType) obj;
+            return getTypeId() == o.getTypeId()
+                    && getAtomTypeId() == o.getAtomTypeId();
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(getTypeId(), keyType, valueType);
+            return Objects.hash(getTypeId(), getAtomTypeId());
         }
     }
 
-    public interface STEntry {
+    public interface STEntry extends Serializable {
         default boolean isLValue() {
             return false;
         }
@@ -1212,6 +2050,8 @@ public class STObjects {
     }
 
     public static abstract class AbstractSTEntry implements STEntry {
+        private static final long serialVersionUID = 1L;
+
         private final PuffinBasicType type;
         private STValue value;
 
@@ -1229,6 +2069,11 @@ public class STObjects {
             this.value = value;
         }
 
+        // The value, or null if it wasn't created yet.
+        STValue getNullableValue() {
+            return value;
+        }
+
         @Override
         public STValue getValue() {
             if (value == null) {
@@ -1243,6 +2088,8 @@ public class STObjects {
     }
 
     public static class STLValue extends AbstractSTEntry {
+        private static final long serialVersionUID = 1L;
+
         STLValue(STValue value, PuffinBasicType type) {
             super(value, type);
         }
@@ -1254,6 +2101,8 @@ public class STObjects {
     }
 
     public static class STVariable extends STLValue {
+        private static final long serialVersionUID = 1L;
+
         private final Variable variable;
 
         public STVariable(STValue value, Variable variable) {
@@ -1266,37 +2115,35 @@ public class STObjects {
         }
     }
 
+    /**
+     * Refers to a struct field. The field's type is checked
+     * against the ref's type when the IR is generated.
+     */
     public static class STRef extends STLValue {
-        private STEntry ref;
+        private static final long serialVersionUID = 1L;
+
+        private STValue ref;
 
         STRef(PuffinBasicType type) {
             super(null, type);
         }
 
-        public void setRef(STEntry ref) {
-            if (!ref.getType().equals(getType())) {
-                throw new PuffinBasicRuntimeError(
-                        DATA_TYPE_MISMATCH,
-                        "Expected " + getType() + " got " + ref.getType()
-                );
-            }
+        public void setRef(STValue ref) {
             this.ref = ref;
         }
 
-        private STEntry getRef() {
+        @Override
+        public STValue getValue() {
             if (ref == null) {
                 throw new PuffinBasicInternalError("Ref is null");
             }
             return ref;
         }
-
-        @Override
-        public STValue getValue() {
-            return getRef().getValue();
-        }
     }
 
     static final class STTmp extends AbstractSTEntry {
+        private static final long serialVersionUID = 1L;
+
         STTmp(STValue value, PuffinBasicType type) {
             super(value, type);
         }
@@ -1304,6 +2151,8 @@ public class STObjects {
 
     public static final class STUDF extends STVariable {
 
+        private static final long serialVersionUID = 1L;
+
         private final IntList paramIds;
 
         STUDF(STValue value, Variable variable) {
@@ -1325,6 +2174,8 @@ public class STObjects {
     }
 
     static final class STLabel extends AbstractSTEntry {
+        private static final long serialVersionUID = 1L;
+
         STLabel() {
             super(new STInt32ScalarValue(), null);
         }
@@ -1335,7 +2186,24 @@ public class STObjects {
         }
     }
 
-    public interface STValue {
+    /**
+     * Call site of a LIST, SET, DICT, DEQUE or PQ member function,
+     * bound to the function when the IR is generated.
+     */
+    static final class STMemberFuncCall extends AbstractSTEntry {
+        private static final long serialVersionUID = 1L;
+
+        STMemberFuncCall(PuffinBasicTypeId objectTypeId, MemberFunction function, int numParams) {
+            super(new MemberFuncCallValue(objectTypeId, function, numParams), null);
+        }
+
+        @Override
+        public PuffinBasicType getType() {
+            throw new PuffinBasicInternalError("Member function calls don't have a type!");
+        }
+    }
+
+    public interface STValue extends Serializable {
         String printFormat();
         String writeFormat();
         void assign(STValue entry);
@@ -1354,6 +2222,9 @@ public class STObjects {
         void setFloat32(float value);
         void setFloat64(double value);
         void setString(String value);
+        default void append(String value) {
+            setString(getString() + value);
+        }
         default int getFieldLength() {
             return 0;
         }
@@ -1373,6 +2244,15 @@ public class STObjects {
         default int getArrayIndex1D() {
             return 0;
         }
+        default int getArrayIndex1D(int index) {
+            throw new PuffinBasicInternalError("Unsupported");
+        }
+        default int getArrayRowOffset(int index) {
+            throw new PuffinBasicInternalError("Unsupported");
+        }
+        default int getArrayIndex1D(int rowOffset, int index) {
+            throw new PuffinBasicInternalError("Unsupported");
+        }
         default void setArrayReferenceIndex1D(int index1d) {
             throw new PuffinBasicInternalError("Unsupported");
         }
@@ -1396,88 +2276,556 @@ public class STObjects {
                 );
             }
         }
-        default void setInitialized() {}
-        default void call(String funcName, STValue[] params, STValue result) {
-            throw new PuffinBasicRuntimeError(
-                    BAD_FIELD,
-                    "Function call is not supported: " + funcName
-            );
+        default void setInitialized() {}
+        default void setUninitialized() {}
+        default void call(MemberFunction function, STValue[] params, STValue result) {
+            throw new PuffinBasicRuntimeError(
+                    BAD_FIELD,
+                    "Function call is not supported: " + function.functionName
+            );
+        }
+        default boolean hasLen() {
+            return false;
+        }
+        default int len() {
+            throw new PuffinBasicInternalError("Not implemented");
+        }
+    }
+
+    private static final class STInt32ScalarValue implements STValue {
+
+        private static final long serialVersionUID = 1L;
+
+        private boolean isSet;
+        private int value;
+
+        @Override
+        public boolean isInitialized() {
+            return isSet;
+        }
+
+        @Override
+        public void setInitialized() {
+            isSet = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            isSet = false;
+        }
+
+        @Override
+        public String printFormat() {
+            checkInitialized();
+            return Formatter.printFormatInt32(value);
+        }
+
+        @Override
+        public String writeFormat() {
+            checkInitialized();
+            return Formatter.writeFormatInt32(value);
+        }
+
+        @Override
+        public void assign(STValue entry) {
+            setInitialized();
+            this.value = entry.getInt32();
+        }
+
+        @Override
+        public int getInt32() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public long getInt64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public float getFloat32() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public double getFloat64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public int getRoundedInt32() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public long getRoundedInt64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public String getString() {
+            throw new PuffinBasicInternalError("Can't cast int32 to String");
+        }
+
+        @Override
+        public void setInt32(int value) {
+            setInitialized();
+            this.value = value;
+        }
+
+        @Override
+        public void setInt64(long value) {
+            this.isSet = true;
+            this.value = (int) value;
+        }
+
+        @Override
+        public void setFloat32(float value) {
+            this.isSet = true;
+            this.value = (int) value;
+        }
+
+        @Override
+        public void setFloat64(double value) {
+            this.isSet = true;
+            this.value = (int) value;
+        }
+
+        @Override
+        public void setString(String value) {
+            throw new PuffinBasicInternalError("Can't cast String to int32: '" + value + "'");
+        }
+    }
+
+    private static final class STInt64ScalarValue implements STValue {
+
+        private static final long serialVersionUID = 1L;
+
+        private boolean isSet;
+        private long value;
+
+        @Override
+        public boolean isInitialized() {
+            return isSet;
+        }
+
+        @Override
+        public void setInitialized() {
+            isSet = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            isSet = false;
+        }
+
+        @Override
+        public String printFormat() {
+            checkInitialized();
+            return Formatter.printFormatInt64(value);
+        }
+
+        @Override
+        public String writeFormat() {
+            checkInitialized();
+            return Formatter.writeFormatInt64(value);
+        }
+
+        @Override
+        public void assign(STValue entry) {
+            this.isSet = true;
+            this.value = entry.getInt64();
+        }
+
+        @Override
+        public int getInt32() {
+            checkInitialized();
+            return (int) value;
+        }
+
+        @Override
+        public long getInt64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public float getFloat32() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public double getFloat64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public int getRoundedInt32() {
+            checkInitialized();
+            return (int) value;
+        }
+
+        @Override
+        public long getRoundedInt64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public String getString() {
+            throw new PuffinBasicInternalError("Can't cast int64 to String");
+        }
+
+        @Override
+        public void setInt32(int value) {
+            this.isSet = true;
+            this.value = value;
+        }
+
+        @Override
+        public void setInt64(long value) {
+            this.isSet = true;
+            this.value = value;
+        }
+
+        @Override
+        public void setFloat32(float value) {
+            this.isSet = true;
+            this.value = (long) value;
+        }
+
+        @Override
+        public void setFloat64(double value) {
+            this.isSet = true;
+            this.value = (long) value;
+        }
+
+        @Override
+        public void setString(String value) {
+            throw new PuffinBasicInternalError("Can't cast String to int64: '" + value + "'");
+        }
+    }
+
+    private static final class STFloat32ScalarValue implements STValue {
+
+        private static final long serialVersionUID = 1L;
+
+        private boolean isSet;
+        private float value;
+
+        @Override
+        public boolean isInitialized() {
+            return isSet;
+        }
+
+        @Override
+        public void setInitialized() {
+            isSet = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            isSet = false;
+        }
+
+        @Override
+        public String printFormat() {
+            checkInitialized();
+            return Formatter.printFormatFloat32(value);
+        }
+
+        @Override
+        public String writeFormat() {
+            checkInitialized();
+            return Formatter.writeFormatFloat32(value);
+        }
+
+        @Override
+        public void assign(STValue entry) {
+            this.isSet = true;
+            this.value = entry.getFloat32();
+        }
+
+        @Override
+        public int getInt32() {
+            checkInitialized();
+            return (int) value;
+        }
+
+        @Override
+        public long getInt64() {
+            checkInitialized();
+            return (long) value;
+        }
+
+        @Override
+        public float getFloat32() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public double getFloat64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public int getRoundedInt32() {
+            checkInitialized();
+            return Math.round(value);
+        }
+
+        @Override
+        public long getRoundedInt64() {
+            checkInitialized();
+            return Math.round(value);
+        }
+
+        @Override
+        public String getString() {
+            throw new PuffinBasicInternalError("Can't cast float32 to String");
+        }
+
+        @Override
+        public void setInt32(int value) {
+            this.isSet = true;
+            this.value = value;
+        }
+
+        @Override
+        public void setInt64(long value) {
+            this.isSet = true;
+            this.value = value;
+        }
+
+        @Override
+        public void setFloat32(float value) {
+            this.isSet = true;
+            this.value = value;
+        }
+
+        @Override
+        public void setFloat64(double value) {
+            this.isSet = true;
+            this.value = (float) value;
+        }
+
+        @Override
+        public void setString(String value) {
+            throw new PuffinBasicInternalError("Can't cast String to float32: '" + value + "'");
+        }
+    }
+
+    private static final class STFloat64ScalarValue implements STValue {
+
+        private static final long serialVersionUID = 1L;
+
+        private boolean isSet;
+        private double value;
+
+        @Override
+        public boolean isInitialized() {
+            return isSet;
+        }
+
+        @Override
+        public void setInitialized() {
+            isSet = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            isSet = false;
+        }
+
+        @Override
+        public String printFormat() {
+            checkInitialized();
+            return Formatter.printFormatFloat64(value);
+        }
+
+        @Override
+        public String writeFormat() {
+            checkInitialized();
+            return Formatter.writeFormatFloat64(value);
+        }
+
+        @Override
+        public void assign(STValue entry) {
+            this.isSet = true;
+            this.value = entry.getFloat64();
+        }
+
+        @Override
+        public int getInt32() {
+            checkInitialized();
+            return (int) value;
+        }
+
+        @Override
+        public long getInt64() {
+            checkInitialized();
+            return (long) value;
+        }
+
+        @Override
+        public float getFloat32() {
+            checkInitialized();
+            return (float) value;
+        }
+
+        @Override
+        public double getFloat64() {
+            checkInitialized();
+            return value;
+        }
+
+        @Override
+        public int getRoundedInt32() {
+            checkInitialized();
+            return (int) Math.round(value);
+        }
+
+        @Override
+        public long getRoundedInt64() {
+            checkInitialized();
+            return Math.round(value);
+        }
+
+        @Override
+        public String getString() {
+            throw new PuffinBasicInternalError("Can't cast float64 to String");
+        }
+
+        @Override
+        public void setInt32(int value) {
+            this.isSet = true;
+            this.value = value;
+        }
+
+        @Override
+        public void setInt64(long value) {
+            this.isSet = true;
+            this.value = value;
         }
-        default boolean hasLen() {
-            return false;
+
+        @Override
+        public void setFloat32(float value) {
+            this.isSet = true;
+            this.value = value;
         }
-        default int len() {
-            throw new PuffinBasicInternalError("Not implemented");
+
+        @Override
+        public void setFloat64(double value) {
+            this.isSet = true;
+            this.value = value;
+        }
+
+        @Override
+        public void setString(String value) {
+            throw new PuffinBasicInternalError("Can't cast String to float64: '" + value + "'");
         }
     }
 
-    private static final class STInt32ScalarValue implements STValue {
+    /**
+     * Scalar value stored in a {@link RegisterFile} slot.
+     */
+    public interface STRegisterValue extends STValue {
+        int getRegisterSlot();
+    }
 
-        private boolean isSet;
-        private int value;
+    private static final class STInt32RegisterValue implements STRegisterValue {
+
+        private static final long serialVersionUID = 1L;
+
+        private final RegisterFile registers;
+        private final int slot;
+
+        STInt32RegisterValue(RegisterFile registers) {
+            this.registers = registers;
+            this.slot = registers.allocateInt32();
+        }
+
+        @Override
+        public int getRegisterSlot() {
+            return slot;
+        }
 
         @Override
         public boolean isInitialized() {
-            return isSet;
+            return registers.int32sSet[slot];
         }
 
         @Override
         public void setInitialized() {
-            isSet = true;
+            registers.int32sSet[slot] = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            registers.int32sSet[slot] = false;
         }
 
         @Override
         public String printFormat() {
             checkInitialized();
-            return Formatter.printFormatInt32(value);
+            return Formatter.printFormatInt32(registers.int32s[slot]);
         }
 
         @Override
         public String writeFormat() {
             checkInitialized();
-            return Formatter.writeFormatInt32(value);
+            return Formatter.writeFormatInt32(registers.int32s[slot]);
         }
 
         @Override
         public void assign(STValue entry) {
-            setInitialized();
-            this.value = entry.getInt32();
+            setInt32(entry.getInt32());
         }
 
         @Override
         public int getInt32() {
             checkInitialized();
-            return value;
+            return registers.int32s[slot];
         }
 
         @Override
         public long getInt64() {
             checkInitialized();
-            return value;
+            return registers.int32s[slot];
         }
 
         @Override
         public float getFloat32() {
             checkInitialized();
-            return value;
+            return registers.int32s[slot];
         }
 
         @Override
         public double getFloat64() {
             checkInitialized();
-            return value;
+            return registers.int32s[slot];
         }
 
         @Override
         public int getRoundedInt32() {
             checkInitialized();
-            return value;
+            return registers.int32s[slot];
         }
 
         @Override
         public long getRoundedInt64() {
             checkInitialized();
-            return value;
+            return registers.int32s[slot];
         }
 
         @Override
@@ -1487,26 +2835,26 @@ public class STObjects {
 
         @Override
         public void setInt32(int value) {
-            setInitialized();
-            this.value = value;
+            registers.int32sSet[slot] = true;
+            registers.int32s[slot] = value;
         }
 
         @Override
         public void setInt64(long value) {
-            this.isSet = true;
-            this.value = (int) value;
+            registers.int32sSet[slot] = true;
+            registers.int32s[slot] = (int) value;
         }
 
         @Override
         public void setFloat32(float value) {
-            this.isSet = true;
-            this.value = (int) value;
+            registers.int32sSet[slot] = true;
+            registers.int32s[slot] = (int) value;
         }
 
         @Override
         public void setFloat64(double value) {
-            this.isSet = true;
-            this.value = (int) value;
+            registers.int32sSet[slot] = true;
+            registers.int32s[slot] = (int) value;
         }
 
         @Override
@@ -1515,73 +2863,89 @@ public class STObjects {
         }
     }
 
-    private static final class STInt64ScalarValue implements STValue {
+    private static final class STInt64RegisterValue implements STRegisterValue {
 
-        private boolean isSet;
-        private long value;
+        private static final long serialVersionUID = 1L;
+
+        private final RegisterFile registers;
+        private final int slot;
+
+        STInt64RegisterValue(RegisterFile registers) {
+            this.registers = registers;
+            this.slot = registers.allocateInt64();
+        }
+
+        @Override
+        public int getRegisterSlot() {
+            return slot;
+        }
 
         @Override
         public boolean isInitialized() {
-            return isSet;
+            return registers.int64sSet[slot];
         }
 
         @Override
         public void setInitialized() {
-            isSet = true;
+            registers.int64sSet[slot] = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            registers.int64sSet[slot] = false;
         }
 
         @Override
         public String printFormat() {
             checkInitialized();
-            return Formatter.printFormatInt64(value);
+            return Formatter.printFormatInt64(registers.int64s[slot]);
         }
 
         @Override
         public String writeFormat() {
             checkInitialized();
-            return Formatter.writeFormatInt64(value);
+            return Formatter.writeFormatInt64(registers.int64s[slot]);
         }
 
         @Override
         public void assign(STValue entry) {
-            this.isSet = true;
-            this.value = entry.getInt64();
+            setInt64(entry.getInt64());
         }
 
         @Override
         public int getInt32() {
             checkInitialized();
-            return (int) value;
+            return (int) registers.int64s[slot];
         }
 
         @Override
         public long getInt64() {
             checkInitialized();
-            return value;
+            return registers.int64s[slot];
         }
 
         @Override
         public float getFloat32() {
             checkInitialized();
-            return value;
+            return registers.int64s[slot];
         }
 
         @Override
         public double getFloat64() {
             checkInitialized();
-            return value;
+            return registers.int64s[slot];
         }
 
         @Override
         public int getRoundedInt32() {
             checkInitialized();
-            return (int) value;
+            return (int) registers.int64s[slot];
         }
 
         @Override
         public long getRoundedInt64() {
             checkInitialized();
-            return value;
+            return registers.int64s[slot];
         }
 
         @Override
@@ -1591,26 +2955,26 @@ public class STObjects {
 
         @Override
         public void setInt32(int value) {
-            this.isSet = true;
-            this.value = value;
+            registers.int64sSet[slot] = true;
+            registers.int64s[slot] = value;
         }
 
         @Override
         public void setInt64(long value) {
-            this.isSet = true;
-            this.value = value;
+            registers.int64sSet[slot] = true;
+            registers.int64s[slot] = value;
         }
 
         @Override
         public void setFloat32(float value) {
-            this.isSet = true;
-            this.value = (long) value;
+            registers.int64sSet[slot] = true;
+            registers.int64s[slot] = (long) value;
         }
 
         @Override
         public void setFloat64(double value) {
-            this.isSet = true;
-            this.value = (long) value;
+            registers.int64sSet[slot] = true;
+            registers.int64s[slot] = (long) value;
         }
 
         @Override
@@ -1619,73 +2983,89 @@ public class STObjects {
         }
     }
 
-    private static final class STFloat32ScalarValue implements STValue {
+    private static final class STFloat32RegisterValue implements STRegisterValue {
 
-        private boolean isSet;
-        private float value;
+        private static final long serialVersionUID = 1L;
+
+        private final RegisterFile registers;
+        private final int slot;
+
+        STFloat32RegisterValue(RegisterFile registers) {
+            this.registers = registers;
+            this.slot = registers.allocateFloat32();
+        }
+
+        @Override
+        public int getRegisterSlot() {
+            return slot;
+        }
 
         @Override
         public boolean isInitialized() {
-            return isSet;
+            return registers.float32sSet[slot];
         }
 
         @Override
         public void setInitialized() {
-            isSet = true;
+            registers.float32sSet[slot] = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            registers.float32sSet[slot] = false;
         }
 
         @Override
         public String printFormat() {
             checkInitialized();
-            return Formatter.printFormatFloat32(value);
+            return Formatter.printFormatFloat32(registers.float32s[slot]);
         }
 
         @Override
         public String writeFormat() {
             checkInitialized();
-            return Formatter.writeFormatFloat32(value);
+            return Formatter.writeFormatFloat32(registers.float32s[slot]);
         }
 
         @Override
         public void assign(STValue entry) {
-            this.isSet = true;
-            this.value = entry.getFloat32();
+            setFloat32(entry.getFloat32());
         }
 
         @Override
         public int getInt32() {
             checkInitialized();
-            return (int) value;
+            return (int) registers.float32s[slot];
         }
 
         @Override
         public long getInt64() {
             checkInitialized();
-            return (long) value;
+            return (long) registers.float32s[slot];
         }
 
         @Override
         public float getFloat32() {
             checkInitialized();
-            return value;
+            return registers.float32s[slot];
         }
 
         @Override
         public double getFloat64() {
             checkInitialized();
-            return value;
+            return registers.float32s[slot];
         }
 
         @Override
         public int getRoundedInt32() {
             checkInitialized();
-            return Math.round(value);
+            return Math.round(registers.float32s[slot]);
         }
 
         @Override
         public long getRoundedInt64() {
             checkInitialized();
-            return Math.round(value);
+            return Math.round(registers.float32s[slot]);
         }
 
         @Override
@@ -1695,26 +3075,26 @@ public class STObjects {
 
         @Override
         public void setInt32(int value) {
-            this.isSet = true;
-            this.value = value;
+            registers.float32sSet[slot] = true;
+            registers.float32s[slot] = value;
         }
 
         @Override
         public void setInt64(long value) {
-            this.isSet = true;
-            this.value = value;
+            registers.float32sSet[slot] = true;
+            registers.float32s[slot] = value;
         }
 
         @Override
         public void setFloat32(float value) {
-            this.isSet = true;
-            this.value = value;
+            registers.float32sSet[slot] = true;
+            registers.float32s[slot] = value;
         }
 
         @Override
         public void setFloat64(double value) {
-            this.isSet = true;
-            this.value = (float) value;
+            registers.float32sSet[slot] = true;
+            registers.float32s[slot] = (float) value;
         }
 
         @Override
@@ -1723,73 +3103,89 @@ public class STObjects {
         }
     }
 
-    private static final class STFloat64ScalarValue implements STValue {
+    private static final class STFloat64RegisterValue implements STRegisterValue {
 
-        private boolean isSet;
-        private double value;
+        private static final long serialVersionUID = 1L;
+
+        private final RegisterFile registers;
+        private final int slot;
+
+        STFloat64RegisterValue(RegisterFile registers) {
+            this.registers = registers;
+            this.slot = registers.allocateFloat64();
+        }
+
+        @Override
+        public int getRegisterSlot() {
+            return slot;
+        }
 
         @Override
         public boolean isInitialized() {
-            return isSet;
+            return registers.float64sSet[slot];
         }
 
         @Override
         public void setInitialized() {
-            isSet = true;
+            registers.float64sSet[slot] = true;
+        }
+
+        @Override
+        public void setUninitialized() {
+            registers.float64sSet[slot] = false;
         }
 
         @Override
         public String printFormat() {
             checkInitialized();
-            return Formatter.printFormatFloat64(value);
+            return Formatter.printFormatFloat64(registers.float64s[slot]);
         }
 
         @Override
         public String writeFormat() {
             checkInitialized();
-            return Formatter.writeFormatFloat64(value);
+            return Formatter.writeFormatFloat64(registers.float64s[slot]);
         }
 
         @Override
         public void assign(STValue entry) {
-            this.isSet = true;
-            this.value = entry.getFloat64();
+            setFloat64(entry.getFloat64());
         }
 
         @Override
         public int getInt32() {
             checkInitialized();
-            return (int) value;
+            return (int) registers.float64s[slot];
         }
 
         @Override
         public long getInt64() {
             checkInitialized();
-            return (long) value;
+            return (long) registers.float64s[slot];
         }
 
         @Override
         public float getFloat32() {
             checkInitialized();
-            return (float) value;
+            return (float) registers.float64s[slot];
         }
 
         @Override
         public double getFloat64() {
             checkInitialized();
-            return value;
+            return registers.float64s[slot];
         }
 
         @Override
         public int getRoundedInt32() {
             checkInitialized();
-            return (int) Math.round(value);
+            return (int) Math.round(registers.float64s[slot]);
         }
 
         @Override
         public long getRoundedInt64() {
             checkInitialized();
-            return Math.round(value);
+            return Math.round(registers.float64s[slot]);
         }
 
         @Override
@@ -1799,26 +3195,26 @@ public class STObjects {
 
         @Override
         public void setInt32(int value) {
-            this.isSet = true;
-            this.value = value;
+            registers.float64sSet[slot] = true;
+            registers.float64s[slot] = value;
         }
 
         @Override
         public void setInt64(long value) {
-            this.isSet = true;
-            this.value = value;
+            registers.float64sSet[slot] = true;
+            registers.float64s[slot] = value;
         }
 
         @Override
         public void setFloat32(float value) {
-            this.isSet = true;
-            this.value = value;
+            registers.float64sSet[slot] = true;
+            registers.float64s[slot] = value;
         }
 
         @Override
         public void setFloat64(double value) {
-            this.isSet = true;
-            this.value = value;
+            registers.float64sSet[slot] = true;
+            registers.float64s[slot] = value;
         }
 
         @Override
@@ -1829,9 +3225,14 @@ public class STObjects {
 
     private static final class STStringScalarValue implements STValue {
 
+        private static final long serialVersionUID = 1L;
+
         private boolean isSet;
         private int fieldLength;
         private String value = "";
+        // Holds the value after an append(), value is materialized when it's read.
+        private StringBuilder builder;
+        private boolean stale;
 
         @Override
         public boolean isInitialized() {
@@ -1843,22 +3244,24 @@ public class STObjects {
             isSet = true;
         }
 
+        @Override
+        public void setUninitialized() {
+            isSet = false;
+        }
+
         @Override
         public String printFormat() {
-            checkInitialized();
-            return Formatter.printFormatString(value);
+            return Formatter.printFormatString(getString());
         }
 
         @Override
         public String writeFormat() {
-            checkInitialized();
-            return Formatter.writeFormatString(value);
+            return Formatter.writeFormatString(getString());
         }
 
         @Override
         public void assign(STValue entry) {
-            this.isSet = true;
-            this.value = entry.getString();
+            setString(entry.getString());
         }
 
         @Override
@@ -1894,6 +3297,10 @@ public class STObjects {
         @Override
         public String getString() {
             checkInitialized();
+            if (stale) {
+                value = builder.toString();
+                stale = false;
+            }
             return value;
         }
 
@@ -1921,6 +3328,18 @@ public class STObjects {
         public void setString(String value) {
             this.isSet = true;
             this.value = value;
+            this.builder = null;
+            this.stale = false;
+        }
+
+        @Override
+        public void append(String value) {
+            checkInitialized();
+            if (builder == null) {
+                builder = new StringBuilder(this.value);
+            }
+            builder.append(value);
+            stale = true;
         }
 
         @Override
@@ -1946,6 +3365,8 @@ public class STObjects {
 
     private static final class STStringScalarTimeValue implements STValue {
 
+        private static final long serialVersionUID = 1L;
+
         private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_TIME;
         private LocalTime time;
 
@@ -2044,6 +3465,8 @@ public class STObjects {
 
     private static final class STStringScalarDateValue implements STValue {
 
+        private static final long serialVersionUID = 1L;
+
         private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ISO_LOCAL_DATE;
         private LocalDate date;
 
@@ -2142,6 +3565,8 @@ public class STObjects {
 
     static class ArrayReferenceValue implements STValue {
 
+        private static final long serialVersionUID = 1L;
+
         private final STLValue variable;
         private int index1d;
 
@@ -2266,7 +3691,13 @@ public class STObjects {
 
     static abstract class AbstractSTArrayValue implements STValue {
 
+        private static final long serialVersionUID = 1L;
+
         private IntList dimensions;
+        // Primitive copies of the dimensions and the row-major strides,
+        // computed once per DIM/REDIM.
+        private int[] dims;
+        private int[] strides;
         private int totalLength;
         private int index1d;
         private int ndim;
@@ -2275,6 +3706,8 @@ public class STObjects {
         public void replace(STValue entry) {
             AbstractSTArrayValue from = (AbstractSTArrayValue) entry;
             dimensions = from.dimensions;
+            dims = from.dims;
+            strides = from.strides;
             totalLength = from.totalLength;
             ndim = from.ndim;
         }
@@ -2293,9 +3726,12 @@ public class STObjects {
         public void setArrayDimensions(IntList dims) {
             this.dimensions = new IntArrayList(dims);
             this.ndim = dimensions.size();
+            this.dims = dimensions.toIntArray();
+            this.strides = new int[ndim];
             int totalLen = 1;
-            for (int i = 0; i < ndim; i++) {
-                totalLen *= dimensions.getInt(i);
+            for (int i = ndim - 1; i >= 0; i--) {
+                strides[i] = totalLen;
+                totalLen *= this.dims[i];
             }
             totalLength = totalLen;
         }
@@ -2312,26 +3748,59 @@ public class STObjects {
 
         @Override
         public void setArrayIndex(int dim, int index) {
-            if (dim < 0 || dim >= dimensions.size()) {
+            this.index1d += checkArrayIndex(dim, index) * strides[dim];
+        }
+
+        @Override
+        public int getArrayIndex1D() {
+            return index1d;
+        }
+
+        @Override
+        public int getArrayIndex1D(int index) {
+            return checkArrayIndex(0, index) * strides[0];
+        }
+
+        /**
+         * Returns the offset of the row A(index, ...), or -1 if the index is
+         * out of range. Doesn't throw, so that it can be hoisted out of loops;
+         * the error is reported by {@link #getArrayIndex1D(int, int)}.
+         */
+        @Override
+        public int getArrayRowOffset(int index) {
+            if (ndim < 2 || index < 0 || index >= dims[0]) {
+                return -1;
+            }
+            return index * strides[0];
+        }
+
+        @Override
+        public int getArrayIndex1D(int rowOffset, int index) {
+            int column = checkArrayIndex(1, index);
+            if (rowOffset < 0) {
+                throw new PuffinBasicRuntimeError(
+                        ARRAY_INDEX_OUT_OF_BOUNDS,
+                        "Index is out of range for dimension[0]=" + dims[0] + ", #dims=" + ndim
+                );
+            }
+            return rowOffset + column * strides[1];
+        }
+
+        private int checkArrayIndex(int dim, int index) {
+            if (dim < 0 || dim >= ndim) {
                 throw new PuffinBasicRuntimeError(
                         ARRAY_INDEX_OUT_OF_BOUNDS,
-                        "Dimension index " + dim + " is out of range, #dims=" + dimensions.size()
+                        "Dimension index " + dim + " is out of range, #dims=" + ndim
                 );
             }
-            if (index < 0 || index >= dimensions.getInt(dim)) {
+            if (index < 0 || index >= dims[dim]) {
                 throw new PuffinBasicRuntimeError(
                         ARRAY_INDEX_OUT_OF_BOUNDS,
                         "Index " + index + " is out of range for dimension["
-                                + dim + "]=" + dimensions.getInt(dim)
+                                + dim + "]=" + dims[dim]
                 );
             }
-            int dIplus1 = dim + 1 < ndim ? dimensions.getInt(dim + 1) : 1;
-            this.index1d = (this.index1d + index) * dIplus1;
-        }
-
-        @Override
-        public int getArrayIndex1D() {
-            return index1d;
+            return index;
         }
 
         public void setArrayIndexID(int index1d) {
@@ -2341,6 +3810,8 @@ public class STObjects {
 
     public static final class STInt32ArrayValue extends AbstractSTArrayValue {
 
+        private static final long serialVersionUID = 1L;
+
         private int[] value;
 
         @Override
@@ -2448,6 +3919,8 @@ public class STObjects {
 
     public static final class STInt64ArrayValue extends AbstractSTArrayValue {
 
+        private static final long serialVersionUID = 1L;
+
         private long[] value;
 
         @Override
@@ -2543,6 +4016,8 @@ public class STObjects {
 
     public static final class STFloat32ArrayValue extends AbstractSTArrayValue {
 
+        private static final long serialVersionUID = 1L;
+
         private float[] value;
 
         @Override
@@ -2638,6 +4113,8 @@ public class STObjects {
 
     public static final class STFloat64ArrayValue extends AbstractSTArrayValue {
 
+        private static final long serialVersionUID = 1L;
+
         private double[] value;
 
         @Override
@@ -2733,6 +4210,8 @@ public class STObjects {
 
     public static final class STStringArrayValue extends AbstractSTArrayValue {
 
+        private static final long serialVersionUID = 1L;
+
         private String[] value;
 
         @Override
@@ -2828,6 +4307,8 @@ public class STObjects {
     }
 
     static abstract class STCompositeValue implements STValue {
+        private static final long serialVersionUID = 1L;
+
         private final PuffinBasicTypeId type;
         private final PuffinBasicAtomTypeId atomType;
 
@@ -2916,18 +4397,20 @@ public class STObjects {
     }
 
     static final class STList extends STCompositeValue {
-        private final List<Object> list;
-        private final MemberFunctions memberFunctions;
+        private static final long serialVersionUID = 1L;
 
-        STList(PuffinBasicType type, MemberFunctions memberFunctions) {
+        private final List<?> list;
+
+        STList(PuffinBasicType type) {
             super(PuffinBasicTypeId.LIST, type.getAtomTypeId());
-            this.memberFunctions = memberFunctions;
-            this.list = new ArrayList<>();
+            this.list = type.getTypeId() == PuffinBasicTypeId.SCALAR
+                    ? type.getAtomTypeId().createList()
+                    : new ArrayList<>();
         }
 
         @Override
-        public void call(String funcName, STValue[] params, STValue result) {
-            memberFunctions.get(funcName).callHandler.call(list, params, result);
+        public void call(MemberFunction function, STValue[] params, STValue result) {
+            function.callHandler.call(list, params, result);
         }
 
         @Override
@@ -2942,17 +4425,17 @@ public class STObjects {
     }
 
     static final class STSet extends STCompositeValue {
-        private final ObjectSet<Object> set;
-        private final MemberFunctions memberFunctions;
+        private static final long serialVersionUID = 1L;
+
+        private final Set<?> set;
 
-        STSet(PuffinBasicType type, MemberFunctions memberFunctions) {
+        STSet(PuffinBasicType type) {
             super(PuffinBasicTypeId.SET, type.getAtomTypeId());
-            this.memberFunctions = memberFunctions;
-            this.set = new ObjectOpenHashSet<>();
+            this.set = type.getAtomTypeId().hasBits() ? new LongOpenHashSet() : new ObjectOpenHashSet<>();
         }
 
-        public void call(String funcName, STValue[] params, STValue result) {
-            memberFunctions.get(funcName).callHandler.call(set, params, result);
+        public void call(MemberFunction function, STValue[] params, STValue result) {
+            function.callHandler.call(set, params, result);
         }
 
         @Override
@@ -2967,17 +4450,27 @@ public class STObjects {
     }
 
     static final class STDict extends STCompositeValue {
-        private final Object2ObjectMap<Object, Object> dict;
-        private final MemberFunctions memberFunctions;
+        private static final long serialVersionUID = 1L;
 
-        STDict(PuffinBasicType valueType, MemberFunctions memberFunctions) {
+        private final Map<?, ?> dict;
+
+        STDict(PuffinBasicType keyType, PuffinBasicType valueType, boolean sorted) {
             super(PuffinBasicTypeId.DICT, valueType.getAtomTypeId());
-            this.memberFunctions = memberFunctions;
-            this.dict = new Object2ObjectOpenHashMap<>();
+            boolean keyBits = keyType.getAtomTypeId().hasBits();
+            boolean valueBits = valueType.getAtomTypeId().hasBits();
+            if (sorted && keyBits) {
+                this.dict = valueBits ? new Long2LongAVLTreeMap() : new Long2ObjectAVLTreeMap<>();
+            } else if (sorted) {
+                this.dict = valueBits ? new Object2LongAVLTreeMap<>() : new Object2ObjectAVLTreeMap<>();
+            } else if (keyBits) {
+                this.dict = valueBits ? new Long2LongOpenHashMap() : new Long2ObjectOpenHashMap<>();
+            } else {
+                this.dict = valueBits ? new Object2LongOpenHashMap<>() : new Object2ObjectOpenHashMap<>();
+            }
         }
 
-        public void call(String funcName, STValue[] params, STValue result) {
-            memberFunctions.get(funcName).callHandler.call(dict, params, result);
+        public void call(MemberFunction function, STValue[] params, STValue result) {
+            function.callHandler.call(dict, params, result);
         }
 
         @Override
@@ -2991,24 +4484,101 @@ public class STObjects {
         }
     }
 
+    static final class STDeque extends STCompositeValue {
+        private static final long serialVersionUID = 1L;
+
+        private final PriorityQueue<?> deque;
+
+        STDeque(PuffinBasicType type) {
+            super(PuffinBasicTypeId.DEQUE, type.getAtomTypeId());
+            this.deque = type.getAtomTypeId().hasBits() ? new LongArrayFIFOQueue() : new ObjectArrayFIFOQueue<>();
+        }
+
+        public void call(MemberFunction function, STValue[] params, STValue result) {
+            function.callHandler.call(deque, params, result);
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return deque.size();
+        }
+    }
+
+    // Min-heap, i.e. pop() returns the smallest value.
+    static final class STPriorityQueue extends STCompositeValue {
+        private static final long serialVersionUID = 1L;
+
+        private final PriorityQueue<?> pq;
+
+        STPriorityQueue(PuffinBasicType type) {
+            super(PuffinBasicTypeId.PQ, type.getAtomTypeId());
+            this.pq = type.getAtomTypeId().hasBits() ? new LongHeapPriorityQueue() : new ObjectHeapPriorityQueue<>();
+        }
+
+        public void call(MemberFunction function, STValue[] params, STValue result) {
+            function.callHandler.call(pq, params, result);
+        }
+
+        @Override
+        public boolean hasLen() {
+            return true;
+        }
+
+        @Override
+        public int len() {
+            return pq.size();
+        }
+    }
+
+    /**
+     * Params are collected in an array owned by the call site,
+     * which is reused across calls.
+     */
+    public static final class MemberFuncCallValue extends STCompositeValue {
+        private static final long serialVersionUID = 1L;
+
+        private final MemberFunction function;
+        private final STValue[] params;
+
+        MemberFuncCallValue(PuffinBasicTypeId objectTypeId, MemberFunction function, int numParams) {
+            super(objectTypeId, COMPOSITE);
+            this.function = function;
+            this.params = new STValue[numParams];
+        }
+
+        public void setParam(int i, STValue param) {
+            params[i] = param;
+        }
+
+        public void call(STValue object, STValue result) {
+            object.call(function, params, result);
+        }
+    }
+
     public static final class STStruct extends STCompositeValue {
+        private static final long serialVersionUID = 1L;
+
         private final StructType structType;
-        private final Int2IntMap memberRefIdToValueId;
+        private final STValue[] fields;
 
         STStruct(PuffinBasicSymbolTable symbolTable, StructType type) {
             super(PuffinBasicTypeId.STRUCT, PuffinBasicAtomTypeId.COMPOSITE);
             this.structType = type;
-            this.memberRefIdToValueId = new Int2IntOpenHashMap();
-            for (Object2IntMap.Entry<VariableName> entry : structType.nameToRefIdMap.object2IntEntrySet()) {
-                int memberRefId = entry.getIntValue();
-                PuffinBasicType valueType = structType.refIdToTypeMap.get(memberRefId);
-                int valueId = symbolTable.addTmp(valueType, e -> e.getValue().setInitialized());
-                this.memberRefIdToValueId.put(memberRefId, valueId);
+            this.fields = new STValue[type.getNumFields()];
+            for (int i = 0; i < fields.length; i++) {
+                STValue value = type.fieldTypes.get(i).newInstance(symbolTable);
+                value.setInitialized();
+                fields[i] = value;
             }
         }
 
-        public int getMember(int memberRefId) {
-            return memberRefIdToValueId.getOrDefault(memberRefId, NULL_ID);
+        public STValue getField(int memberRefId) {
+            return fields[memberRefId];
         }
 
         @Override
@@ -3026,8 +4596,7 @@ public class STObjects {
                         "Expected struct " + structType + ", but found " + other.structType
                 );
             }
-            this.memberRefIdToValueId.clear();
-            this.memberRefIdToValueId.putAll(((STStruct) entry).memberRefIdToValueId);
+            System.arraycopy(other.fields, 0, fields, 0, fields.length);
         }
     }
 }
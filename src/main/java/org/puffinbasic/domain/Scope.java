@@ -6,13 +6,14 @@ import it.unimi.dsi.fastutil.objects.Object2IntMap;
 import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import org.puffinbasic.domain.STObjects.STEntry;
 import org.puffinbasic.domain.Variable.VariableName;
+import org.puffinbasic.error.PuffinBasicInternalError;
+
+import java.io.Serializable;
 
 import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
 
-public interface Scope {
+public interface Scope extends Serializable {
 
-    int getCallerInstrId();
-    Scope createRuntimeScope(int callerInstrId);
     Scope createChild(int funcId, boolean localScope);
     Scope getChild(int funcId);
     Scope getSearchScope();
@@ -20,50 +21,19 @@ public interface Scope {
     int getIdForVariable(VariableName variableName);
     void putVariable(VariableName variableName, int id);
     boolean containsVariable(VariableName variableName);
+    // Entries are stored by the symbol table, a scope only tracks its frame slots.
     void putEntry(int id, STEntry entry);
-    STEntry getEntry(int id);
-    STEntry getNullableEntry(int id);
+    Frame.Layout getFrameLayout();
 
     final class GlobalScope implements Scope {
-        private static final int INITIAL_ENTRY_TABLE_SIZE = 1024;
-        private final int callerInstrId;
+        private static final long serialVersionUID = 1L;
+
         private final Int2ObjectMap<Scope> funcIdToScope;
-        // This is an optimization to make entry access fast at runtime.
-        //private final ObjectList<STEntry> entryMap;
-        private STEntry[] entryMap;
         private final Object2IntMap<VariableName> variableNameToEntry;
 
         GlobalScope() {
-            this(
-                    NULL_ID,
-                    new Int2ObjectOpenHashMap<>(),
-                    new STEntry[INITIAL_ENTRY_TABLE_SIZE],
-                    new Object2IntOpenHashMap<>());
-        }
-
-        private GlobalScope(
-                int callerInstrId,
-                Int2ObjectMap<Scope> funcIdToScope,
-                STEntry[] entryMap,
-                Object2IntMap<VariableName> variableNameToEntry) {
-            this.callerInstrId = callerInstrId;
-            this.funcIdToScope = funcIdToScope;
-            this.entryMap = entryMap;
-            this.variableNameToEntry = variableNameToEntry;
-        }
-
-        @Override
-        public Scope createRuntimeScope(int callerInstrId) {
-            return new GlobalScope(
-                    callerInstrId,
-                    funcIdToScope,
-                    entryMap,
-                    variableNameToEntry);
-        }
-
-        @Override
-        public int getCallerInstrId() {
-            return callerInstrId;
+            this.funcIdToScope = new Int2ObjectOpenHashMap<>();
+            this.variableNameToEntry = new Object2IntOpenHashMap<>();
         }
 
         @Override
@@ -106,84 +76,28 @@ public interface Scope {
             return variableNameToEntry.containsKey(variableName);
         }
 
-        private void resize(int index) {
-            int newLen = entryMap.length << 1;
-            if (newLen < index) {
-                do {
-                    newLen = newLen << 1;
-                } while (newLen < index);
-            }
-            STEntry[] newEntryMap = new STEntry[newLen];
-            System.arraycopy(entryMap, 0, newEntryMap, 0, entryMap.length);
-            entryMap = newEntryMap;
-        }
-
         @Override
-        public void putEntry(int id, STEntry entry) {
-            int sz = entryMap.length;
-            if (id >= sz) {
-                resize(id);
-            }
-            entryMap[id] = entry;
-        }
+        public void putEntry(int id, STEntry entry) {}
 
         @Override
-        public STEntry getEntry(int id) {
-            return entryMap[id];
-        }
-
-        @Override
-        public STEntry getNullableEntry(int id) {
-            if (id >= 0 && id < entryMap.length) {
-                return entryMap[id];
-            }
-            return null;
+        public Frame.Layout getFrameLayout() {
+            throw new PuffinBasicInternalError("Global scope has no frame!");
         }
     }
 
     final class ChildScope implements Scope {
+        private static final long serialVersionUID = 1L;
+
         private final Scope parent;
-        private final int callerInstrId;
         private final Int2ObjectMap<Scope> funcIdToScope;
-        private final Int2ObjectMap<STEntry> entryMap;
         private final Object2IntMap<VariableName> variableNameToEntry;
+        private final Frame.Layout frameLayout;
 
         ChildScope(Scope parent) {
-            this(parent,
-                    NULL_ID,
-                    new Int2ObjectOpenHashMap<>(),
-                    new Int2ObjectOpenHashMap<>(),
-                    new Object2IntOpenHashMap<>());
-        }
-
-        private ChildScope(
-                Scope parent,
-                int callerInstrId,
-                Int2ObjectMap<Scope> funcIdToScope,
-                Int2ObjectMap<STEntry> entryMap,
-                Object2IntMap<VariableName> variableNameToEntry)
-        {
             this.parent = parent;
-            this.callerInstrId = callerInstrId;
-            this.funcIdToScope = funcIdToScope;
-            this.entryMap = entryMap;
-            this.variableNameToEntry = variableNameToEntry;
-        }
-
-        @Override
-        public Scope createRuntimeScope(int callerInstrId) {
-            return new ChildScope(
-                    parent,
-                    callerInstrId,
-                    new Int2ObjectOpenHashMap<>(funcIdToScope),
-                    new Int2ObjectOpenHashMap<>(entryMap),
-                    new Object2IntOpenHashMap<>(variableNameToEntry)
-            );
-        }
-
-        @Override
-        public int getCallerInstrId() {
-            return callerInstrId;
+            this.funcIdToScope = new Int2ObjectOpenHashMap<>();
+            this.variableNameToEntry = new Object2IntOpenHashMap<>();
+            this.frameLayout = new Frame.Layout();
         }
 
         @Override
@@ -228,63 +142,28 @@ public interface Scope {
 
         @Override
         public void putEntry(int id, STEntry entry) {
-            entryMap.put(id, entry);
+            frameLayout.add(entry);
         }
 
         @Override
-        public STEntry getEntry(int id) {
-            return entryMap.get(id);
-        }
-
-        @Override
-        public STEntry getNullableEntry(int id) {
-            return entryMap.get(id);
+        public Frame.Layout getFrameLayout() {
+            return frameLayout;
         }
     }
 
     final class LocalScope implements Scope {
+        private static final long serialVersionUID = 1L;
+
         private final Scope parent;
-        private final int callerInstrId;
         private final Int2ObjectMap<Scope> funcIdToScope;
-        private final Int2ObjectMap<STEntry> entryMap;
         private final Object2IntMap<VariableName> variableNameToEntry;
+        private final Frame.Layout frameLayout;
 
         LocalScope(Scope parent) {
-            this(parent,
-                    NULL_ID,
-                    new Int2ObjectOpenHashMap<>(),
-                    new Int2ObjectOpenHashMap<>(),
-                    new Object2IntOpenHashMap<>());
-        }
-
-        private LocalScope(
-                Scope parent,
-                int callerInstrId,
-                Int2ObjectMap<Scope> funcIdToScope,
-                Int2ObjectMap<STEntry> entryMap,
-                Object2IntMap<VariableName> variableNameToEntry)
-        {
             this.parent = parent;
-            this.callerInstrId = callerInstrId;
-            this.funcIdToScope = funcIdToScope;
-            this.entryMap = entryMap;
-            this.variableNameToEntry = variableNameToEntry;
-        }
-
-        @Override
-        public Scope createRuntimeScope(int callerInstrId) {
-            return new LocalScope(
-                    parent,
-                    callerInstrId,
-                    new Int2ObjectOpenHashMap<>(funcIdToScope),
-                    new Int2ObjectOpenHashMap<>(entryMap),
-                    new Object2IntOpenHashMap<>(variableNameToEntry)
-            );
-        }
-
-        @Override
-        public int getCallerInstrId() {
-            return callerInstrId;
+            this.funcIdToScope = new Int2ObjectOpenHashMap<>();
+            this.variableNameToEntry = new Object2IntOpenHashMap<>();
+            this.frameLayout = new Frame.Layout();
         }
 
         @Override
@@ -329,17 +208,12 @@ public interface Scope {
 
         @Override
         public void putEntry(int id, STEntry entry) {
-            entryMap.put(id, entry);
-        }
-
-        @Override
-        public STEntry getEntry(int id) {
-            return entryMap.get(id);
+            frameLayout.add(entry);
         }
 
         @Override
-        public STEntry getNullableEntry(int id) {
-            return entryMap.get(id);
+        public Frame.Layout getFrameLayout() {
+            return frameLayout;
         }
     }
 }
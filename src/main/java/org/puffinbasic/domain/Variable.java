@@ -9,6 +9,7 @@ import org.puffinbasic.domain.STObjects.ScalarType;
 import org.puffinbasic.domain.STObjects.UDFType;
 import org.puffinbasic.error.PuffinBasicSemanticError;
 
+import java.io.Serializable;
 import java.util.Objects;
 import java.util.function.Supplier;
 
@@ -16,9 +17,13 @@ import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.ARRAY;
 import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.SCALAR;
 import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.UDF;
 
-public class Variable {
+public class Variable implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final class VariableName implements Serializable {
+        private static final long serialVersionUID = 1L;
 
-    public static final class VariableName {
         private final String varname;
         private final String suffix;
         private final PuffinBasicAtomTypeId dataType;
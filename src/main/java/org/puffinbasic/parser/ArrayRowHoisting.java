@@ -0,0 +1,261 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STVariable;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.List;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+
+/**
+ * Moves the row offset computation of a 2D array access out of
+ * a FOR loop when neither the array nor the row index change in it:
+ * <pre>
+ *   FOR J = 1 TO N : S = S + A(I, J) : NEXT
+ * </pre>
+ * computes the offset of row I once, before the first iteration.
+ * The offset is placed between FOR_INIT and the loop's body label,
+ * so FOR_NEXT jumps back past it.
+ * A loop is left alone if it calls a GOSUB, function or member function,
+ * or if control can enter its body other than through FOR_INIT.
+ * Only offsets computed on every iteration are moved, i.e. the ones before
+ * the first branch in the body, since computing an offset can fail. An offset
+ * in the THEN part of an IF or in an inner loop, which may not run, stays.
+ */
+final class ArrayRowHoisting implements IRPass {
+
+    @Override
+    public String getName() {
+        return "hoist";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        Int2ObjectMap<STEntry> entries = symbolTable.getAllEntries();
+        IntSet aliased = new IntOpenHashSet();
+        for (Instruction instruction : instructions) {
+            if (instruction.opCode == OpCode.VARREF) {
+                aliased.add(instruction.op1);
+                aliased.add(instruction.op2);
+            }
+        }
+        while (hoistOne(entries, aliased, instructions)) {
+            // Positions shift after every move, so loops are found again.
+        }
+    }
+
+    private static boolean hoistOne(
+            Int2ObjectMap<STEntry> entries, IntSet aliased, List<Instruction> instructions)
+    {
+        Int2IntMap labelToInstrNum = computeLabelToInstrNum(instructions);
+        Int2IntMap lineNumToInstrNum = computeLineNumToInstrNum(instructions);
+        for (int next = 0; next < instructions.size(); next++) {
+            Instruction forNext = instructions.get(next);
+            if (!forNext.opCode.isForNext()) {
+                continue;
+            }
+            int body = labelToInstrNum.get(forNext.result);
+            if (body < 0 || body >= next
+                    || !isEnteredOnlyAtTop(entries, instructions, labelToInstrNum, lineNumToInstrNum, body, next))
+            {
+                continue;
+            }
+            for (int i = body + 1; i < next && isStraightLine(instructions.get(i)); i++) {
+                Instruction row = instructions.get(i);
+                if (row.opCode == OpCode.ARRAYROW
+                        && isInvariantArray(entries, aliased, instructions, body, next, row.op1)
+                        && isInvariantIndex(entries, aliased, instructions, body, next, row.op2))
+                {
+                    instructions.remove(i);
+                    Instruction hoisted = new Instruction(
+                            instructions.get(body).inputRef, row.opCode, row.op1, row.op2, row.result);
+                    instructions.add(body, hoisted);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isStraightLine(Instruction instruction) {
+        return !instruction.opCode.branch && instruction.opCode != OpCode.LABEL;
+    }
+
+    private static boolean isEnteredOnlyAtTop(
+            Int2ObjectMap<STEntry> entries,
+            List<Instruction> instructions,
+            Int2IntMap labelToInstrNum,
+            Int2IntMap lineNumToInstrNum,
+            int body,
+            int next)
+    {
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            boolean inLoop = i >= body && i <= next;
+            OpCode opCode = instruction.opCode;
+            if (inLoop
+                    && (opCode == OpCode.PUSH_RETLABEL
+                        || opCode == OpCode.PUSH_RT_SCOPE
+                        || opCode == OpCode.MEMBER_FUNC_CALL))
+            {
+                return false;
+            }
+            int target;
+            if ((opCode == OpCode.GOTO_LINENUM || opCode == OpCode.RETURN) && instruction.op1 != NULL_ID) {
+                int lineNumber = entries.get(instruction.op1).getValue().getInt32();
+                target = lineNumToInstrNum.get(lineNumber);
+            } else if (!inLoop) {
+                int label = getLabelTarget(instruction);
+                target = label != NULL_ID ? labelToInstrNum.get(label) : -1;
+            } else {
+                continue;
+            }
+            if (target >= body && target <= next) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int getLabelTarget(Instruction instruction) {
+        switch (instruction.opCode) {
+            case GOTO_LABEL:
+            case PUSH_RETLABEL:
+                return instruction.op1;
+            case GOTO_LABEL_IF:
+            case PUSH_RT_SCOPE:
+                return instruction.op2;
+            default:
+                if (instruction.opCode.isCompareAndBranch() || instruction.opCode.isForLoop()) {
+                    return instruction.result;
+                }
+                return NULL_ID;
+        }
+    }
+
+    // The array is only indexed in the loop, so its dimensions can't change.
+    private static boolean isInvariantArray(
+            Int2ObjectMap<STEntry> entries,
+            IntSet aliased,
+            List<Instruction> instructions,
+            int body,
+            int next,
+            int id)
+    {
+        STEntry entry = entries.get(id);
+        if (entry == null || entry.getClass() != STVariable.class || aliased.contains(id)) {
+            return false;
+        }
+        for (int i = body + 1; i <= next; i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.op2 == id || instruction.getOp3() == id || instruction.result == id) {
+                return false;
+            }
+            if (instruction.op1 == id) {
+                switch (instruction.opCode) {
+                    case RESET_ARRAY_IDX:
+                    case SET_ARRAY_IDX:
+                    case ARRAYREF:
+                    case ARRAYREF1D:
+                    case ARRAYROW:
+                    case ARRAYREF2D:
+                        break;
+                    default:
+                        return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // The index is only read in the loop.
+    private static boolean isInvariantIndex(
+            Int2ObjectMap<STEntry> entries,
+            IntSet aliased,
+            List<Instruction> instructions,
+            int body,
+            int next,
+            int id)
+    {
+        STEntry entry = entries.get(id);
+        if (entry == null
+                || (entry.isLValue() && entry.getClass() != STVariable.class)
+                || aliased.contains(id))
+        {
+            return false;
+        }
+        for (int i = body + 1; i <= next; i++) {
+            Instruction instruction = instructions.get(i);
+            if ((instruction.op1 == id && !isRead(instruction, 1))
+                    || (instruction.op2 == id && !isRead(instruction, 2))
+                    || (instruction.getOp3() == id && !isRead(instruction, 3))
+                    || (instruction.result == id && !isRead(instruction, 4)))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isRead(Instruction instruction, int slot) {
+        OpCode opCode = instruction.opCode;
+        if (opCode == OpCode.VALUE) {
+            // The value is set while the IR is generated.
+            return true;
+        } else if (IRDefUse.PURE.contains(opCode)
+                || opCode == OpCode.PRINT
+                || opCode.isCompareAndBranch())
+        {
+            return slot == 1 || slot == 2;
+        } else if (opCode == OpCode.ASSIGN
+                || opCode == OpCode.COPY
+                || opCode == OpCode.PARAM_COPY
+                || opCode == OpCode.GOTO_LABEL_IF)
+        {
+            return slot == 1;
+        } else if (opCode.isForLoop()) {
+            return slot == 2 || slot == 3;
+        } else if (opCode == OpCode.SET_ARRAY_IDX
+                || opCode == OpCode.ARRAYREF1D
+                || opCode == OpCode.ARRAYROW)
+        {
+            return slot == 2;
+        } else if (opCode == OpCode.ARRAYREF2D) {
+            return slot == 3;
+        }
+        return false;
+    }
+
+    private static Int2IntMap computeLabelToInstrNum(List<Instruction> instructions) {
+        Int2IntMap labelToInstrNum = new Int2IntOpenHashMap();
+        labelToInstrNum.defaultReturnValue(-1);
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.opCode == OpCode.LABEL) {
+                labelToInstrNum.put(instruction.op1, i);
+            }
+        }
+        return labelToInstrNum;
+    }
+
+    // Same as the runtime's, a GOTO goes to the first instruction with the line number.
+    private static Int2IntMap computeLineNumToInstrNum(List<Instruction> instructions) {
+        Int2IntMap lineNumToInstrNum = new Int2IntOpenHashMap();
+        lineNumToInstrNum.defaultReturnValue(-1);
+        for (int i = 0; i < instructions.size(); i++) {
+            int lineNumber = instructions.get(i).inputRef.lineNumber;
+            if (lineNumber >= 0 && !lineNumToInstrNum.containsKey(lineNumber)) {
+                lineNumToInstrNum.put(lineNumber, i);
+            }
+        }
+        return lineNumToInstrNum;
+    }
+}
@@ -0,0 +1,144 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+
+/**
+ * Peephole pass that fuses a comparison feeding a conditional jump
+ * into a single typed compare-and-branch instruction:
+ * <pre>
+ *   t = a CMP b; [u = NOT t;] GOTO_LABEL_IF t|u, L; [GOTO_LABEL L2; LABEL L]
+ * </pre>
+ * The comparison result is a boolean temporary that is used only by
+ * the jump, so it no longer needs to be materialized.
+ * Relational ops produce -1/0 and floats are compared with a total order,
+ * so NOT of a comparison is exactly the inverse comparison.
+ */
+final class CompareAndBranchFusion implements IRPass {
+
+    private static final EnumMap<OpCode, OpCode> JUMP_IF_TRUE = new EnumMap<>(OpCode.class);
+    private static final EnumMap<OpCode, OpCode> JUMP_IF_FALSE = new EnumMap<>(OpCode.class);
+
+    static {
+        add(OpCode.EQI32, OpCode.JEQ_I32, OpCode.JNE_I32);
+        add(OpCode.EQI64, OpCode.JEQ_I64, OpCode.JNE_I64);
+        add(OpCode.EQF32, OpCode.JEQ_F32, OpCode.JNE_F32);
+        add(OpCode.EQF64, OpCode.JEQ_F64, OpCode.JNE_F64);
+        add(OpCode.EQSTR, OpCode.JEQ_STR, OpCode.JNE_STR);
+        add(OpCode.NEI32, OpCode.JNE_I32, OpCode.JEQ_I32);
+        add(OpCode.NEI64, OpCode.JNE_I64, OpCode.JEQ_I64);
+        add(OpCode.NEF32, OpCode.JNE_F32, OpCode.JEQ_F32);
+        add(OpCode.NEF64, OpCode.JNE_F64, OpCode.JEQ_F64);
+        add(OpCode.NESTR, OpCode.JNE_STR, OpCode.JEQ_STR);
+        add(OpCode.LTI32, OpCode.JLT_I32, OpCode.JGE_I32);
+        add(OpCode.LTI64, OpCode.JLT_I64, OpCode.JGE_I64);
+        add(OpCode.LTF32, OpCode.JLT_F32, OpCode.JGE_F32);
+        add(OpCode.LTF64, OpCode.JLT_F64, OpCode.JGE_F64);
+        add(OpCode.LTSTR, OpCode.JLT_STR, OpCode.JGE_STR);
+        add(OpCode.LEI32, OpCode.JLE_I32, OpCode.JGT_I32);
+        add(OpCode.LEI64, OpCode.JLE_I64, OpCode.JGT_I64);
+        add(OpCode.LEF32, OpCode.JLE_F32, OpCode.JGT_F32);
+        add(OpCode.LEF64, OpCode.JLE_F64, OpCode.JGT_F64);
+        add(OpCode.LESTR, OpCode.JLE_STR, OpCode.JGT_STR);
+        add(OpCode.GTI32, OpCode.JGT_I32, OpCode.JLE_I32);
+        add(OpCode.GTI64, OpCode.JGT_I64, OpCode.JLE_I64);
+        add(OpCode.GTF32, OpCode.JGT_F32, OpCode.JLE_F32);
+        add(OpCode.GTF64, OpCode.JGT_F64, OpCode.JLE_F64);
+        add(OpCode.GTSTR, OpCode.JGT_STR, OpCode.JLE_STR);
+        add(OpCode.GEI32, OpCode.JGE_I32, OpCode.JLT_I32);
+        add(OpCode.GEI64, OpCode.JGE_I64, OpCode.JLT_I64);
+        add(OpCode.GEF32, OpCode.JGE_F32, OpCode.JLT_F32);
+        add(OpCode.GEF64, OpCode.JGE_F64, OpCode.JLT_F64);
+        add(OpCode.GESTR, OpCode.JGE_STR, OpCode.JLT_STR);
+    }
+
+    private static void add(OpCode compare, OpCode jumpIfTrue, OpCode jumpIfFalse) {
+        JUMP_IF_TRUE.put(compare, jumpIfTrue);
+        JUMP_IF_FALSE.put(compare, jumpIfFalse);
+    }
+
+    @Override
+    public String getName() {
+        return "fuse";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        Int2IntMap uses = countUses(instructions);
+        List<Instruction> fused = new ArrayList<>(instructions.size());
+        int i = 0;
+        while (i < instructions.size()) {
+            Instruction cmp = instructions.get(i);
+            OpCode jumpIfTrue = JUMP_IF_TRUE.get(cmp.opCode);
+            if (jumpIfTrue == null || uses.get(cmp.result) != 1) {
+                fused.add(cmp);
+                ++i;
+                continue;
+            }
+
+            int next = i + 1;
+            boolean negate = false;
+            int condition = cmp.result;
+            if (next < instructions.size()) {
+                Instruction not = instructions.get(next);
+                if (not.opCode == OpCode.NOT && not.op1 == condition && uses.get(not.result) == 1) {
+                    negate = true;
+                    condition = not.result;
+                    ++next;
+                }
+            }
+            if (next >= instructions.size()
+                    || instructions.get(next).opCode != OpCode.GOTO_LABEL_IF
+                    || instructions.get(next).op1 != condition)
+            {
+                fused.add(cmp);
+                ++i;
+                continue;
+            }
+
+            int label = instructions.get(next).op2;
+            ++next;
+            // IF ... THEN: jump over an unconditional jump to the else part.
+            if (next + 1 < instructions.size()
+                    && instructions.get(next).opCode == OpCode.GOTO_LABEL
+                    && instructions.get(next + 1).opCode == OpCode.LABEL
+                    && instructions.get(next + 1).op1 == label)
+            {
+                label = instructions.get(next).op1;
+                negate = !negate;
+                ++next;
+            }
+
+            OpCode opCode = negate ? JUMP_IF_FALSE.get(cmp.opCode) : jumpIfTrue;
+            fused.add(new Instruction(cmp.inputRef, opCode, cmp.op1, cmp.op2, label));
+            i = next;
+        }
+        instructions.clear();
+        instructions.addAll(fused);
+    }
+
+    private static Int2IntMap countUses(List<Instruction> instructions) {
+        Int2IntMap uses = new Int2IntOpenHashMap();
+        for (Instruction instruction : instructions) {
+            if (instruction.op1 != NULL_ID) {
+                uses.put(instruction.op1, uses.get(instruction.op1) + 1);
+            }
+            if (instruction.op2 != NULL_ID) {
+                uses.put(instruction.op2, uses.get(instruction.op2) + 1);
+            }
+            if (instruction.getOp3() != NULL_ID) {
+                uses.put(instruction.getOp3(), uses.get(instruction.getOp3()) + 1);
+            }
+        }
+        return uses;
+    }
+}
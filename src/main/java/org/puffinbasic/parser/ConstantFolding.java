@@ -0,0 +1,127 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+import org.puffinbasic.runtime.Operators;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+
+/**
+ * Evaluates pure operators whose operands are VALUE constants while
+ * the IR is compiled, and replaces them with a VALUE of the result.
+ * Folding runs front to back, so whole constant expressions collapse
+ * in a single pass. The runtime operators are used for evaluation,
+ * hence folded values are exactly what the program would compute.
+ */
+final class ConstantFolding implements IRPass {
+
+    private static final EnumMap<OpCode, Consumer<Instruction>> EVALUATORS =
+            new EnumMap<>(OpCode.class);
+
+    static {
+        EVALUATORS.put(OpCode.UNARY_MINUS, Operators::unaryMinus);
+        EVALUATORS.put(OpCode.LEFTSHIFT, Operators::leftShift);
+        EVALUATORS.put(OpCode.RIGHTSHIFT, Operators::rightShift);
+        EVALUATORS.put(OpCode.EXPI32, Operators::expInt32);
+        EVALUATORS.put(OpCode.EXPI64, Operators::expInt64);
+        EVALUATORS.put(OpCode.EXPF32, Operators::expFloat32);
+        EVALUATORS.put(OpCode.EXPF64, Operators::expFloat64);
+        EVALUATORS.put(OpCode.MULI32, Operators::mulInt32);
+        EVALUATORS.put(OpCode.MULI64, Operators::mulInt64);
+        EVALUATORS.put(OpCode.MULF32, Operators::mulFloat32);
+        EVALUATORS.put(OpCode.MULF64, Operators::mulFloat64);
+        EVALUATORS.put(OpCode.IDIV, Operators::idiv);
+        EVALUATORS.put(OpCode.FDIV, Operators::fdiv);
+        EVALUATORS.put(OpCode.MOD, Operators::mod);
+        EVALUATORS.put(OpCode.ADDI32, Operators::addInt32);
+        EVALUATORS.put(OpCode.ADDI64, Operators::addInt64);
+        EVALUATORS.put(OpCode.ADDF32, Operators::addFloat32);
+        EVALUATORS.put(OpCode.ADDF64, Operators::addFloat64);
+        EVALUATORS.put(OpCode.SUBI32, Operators::subInt32);
+        EVALUATORS.put(OpCode.SUBI64, Operators::subInt64);
+        EVALUATORS.put(OpCode.SUBF32, Operators::subFloat32);
+        EVALUATORS.put(OpCode.SUBF64, Operators::subFloat64);
+        EVALUATORS.put(OpCode.CONCAT, Operators::concat);
+        EVALUATORS.put(OpCode.EQI32, Operators::eqInt32);
+        EVALUATORS.put(OpCode.EQI64, Operators::eqInt64);
+        EVALUATORS.put(OpCode.EQF32, Operators::eqFloat32);
+        EVALUATORS.put(OpCode.EQF64, Operators::eqFloat64);
+        EVALUATORS.put(OpCode.EQSTR, Operators::eqStr);
+        EVALUATORS.put(OpCode.NEI32, Operators::neInt32);
+        EVALUATORS.put(OpCode.NEI64, Operators::neInt64);
+        EVALUATORS.put(OpCode.NEF32, Operators::neFloat32);
+        EVALUATORS.put(OpCode.NEF64, Operators::neFloat64);
+        EVALUATORS.put(OpCode.NESTR, Operators::neStr);
+        EVALUATORS.put(OpCode.LTI32, Operators::ltInt32);
+        EVALUATORS.put(OpCode.LTI64, Operators::ltInt64);
+        EVALUATORS.put(OpCode.LTF32, Operators::ltFloat32);
+        EVALUATORS.put(OpCode.LTF64, Operators::ltFloat64);
+        EVALUATORS.put(OpCode.LTSTR, Operators::ltStr);
+        EVALUATORS.put(OpCode.LEI32, Operators::leInt32);
+        EVALUATORS.put(OpCode.LEI64, Operators::leInt64);
+        EVALUATORS.put(OpCode.LEF32, Operators::leFloat32);
+        EVALUATORS.put(OpCode.LEF64, Operators::leFloat64);
+        EVALUATORS.put(OpCode.LESTR, Operators::leStr);
+        EVALUATORS.put(OpCode.GTI32, Operators::gtInt32);
+        EVALUATORS.put(OpCode.GTI64, Operators::gtInt64);
+        EVALUATORS.put(OpCode.GTF32, Operators::gtFloat32);
+        EVALUATORS.put(OpCode.GTF64, Operators::gtFloat64);
+        EVALUATORS.put(OpCode.GTSTR, Operators::gtStr);
+        EVALUATORS.put(OpCode.GEI32, Operators::geInt32);
+        EVALUATORS.put(OpCode.GEI64, Operators::geInt64);
+        EVALUATORS.put(OpCode.GEF32, Operators::geFloat32);
+        EVALUATORS.put(OpCode.GEF64, Operators::geFloat64);
+        EVALUATORS.put(OpCode.GESTR, Operators::geStr);
+        EVALUATORS.put(OpCode.NOT, Operators::unaryNot);
+        EVALUATORS.put(OpCode.AND, Operators::and);
+        EVALUATORS.put(OpCode.OR, Operators::or);
+        EVALUATORS.put(OpCode.XOR, Operators::xor);
+        EVALUATORS.put(OpCode.EQV, Operators::eqv);
+        EVALUATORS.put(OpCode.IMP, Operators::imp);
+    }
+
+    @Override
+    public String getName() {
+        return "fold";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        IRDefUse defUse = new IRDefUse(symbolTable, instructions);
+        Int2ObjectMap<STEntry> entries = defUse.getEntries();
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            Consumer<Instruction> evaluator = EVALUATORS.get(instruction.opCode);
+            if (evaluator == null
+                    || !defUse.isSingleDefTemp(instruction.result)
+                    || !defUse.isConstant(instruction.op1, instructions)
+                    || (instruction.op2 != NULL_ID && !defUse.isConstant(instruction.op2, instructions)))
+            {
+                continue;
+            }
+
+            Instruction folded = new Instruction(
+                    instruction.inputRef, instruction.opCode, instruction.op1, instruction.op2, instruction.result);
+            folded.link(
+                    entries.get(instruction.op1),
+                    entries.get(instruction.op2),
+                    null,
+                    entries.get(instruction.result));
+            try {
+                evaluator.accept(folded);
+            } catch (RuntimeException e) {
+                // e.g. division by zero, left for the runtime to report.
+                continue;
+            }
+            instructions.set(i, new Instruction(
+                    instruction.inputRef, OpCode.VALUE, instruction.result, NULL_ID, instruction.result));
+        }
+    }
+}
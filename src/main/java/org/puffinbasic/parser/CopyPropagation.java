@@ -0,0 +1,140 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.List;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+
+/**
+ * Rewrites reads of a temporary which is only a COPY/ASSIGN of another
+ * temporary to read the source instead:
+ * <pre>
+ *   COPY a, t, t; ... x = t + y   =>   COPY a, t, t; ... x = a + y
+ * </pre>
+ * The copy is left for dead temp elimination to remove.
+ * A constant source is propagated everywhere. Any other source is only
+ * propagated within the basic block of the copy, after its definition,
+ * because the source may be written again once control leaves the block,
+ * e.g. by a recursive function call.
+ */
+final class CopyPropagation implements IRPass {
+
+    @Override
+    public String getName() {
+        return "copyprop";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        IRDefUse defUse = new IRDefUse(symbolTable, instructions);
+        Int2ObjectMap<STEntry> entries = defUse.getEntries();
+        Int2ObjectMap<IntList> readers = computeReaders(instructions);
+        int[] blocks = computeBlocks(instructions);
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction copy = instructions.get(i);
+            if (copy.opCode != OpCode.ASSIGN && copy.opCode != OpCode.COPY) {
+                continue;
+            }
+            int src = copy.op1;
+            int dst = copy.op2;
+            if (src == dst
+                    || !defUse.isSingleDefTemp(dst)
+                    || !defUse.isSingleDefTemp(src)
+                    || entries.get(src).getType().getAtomTypeId() != entries.get(dst).getType().getAtomTypeId())
+            {
+                continue;
+            }
+            IntList dstReaders = readers.get(dst);
+            if (dstReaders == null) {
+                continue;
+            }
+            if (!defUse.isConstant(src, instructions)
+                    && !isBlockLocal(instructions, defUse.getDefInstrNum(src), i, dstReaders, blocks))
+            {
+                continue;
+            }
+
+            for (int j = 0; j < dstReaders.size(); j++) {
+                Instruction reader = instructions.get(dstReaders.getInt(j));
+                if (reader.op1 == dst) {
+                    reader.patchOp1(src);
+                }
+                if (reader.op2 == dst) {
+                    reader.patchOp2(src);
+                }
+                if (reader.getOp3() == dst) {
+                    reader.patchOp3(src);
+                }
+            }
+            readers.computeIfAbsent(src, k -> new IntArrayList()).addAll(dstReaders);
+            readers.remove(dst);
+            defUse.moveReads(dst, src);
+        }
+    }
+
+    private static boolean isBlockLocal(
+            List<Instruction> instructions, int srcDef, int copy, IntList dstReaders, int[] blocks)
+    {
+        OpCode srcOpCode = instructions.get(srcDef).opCode;
+        if (srcDef > copy
+                || !(IRDefUse.PURE.contains(srcOpCode) || srcOpCode == OpCode.ASSIGN || srcOpCode == OpCode.COPY))
+        {
+            return false;
+        }
+        for (int j = 0; j < dstReaders.size(); j++) {
+            int reader = dstReaders.getInt(j);
+            if (reader <= copy || blocks[reader] != blocks[copy]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Int2ObjectMap<IntList> computeReaders(List<Instruction> instructions) {
+        Int2ObjectMap<IntList> readers = new Int2ObjectOpenHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.opCode == OpCode.VALUE) {
+                continue;
+            }
+            addReader(readers, instruction.op1, i);
+            // op2 of an assignment is its target.
+            if (instruction.opCode != OpCode.ASSIGN && instruction.opCode != OpCode.COPY) {
+                addReader(readers, instruction.op2, i);
+            }
+            addReader(readers, instruction.getOp3(), i);
+        }
+        return readers;
+    }
+
+    private static void addReader(Int2ObjectMap<IntList> readers, int id, int instrNum) {
+        if (id != NULL_ID) {
+            readers.computeIfAbsent(id, k -> new IntArrayList()).add(instrNum);
+        }
+    }
+
+    // A block starts at a label and ends after a branch.
+    private static int[] computeBlocks(List<Instruction> instructions) {
+        int[] blocks = new int[instructions.size()];
+        int block = 0;
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.opCode == OpCode.LABEL) {
+                ++block;
+            }
+            blocks[i] = block;
+            if (instruction.opCode.branch) {
+                ++block;
+            }
+        }
+        return blocks;
+    }
+}
@@ -0,0 +1,64 @@
+package org.puffinbasic.parser;
+
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+
+/**
+ * Removes VALUE, COPY/ASSIGN and pure operators whose target is a temporary
+ * that is never read. Operators which may raise a runtime error are kept.
+ * Runs until no more instructions are removed, since removing an operator
+ * can make its operands dead. The first instruction of a line is always
+ * kept, as GOTO and GOSUB resolve line numbers to it.
+ */
+final class DeadTempElimination implements IRPass {
+
+    @Override
+    public String getName() {
+        return "dte";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        boolean removed = true;
+        while (removed) {
+            IRDefUse defUse = new IRDefUse(symbolTable, instructions);
+            List<Instruction> live = new ArrayList<>(instructions.size());
+            Instruction prev = null;
+            for (Instruction instruction : instructions) {
+                boolean firstOfLine = prev == null
+                        || prev.inputRef.sourceFile != instruction.inputRef.sourceFile
+                        || prev.inputRef.lineNumber != instruction.inputRef.lineNumber;
+                int target = getTarget(instruction);
+                if (firstOfLine
+                        || !defUse.isSingleDefTemp(target)
+                        || defUse.getNumReads(target) != 0)
+                {
+                    live.add(instruction);
+                }
+                prev = instruction;
+            }
+            removed = live.size() < instructions.size();
+            instructions.clear();
+            instructions.addAll(live);
+        }
+    }
+
+    private static int getTarget(Instruction instruction) {
+        OpCode opCode = instruction.opCode;
+        if (opCode == OpCode.VALUE) {
+            return instruction.result;
+        } else if (opCode == OpCode.ASSIGN || opCode == OpCode.COPY) {
+            return instruction.op2;
+        } else if (IRDefUse.PURE.contains(opCode) && !IRDefUse.MAY_THROW.contains(opCode)) {
+            return instruction.result;
+        } else {
+            return NULL_ID;
+        }
+    }
+}
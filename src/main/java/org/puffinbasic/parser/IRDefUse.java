@@ -0,0 +1,160 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.SCALAR;
+
+/**
+ * Def/use summary of the IR, shared by the optimization passes.
+ * Only the operand slots of a few well understood opcodes are classified
+ * as reads and writes. An id which appears in any other instruction
+ * is pinned, i.e. it's never rewritten or removed by a pass.
+ */
+final class IRDefUse {
+
+    // result = f(op1, op2) without side effects, except for throwing.
+    static final EnumSet<OpCode> PURE = EnumSet.of(
+            OpCode.UNARY_MINUS, OpCode.LEFTSHIFT, OpCode.RIGHTSHIFT,
+            OpCode.EXPI32, OpCode.EXPI64, OpCode.EXPF32, OpCode.EXPF64,
+            OpCode.MULI32, OpCode.MULI64, OpCode.MULF32, OpCode.MULF64,
+            OpCode.IDIV, OpCode.FDIV, OpCode.MOD,
+            OpCode.ADDI32, OpCode.ADDI64, OpCode.ADDF32, OpCode.ADDF64,
+            OpCode.SUBI32, OpCode.SUBI64, OpCode.SUBF32, OpCode.SUBF64,
+            OpCode.CONCAT,
+            OpCode.EQI32, OpCode.EQI64, OpCode.EQF32, OpCode.EQF64, OpCode.EQSTR,
+            OpCode.NEI32, OpCode.NEI64, OpCode.NEF32, OpCode.NEF64, OpCode.NESTR,
+            OpCode.LTI32, OpCode.LTI64, OpCode.LTF32, OpCode.LTF64, OpCode.LTSTR,
+            OpCode.LEI32, OpCode.LEI64, OpCode.LEF32, OpCode.LEF64, OpCode.LESTR,
+            OpCode.GTI32, OpCode.GTI64, OpCode.GTF32, OpCode.GTF64, OpCode.GTSTR,
+            OpCode.GEI32, OpCode.GEI64, OpCode.GEF32, OpCode.GEF64, OpCode.GESTR,
+            OpCode.NOT, OpCode.AND, OpCode.OR, OpCode.XOR, OpCode.EQV, OpCode.IMP
+    );
+
+    // Pure ops which raise a runtime error for some operands.
+    static final EnumSet<OpCode> MAY_THROW = EnumSet.of(OpCode.IDIV, OpCode.FDIV, OpCode.MOD);
+
+    private final Int2ObjectMap<STEntry> entries;
+    private final Int2IntMap numDefs;
+    private final Int2IntMap defInstrNum;
+    private final Int2IntMap numReads;
+    private final IntSet pinned;
+
+    IRDefUse(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        this.entries = symbolTable.getAllEntries();
+        this.numDefs = new Int2IntOpenHashMap();
+        this.defInstrNum = new Int2IntOpenHashMap();
+        this.defInstrNum.defaultReturnValue(-1);
+        this.numReads = new Int2IntOpenHashMap();
+        this.pinned = new IntOpenHashSet();
+        for (int i = 0; i < instructions.size(); i++) {
+            visit(i, instructions.get(i));
+        }
+    }
+
+    private void visit(int instrNum, Instruction instruction) {
+        OpCode opCode = instruction.opCode;
+        if (opCode == OpCode.VALUE) {
+            def(instruction.result, instrNum);
+        } else if (PURE.contains(opCode)) {
+            read(instruction.op1);
+            read(instruction.op2);
+            def(instruction.result, instrNum);
+        } else if (opCode == OpCode.ASSIGN || opCode == OpCode.COPY || opCode == OpCode.PARAM_COPY) {
+            read(instruction.op1);
+            def(instruction.op2, instrNum);
+            if (instruction.result != instruction.op2) {
+                pin(instruction.result);
+            }
+        } else if (opCode == OpCode.PRINT || opCode.isCompareAndBranch()) {
+            // Result of a compare-and-branch is a label.
+            read(instruction.op1);
+            read(instruction.op2);
+        } else if (opCode == OpCode.GOTO_LABEL_IF) {
+            read(instruction.op1);
+        } else if (opCode == OpCode.APPEND) {
+            // Appends op2 to the variable in op1 and result.
+            pin(instruction.op1);
+            read(instruction.op2);
+        } else if (opCode.isForLoop()) {
+            pin(instruction.op1);
+            read(instruction.op2);
+            read(instruction.getOp3());
+        } else if (opCode != OpCode.LABEL && opCode != OpCode.GOTO_LABEL) {
+            pin(instruction.op1);
+            pin(instruction.op2);
+            pin(instruction.getOp3());
+            pin(instruction.result);
+        }
+    }
+
+    private void def(int id, int instrNum) {
+        if (id != NULL_ID) {
+            numDefs.put(id, numDefs.get(id) + 1);
+            defInstrNum.put(id, instrNum);
+        }
+    }
+
+    private void read(int id) {
+        if (id != NULL_ID) {
+            numReads.put(id, numReads.get(id) + 1);
+        }
+    }
+
+    private void pin(int id) {
+        if (id != NULL_ID) {
+            pinned.add(id);
+        }
+    }
+
+    Int2ObjectMap<STEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * A scalar temporary which is written by exactly one instruction
+     * and only appears in classified slots.
+     */
+    boolean isSingleDefTemp(int id) {
+        if (id == NULL_ID || pinned.contains(id) || numDefs.get(id) != 1) {
+            return false;
+        }
+        STEntry entry = entries.get(id);
+        return entry != null
+                && !entry.isLValue()
+                && entry.getType() != null
+                && entry.getType().getTypeId() == SCALAR;
+    }
+
+    /**
+     * A temporary whose only definition is a VALUE instruction, i.e. its value
+     * was set while the IR was generated and never changes.
+     */
+    boolean isConstant(int id, List<Instruction> instructions) {
+        return isSingleDefTemp(id) && instructions.get(defInstrNum.get(id)).opCode == OpCode.VALUE;
+    }
+
+    int getDefInstrNum(int id) {
+        return defInstrNum.get(id);
+    }
+
+    int getNumReads(int id) {
+        return numReads.get(id);
+    }
+
+    void moveReads(int from, int to) {
+        numReads.put(to, numReads.get(to) + numReads.get(from));
+        numReads.put(from, 0);
+    }
+}
@@ -0,0 +1,18 @@
+package org.puffinbasic.parser;
+
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+
+import java.util.List;
+
+/**
+ * A transformation of the IR. Passes run after the IR is generated and
+ * before it's linked, i.e. instructions only refer to symbol table ids
+ * and may be replaced, removed or patched in place.
+ */
+public interface IRPass {
+
+    String getName();
+
+    void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions);
+}
@@ -0,0 +1,92 @@
+package org.puffinbasic.parser;
+
+import org.puffinbasic.error.PuffinBasicInternalError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Ordered list of {@link IRPass}es run over the IR before it's linked.
+ * <ul>
+ *   <li>-O0: no passes, the IR is executed as generated.</li>
+ *   <li>-O1: unreachable code removal, compare-and-branch fusion and
+ *   rewriting X$ = X$ + expr to an in-place append.</li>
+ *   <li>-O2: adds constant folding, copy propagation, dead temp elimination,
+ *   hoisting of 2D array row offsets out of FOR loops and reuse of temporaries
+ *   whose live ranges don't overlap.</li>
+ * </ul>
+ */
+public final class IRPipeline {
+
+    public static final int DEFAULT_LEVEL = 1;
+    public static final int MAX_LEVEL = 2;
+
+    public static final class PassResult {
+        public final String name;
+        public final int numInstructionsBefore;
+        public final int numInstructionsAfter;
+        public final long nanos;
+
+        PassResult(String name, int numInstructionsBefore, int numInstructionsAfter, long nanos) {
+            this.name = name;
+            this.numInstructionsBefore = numInstructionsBefore;
+            this.numInstructionsAfter = numInstructionsAfter;
+            this.nanos = nanos;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": " + numInstructionsBefore + " -> " + numInstructionsAfter
+                    + ", time=" + nanos / 1000 + " us";
+        }
+    }
+
+    public static IRPipeline forLevel(int level) {
+        if (level < 0 || level > MAX_LEVEL) {
+            throw new PuffinBasicInternalError("Unknown optimization level: " + level);
+        }
+        List<IRPass> passes = new ArrayList<>();
+        if (level >= 1) {
+            passes.add(new UnreachableCodeElimination());
+        }
+        if (level >= 2) {
+            passes.add(new ConstantFolding());
+            passes.add(new CopyPropagation());
+            passes.add(new DeadTempElimination());
+            passes.add(new ArrayRowHoisting());
+        }
+        if (level >= 1) {
+            // Last, so that it sees comparisons of propagated operands.
+            passes.add(new CompareAndBranchFusion());
+            passes.add(new StringAppendFusion());
+        }
+        if (level >= 2) {
+            // After fusion, which counts the uses of each temporary.
+            passes.add(new TempSlotReuse());
+        }
+        return new IRPipeline(passes);
+    }
+
+    private final List<IRPass> passes;
+
+    public IRPipeline(List<IRPass> passes) {
+        this.passes = Collections.unmodifiableList(new ArrayList<>(passes));
+    }
+
+    public List<IRPass> getPasses() {
+        return passes;
+    }
+
+    public List<PassResult> run(PuffinBasicIR ir) {
+        List<PassResult> results = new ArrayList<>(passes.size());
+        for (IRPass pass : passes) {
+            int before = ir.getNumInstructions();
+            long t0 = System.nanoTime();
+            ir.runPass(pass);
+            results.add(new PassResult(
+                    pass.getName(), before, ir.getNumInstructions(), System.nanoTime() - t0));
+        }
+        return results;
+    }
+}
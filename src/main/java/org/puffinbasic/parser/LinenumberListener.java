@@ -11,13 +11,19 @@ import org.puffinbasic.antlr4.PuffinBasicParser;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.error.PuffinBasicSyntaxError;
 
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IMPORT_ERROR;
 import static org.puffinbasic.runtime.Types.unquote;
 
+/**
+ * Collects the lines of a parsed program ordered by line number,
+ * so that the IR can be generated by walking them without parsing again.
+ */
 public class LinenumberListener extends PuffinBasicBaseListener {
 
     public enum ThrowOnDuplicate {
@@ -28,7 +34,7 @@ public class LinenumberListener extends PuffinBasicBaseListener {
     private final AtomicInteger linenumGenerator;
     private final CharStream input;
     private final ThrowOnDuplicate throwOnDuplicate;
-    private final Int2ObjectSortedMap<String> sortedLines;
+    private final Int2ObjectSortedMap<PuffinBasicParser.LineContext> sortedLines;
     private final Set<String> importFiles;
     private int numLinenum;
     private int numNoLinenum;
@@ -50,9 +56,9 @@ public class LinenumberListener extends PuffinBasicBaseListener {
         return numLinenum > 0;
     }
 
-    public String getSortedCode() {
+    public List<PuffinBasicParser.LineContext> getSortedLines() {
         checkLinenumberMode();
-        return String.join("", sortedLines.values());
+        return new ArrayList<>(sortedLines.values());
     }
 
     public Set<String> getImportFiles() {
@@ -80,8 +86,6 @@ public class LinenumberListener extends PuffinBasicBaseListener {
 
     @Override
     public void exitLine(PuffinBasicParser.LineContext ctx) {
-        String line = input.getText(new Interval(ctx.start.getStartIndex(), ctx.stop.getStopIndex()));
-
         int linenum;
         if (ctx.linenum() != null) {
             linenum = parseLinenum(ctx.linenum().DECIMAL().getText());
@@ -91,13 +95,13 @@ public class LinenumberListener extends PuffinBasicBaseListener {
             numNoLinenum++;
         }
 
-        String oldLine = sortedLines.put(linenum, line);
+        PuffinBasicParser.LineContext oldLine = sortedLines.put(linenum, ctx);
         if (oldLine != null) {
             String message = "Duplicate line number!" + System.lineSeparator() +
                     "OLD:" + System.lineSeparator() +
-                    oldLine +
+                    getText(input, oldLine) +
                     "NEW:" + System.lineSeparator() +
-                    line;
+                    getText(input, ctx);
             if (throwOnDuplicate == ThrowOnDuplicate.THROW) {
                 throw new PuffinBasicSyntaxError(message);
             } else {
@@ -149,6 +153,10 @@ public class LinenumberListener extends PuffinBasicBaseListener {
         }
     }
 
+    static String getText(CharStream input, PuffinBasicParser.LineContext line) {
+        return input.getText(new Interval(line.start.getStartIndex(), line.stop.getStopIndex()));
+    }
+
     static int parseLinenum(String txt) {
         try {
             return Integer.parseInt(txt);
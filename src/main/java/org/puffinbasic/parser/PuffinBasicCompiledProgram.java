@@ -0,0 +1,195 @@
+package org.puffinbasic.parser;
+
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
+
+/**
+ * Reads and writes a compiled program (.pbc), i.e. the optimized IR and its
+ * symbol table before linking. Loading a compiled program skips parsing, IR
+ * generation and the optimizer; the loaded IR is linked as usual.
+ * A compiled program can only be run by the same interpreter build which
+ * wrote it, recompile the source after upgrading.
+ * The file may also list the files the program was compiled from with their
+ * content hashes, which {@link PuffinBasicIRCache} checks before the IR is read.
+ * Only the classes of the interpreter, fastutil and a few JDK classes are
+ * read, since compiled programs are exchanged between users.
+ */
+public final class PuffinBasicCompiledProgram {
+
+    public static final String EXTENSION = ".pbc";
+
+    private static final int MAGIC = 0x50424300; // "PBC\0"
+    private static final int FORMAT_VERSION = 3;
+
+    private static final String[] ALLOWED_PACKAGES = {"org.puffinbasic.", "it.unimi.dsi.fastutil."};
+    private static final Set<String> ALLOWED_CLASSES = new HashSet<>(Arrays.asList(
+            "java.lang.Boolean",
+            "java.lang.Byte",
+            "java.lang.Character",
+            "java.lang.Double",
+            "java.lang.Enum",
+            "java.lang.Float",
+            "java.lang.Integer",
+            "java.lang.Long",
+            "java.lang.Number",
+            "java.lang.Short",
+            "java.lang.String",
+            "java.util.ArrayList",
+            "java.util.HashMap",
+            "java.util.HashSet",
+            "java.util.LinkedHashMap",
+            "java.util.LinkedHashSet",
+            "java.util.TreeMap",
+            "java.util.TreeSet",
+            "java.util.concurrent.atomic.AtomicInteger"
+    ));
+
+    private PuffinBasicCompiledProgram() {}
+
+    public static boolean isCompiledProgram(String filename) {
+        return filename.endsWith(EXTENSION);
+    }
+
+    public static void write(PuffinBasicIR ir, String filename) {
+        write(ir, Collections.emptyMap(), filename);
+    }
+
+    static void write(PuffinBasicIR ir, Map<String, String> dependencies, String filename) {
+        try (ObjectOutputStream out = new ObjectOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(Paths.get(filename)))))
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeObject(new LinkedHashMap<>(dependencies));
+            out.writeObject(ir);
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to write compiled program: " + filename + ", error: " + e.getMessage()
+            );
+        }
+    }
+
+    public static PuffinBasicIR read(String filename) {
+        return read(filename, dependencies -> true);
+    }
+
+    /**
+     * @return null if the dependencies written with the program are not up to date.
+     */
+    @SuppressWarnings("unchecked")
+    static PuffinBasicIR read(String filename, Predicate<Map<String, String>> isUpToDate) {
+        try (ObjectInputStream in = new FilteredObjectInputStream(
+                new BufferedInputStream(Files.newInputStream(Paths.get(filename)))))
+        {
+            if (in.readInt() != MAGIC) {
+                throw new PuffinBasicRuntimeError(
+                        IO_ERROR,
+                        "Not a compiled program: " + filename
+                );
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new PuffinBasicRuntimeError(
+                        IO_ERROR,
+                        "Compiled program " + filename + " has format version " + version
+                                + ", expected " + FORMAT_VERSION + ", recompile the source"
+                );
+            }
+            if (!isUpToDate.test((Map<String, String>) in.readObject())) {
+                return null;
+            }
+            return (PuffinBasicIR) in.readObject();
+        } catch (RejectedClassException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Compiled program " + filename + " contains a class which is not allowed: " + e.classname
+            );
+        } catch (InvalidClassException | ClassNotFoundException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Compiled program " + filename + " was written by a different interpreter build,"
+                            + " recompile the source, error: " + e.getMessage()
+            );
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to read compiled program: " + filename + ", error: " + e.getMessage()
+            );
+        }
+    }
+
+    private static final class RejectedClassException extends InvalidClassException {
+        private static final long serialVersionUID = 1L;
+
+        RejectedClassException(String classname) {
+            super(classname, "Class not allowed");
+        }
+    }
+
+    /**
+     * Rejects a class outside of the allow-list before it's loaded,
+     * so that no other class can be instantiated from a compiled program.
+     */
+    private static final class FilteredObjectInputStream extends ObjectInputStream {
+
+        FilteredObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            if (!isAllowed(desc.getName())) {
+                throw new RejectedClassException(desc.getName());
+            }
+            return super.resolveClass(desc);
+        }
+
+        @Override
+        protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+            throw new RejectedClassException(String.join(",", interfaces));
+        }
+
+        private static boolean isAllowed(String name) {
+            // An array is allowed if its element type is, e.g. "[I" or "[Lorg.puffinbasic...;".
+            int dims = 0;
+            while (name.charAt(dims) == '[') {
+                dims++;
+            }
+            if (dims > 0) {
+                if (name.charAt(dims) != 'L') {
+                    return name.length() == dims + 1;
+                }
+                name = name.substring(dims + 1, name.length() - 1);
+            }
+            if (ALLOWED_CLASSES.contains(name)) {
+                return true;
+            }
+            for (String pkg : ALLOWED_PACKAGES) {
+                if (name.startsWith(pkg)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
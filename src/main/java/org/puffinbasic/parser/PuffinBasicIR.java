@@ -2,13 +2,32 @@ package org.puffinbasic.parser;
 
 import org.antlr.v4.runtime.misc.Interval;
 import org.jetbrains.annotations.NotNull;
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STEntry;
 
+import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 
-public class PuffinBasicIR {
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.DOUBLE;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.FLOAT;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT32;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT64;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.STRING;
+
+public class PuffinBasicIR implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final int UNRESOLVED = -1;
 
     public enum OpCode {
         COMMENT("comment"),
@@ -33,15 +52,15 @@ public class PuffinBasicIR {
         FLUSH("flush"),
         RESET_ARRAY_IDX("resetArrIdx"),
         SET_ARRAY_IDX("setArrIdx"),
-        GOTO_LINENUM("goto"),
-        GOTO_LABEL("gotoLabel"),
-        GOTO_LABEL_IF("gotoLabelIf"),
-        GOTO_CALLER("gotoCaller"),
+        GOTO_LINENUM("goto", true),
+        GOTO_LABEL("gotoLabel", true),
+        GOTO_LABEL_IF("gotoLabelIf", true),
+        GOTO_CALLER("gotoCaller", true),
         LABEL("label"),
         PUSH_RT_SCOPE("pushRtScope"),
         POP_RT_SCOPE("popRtScope"),
-        END("end"),
-        RETURN("ret"),
+        END("end", true),
+        RETURN("ret", true),
         PUSH_RETLABEL("pushRetLabel"),
         SWAP("swap"),
         EXPI32("i32^"),
@@ -59,6 +78,7 @@ public class PuffinBasicIR {
         ADDF32("f32+"),
         ADDF64("f64+"),
         CONCAT("concat"),
+        APPEND("append"),
         SUBI32("i32-"),
         SUBI64("i64-"),
         SUBF32("f32-"),
@@ -214,6 +234,9 @@ public class PuffinBasicIR {
         CLS("cls"),
         BEEP("beep"),
         ARRAYREF("arrayref"),
+        ARRAYREF1D("arrayref1d"),
+        ARRAYROW("arrayrow"),
+        ARRAYREF2D("arrayref2d"),
         HSB2RGB("hsb2rgb"),
         LOADWAV("loadwav"),
         PLAYWAV("playwav"),
@@ -229,15 +252,126 @@ public class PuffinBasicIR {
         MOUSEBUTTONPRESSED("mousebuttonpressed"),
         MOUSEBUTTONRELEASED("mousebuttonreleased"),
         ISKEYPRESSED("iskeypressed"),
+        FOR_INIT("forInit", true),
+        FOR_INIT_UP("forInitUp", true),
+        FOR_INIT_DOWN("forInitDown", true),
+        FOR_NEXT("forNext", true),
+        FOR_NEXT_UP("forNextUp", true),
+        FOR_NEXT_DOWN("forNextDown", true),
+        FOR_NEXT_UP_I32("forNextUpI32", true),
+        FOR_NEXT_DOWN_I32("forNextDownI32", true),
+        JEQ_I32("ji32=", INT32, Condition.EQ),
+        JEQ_I64("ji64=", INT64, Condition.EQ),
+        JEQ_F32("jf32=", FLOAT, Condition.EQ),
+        JEQ_F64("jf64=", DOUBLE, Condition.EQ),
+        JEQ_STR("jstr=", STRING, Condition.EQ),
+        JNE_I32("ji32<>", INT32, Condition.NE),
+        JNE_I64("ji64<>", INT64, Condition.NE),
+        JNE_F32("jf32<>", FLOAT, Condition.NE),
+        JNE_F64("jf64<>", DOUBLE, Condition.NE),
+        JNE_STR("jstr<>", STRING, Condition.NE),
+        JLT_I32("ji32<", INT32, Condition.LT),
+        JLT_I64("ji64<", INT64, Condition.LT),
+        JLT_F32("jf32<", FLOAT, Condition.LT),
+        JLT_F64("jf64<", DOUBLE, Condition.LT),
+        JLT_STR("jstr<", STRING, Condition.LT),
+        JLE_I32("ji32<=", INT32, Condition.LE),
+        JLE_I64("ji64<=", INT64, Condition.LE),
+        JLE_F32("jf32<=", FLOAT, Condition.LE),
+        JLE_F64("jf64<=", DOUBLE, Condition.LE),
+        JLE_STR("jstr<=", STRING, Condition.LE),
+        JGT_I32("ji32>", INT32, Condition.GT),
+        JGT_I64("ji64>", INT64, Condition.GT),
+        JGT_F32("jf32>", FLOAT, Condition.GT),
+        JGT_F64("jf64>", DOUBLE, Condition.GT),
+        JGT_STR("jstr>", STRING, Condition.GT),
+        JGE_I32("ji32>=", INT32, Condition.GE),
+        JGE_I64("ji64>=", INT64, Condition.GE),
+        JGE_F32("jf32>=", FLOAT, Condition.GE),
+        JGE_F64("jf64>=", DOUBLE, Condition.GE),
+        JGE_STR("jstr>=", STRING, Condition.GE),
         ;
 
         public final String repr;
+        // Transfers control to an instruction other than the next one.
+        public final boolean branch;
+        // Type of the operands and condition of a compare-and-branch op, null otherwise.
+        public final PuffinBasicAtomTypeId compareType;
+        public final Condition condition;
 
         OpCode(String repr) {
+            this(repr, false);
+        }
+
+        OpCode(String repr, boolean branch) {
+            this(repr, branch, null, null);
+        }
+
+        OpCode(String repr, PuffinBasicAtomTypeId compareType, Condition condition) {
+            this(repr, true, compareType, condition);
+        }
+
+        OpCode(String repr, boolean branch, PuffinBasicAtomTypeId compareType, Condition condition) {
             this.repr = repr;
+            this.branch = branch;
+            this.compareType = compareType;
+            this.condition = condition;
+        }
+
+        // Compares op1 with op2 and jumps to the label in result if true.
+        public boolean isCompareAndBranch() {
+            return condition != null;
+        }
+
+        // Loop variable in op1, end in op2, step in op3 and label in result.
+        public boolean isForLoop() {
+            return FOR_INIT_OPS.contains(this) || FOR_NEXT_OPS.contains(this);
+        }
+
+        // Steps the loop variable and jumps back to the body.
+        public boolean isForNext() {
+            return FOR_NEXT_OPS.contains(this);
         }
     }
 
+    /**
+     * Tests the result of comparing two values, i.e. a negative int,
+     * zero or a positive int as returned by compareTo().
+     */
+    public enum Condition {
+        EQ,
+        NE,
+        LT,
+        LE,
+        GT,
+        GE;
+
+        public boolean test(int c) {
+            switch (this) {
+                case EQ:
+                    return c == 0;
+                case NE:
+                    return c != 0;
+                case LT:
+                    return c < 0;
+                case LE:
+                    return c <= 0;
+                case GT:
+                    return c > 0;
+                default:
+                    return c >= 0;
+            }
+        }
+    }
+
+    private static final Set<OpCode> FOR_INIT_OPS = EnumSet.of(
+            OpCode.FOR_INIT, OpCode.FOR_INIT_UP, OpCode.FOR_INIT_DOWN
+    );
+    private static final Set<OpCode> FOR_NEXT_OPS = EnumSet.of(
+            OpCode.FOR_NEXT, OpCode.FOR_NEXT_UP, OpCode.FOR_NEXT_DOWN,
+            OpCode.FOR_NEXT_UP_I32, OpCode.FOR_NEXT_DOWN_I32
+    );
+
     private final PuffinBasicSymbolTable symbolTable;
     private final List<Instruction> instructions;
 
@@ -259,6 +393,10 @@ public class PuffinBasicIR {
         return new ArrayList<>(instructions);
     }
 
+    public int getNumInstructions() {
+        return instructions.size();
+    }
+
     public Instruction addInstruction(
             PuffinBasicSourceFile sourceFile, int linenum, int startIndex, int stopIndex,
             @NotNull OpCode opCode, int op1, int op2, int result)
@@ -273,7 +411,95 @@ public class PuffinBasicIR {
         return symbolTable;
     }
 
-    public static final class InputRef {
+    /**
+     * Applies the given pass to the instructions in place.
+     * Must be called before {@link #link()}.
+     */
+    public void runPass(IRPass pass) {
+        pass.apply(symbolTable, instructions);
+    }
+
+    /**
+     * Binds the symbol table entries of all operands into the instructions,
+     * so that the runtime doesn't need to look them up for each execution.
+     * Entries are shared between declaration and runtime scopes, hence
+     * an id always resolves to the same entry.
+     */
+    public void link() {
+        Int2ObjectMap<STEntry> entries = symbolTable.getAllEntries();
+        for (Instruction instruction : instructions) {
+            instruction.link(
+                    entries.get(instruction.op1),
+                    entries.get(instruction.op2),
+                    entries.get(instruction.op3),
+                    entries.get(instruction.result));
+        }
+    }
+
+    /**
+     * Rewrites label and constant line number operands of branches to
+     * instruction indices. Must be called after {@link #link()}.
+     * Unresolved branches keep {@link #UNRESOLVED} and are looked up
+     * at runtime.
+     */
+    public void resolveBranchTargets() {
+        Int2IntMap labelToInstrNum = computeLabelToInstructionNumber();
+        Int2IntMap lineNumToInstrNum = computeLineNumberToInstructionNumber();
+        for (Instruction instruction : instructions) {
+            switch (instruction.opCode) {
+                case GOTO_LABEL:
+                case PUSH_RETLABEL:
+                    instruction.branchTarget = labelToInstrNum.get(instruction.op1);
+                    break;
+                case GOTO_LABEL_IF:
+                case PUSH_RT_SCOPE:
+                    instruction.branchTarget = labelToInstrNum.get(instruction.op2);
+                    break;
+                case GOTO_LINENUM:
+                case RETURN:
+                    if (instruction.op1 != NULL_ID) {
+                        int lineNumber = instruction.getOp1Entry().getValue().getInt32();
+                        instruction.branchTarget = lineNumToInstrNum.get(lineNumber);
+                    }
+                    break;
+                default:
+                    if (instruction.opCode.isCompareAndBranch() || instruction.opCode.isForLoop()) {
+                        instruction.branchTarget = labelToInstrNum.get(instruction.result);
+                    }
+                    break;
+            }
+        }
+    }
+
+    private Int2IntMap computeLabelToInstructionNumber() {
+        Int2IntMap labelToInstrNum = new Int2IntOpenHashMap();
+        labelToInstrNum.defaultReturnValue(UNRESOLVED);
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instr = instructions.get(i);
+            if (instr.opCode == OpCode.LABEL) {
+                labelToInstrNum.put(instr.op1, i);
+            }
+        }
+        return labelToInstrNum;
+    }
+
+    public Int2IntMap computeLineNumberToInstructionNumber() {
+        Int2IntMap lineNumToInstrNum = new Int2IntOpenHashMap();
+        lineNumToInstrNum.defaultReturnValue(UNRESOLVED);
+        int instrNum = 0;
+        for (Instruction instruction : instructions) {
+            int lineNumber = instruction.getInputRef().lineNumber;
+            if (lineNumber >= 0 && !lineNumToInstrNum.containsKey(lineNumber)) {
+                lineNumToInstrNum.put(lineNumber, instrNum);
+            }
+            ++instrNum;
+        }
+        return lineNumToInstrNum;
+    }
+
+    public static final class InputRef implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         public final PuffinBasicSourceFile sourceFile;
         public final int lineNumber;
         public final int inputStartIndex;
@@ -308,12 +534,21 @@ public class PuffinBasicIR {
         }
     }
 
-    public static final class Instruction {
+    public static final class Instruction implements Serializable {
+        private static final long serialVersionUID = 1L;
+
         public final InputRef inputRef;
         public final OpCode opCode;
         public int op1;
         public int op2;
         public final int result;
+        private int op3 = NULL_ID;
+        // Set by link() and resolveBranchTargets(), also after a compiled program is loaded.
+        private transient STEntry op1Entry;
+        private transient STEntry op2Entry;
+        private transient STEntry op3Entry;
+        private transient STEntry resultEntry;
+        private transient int branchTarget = UNRESOLVED;
 
         public Instruction(InputRef inputRef, OpCode opCode, int op1, int op2, int result) {
             this.inputRef = inputRef;
@@ -335,11 +570,51 @@ public class PuffinBasicIR {
             this.op2 = op2;
         }
 
+        /**
+         * Third operand, only used by instructions which need more than
+         * two inputs and a result, e.g. the step of FOR loop opcodes.
+         */
+        public int getOp3() {
+            return op3;
+        }
+
+        public void patchOp3(int op3) {
+            this.op3 = op3;
+        }
+
+        void link(STEntry op1Entry, STEntry op2Entry, STEntry op3Entry, STEntry resultEntry) {
+            this.op1Entry = op1Entry;
+            this.op2Entry = op2Entry;
+            this.op3Entry = op3Entry;
+            this.resultEntry = resultEntry;
+        }
+
+        public STEntry getOp1Entry() {
+            return op1Entry;
+        }
+
+        public STEntry getOp2Entry() {
+            return op2Entry;
+        }
+
+        public STEntry getOp3Entry() {
+            return op3Entry;
+        }
+
+        public STEntry getResultEntry() {
+            return resultEntry;
+        }
+
+        public int getBranchTarget() {
+            return branchTarget;
+        }
+
         @Override
         public String toString() {
-            return String.format(
+            String s = String.format(
                     "[%s:%4d]\t%4s\t%4s %4s %4s",
                     inputRef.sourceFile.getRelativePath(), inputRef.lineNumber, opCode.repr, op1, op2, result);
+            return op3 == NULL_ID ? s : s + " " + String.format("%4s", op3);
         }
     }
 }
@@ -0,0 +1,176 @@
+package org.puffinbasic.parser;
+
+import org.puffinbasic.PuffinBasicInterpreter;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
+
+/**
+ * On-disk cache of optimized IR, so that running an unchanged program again
+ * skips parsing, IR generation and the optimizer.
+ * An entry is a compiled program named after a hash of the interpreter build,
+ * the options the IR depends on, and the main source. It lists the imported
+ * files (including the ones imported by libs) with their content hashes, and
+ * is used only if none of them changed. The build is identified by a hash of
+ * the interpreter's jar, or of its class files, so that a change to the IR or
+ * the optimizer never reuses an entry of an older build. Nothing is cached if
+ * the build can't be identified.
+ */
+public final class PuffinBasicIRCache {
+
+    public static final String DEFAULT_DIR = Paths.get(
+            System.getProperty("user.home"), ".puffinbasic", "cache").toString();
+
+    private static final String BUILD_HASH = getBuildHash();
+
+    private final Path dir;
+    private final PuffinBasicImportPath importPath;
+
+    public PuffinBasicIRCache(String dir, PuffinBasicImportPath importPath) {
+        this.dir = Paths.get(dir);
+        this.importPath = importPath;
+    }
+
+    public String getKey(String sourceFilename, String sourceCode, int optLevel, boolean graphics) {
+        return sha256((BUILD_HASH + '\0' + optLevel + '\0' + graphics + '\0' + sourceFilename + '\0' + sourceCode)
+                .getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return null on a miss.
+     */
+    public PuffinBasicIR get(String key) {
+        Path entry = getEntry(key);
+        if (BUILD_HASH == null || !Files.exists(entry)) {
+            return null;
+        }
+        try {
+            return PuffinBasicCompiledProgram.read(entry.toString(), this::isUpToDate);
+        } catch (PuffinBasicRuntimeError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the IR which hasn't been linked yet. The cache is best effort,
+     * i.e. the program runs even if the entry can't be written.
+     */
+    public void put(String key, PuffinBasicIR ir, PuffinBasicSourceFile sourceFile) {
+        if (BUILD_HASH == null) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            Map<String, String> dependencies = new LinkedHashMap<>();
+            for (PuffinBasicSourceFile importFile : sourceFile.getImportFiles()) {
+                dependencies.put(importFile.getRelativePath(), hashImportFile(importFile.getRelativePath()));
+            }
+            Files.createDirectories(dir);
+            // Write and then move, so that a concurrent run never reads a partial entry.
+            tmp = Files.createTempFile(dir, key, ".tmp");
+            PuffinBasicCompiledProgram.write(ir, dependencies, tmp.toString());
+            Files.move(tmp, getEntry(key), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | PuffinBasicRuntimeError e) {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private boolean isUpToDate(Map<String, String> dependencies) {
+        for (Map.Entry<String, String> dependency : dependencies.entrySet()) {
+            if (!dependency.getValue().equals(hashImportFile(dependency.getKey()))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String hashImportFile(String relativePath) {
+        String filename = importPath.find(relativePath);
+        try {
+            return sha256(Files.readAllBytes(Paths.get(filename)));
+        } catch (IOException e) {
+            throw new PuffinBasicRuntimeError(
+                    IO_ERROR,
+                    "Failed to read import file: " + filename + ", error: " + e.getMessage()
+            );
+        }
+    }
+
+    private Path getEntry(String key) {
+        return dir.resolve(key + PuffinBasicCompiledProgram.EXTENSION);
+    }
+
+    /**
+     * @return a hash of the jar the interpreter was loaded from, or of its class
+     * files when it's run from a directory, or null if neither can be read.
+     */
+    private static String getBuildHash() {
+        CodeSource codeSource = PuffinBasicInterpreter.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) {
+            return null;
+        }
+        try {
+            Path location = Paths.get(codeSource.getLocation().toURI());
+            MessageDigest digest = newSha256();
+            if (Files.isDirectory(location)) {
+                List<Path> classFiles;
+                try (Stream<Path> files = Files.walk(location)) {
+                    classFiles = files
+                            .filter(file -> file.toString().endsWith(".class"))
+                            .sorted()
+                            .collect(Collectors.toList());
+                }
+                for (Path classFile : classFiles) {
+                    digest.update(location.relativize(classFile).toString().getBytes(StandardCharsets.UTF_8));
+                    digest.update(Files.readAllBytes(classFile));
+                }
+            } else {
+                digest.update(Files.readAllBytes(location));
+            }
+            return toHex(digest.digest());
+        } catch (IOException | URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String sha256(byte[] data) {
+        return toHex(newSha256().digest(data));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -17,8 +17,10 @@ import org.puffinbasic.antlr4.PuffinBasicParser;
 import org.puffinbasic.antlr4.PuffinBasicParser.VariableContext;
 import org.puffinbasic.domain.STObjects;
 import org.puffinbasic.domain.STObjects.ArrayType;
+import org.puffinbasic.domain.STObjects.DequeType;
 import org.puffinbasic.domain.STObjects.DictType;
 import org.puffinbasic.domain.STObjects.ListType;
+import org.puffinbasic.domain.STObjects.PriorityQueueType;
 import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
 import org.puffinbasic.domain.STObjects.PuffinBasicType;
 import org.puffinbasic.domain.STObjects.STEntry;
@@ -232,24 +234,9 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                     } else if (variable.isArray()) {
                         if (!ctx.expr().isEmpty()) {
                             // Array
-                            ir.addInstruction(
-                                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                                    OpCode.RESET_ARRAY_IDX,
-                                    varId, NULL_ID, NULL_ID);
-
-                            for (PuffinBasicParser.ExprContext exprCtx : ctx.expr()) {
-                                Instruction exprInstr = lookupInstruction(exprCtx);
-                                ir.addInstruction(
-                                        sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                                        OpCode.SET_ARRAY_IDX,
-                                        varId, exprInstr.result, NULL_ID);
-                            }
-                            int refId = ir.getSymbolTable().addArrayReference(varEntry);
-                            ir.addInstruction(
-                                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                                    OpCode.ARRAYREF,
-                                    varId, refId, refId);
-                            idHolder.set(refId);
+                            Instruction refInstr = addArrayReference(
+                                    ctx, varId, varEntry, ctx.expr());
+                            idHolder.set(refInstr.result);
                         }
                     } else if (variable.isUDF()) {
                         // UDF
@@ -355,27 +342,61 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                 ir.getSymbolTable().addRef(leafType));
 
         if (!ctx.expr().isEmpty()) {
-            ir.addInstruction(
-                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                    OpCode.RESET_ARRAY_IDX,
-                    result.result, NULL_ID, NULL_ID);
+            result = addArrayReference(
+                    ctx, result.result,
+                    (STObjects.STLValue) ir.getSymbolTable().get(result.result),
+                    ctx.expr());
+        }
 
-            for (PuffinBasicParser.ExprContext exprCtx : ctx.expr()) {
-                Instruction exprInstr = lookupInstruction(exprCtx);
-                ir.addInstruction(
-                        sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                        OpCode.SET_ARRAY_IDX,
-                        result.result, exprInstr.result, NULL_ID);
-            }
-            int refId = ir.getSymbolTable().addArrayReference(
-                    (STObjects.STLValue) ir.getSymbolTable().get(result.result));
-            result = ir.addInstruction(
+        return result;
+    }
+
+    /**
+     * 1D and 2D accesses use the array's precomputed strides directly,
+     * a 2D access via a separate row offset which can be hoisted out of
+     * an inner loop. Higher dimensions set one index at a time.
+     */
+    private Instruction addArrayReference(
+            ParserRuleContext ctx,
+            int arrayId,
+            STObjects.STLValue arrayEntry,
+            List<PuffinBasicParser.ExprContext> exprs)
+    {
+        int refId = ir.getSymbolTable().addArrayReference(arrayEntry);
+        if (exprs.size() == 1) {
+            return ir.addInstruction(
                     sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                    OpCode.ARRAYREF,
-                    result.result, refId, refId);
+                    OpCode.ARRAYREF1D,
+                    arrayId, lookupInstruction(exprs.get(0)).result, refId);
+        } else if (exprs.size() == 2) {
+            Instruction rowInstr = ir.addInstruction(
+                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                    OpCode.ARRAYROW,
+                    arrayId, lookupInstruction(exprs.get(0)).result,
+                    ir.getSymbolTable().addTmp(INT32, e -> {}));
+            Instruction refInstr = ir.addInstruction(
+                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                    OpCode.ARRAYREF2D,
+                    arrayId, rowInstr.result, refId);
+            refInstr.patchOp3(lookupInstruction(exprs.get(1)).result);
+            return refInstr;
         }
 
-        return result;
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.RESET_ARRAY_IDX,
+                arrayId, NULL_ID, NULL_ID);
+        for (PuffinBasicParser.ExprContext exprCtx : exprs) {
+            Instruction exprInstr = lookupInstruction(exprCtx);
+            ir.addInstruction(
+                    sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                    OpCode.SET_ARRAY_IDX,
+                    arrayId, exprInstr.result, NULL_ID);
+        }
+        return ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.ARRAYREF,
+                arrayId, refId, refId);
     }
 
     //
@@ -1577,7 +1598,7 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
         nodeToInstruction.put(ctx, ir.addInstruction(
                 sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
                 OpCode.MEMBER_FUNC_CALL, varInstruction.result,
-                ir.getSymbolTable().addTmp(STRING, e -> e.getValue().setString(funcName)),
+                ir.getSymbolTable().addMemberFuncCall(objectType, funcName, paramTypes.size()),
                 ir.getSymbolTable().addTmp(returnType, e -> {})
         ));
     }
@@ -1699,6 +1720,38 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
         );
     }
 
+    @Override
+    public void exitDequestmt(PuffinBasicParser.DequestmtContext ctx) {
+        PuffinBasicAtomTypeId atomType = PuffinBasicAtomTypeId.lookup(ctx.typesuffix.getText());
+        PuffinBasicType itemType = new ScalarType(atomType);
+        String instanceName = ctx.dequename.VARNAME().getText();
+
+        VariableName variableName = new VariableName(instanceName, null, COMPOSITE);
+        DequeType dequeType = new DequeType(itemType);
+        int id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, dequeType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
+    @Override
+    public void exitPqstmt(PuffinBasicParser.PqstmtContext ctx) {
+        PuffinBasicAtomTypeId atomType = PuffinBasicAtomTypeId.lookup(ctx.typesuffix.getText());
+        PuffinBasicType itemType = new ScalarType(atomType);
+        String instanceName = ctx.pqname.VARNAME().getText();
+
+        VariableName variableName = new VariableName(instanceName, null, COMPOSITE);
+        PriorityQueueType pqType = new PriorityQueueType(itemType);
+        int id = ir.getSymbolTable().addCompositeVariable(
+                variableName, new STVariable(null, new Variable(variableName, pqType)));
+        ir.addInstruction(
+                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
+                OpCode.CREATE_INSTANCE, id, NULL_ID, id
+        );
+    }
+
     @Override
     public void exitDictstmt(PuffinBasicParser.DictstmtContext ctx) {
         PuffinBasicAtomTypeId keyAtomType = PuffinBasicAtomTypeId.lookup(ctx.dictk1.getText());
@@ -1718,7 +1771,7 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
         String instanceName = ctx.dictname.VARNAME().getText();
 
         VariableName variableName = new VariableName(instanceName, null, COMPOSITE);
-        DictType dictType = new DictType(keyType, valueType);
+        DictType dictType = new DictType(keyType, valueType, ctx.SORTEDDICT() != null);
         int id = ir.getSymbolTable().addCompositeVariable(
                 variableName, new STVariable(null, new Variable(variableName, dictType)));
         ir.addInstruction(
@@ -1783,7 +1836,15 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                 // set
                 VariableName name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
                 struct.declareField(name, new SetType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.set2.getText()))));
-            } else if (compCtx.DICT() != null) {
+            } else if (compCtx.DEQUE() != null) {
+                // deque
+                VariableName name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, new DequeType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.deque1.getText()))));
+            } else if (compCtx.PQ() != null) {
+                // priority queue
+                VariableName name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                struct.declareField(name, new PriorityQueueType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.pq1.getText()))));
+            } else if (compCtx.dictk1 != null) {
                 // dict
                 VariableName name = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
                 ScalarType keyType = new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.dictk1.getText()));
@@ -1795,7 +1856,7 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                     // scalar data type
                     valueType = new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.dictv2.getText()));
                 }
-                struct.declareField(name, new DictType(keyType, valueType));
+                struct.declareField(name, new DictType(keyType, valueType, compCtx.SORTEDDICT() != null));
             } else if (compCtx.struct1 != null) {
                 // struct
                 String memberType = compCtx.struct1.VARNAME().getText();
@@ -2179,7 +2240,15 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                 // set
                 paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
                 paramType = new SetType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.set2.getText())));
-            } else if (compCtx.DICT() != null) {
+            } else if (compCtx.DEQUE() != null) {
+                // deque
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = new DequeType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.deque1.getText())));
+            } else if (compCtx.PQ() != null) {
+                // priority queue
+                paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
+                paramType = new PriorityQueueType(new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.pq1.getText())));
+            } else if (compCtx.dictk1 != null) {
                 // dict
                 paramName = new VariableName(compCtx.elem.VARNAME().getText(), null, COMPOSITE);
                 ScalarType keyType = new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.dictk1.getText()));
@@ -2191,7 +2260,7 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                     // scalar data type
                     valueType = new ScalarType(PuffinBasicAtomTypeId.lookup(compCtx.dictv2.getText()));
                 }
-                paramType = new DictType(keyType, valueType);
+                paramType = new DictType(keyType, valueType, compCtx.SORTEDDICT() != null);
             } else if (compCtx.struct1 != null) {
                 // struct
                 String memberType = compCtx.struct1.VARNAME().getText();
@@ -2355,63 +2424,6 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
         whileLoopState.gotoAfterWend.patchOp2(labelAfterWend.op1);
     }
 
-    @NotNull
-    private PuffinBasicIR.OpCode getLTOpCode(PuffinBasicAtomTypeId dt1, PuffinBasicAtomTypeId dt2) {
-        OpCode opCode;
-        if (dt1 == STRING && dt2 == STRING) {
-            opCode = OpCode.LTSTR;
-        } else {
-            if (dt1 == DOUBLE || dt2 == DOUBLE) {
-                opCode = OpCode.LTF64;
-            } else if (dt1 == INT64 || dt2 == INT64) {
-                opCode = OpCode.LTI64;
-            } else if (dt1 == FLOAT || dt2 == FLOAT) {
-                opCode = OpCode.LTF32;
-            } else {
-                opCode = OpCode.LTI32;
-            }
-        }
-        return opCode;
-    }
-
-    @NotNull
-    private PuffinBasicIR.OpCode getGTOpCode(PuffinBasicAtomTypeId dt1, PuffinBasicAtomTypeId dt2) {
-        OpCode opCode;
-        if (dt1 == STRING && dt2 == STRING) {
-            opCode = OpCode.GTSTR;
-        } else {
-            if (dt1 == DOUBLE || dt2 == DOUBLE) {
-                opCode = OpCode.GTF64;
-            } else if (dt1 == INT64 || dt2 == INT64) {
-                opCode = OpCode.GTI64;
-            } else if (dt1 == FLOAT || dt2 == FLOAT) {
-                opCode = OpCode.GTF32;
-            } else {
-                opCode = OpCode.GTI32;
-            }
-        }
-        return opCode;
-    }
-
-    @NotNull
-    private PuffinBasicIR.OpCode getGEOpCode(PuffinBasicAtomTypeId dt1, PuffinBasicAtomTypeId dt2) {
-        OpCode opCode;
-        if (dt1 == STRING && dt2 == STRING) {
-            opCode = OpCode.GESTR;
-        } else {
-            if (dt1 == DOUBLE || dt2 == DOUBLE) {
-                opCode = OpCode.GEF64;
-            } else if (dt1 == INT64 || dt2 == INT64) {
-                opCode = OpCode.GEI64;
-            } else if (dt1 == FLOAT || dt2 == FLOAT) {
-                opCode = OpCode.GEF32;
-            } else {
-                opCode = OpCode.GEI32;
-            }
-        }
-        return opCode;
-    }
-
     @Override
     public void exitForstmt(PuffinBasicParser.ForstmtContext ctx) {
         Instruction varInstr = lookupInstruction(ctx.variable());
@@ -2428,6 +2440,9 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
 
         // stepCopy = step or 1 (default)
         Instruction stepCopy;
+        // Direction of a constant step is resolved here, otherwise at runtime.
+        OpCode initOpCode;
+        OpCode nextOpCode;
         if (ctx.expr(2) != null) {
             Instruction step = lookupInstruction(ctx.expr(2));
             Types.assertNumeric(ir.getSymbolTable().get(step.result).getType().getAtomTypeId(),
@@ -2437,132 +2452,84 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
                     sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
                     OpCode.COPY, step.result, tmpStep, tmpStep
             );
+            if (ctx.expr(2) instanceof PuffinBasicParser.ExprNumberContext) {
+                if (isNegativeNumber((PuffinBasicParser.ExprNumberContext) ctx.expr(2))) {
+                    initOpCode = OpCode.FOR_INIT_DOWN;
+                    nextOpCode = OpCode.FOR_NEXT_DOWN;
+                } else {
+                    initOpCode = OpCode.FOR_INIT_UP;
+                    nextOpCode = OpCode.FOR_NEXT_UP;
+                }
+            } else {
+                initOpCode = OpCode.FOR_INIT;
+                nextOpCode = OpCode.FOR_NEXT;
+            }
         } else {
             int tmpStep = ir.getSymbolTable().addTmp(INT32, e -> e.getValue().setInt32(1));
             stepCopy = ir.addInstruction(
                     sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
                     OpCode.VALUE, tmpStep, NULL_ID, tmpStep
             );
+            initOpCode = OpCode.FOR_INIT_UP;
+            nextOpCode = OpCode.FOR_NEXT_UP;
         }
         // var=init
         ir.addInstruction(
                 sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
                 OpCode.ASSIGN, init.result, varInstr.result, varInstr.result
         );
-        // endCopy=end
-        int tmpEnd = ir.getSymbolTable().addTmpCompatibleWith(end.result);
-        Instruction endCopy = ir.addInstruction(
+        // endCopy=end, in the type the variable is compared with
+        PuffinBasicAtomTypeId varType = stVariable.getType().getAtomTypeId();
+        PuffinBasicAtomTypeId endType = Types.upcast(
+                varType,
+                ir.getSymbolTable().get(end.result).getType().getAtomTypeId(),
+                () -> getCtxString(ctx));
+        int tmpEnd = ir.getSymbolTable().addTmp(endType, e -> {});
+        ir.addInstruction(
                 sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
                 OpCode.ASSIGN, end.result, tmpEnd, tmpEnd
         );
 
-        // GOTO LABEL CHECK
-        Instruction gotoLabelCheck = ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.GOTO_LABEL, ir.getSymbolTable().addGotoTarget(), NULL_ID, NULL_ID
-        );
-
-        // APPLY STEP
-        // JUMP here from NEXT
-        forLoopState.labelApplyStep = ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.LABEL, ir.getSymbolTable().addLabel(), NULL_ID, NULL_ID
-        );
-
-        // Add step
-        int tmpAdd = ir.getSymbolTable().addTmpCompatibleWith(varInstr.result);
-        OpCode addOpCode;
-        switch (stVariable.getType().getAtomTypeId()) {
-            case INT32:
-                addOpCode = OpCode.ADDI32;
-                break;
-            case INT64:
-                addOpCode = OpCode.ADDI64;
-                break;
-            case FLOAT:
-                addOpCode = OpCode.ADDF32;
-                break;
-            case DOUBLE:
-                addOpCode = OpCode.ADDF64;
-                break;
-            default:
-                throw new PuffinBasicInternalError("Bad type: " + stVariable.getType().getAtomTypeId());
+        // Int32 variable and end: single increment-compare-branch
+        if (varType == INT32 && endType == INT32) {
+            if (nextOpCode == OpCode.FOR_NEXT_UP) {
+                nextOpCode = OpCode.FOR_NEXT_UP_I32;
+            } else if (nextOpCode == OpCode.FOR_NEXT_DOWN) {
+                nextOpCode = OpCode.FOR_NEXT_DOWN_I32;
+            }
         }
+
+        // If (step >= 0 and var > end) or (step < 0 and var < end) GOTO after "next"
+        // set label on exitNext().
+        forLoopState.labelAfterNext = ir.getSymbolTable().addLabel();
         ir.addInstruction(
                 sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                addOpCode, varInstr.result, stepCopy.result, tmpAdd
-        );
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.ASSIGN, tmpAdd, varInstr.result, varInstr.result
-        );
+                initOpCode, varInstr.result, tmpEnd, forLoopState.labelAfterNext
+        ).patchOp3(stepCopy.result);
 
-        // CHECK
-        // If (step >= 0 and int > end) or (step < 0 and int < end) GOTO after "next"
-        // step >= 0
-        Instruction labelCheck = ir.addInstruction(
+        // JUMP here from NEXT
+        forLoopState.labelBody = ir.addInstruction(
                 sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
                 OpCode.LABEL, ir.getSymbolTable().addLabel(), NULL_ID, NULL_ID
         );
-        int zero = ir.getSymbolTable().addTmp(INT32, e -> e.getValue().setInt32(0));
-        int t1 = ir.getSymbolTable().addTmp(INT32, e -> {});
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                getGEOpCode(ir.getSymbolTable().get(stepCopy.result).getType().getAtomTypeId(), INT32),
-                stepCopy.result, zero, t1
-        );
-        // Patch GOTO LABEL Check
-        gotoLabelCheck.patchOp1(labelCheck.op1);
-        // int > end
-        int t2 = ir.getSymbolTable().addTmp(INT32, e -> {});
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                getGTOpCode(ir.getSymbolTable().get(varInstr.result).getType().getAtomTypeId(),
-                        ir.getSymbolTable().get(endCopy.result).getType().getAtomTypeId()),
-                varInstr.result, endCopy.result, t2
-        );
-        // (step >= 0 and int > end)
-        int t3 = ir.getSymbolTable().addTmp(INT32, e -> {});
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.AND, t1, t2, t3
-        );
-        // step < 0
-        int t4 = ir.getSymbolTable().addTmp(INT32, e -> {});
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                getLTOpCode(ir.getSymbolTable().get(stepCopy.result).getType().getAtomTypeId(), INT32),
-                stepCopy.result, zero, t4
-        );
-        // int < end
-        int t5 = ir.getSymbolTable().addTmp(INT32, e -> {});
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                getLTOpCode(ir.getSymbolTable().get(varInstr.result).getType().getAtomTypeId(),
-                        ir.getSymbolTable().get(endCopy.result).getType().getAtomTypeId()),
-                varInstr.result, endCopy.result, t5
-        );
-        // (step < 0 and int < end)
-        int t6 = ir.getSymbolTable().addTmp(INT32, e -> {});
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.AND, t4, t5, t6
-        );
-        int t7 = ir.getSymbolTable().addTmp(INT32, e -> {});
-        ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.OR, t3, t6, t7
-        );
-        // if (true) GOTO after NEXT
-        // set linenumber on exitNext().
-        forLoopState.gotoAfterNext = ir.addInstruction(
-                sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                OpCode.GOTO_LABEL_IF, t7, ir.getSymbolTable().addLabel(), NULL_ID
-        );
+        forLoopState.nextOpCode = nextOpCode;
+        forLoopState.variableId = varInstr.result;
+        forLoopState.endId = tmpEnd;
+        forLoopState.stepId = stepCopy.result;
 
         forLoopStateList.add(forLoopState);
     }
 
+    private boolean isNegativeNumber(PuffinBasicParser.ExprNumberContext ctx) {
+        if (ctx.MINUS() == null) {
+            return false;
+        }
+        // -0 is not negative for ints, but -0.0 compares less than 0.
+        STEntry number = ir.getSymbolTable().get(lookupInstruction(ctx.number()).result);
+        PuffinBasicAtomTypeId type = number.getType().getAtomTypeId();
+        return type == FLOAT || type == DOUBLE || number.getValue().getInt64() != 0;
+    }
+
     @Override
     public void exitNextstmt(PuffinBasicParser.NextstmtContext ctx) {
         List<ForLoopState> states = new ArrayList<>(1);
@@ -2619,18 +2586,17 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
         }
 
         for (ForLoopState state : states) {
-            // GOTO APPLY STEP
+            // var += step, if (var within end) GOTO body
             ir.addInstruction(
                     sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                    OpCode.GOTO_LABEL, state.labelApplyStep.op1, NULL_ID, NULL_ID
-            );
+                    state.nextOpCode, state.variableId, state.endId, state.labelBody.op1
+            ).patchOp3(state.stepId);
 
             // LABEL afterNext
-            Instruction labelAfterNext = ir.addInstruction(
+            ir.addInstruction(
                     sourceFile, currentLineNumber, ctx.start.getStartIndex(), ctx.stop.getStopIndex(),
-                    OpCode.LABEL, ir.getSymbolTable().addLabel(), NULL_ID, NULL_ID
+                    OpCode.LABEL, state.labelAfterNext, NULL_ID, NULL_ID
             );
-            state.gotoAfterNext.patchOp2(labelAfterNext.op1);
         }
     }
 
@@ -4205,8 +4171,12 @@ public class PuffinBasicIRListener extends PuffinBasicBaseListener {
 
     private static final class ForLoopState {
         public Variable variable;
-        public Instruction labelApplyStep;
-        public Instruction gotoAfterNext;
+        public int variableId;
+        public int endId;
+        public int stepId;
+        public OpCode nextOpCode;
+        public Instruction labelBody;
+        public int labelAfterNext;
     }
 
     private static final class IfState {
@@ -1,32 +1,57 @@
 package org.puffinbasic.parser;
 
 import org.antlr.v4.runtime.CharStream;
-import org.antlr.v4.runtime.CodePointCharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.misc.Interval;
+import org.puffinbasic.antlr4.PuffinBasicParser;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Objects;
 
-public class PuffinBasicSourceFile {
+/**
+ * A source file and its imports. Only the source text is written to a compiled
+ * program, so that the instructions can still refer to it for error messages.
+ */
+public class PuffinBasicSourceFile implements Serializable {
+
+    private static final long serialVersionUID = 1L;
 
     private final String relativePath;
     private final String libtag;
-    private final String sourceCode;
-    private final CharStream sourceCodeStream;
+    private transient List<PuffinBasicParser.LineContext> lines;
+    private transient CharStream sourceCodeStream;
     private final LinkedHashSet<PuffinBasicSourceFile> importFiles;
 
     public PuffinBasicSourceFile(
             String relativePath,
             String libtag,
-            String sourceCode,
-            CodePointCharStream sourceCodeStream,
+            List<PuffinBasicParser.LineContext> lines,
+            CharStream sourceCodeStream,
             LinkedHashSet<PuffinBasicSourceFile> importFiles) {
         this.relativePath = relativePath;
         this.libtag = libtag;
-        this.sourceCode = sourceCode;
+        this.lines = lines;
         this.sourceCodeStream = sourceCodeStream;
         this.importFiles = new LinkedHashSet<>(importFiles);
     }
 
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeObject(sourceCodeStream.getText(Interval.of(0, sourceCodeStream.size() - 1)));
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        this.lines = Collections.emptyList();
+        this.sourceCodeStream = CharStreams.fromString((String) in.readObject());
+    }
+
     public LinkedHashSet<PuffinBasicSourceFile> getImportFiles() {
         return importFiles;
     }
@@ -39,10 +64,26 @@ public class PuffinBasicSourceFile {
         return libtag;
     }
 
+    /**
+     * Parse trees of the lines, ordered by line number.
+     * Empty for a source file loaded from a compiled program.
+     */
+    public List<PuffinBasicParser.LineContext> getLines() {
+        return lines;
+    }
+
     public String getSourceCode() {
-        return sourceCode;
+        StringBuilder sb = new StringBuilder();
+        for (PuffinBasicParser.LineContext line : lines) {
+            sb.append(LinenumberListener.getText(sourceCodeStream, line));
+        }
+        return sb.toString();
     }
 
+    /**
+     * The source code as it was loaded, the lines and instructions
+     * refer to it by input index.
+     */
     public CharStream getSourceCodeStream() {
         return sourceCodeStream;
     }
@@ -0,0 +1,71 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.STRING;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.SCALAR;
+
+/**
+ * Peephole pass that turns a concatenation assigned back to its left
+ * operand into an in-place append:
+ * <pre>
+ *   t = x CONCAT e; ASSIGN t, x   =>   APPEND x, e
+ * </pre>
+ * i.e. X$ = X$ + expr. The variable keeps the appended value in a
+ * StringBuilder, so building a string in a loop is linear rather than
+ * quadratic, as long as it isn't read between the appends.
+ */
+final class StringAppendFusion implements IRPass {
+
+    @Override
+    public String getName() {
+        return "append";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        IRDefUse defUse = new IRDefUse(symbolTable, instructions);
+        Int2ObjectMap<STEntry> entries = defUse.getEntries();
+        List<Instruction> fused = new ArrayList<>(instructions.size());
+        int i = 0;
+        while (i < instructions.size()) {
+            Instruction concat = instructions.get(i);
+            if (concat.opCode == OpCode.CONCAT
+                    && i + 1 < instructions.size()
+                    && isAppend(concat, instructions.get(i + 1))
+                    && defUse.isSingleDefTemp(concat.result)
+                    && defUse.getNumReads(concat.result) == 1
+                    && isStringVariable(entries.get(concat.op1)))
+            {
+                fused.add(new Instruction(concat.inputRef, OpCode.APPEND, concat.op1, concat.op2, concat.op1));
+                i += 2;
+            } else {
+                fused.add(concat);
+                ++i;
+            }
+        }
+        instructions.clear();
+        instructions.addAll(fused);
+    }
+
+    private static boolean isAppend(Instruction concat, Instruction assign) {
+        return assign.opCode == OpCode.ASSIGN
+                && assign.op1 == concat.result
+                && assign.op2 == concat.op1
+                && assign.result == concat.op1;
+    }
+
+    private static boolean isStringVariable(STEntry entry) {
+        return entry != null
+                && entry.isLValue()
+                && entry.getType().getTypeId() == SCALAR
+                && entry.getType().getAtomTypeId() == STRING;
+    }
+}
@@ -0,0 +1,177 @@
+package org.puffinbasic.parser;
+
+import it.unimi.dsi.fastutil.ints.Int2IntMap;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2ObjectMap;
+import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STRegisterValue;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.List;
+
+import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+
+/**
+ * Lets temporaries with disjoint live ranges share one symbol table entry,
+ * and removes the entries which are no longer used.
+ * Only temporaries which are written once and read in the same basic block
+ * after the write are considered, i.e. most expression results. Such a
+ * temporary is live from its write to its last read, and dead everywhere
+ * else, so the live ranges can be allocated with a single linear scan.
+ * Temporaries share an entry only if they have the same type and storage,
+ * and a range must end before the next one starts, so that an instruction
+ * never reads and writes the same entry.
+ */
+final class TempSlotReuse implements IRPass {
+
+    @Override
+    public String getName() {
+        return "slots";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        IRDefUse defUse = new IRDefUse(symbolTable, instructions);
+        Int2ObjectMap<STEntry> entries = defUse.getEntries();
+        int[] blocks = computeBlocks(instructions);
+        Int2IntMap lastRead = computeLastReads(defUse, instructions, blocks);
+
+        // Free slots by kind, and the live slots ordered by the end of their ranges.
+        Object2ObjectMap<String, IntList> freeSlots = new Object2ObjectOpenHashMap<>();
+        IntList liveSlots = new IntArrayList();
+        IntList liveEnds = new IntArrayList();
+        Int2IntMap renames = new Int2IntOpenHashMap();
+        for (int i = 0; i < instructions.size(); i++) {
+            for (int j = liveSlots.size() - 1; j >= 0; j--) {
+                if (liveEnds.getInt(j) < i) {
+                    int slot = liveSlots.getInt(j);
+                    freeSlots.computeIfAbsent(getKind(entries.get(slot)), k -> new IntArrayList()).add(slot);
+                    liveSlots.removeInt(j);
+                    liveEnds.removeInt(j);
+                }
+            }
+
+            int tmp = getDef(instructions.get(i));
+            if (!lastRead.containsKey(tmp)) {
+                continue;
+            }
+            IntList free = freeSlots.get(getKind(entries.get(tmp)));
+            int slot = tmp;
+            if (free != null && !free.isEmpty()) {
+                slot = free.removeInt(free.size() - 1);
+                renames.put(tmp, slot);
+            }
+            liveSlots.add(slot);
+            liveEnds.add(lastRead.get(tmp));
+        }
+
+        if (renames.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < instructions.size(); i++) {
+            instructions.set(i, rename(instructions.get(i), renames));
+        }
+        symbolTable.removeTmps(renames.keySet());
+    }
+
+    /**
+     * Last read of each temporary whose reads all follow its
+     * only write in the same block.
+     */
+    private static Int2IntMap computeLastReads(
+            IRDefUse defUse, List<Instruction> instructions, int[] blocks)
+    {
+        Int2IntMap lastRead = new Int2IntOpenHashMap();
+        Int2IntMap defInstrNums = new Int2IntOpenHashMap();
+        for (int i = 0; i < instructions.size(); i++) {
+            int tmp = getDef(instructions.get(i));
+            if (tmp != NULL_ID && defUse.isSingleDefTemp(tmp)) {
+                defInstrNums.put(tmp, i);
+                lastRead.put(tmp, i);
+            }
+        }
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            int def = getDef(instruction);
+            checkRead(lastRead, defInstrNums, blocks, instruction.op1, def, i);
+            checkRead(lastRead, defInstrNums, blocks, instruction.op2, def, i);
+            checkRead(lastRead, defInstrNums, blocks, instruction.getOp3(), def, i);
+        }
+        return lastRead;
+    }
+
+    private static void checkRead(
+            Int2IntMap lastRead, Int2IntMap defInstrNums, int[] blocks, int id, int def, int instrNum)
+    {
+        if (id == NULL_ID || id == def || !defInstrNums.containsKey(id)) {
+            return;
+        }
+        int defInstrNum = defInstrNums.get(id);
+        if (defInstrNum < instrNum && blocks[defInstrNum] == blocks[instrNum]) {
+            lastRead.put(id, instrNum);
+        } else {
+            lastRead.remove(id);
+            defInstrNums.remove(id);
+        }
+    }
+
+    private static int getDef(Instruction instruction) {
+        OpCode opCode = instruction.opCode;
+        if (IRDefUse.PURE.contains(opCode)) {
+            return instruction.result;
+        } else if (opCode == OpCode.ASSIGN || opCode == OpCode.COPY || opCode == OpCode.PARAM_COPY) {
+            return instruction.op2;
+        } else {
+            // VALUEs are set while the IR is generated, i.e. they are live everywhere.
+            return NULL_ID;
+        }
+    }
+
+    private static String getKind(STEntry entry) {
+        return entry.getType().getAtomTypeId()
+                + (entry.getValue() instanceof STRegisterValue ? "/register" : "/value");
+    }
+
+    private static Instruction rename(Instruction instruction, Int2IntMap renames) {
+        int op1 = renames.getOrDefault(instruction.op1, instruction.op1);
+        int op2 = renames.getOrDefault(instruction.op2, instruction.op2);
+        int op3 = renames.getOrDefault(instruction.getOp3(), instruction.getOp3());
+        int result = renames.getOrDefault(instruction.result, instruction.result);
+        if (result != instruction.result) {
+            Instruction renamed = new Instruction(instruction.inputRef, instruction.opCode, op1, op2, result);
+            renamed.patchOp3(op3);
+            return renamed;
+        }
+        instruction.patchOp1(op1);
+        instruction.patchOp2(op2);
+        instruction.patchOp3(op3);
+        return instruction;
+    }
+
+    // A block starts at a label or a line, and ends after a branch.
+    private static int[] computeBlocks(List<Instruction> instructions) {
+        int[] blocks = new int[instructions.size()];
+        int block = 0;
+        Instruction prev = null;
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.opCode == OpCode.LABEL
+                    || (prev != null
+                        && (prev.opCode.branch
+                            || prev.inputRef.sourceFile != instruction.inputRef.sourceFile
+                            || prev.inputRef.lineNumber != instruction.inputRef.lineNumber)))
+            {
+                ++block;
+            }
+            blocks[i] = block;
+            prev = instruction;
+        }
+        return blocks;
+    }
+}
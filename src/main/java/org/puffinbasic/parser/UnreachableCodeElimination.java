@@ -0,0 +1,60 @@
+package org.puffinbasic.parser;
+
+import org.puffinbasic.domain.PuffinBasicSymbolTable;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+import org.puffinbasic.parser.PuffinBasicIR.OpCode;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the instructions which follow an unconditional jump or END
+ * on the same line, e.g. the jump over the ELSE part after THEN GOTO.
+ * Control can only enter a line at its start or at a LABEL, so removal
+ * stops at either of them. DATA is kept, because READ collects it
+ * regardless of where it appears.
+ */
+final class UnreachableCodeElimination implements IRPass {
+
+    @Override
+    public String getName() {
+        return "unreachable";
+    }
+
+    @Override
+    public void apply(PuffinBasicSymbolTable symbolTable, List<Instruction> instructions) {
+        List<Instruction> reachable = new ArrayList<>(instructions.size());
+        Instruction jump = null;
+        for (Instruction instruction : instructions) {
+            if (jump != null) {
+                if (instruction.opCode == OpCode.LABEL
+                        || jump.inputRef.sourceFile != instruction.inputRef.sourceFile
+                        || jump.inputRef.lineNumber != instruction.inputRef.lineNumber)
+                {
+                    jump = null;
+                } else if (instruction.opCode != OpCode.DATA) {
+                    continue;
+                }
+            }
+            reachable.add(instruction);
+            if (isUnconditionalJump(instruction.opCode)) {
+                jump = instruction;
+            }
+        }
+        instructions.clear();
+        instructions.addAll(reachable);
+    }
+
+    private static boolean isUnconditionalJump(OpCode opCode) {
+        switch (opCode) {
+            case GOTO_LINENUM:
+            case GOTO_LABEL:
+            case GOTO_CALLER:
+            case RETURN:
+            case END:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
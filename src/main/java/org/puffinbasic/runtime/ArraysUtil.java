@@ -38,25 +38,25 @@ final class ArraysUtil {
         }
     }
 
-    static void dim(PuffinBasicSymbolTable symbolTable, List<Instruction> params, Instruction instruction) {
+    static void dim(List<Instruction> params, Instruction instruction) {
         IntList dims = new IntArrayList(params.size());
         for (Instruction param : params) {
-            dims.add(symbolTable.get(param.op1).getValue().getInt32());
+            dims.add(param.getOp1Entry().getValue().getInt32());
         }
-        symbolTable.get(instruction.op1).getValue().setArrayDimensions(dims);
+        instruction.getOp1Entry().getValue().setArrayDimensions(dims);
     }
 
-    static void resetIndex(ArrayState state, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    static void resetIndex(ArrayState state, Instruction instruction) {
         state.reset();
-        symbolTable.get(instruction.op1).getValue().resetArrayIndex();
+        instruction.getOp1Entry().getValue().resetArrayIndex();
     }
 
-    static void allocArray(PuffinBasicSymbolTable symbolTable, List<Instruction> params, Instruction instruction) {
+    static void allocArray(List<Instruction> params, Instruction instruction) {
         IntList dims = new IntArrayList(params.size());
         for (Instruction param : params) {
-            dims.add(symbolTable.get(param.op1).getValue().getInt32());
+            dims.add(param.getOp1Entry().getValue().getInt32());
         }
-        STEntry arrayEntry = symbolTable.get(instruction.result);
+        STEntry arrayEntry = instruction.getResultEntry();
         ArrayType arrayType = (ArrayType) arrayEntry.getType();
         arrayType.setArrayDimensions(dims);
         arrayEntry.getValue().setArrayDimensions(dims);
@@ -65,28 +65,47 @@ final class ArraysUtil {
     static void reallocArray(PuffinBasicSymbolTable symbolTable, List<Instruction> params, Instruction instruction) {
         IntList dims = new IntArrayList(params.size());
         for (Instruction param : params) {
-            dims.add(symbolTable.get(param.op1).getValue().getInt32());
+            dims.add(param.getOp1Entry().getValue().getInt32());
         }
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+        STEntry arrayEntry = instruction.getOp1Entry();
         ArrayType arrayType = (ArrayType) arrayEntry.getType();
         arrayType.setArrayDimensions(dims);
         // Create new value
         ((AbstractSTEntry) arrayEntry).createAndSetInstance(symbolTable);
     }
 
-    static void setIndex(ArrayState state, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        int index = symbolTable.get(instruction.op2).getValue().getInt32();
-        symbolTable.get(instruction.op1).getValue().setArrayIndex(state.getAndIncrement(), index);
+    static void setIndex(ArrayState state, Instruction instruction) {
+        int index = instruction.getOp2Entry().getValue().getInt32();
+        instruction.getOp1Entry().getValue().setArrayIndex(state.getAndIncrement(), index);
     }
 
-    static void arrayref(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        int index = symbolTable.get(instruction.op1).getValue().getArrayIndex1D();
-        symbolTable.get(instruction.result).getValue().setArrayReferenceIndex1D(index);
+    static void arrayref(Instruction instruction) {
+        int index = instruction.getOp1Entry().getValue().getArrayIndex1D();
+        instruction.getResultEntry().getValue().setArrayReferenceIndex1D(index);
     }
 
-    static void arrayfill(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STValue array = symbolTable.get(instruction.op1).getValue();
-        STEntry fillEntry = symbolTable.get(instruction.op2);
+    static void arrayref1d(Instruction instruction) {
+        int index = instruction.getOp2Entry().getValue().getInt32();
+        int index1d = instruction.getOp1Entry().getValue().getArrayIndex1D(index);
+        instruction.getResultEntry().getValue().setArrayReferenceIndex1D(index1d);
+    }
+
+    static void arrayRow(Instruction instruction) {
+        int index = instruction.getOp2Entry().getValue().getInt32();
+        int rowOffset = instruction.getOp1Entry().getValue().getArrayRowOffset(index);
+        instruction.getResultEntry().getValue().setInt32(rowOffset);
+    }
+
+    static void arrayref2d(Instruction instruction) {
+        int rowOffset = instruction.getOp2Entry().getValue().getInt32();
+        int index = instruction.getOp3Entry().getValue().getInt32();
+        int index1d = instruction.getOp1Entry().getValue().getArrayIndex1D(rowOffset, index);
+        instruction.getResultEntry().getValue().setArrayReferenceIndex1D(index1d);
+    }
+
+    static void arrayfill(Instruction instruction) {
+        STObjects.STValue array = instruction.getOp1Entry().getValue();
+        STEntry fillEntry = instruction.getOp2Entry();
         STObjects.STValue fill = fillEntry.getValue();
 
         switch (fillEntry.getType().getAtomTypeId()) {
@@ -110,10 +129,10 @@ final class ArraysUtil {
         }
     }
 
-    static void arrayCopy(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry array1Entry = symbolTable.get(instruction.op1);
+    static void arrayCopy(Instruction instruction) {
+        STEntry array1Entry = instruction.getOp1Entry();
         STObjects.STValue array1 = array1Entry.getValue();
-        STEntry array2Entry = symbolTable.get(instruction.op2);
+        STEntry array2Entry = instruction.getOp2Entry();
         STObjects.STValue array2 = array2Entry.getValue();
         if (array1Entry.getType().getAtomTypeId() != array2Entry.getType().getAtomTypeId()) {
             throw new PuffinBasicRuntimeError(
@@ -169,13 +188,10 @@ final class ArraysUtil {
         }
     }
 
-    static void array2dShiftVertical(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+    static void array2dShiftVertical(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        int shift = symbolTable.get(instruction.op2).getValue().getInt32();
+        int shift = instruction.getOp2Entry().getValue().getInt32();
         IntList dims = array.getArrayDimensions();
         // Arrays are row-major.
         int dim1 = dims.getInt(0);
@@ -229,13 +245,10 @@ final class ArraysUtil {
         }
     }
 
-    static void array2dShiftHorizontal(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+    static void array2dShiftHorizontal(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        int shift = symbolTable.get(instruction.op2).getValue().getInt32();
+        int shift = instruction.getOp2Entry().getValue().getInt32();
         IntList dims = array.getArrayDimensions();
         // Arrays are row-major.
         int dim1 = dims.getInt(0);
@@ -380,18 +393,17 @@ final class ArraysUtil {
     }
 
     static void array1DCopy(
-            PuffinBasicSymbolTable symbolTable,
             Instruction i0,
             Instruction i1,
             Instruction instruction)
     {
-        STEntry srcEntry = symbolTable.get(i0.op1);
+        STEntry srcEntry = i0.getOp1Entry();
         STObjects.STValue src = srcEntry.getValue();
-        int src0 = symbolTable.get(i0.op2).getValue().getInt32();
-        STEntry dstEntry = symbolTable.get(i1.op1);
+        int src0 = i0.getOp2Entry().getValue().getInt32();
+        STEntry dstEntry = i1.getOp1Entry();
         STObjects.STValue dst = dstEntry.getValue();
-        int dst0 = symbolTable.get(i1.op2).getValue().getInt32();
-        int len = symbolTable.get(instruction.op1).getValue().getInt32();
+        int dst0 = i1.getOp2Entry().getValue().getInt32();
+        int len = instruction.getOp1Entry().getValue().getInt32();
         if (srcEntry.getType().getAtomTypeId() != dstEntry.getType().getAtomTypeId()) {
             throw new PuffinBasicRuntimeError(
                     DATA_TYPE_MISMATCH,
@@ -456,8 +468,8 @@ final class ArraysUtil {
         }
     }
 
-    static void array1dSort(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry entry = symbolTable.get(instruction.op1);
+    static void array1dSort(Instruction instruction) {
+        STEntry entry = instruction.getOp1Entry();
         STObjects.STValue array = entry.getValue();
 
         switch (entry.getType().getAtomTypeId()) {
@@ -481,11 +493,11 @@ final class ArraysUtil {
         }
     }
 
-    static void array1dBinSearch(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+    static void array1dBinSearch(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        STObjects.STValue search = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue search = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         int index = -1;
         switch (arrayEntry.getType().getAtomTypeId()) {
             case INT32:
@@ -509,10 +521,10 @@ final class ArraysUtil {
         result.setInt32(index);
     }
 
-    static void array1dMin(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+    static void array1dMin(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         switch (arrayEntry.getType().getAtomTypeId()) {
             case INT32: {
                 int[] value = ((STInt32ArrayValue) array).getValue();
@@ -563,10 +575,10 @@ final class ArraysUtil {
         }
     }
 
-    static void array1dMax(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+    static void array1dMax(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         switch (arrayEntry.getType().getAtomTypeId()) {
             case INT32: {
                 int[] value = ((STInt32ArrayValue) array).getValue();
@@ -617,45 +629,45 @@ final class ArraysUtil {
         }
     }
 
-    static void array1dMean(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    static void array1dMean(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         SummaryStatistics stats = array1dSummaryStats(arrayEntry);
         result.setFloat64(stats.getMean());
     }
 
-    static void array1dStddev(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+    static void array1dStddev(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         SummaryStatistics stats = array1dSummaryStats(arrayEntry);
         result.setFloat64(Math.sqrt(stats.getVariance()));
     }
 
-    static void array1dSum(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    static void array1dSum(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         SummaryStatistics stats = array1dSummaryStats(arrayEntry);
         result.setFloat64(stats.getSum());
     }
 
-    static void array1dMedian(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    static void array1dMedian(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         DescriptiveStatistics stats = array1dDescriptiveStats(arrayEntry);
         result.setFloat64(stats.getPercentile(50));
     }
 
-    static void array1dPercentile(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
-        double pct = symbolTable.get(instruction.op2).getValue().getFloat64();
+    static void array1dPercentile(Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
+        double pct = instruction.getOp2Entry().getValue().getFloat64();
         if (pct < 0 || pct > 100) {
             throw new PuffinBasicRuntimeError(
                     PuffinBasicRuntimeError.ErrorCode.DATA_OUT_OF_RANGE,
                     "Percentile value out of range: " + pct
             );
         }
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         DescriptiveStatistics stats = array1dDescriptiveStats(arrayEntry);
         result.setFloat64(stats.getPercentile(pct));
     }
@@ -735,17 +747,16 @@ final class ArraysUtil {
     }
 
     static void array2dFindRow(
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> params,
             Instruction instruction)
     {
         Instruction i1 = params.get(0);
         Instruction i2 = params.get(1);
 
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        STObjects.STValue search = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue search = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
 
         IntList dims = array.getArrayDimensions();
         // Arrays are row-major.
@@ -753,10 +764,10 @@ final class ArraysUtil {
         int numCols = dims.getInt(1);
         int n = array.getTotalLength();
 
-        int x1 = Math.min(Math.max(0, symbolTable.get(i1.op1).getValue().getInt32()), numCols - 1);
-        int y1 = Math.min(Math.max(0, symbolTable.get(i1.op2).getValue().getInt32()), numRows - 1);
-        int x2 = Math.min(Math.max(0, symbolTable.get(i2.op1).getValue().getInt32()), numCols - 1);
-        int y2 = Math.min(Math.max(0, symbolTable.get(i2.op2).getValue().getInt32()), numRows - 1);
+        int x1 = Math.min(Math.max(0, i1.getOp1Entry().getValue().getInt32()), numCols - 1);
+        int y1 = Math.min(Math.max(0, i1.getOp2Entry().getValue().getInt32()), numRows - 1);
+        int x2 = Math.min(Math.max(0, i2.getOp1Entry().getValue().getInt32()), numCols - 1);
+        int y2 = Math.min(Math.max(0, i2.getOp2Entry().getValue().getInt32()), numRows - 1);
 
         if (y1 * numCols + x1 >= n || y2 * numCols + x2 >= n) {
             throw new PuffinBasicRuntimeError(
@@ -782,17 +793,16 @@ final class ArraysUtil {
     }
 
     static void array2dFindColumn(
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> params,
             Instruction instruction)
     {
         Instruction i1 = params.get(0);
         Instruction i2 = params.get(1);
 
-        STEntry arrayEntry = symbolTable.get(instruction.op1);
+        STEntry arrayEntry = instruction.getOp1Entry();
         STObjects.STValue array = arrayEntry.getValue();
-        STObjects.STValue search = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue search = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
 
         IntList dims = array.getArrayDimensions();
         // Arrays are row-major.
@@ -800,10 +810,10 @@ final class ArraysUtil {
         int numCols = dims.getInt(1);
         int n = array.getTotalLength();
 
-        int x1 = Math.min(Math.max(0, symbolTable.get(i1.op1).getValue().getInt32()), numCols - 1);
-        int y1 = Math.min(Math.max(0, symbolTable.get(i1.op2).getValue().getInt32()), numRows - 1);
-        int x2 = Math.min(Math.max(0, symbolTable.get(i2.op1).getValue().getInt32()), numCols - 1);
-        int y2 = Math.min(Math.max(0, symbolTable.get(i2.op2).getValue().getInt32()), numRows - 1);
+        int x1 = Math.min(Math.max(0, i1.getOp1Entry().getValue().getInt32()), numCols - 1);
+        int y1 = Math.min(Math.max(0, i1.getOp2Entry().getValue().getInt32()), numRows - 1);
+        int x2 = Math.min(Math.max(0, i2.getOp1Entry().getValue().getInt32()), numCols - 1);
+        int y2 = Math.min(Math.max(0, i2.getOp2Entry().getValue().getInt32()), numRows - 1);
 
         if (y1 * numCols + x1 >= n || y2 * numCols + x2 >=n) {
             throw new PuffinBasicRuntimeError(
@@ -0,0 +1,961 @@
+package org.puffinbasic.runtime;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntMap;
+import it.unimi.dsi.fastutil.objects.Reference2IntOpenHashMap;
+import org.objectweb.asm.ClassTooLargeException;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodTooLargeException;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.puffinbasic.domain.RegisterFile;
+import org.puffinbasic.domain.STObjects;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
+import org.puffinbasic.domain.STObjects.STEntry;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicInternalError;
+import org.puffinbasic.parser.PuffinBasicIR.Condition;
+import org.puffinbasic.parser.PuffinBasicIR.Instruction;
+
+import static org.objectweb.asm.Opcodes.AALOAD;
+import static org.objectweb.asm.Opcodes.ACC_FINAL;
+import static org.objectweb.asm.Opcodes.ACC_PRIVATE;
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ACC_SUPER;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.ATHROW;
+import static org.objectweb.asm.Opcodes.BALOAD;
+import static org.objectweb.asm.Opcodes.BASTORE;
+import static org.objectweb.asm.Opcodes.BIPUSH;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.DUP;
+import static org.objectweb.asm.Opcodes.GETFIELD;
+import static org.objectweb.asm.Opcodes.GOTO;
+import static org.objectweb.asm.Opcodes.IADD;
+import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IASTORE;
+import static org.objectweb.asm.Opcodes.ICONST_0;
+import static org.objectweb.asm.Opcodes.ICONST_1;
+import static org.objectweb.asm.Opcodes.IFEQ;
+import static org.objectweb.asm.Opcodes.IFGE;
+import static org.objectweb.asm.Opcodes.IFGT;
+import static org.objectweb.asm.Opcodes.IFLE;
+import static org.objectweb.asm.Opcodes.IFLT;
+import static org.objectweb.asm.Opcodes.IFNE;
+import static org.objectweb.asm.Opcodes.IF_ICMPEQ;
+import static org.objectweb.asm.Opcodes.IF_ICMPGE;
+import static org.objectweb.asm.Opcodes.IF_ICMPGT;
+import static org.objectweb.asm.Opcodes.IF_ICMPLT;
+import static org.objectweb.asm.Opcodes.IF_ICMPNE;
+import static org.objectweb.asm.Opcodes.ILOAD;
+import static org.objectweb.asm.Opcodes.IMUL;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKESTATIC;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.ISTORE;
+import static org.objectweb.asm.Opcodes.ISUB;
+import static org.objectweb.asm.Opcodes.LADD;
+import static org.objectweb.asm.Opcodes.LCMP;
+import static org.objectweb.asm.Opcodes.LCONST_0;
+import static org.objectweb.asm.Opcodes.LCONST_1;
+import static org.objectweb.asm.Opcodes.PUTFIELD;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.SIPUSH;
+import static org.objectweb.asm.Opcodes.SWAP;
+import static org.objectweb.asm.Opcodes.V1_8;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.DOUBLE;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.FLOAT;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT32;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT64;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.ARRAY;
+import static org.puffinbasic.parser.PuffinBasicIR.OpCode.ARRAYREF2D;
+import static org.puffinbasic.parser.PuffinBasicIR.OpCode.FOR_NEXT_UP_I32;
+import static org.puffinbasic.parser.PuffinBasicIR.UNRESOLVED;
+
+/**
+ * Compiles a program to a subclass of {@link BytecodeProgram}.
+ * The instructions are split into chunks of whole basic blocks, and each
+ * chunk becomes a method small enough to be JIT compiled. A chunk is entered
+ * through a tableswitch on the instruction#, and branches to its own blocks
+ * directly. Ops on registers and on INT32 and DOUBLE array elements are
+ * compiled to typed code, the registers being cached in locals within a block.
+ * The other instructions run through the interpreter, after the cached
+ * registers were written back.
+ */
+final class BytecodeCompiler {
+
+    /**
+     * Returns the register slot of an operand, see PuffinBasicRuntime.
+     */
+    @FunctionalInterface
+    interface RegisterSlots {
+        int slot(int id, STEntry entry, PuffinBasicAtomTypeId type);
+    }
+
+    // Instructions per chunk, a chunk with a single larger block is not split.
+    private static final int MAX_CHUNK_SIZE = 160;
+
+    private static final String CLASS_NAME = "org/puffinbasic/runtime/generated/CompiledProgram";
+    private static final String PROGRAM = Type.getInternalName(BytecodeProgram.class);
+    private static final String ENTRY = Type.getInternalName(STEntry.class);
+    private static final String VALUE = Type.getInternalName(STValue.class);
+    private static final String INT32_ARRAY = Type.getInternalName(STObjects.STInt32ArrayValue.class);
+    private static final String FLOAT64_ARRAY = Type.getInternalName(STObjects.STFloat64ArrayValue.class);
+
+    private static final int THIS = 0;
+    private static final int PC = 1;
+    private static final int REGISTERS = 2; // an array and its set flags per type
+    private static final int CONSTANTS = 10;
+    private static final int FIRST_LOCAL = 11;
+
+    private static final String[] REGISTER_FIELDS = {
+            "int32s", "int32sSet", "int64s", "int64sSet", "float32s", "float32sSet", "float64s", "float64sSet"
+    };
+    private static final String[] REGISTER_DESCS = {"[I", "[Z", "[J", "[Z", "[F", "[Z", "[D", "[Z"};
+
+    private final List<Instruction> instructions;
+    private final BitSet leaders;
+    private final STEntry[] blockResults;
+    private final IntSet aliasedVariables;
+    private final RegisterSlots registerSlots;
+    private final boolean countJumps;
+    private final List<Object> constants;
+    private final Reference2IntMap<Object> constantIndexes;
+
+    // State of the chunk being compiled.
+    private MethodVisitor mv;
+    private int chunkStart;
+    private int chunkEnd;
+    private Label[] blockLabels;
+    private Label dispatch;
+    private int nextLocal;
+    private final Long2ObjectMap<Register> registers;
+    private final List<Register> cachedRegisters;
+    private final Int2ObjectMap<Element> elements;
+
+    BytecodeCompiler(
+            List<Instruction> instructions,
+            BitSet leaders,
+            STEntry[] blockResults,
+            IntSet aliasedVariables,
+            RegisterSlots registerSlots,
+            boolean countJumps)
+    {
+        this.instructions = instructions;
+        this.leaders = leaders;
+        this.blockResults = blockResults;
+        this.aliasedVariables = aliasedVariables;
+        this.registerSlots = registerSlots;
+        this.countJumps = countJumps;
+        this.constants = new ArrayList<>();
+        this.constantIndexes = new Reference2IntOpenHashMap<>();
+        this.constantIndexes.defaultReturnValue(-1);
+        this.registers = new Long2ObjectOpenHashMap<>();
+        this.cachedRegisters = new ArrayList<>();
+        this.elements = new Int2ObjectOpenHashMap<>();
+    }
+
+    /**
+     * @return null if the program is too large for a class.
+     */
+    BytecodeProgram compile(BytecodeProgram.Callbacks callbacks, RegisterFile registerFile) {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+            // Frames only merge values of the same type, no need to load classes.
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                return "java/lang/Object";
+            }
+        };
+        cw.visit(V1_8, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, CLASS_NAME, null, PROGRAM, null);
+        compileConstructor(cw);
+
+        int numInstructions = instructions.size();
+        int[] chunks = new int[numInstructions];
+        int numChunks = 0;
+        int start = 0;
+        while (start < numInstructions) {
+            int end = nextLeader(start);
+            while (end < numInstructions && nextLeader(end) - start <= MAX_CHUNK_SIZE) {
+                end = nextLeader(end);
+            }
+            compileChunk(cw, numChunks, start, end);
+            Arrays.fill(chunks, start, end, numChunks);
+            ++numChunks;
+            start = end;
+        }
+        compileRun(cw, numChunks);
+        cw.visitEnd();
+
+        byte[] code;
+        try {
+            code = cw.toByteArray();
+        } catch (MethodTooLargeException | ClassTooLargeException e) {
+            return null;
+        }
+        try {
+            return (BytecodeProgram) new ProgramClassLoader()
+                    .define(code)
+                    .getDeclaredConstructor(
+                            BytecodeProgram.Callbacks.class, RegisterFile.class, int[].class, Object[].class)
+                    .newInstance(callbacks, registerFile, chunks, constants.toArray());
+        } catch (ReflectiveOperationException e) {
+            throw new PuffinBasicInternalError("Failed to load compiled program: " + e);
+        }
+    }
+
+    private static final class ProgramClassLoader extends ClassLoader {
+        ProgramClassLoader() {
+            super(BytecodeProgram.class.getClassLoader());
+        }
+
+        Class<?> define(byte[] code) {
+            return defineClass(CLASS_NAME.replace('/', '.'), code, 0, code.length);
+        }
+    }
+
+    private int nextLeader(int instrNum) {
+        int next = leaders.nextSetBit(instrNum + 1);
+        return next == -1 || next > instructions.size() ? instructions.size() : next;
+    }
+
+    private void compileConstructor(ClassWriter cw) {
+        String desc = Type.getMethodDescriptor(
+                Type.VOID_TYPE,
+                Type.getType(BytecodeProgram.Callbacks.class),
+                Type.getType(RegisterFile.class),
+                Type.getType(int[].class),
+                Type.getType(Object[].class));
+        mv = cw.visitMethod(ACC_PUBLIC, "<init>", desc, null, null);
+        mv.visitCode();
+        for (int i = 0; i <= 4; i++) {
+            mv.visitVarInsn(ALOAD, i);
+        }
+        mv.visitMethodInsn(INVOKESPECIAL, PROGRAM, "<init>", desc, false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Calls the chunk of the instruction# until the program ends.
+     */
+    private void compileRun(ClassWriter cw, int numChunks) {
+        mv = cw.visitMethod(ACC_PUBLIC, "run", "(I)V", null, null);
+        mv.visitCode();
+        Label loop = new Label();
+        Label end = new Label();
+        Label[] chunkLabels = new Label[numChunks];
+        for (int i = 0; i < numChunks; i++) {
+            chunkLabels[i] = new Label();
+        }
+        mv.visitLabel(loop);
+        mv.visitVarInsn(ILOAD, PC);
+        mv.visitJumpInsn(IFLT, end);
+        mv.visitVarInsn(ILOAD, PC);
+        push(instructions.size());
+        mv.visitJumpInsn(IF_ICMPGE, end);
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitFieldInsn(GETFIELD, PROGRAM, "chunks", "[I");
+        mv.visitVarInsn(ILOAD, PC);
+        mv.visitInsn(IALOAD);
+        if (numChunks > 0) {
+            mv.visitTableSwitchInsn(0, numChunks - 1, end, chunkLabels);
+        }
+        for (int i = 0; i < numChunks; i++) {
+            mv.visitLabel(chunkLabels[i]);
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitVarInsn(ILOAD, PC);
+            mv.visitMethodInsn(INVOKESPECIAL, CLASS_NAME, "chunk" + i, "(I)I", false);
+            mv.visitVarInsn(ISTORE, PC);
+            mv.visitJumpInsn(GOTO, loop);
+        }
+        mv.visitLabel(end);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    /**
+     * Runs the blocks from the instruction# until the program branches
+     * out of the chunk, and returns the instruction# to continue at.
+     */
+    private void compileChunk(ClassWriter cw, int index, int start, int end) {
+        mv = cw.visitMethod(ACC_PRIVATE, "chunk" + index, "(I)I", null, null);
+        mv.visitCode();
+        chunkStart = start;
+        chunkEnd = end;
+        nextLocal = FIRST_LOCAL;
+        registers.clear();
+        for (int i = 0; i < REGISTER_FIELDS.length; i++) {
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitFieldInsn(GETFIELD, PROGRAM, REGISTER_FIELDS[i], REGISTER_DESCS[i]);
+            mv.visitVarInsn(ASTORE, REGISTERS + i);
+        }
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitFieldInsn(GETFIELD, PROGRAM, "constants", "[Ljava/lang/Object;");
+        mv.visitVarInsn(ASTORE, CONSTANTS);
+
+        // Other instructions are entered through the interpreter, e.g. after a RETURN.
+        dispatch = new Label();
+        Label interpret = new Label();
+        Label exit = new Label();
+        blockLabels = new Label[end - start];
+        Label[] targets = new Label[end - start];
+        for (int i = start; i < end; i++) {
+            if (leaders.get(i)) {
+                blockLabels[i - start] = new Label();
+                targets[i - start] = blockLabels[i - start];
+            } else {
+                targets[i - start] = interpret;
+            }
+        }
+        mv.visitLabel(dispatch);
+        mv.visitVarInsn(ILOAD, PC);
+        push(start);
+        mv.visitInsn(ISUB);
+        mv.visitTableSwitchInsn(0, end - start - 1, exit, targets);
+        mv.visitLabel(interpret);
+        mv.visitVarInsn(ALOAD, THIS);
+        mv.visitVarInsn(ILOAD, PC);
+        mv.visitVarInsn(ILOAD, PC);
+        mv.visitInsn(ICONST_1);
+        mv.visitInsn(IADD);
+        mv.visitMethodInsn(INVOKEVIRTUAL, PROGRAM, "interpret", "(II)I", false);
+        mv.visitVarInsn(ISTORE, PC);
+        mv.visitJumpInsn(GOTO, dispatch);
+        mv.visitLabel(exit);
+        mv.visitVarInsn(ILOAD, PC);
+        mv.visitInsn(IRETURN);
+
+        for (int block = start; block < end; block = nextLeader(block)) {
+            compileBlock(block, nextLeader(block));
+        }
+        push(end);
+        mv.visitInsn(IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+    }
+
+    private void compileBlock(int start, int end) {
+        mv.visitLabel(blockLabels[start - chunkStart]);
+        recordBlockResult(start);
+        int interpretFrom = -1;
+        for (int pc = start; pc < end; pc++) {
+            Instruction instruction = instructions.get(pc);
+            if (isNoOp(instruction)) {
+                continue;
+            }
+            Runnable op = compile(pc, instruction);
+            if (op == null) {
+                if (interpretFrom == -1) {
+                    interpretFrom = pc;
+                }
+                continue;
+            }
+            if (interpretFrom != -1) {
+                interpret(interpretFrom, pc);
+                interpretFrom = -1;
+            }
+            op.run();
+        }
+        if (interpretFrom != -1) {
+            interpret(interpretFrom, end);
+        }
+        writeBackRegisters();
+        clearRegisters();
+        elements.clear();
+    }
+
+    private static boolean isNoOp(Instruction instruction) {
+        switch (instruction.opCode) {
+            case COMMENT:
+            case VARIABLE:
+            case VALUE:
+            case LABEL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Runs instructions through the interpreter, and continues
+     * with the next instruction unless they branched.
+     */
+    private void interpret(int start, int end) {
+        writeBackRegisters();
+        mv.visitVarInsn(ALOAD, THIS);
+        push(start);
+        push(end);
+        mv.visitMethodInsn(INVOKEVIRTUAL, PROGRAM, "interpret", "(II)I", false);
+        mv.visitInsn(DUP);
+        mv.visitVarInsn(ISTORE, PC);
+        push(end);
+        mv.visitJumpInsn(IF_ICMPNE, dispatch);
+        clearRegisters();
+        if (end < instructions.size() && !leaders.get(end)) {
+            recordBlockResult(end);
+        }
+    }
+
+    private void recordBlockResult(int pc) {
+        if (blockResults[pc] != null) {
+            mv.visitVarInsn(ALOAD, THIS);
+            push(pc);
+            mv.visitFieldInsn(PUTFIELD, PROGRAM, "lastBlock", "I");
+        }
+    }
+
+    /**
+     * Returns the code of an instruction, or null if it's interpreted.
+     */
+    private Runnable compile(int pc, Instruction instruction) {
+        switch (instruction.opCode) {
+            case ADDI32:
+                return compileArithmetic(pc, instruction, INT32, IADD);
+            case ADDI64:
+                return compileArithmetic(pc, instruction, INT64, IADD);
+            case ADDF32:
+                return compileArithmetic(pc, instruction, FLOAT, IADD);
+            case ADDF64:
+                return compileArithmetic(pc, instruction, DOUBLE, IADD);
+            case SUBI32:
+                return compileArithmetic(pc, instruction, INT32, ISUB);
+            case SUBI64:
+                return compileArithmetic(pc, instruction, INT64, ISUB);
+            case SUBF32:
+                return compileArithmetic(pc, instruction, FLOAT, ISUB);
+            case SUBF64:
+                return compileArithmetic(pc, instruction, DOUBLE, ISUB);
+            case MULI32:
+                return compileArithmetic(pc, instruction, INT32, IMUL);
+            case MULI64:
+                return compileArithmetic(pc, instruction, INT64, IMUL);
+            case MULF32:
+                return compileArithmetic(pc, instruction, FLOAT, IMUL);
+            case MULF64:
+                return compileArithmetic(pc, instruction, DOUBLE, IMUL);
+            case ASSIGN:
+            case COPY:
+                return compileCopy(pc, instruction);
+            case FOR_NEXT_UP_I32:
+            case FOR_NEXT_DOWN_I32:
+                return compileForNext(pc, instruction);
+            case GOTO_LABEL:
+            case GOTO_LINENUM: {
+                int target = instruction.getBranchTarget();
+                if (target == UNRESOLVED) {
+                    return null;
+                }
+                return () -> {
+                    writeBackRegisters();
+                    jump(target);
+                };
+            }
+            case GOTO_LABEL_IF:
+                return compileGotoIf(pc, instruction);
+            case ARRAYROW:
+                return compileArrayRow(pc, instruction);
+            case ARRAYREF1D:
+            case ARRAYREF2D:
+                return compileArrayRef(pc, instruction);
+            default:
+                if (instruction.opCode.isCompareAndBranch()) {
+                    return compileCompareAndBranch(pc, instruction);
+                }
+                return null;
+        }
+    }
+
+    private Runnable compileArithmetic(int pc, Instruction instruction, PuffinBasicAtomTypeId type, int opcode) {
+        Operand a = operand(instruction.op1, instruction.getOp1Entry(), type);
+        Operand b = operand(instruction.op2, instruction.getOp2Entry(), type);
+        Operand r = operand(instruction.result, instruction.getResultEntry(), type);
+        if (a == null || b == null || r == null) {
+            return null;
+        }
+        return () -> {
+            r.beginStore();
+            a.load(pc);
+            b.load(pc);
+            mv.visitInsn(r.asmType().getOpcode(opcode));
+            r.endStore();
+        };
+    }
+
+    private Runnable compileCopy(int pc, Instruction instruction) {
+        PuffinBasicAtomTypeId type = PuffinBasicRuntime.registerType(instruction.getOp1Entry());
+        if (type == null) {
+            Element element = elements.get(instruction.op1);
+            if (element == null) {
+                return null;
+            }
+            type = element.type;
+        }
+        Operand a = operand(instruction.op1, instruction.getOp1Entry(), type);
+        Operand r = operand(instruction.op2, instruction.getOp2Entry(), type);
+        if (a == null || r == null) {
+            return null;
+        }
+        return () -> {
+            r.beginStore();
+            a.load(pc);
+            r.endStore();
+        };
+    }
+
+    private Runnable compileForNext(int pc, Instruction instruction) {
+        Operand i = operand(instruction.op1, instruction.getOp1Entry(), INT32);
+        Operand e = operand(instruction.op2, instruction.getOp2Entry(), INT32);
+        Operand step = operand(instruction.getOp3(), instruction.getOp3Entry(), INT32);
+        int target = instruction.getBranchTarget();
+        if (i == null || e == null || step == null || target == UNRESOLVED) {
+            return null;
+        }
+        boolean up = instruction.opCode == FOR_NEXT_UP_I32;
+        return () -> {
+            i.beginStore();
+            i.load(pc);
+            step.load(pc);
+            mv.visitInsn(IADD);
+            i.endStore();
+            i.load(pc);
+            e.load(pc);
+            writeBackRegisters();
+            Label exit = new Label();
+            mv.visitJumpInsn(up ? IF_ICMPGT : IF_ICMPLT, exit);
+            jump(target);
+            mv.visitLabel(exit);
+        };
+    }
+
+    private Runnable compileGotoIf(int pc, Instruction instruction) {
+        Operand condition = operand(instruction.op1, instruction.getOp1Entry(), INT64);
+        if (condition == null) {
+            condition = operand(instruction.op1, instruction.getOp1Entry(), INT32);
+        }
+        int target = instruction.getBranchTarget();
+        if (condition == null || target == UNRESOLVED) {
+            return null;
+        }
+        Operand c = condition;
+        return () -> {
+            c.load(pc);
+            if (c.type == INT64) {
+                mv.visitInsn(LCONST_0);
+                mv.visitInsn(LCMP);
+            }
+            writeBackRegisters();
+            Label exit = new Label();
+            mv.visitJumpInsn(IFEQ, exit);
+            jump(target);
+            mv.visitLabel(exit);
+        };
+    }
+
+    private Runnable compileCompareAndBranch(int pc, Instruction instruction) {
+        PuffinBasicAtomTypeId type = instruction.opCode.compareType;
+        if (asmType(type) == null) {
+            return null;
+        }
+        Operand a = operand(instruction.op1, instruction.getOp1Entry(), type);
+        Operand b = operand(instruction.op2, instruction.getOp2Entry(), type);
+        int target = instruction.getBranchTarget();
+        if (a == null || b == null || target == UNRESOLVED) {
+            return null;
+        }
+        int ifNot = ifOpcode(negate(instruction.opCode.condition));
+        return () -> {
+            a.load(pc);
+            b.load(pc);
+            writeBackRegisters();
+            Label exit = new Label();
+            switch (type) {
+                case INT32:
+                    mv.visitJumpInsn(ifNot + (IF_ICMPEQ - IFEQ), exit);
+                    break;
+                case INT64:
+                    mv.visitInsn(LCMP);
+                    mv.visitJumpInsn(ifNot, exit);
+                    break;
+                case FLOAT:
+                    // Float.compare() orders NaN and -0.0 like the interpreter.
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Float", "compare", "(FF)I", false);
+                    mv.visitJumpInsn(ifNot, exit);
+                    break;
+                default:
+                    mv.visitMethodInsn(INVOKESTATIC, "java/lang/Double", "compare", "(DD)I", false);
+                    mv.visitJumpInsn(ifNot, exit);
+                    break;
+            }
+            jump(target);
+            mv.visitLabel(exit);
+        };
+    }
+
+    private Runnable compileArrayRow(int pc, Instruction instruction) {
+        int array = arrayConstant(instruction.op1, instruction.getOp1Entry());
+        Operand index = operand(instruction.op2, instruction.getOp2Entry(), INT32);
+        Operand r = operand(instruction.result, instruction.getResultEntry(), INT32);
+        if (array == -1 || index == null || r == null) {
+            return null;
+        }
+        return () -> {
+            r.beginStore();
+            loadValue(array);
+            index.load(pc);
+            mv.visitMethodInsn(INVOKEINTERFACE, VALUE, "getArrayRowOffset", "(I)I", true);
+            r.endStore();
+        };
+    }
+
+    /**
+     * Sets the index of the array reference like the interpreter, and keeps it
+     * in a local, so that later ops in the block access INT32 and DOUBLE
+     * elements in the array directly.
+     */
+    private Runnable compileArrayRef(int pc, Instruction instruction) {
+        STEntry arrayEntry = instruction.getOp1Entry();
+        int array = arrayConstant(instruction.op1, arrayEntry);
+        Operand index = operand(instruction.op2, instruction.getOp2Entry(), INT32);
+        Operand column = instruction.opCode == ARRAYREF2D
+                ? operand(instruction.getOp3(), instruction.getOp3Entry(), INT32)
+                : null;
+        if (array == -1 || index == null || (instruction.opCode == ARRAYREF2D && column == null)) {
+            return null;
+        }
+        int ref = constant(instruction.getResultEntry());
+        PuffinBasicAtomTypeId type = null;
+        if (arrayEntry.getValue() instanceof STObjects.STInt32ArrayValue) {
+            type = INT32;
+        } else if (arrayEntry.getValue() instanceof STObjects.STFloat64ArrayValue) {
+            type = DOUBLE;
+        }
+        PuffinBasicAtomTypeId elementType = type;
+        Operand c = column;
+        return () -> {
+            mv.visitVarInsn(ALOAD, THIS);
+            push(pc);
+            loadValue(array);
+            index.load(pc);
+            String desc = "(IL" + VALUE + ";I)I";
+            if (c != null) {
+                c.load(pc);
+                desc = "(IL" + VALUE + ";II)I";
+            }
+            mv.visitMethodInsn(INVOKEVIRTUAL, PROGRAM, "arrayIndex1D", desc, false);
+            if (elementType != null) {
+                int local = nextLocal++;
+                mv.visitInsn(DUP);
+                mv.visitVarInsn(ISTORE, local);
+                elements.put(instruction.result, new Element(elementType, array, local));
+            }
+            loadValue(ref);
+            mv.visitInsn(SWAP);
+            mv.visitMethodInsn(INVOKEINTERFACE, VALUE, "setArrayReferenceIndex1D", "(I)V", true);
+        };
+    }
+
+    /**
+     * Returns the constant# of an array which is bound to its variable,
+     * or -1 if the array can be replaced at runtime.
+     */
+    private int arrayConstant(int id, STEntry entry) {
+        if (entry == null
+                || entry.getType().getTypeId() != ARRAY
+                || entry.getClass() != STObjects.STVariable.class
+                || aliasedVariables.contains(id))
+        {
+            return -1;
+        }
+        return constant(entry);
+    }
+
+    private int constant(Object value) {
+        int index = constantIndexes.getInt(value);
+        if (index == -1) {
+            index = constants.size();
+            constants.add(value);
+            constantIndexes.put(value, index);
+        }
+        return index;
+    }
+
+    private void loadValue(int constant) {
+        mv.visitVarInsn(ALOAD, CONSTANTS);
+        push(constant);
+        mv.visitInsn(AALOAD);
+        mv.visitTypeInsn(CHECKCAST, ENTRY);
+        mv.visitMethodInsn(INVOKEINTERFACE, ENTRY, "getValue", "()L" + VALUE + ";", true);
+    }
+
+    private void jump(int target) {
+        if (countJumps) {
+            mv.visitVarInsn(ALOAD, THIS);
+            mv.visitInsn(DUP);
+            mv.visitFieldInsn(GETFIELD, PROGRAM, "numJumps", "J");
+            mv.visitInsn(LCONST_1);
+            mv.visitInsn(LADD);
+            mv.visitFieldInsn(PUTFIELD, PROGRAM, "numJumps", "J");
+        }
+        if (target >= chunkStart && target < chunkEnd && leaders.get(target)) {
+            mv.visitJumpInsn(GOTO, blockLabels[target - chunkStart]);
+        } else {
+            push(target);
+            mv.visitInsn(IRETURN);
+        }
+    }
+
+    private void push(int value) {
+        if (value >= -1 && value <= 5) {
+            mv.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            mv.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            mv.visitIntInsn(SIPUSH, value);
+        } else {
+            mv.visitLdcInsn(value);
+        }
+    }
+
+    private static Condition negate(Condition condition) {
+        switch (condition) {
+            case EQ:
+                return Condition.NE;
+            case NE:
+                return Condition.EQ;
+            case LT:
+                return Condition.GE;
+            case LE:
+                return Condition.GT;
+            case GT:
+                return Condition.LE;
+            default:
+                return Condition.LT;
+        }
+    }
+
+    private static int ifOpcode(Condition condition) {
+        switch (condition) {
+            case EQ:
+                return IFEQ;
+            case NE:
+                return IFNE;
+            case LT:
+                return IFLT;
+            case LE:
+                return IFLE;
+            case GT:
+                return IFGT;
+            default:
+                return IFGE;
+        }
+    }
+
+    private static Type asmType(PuffinBasicAtomTypeId type) {
+        switch (type) {
+            case INT32:
+                return Type.INT_TYPE;
+            case INT64:
+                return Type.LONG_TYPE;
+            case FLOAT:
+                return Type.FLOAT_TYPE;
+            case DOUBLE:
+                return Type.DOUBLE_TYPE;
+            default:
+                return null;
+        }
+    }
+
+    private Operand operand(int id, STEntry entry, PuffinBasicAtomTypeId type) {
+        int slot = registerSlots.slot(id, entry, type);
+        if (slot != PuffinBasicRuntime.NO_REGISTER) {
+            long key = ((long) type.ordinal() << 32) | slot;
+            Register register = registers.get(key);
+            if (register == null) {
+                register = new Register(type, slot);
+                registers.put(key, register);
+            }
+            return register;
+        }
+        Element element = elements.get(id);
+        return element != null && element.type == type ? element : null;
+    }
+
+    private void writeBackRegisters() {
+        for (Register register : cachedRegisters) {
+            register.writeBack();
+        }
+    }
+
+    private void clearRegisters() {
+        for (Register register : cachedRegisters) {
+            register.clear();
+        }
+        cachedRegisters.clear();
+    }
+
+    private abstract class Operand {
+        final PuffinBasicAtomTypeId type;
+
+        Operand(PuffinBasicAtomTypeId type) {
+            this.type = type;
+        }
+
+        Type asmType() {
+            return BytecodeCompiler.asmType(type);
+        }
+
+        abstract void load(int pc);
+
+        /**
+         * Called before the value to store is pushed.
+         */
+        abstract void beginStore();
+
+        abstract void endStore();
+    }
+
+    /**
+     * A register, cached in a local from its first use in a block
+     * until the block ends or an instruction is interpreted.
+     */
+    private final class Register extends Operand {
+        private final int slot;
+        private final int local;
+        private boolean cached;
+        private boolean checked;
+        private boolean dirty;
+
+        Register(PuffinBasicAtomTypeId type, int slot) {
+            super(type);
+            this.slot = slot;
+            this.local = nextLocal;
+            nextLocal += asmType().getSize();
+        }
+
+        private int array() {
+            return REGISTERS + 2 * (type == INT32 ? 0 : type == INT64 ? 1 : type == FLOAT ? 2 : 3);
+        }
+
+        @Override
+        void load(int pc) {
+            if (!checked) {
+                Label set = new Label();
+                mv.visitVarInsn(ALOAD, array() + 1);
+                push(slot);
+                mv.visitInsn(BALOAD);
+                mv.visitJumpInsn(IFNE, set);
+                mv.visitVarInsn(ALOAD, THIS);
+                push(pc);
+                mv.visitMethodInsn(INVOKEVIRTUAL, PROGRAM, "notInitialized", "(I)Ljava/lang/RuntimeException;", false);
+                mv.visitInsn(ATHROW);
+                mv.visitLabel(set);
+                checked = true;
+            }
+            if (!cached) {
+                mv.visitVarInsn(ALOAD, array());
+                push(slot);
+                mv.visitInsn(asmType().getOpcode(IALOAD));
+                mv.visitVarInsn(asmType().getOpcode(ISTORE), local);
+                cache();
+            }
+            mv.visitVarInsn(asmType().getOpcode(ILOAD), local);
+        }
+
+        @Override
+        void beginStore() {
+        }
+
+        @Override
+        void endStore() {
+            mv.visitVarInsn(asmType().getOpcode(ISTORE), local);
+            cache();
+            checked = true;
+            dirty = true;
+        }
+
+        private void cache() {
+            if (!cached) {
+                cached = true;
+                cachedRegisters.add(this);
+            }
+        }
+
+        void writeBack() {
+            if (dirty) {
+                mv.visitVarInsn(ALOAD, array());
+                push(slot);
+                mv.visitVarInsn(asmType().getOpcode(ILOAD), local);
+                mv.visitInsn(asmType().getOpcode(IASTORE));
+                mv.visitVarInsn(ALOAD, array() + 1);
+                push(slot);
+                mv.visitInsn(ICONST_1);
+                mv.visitInsn(BASTORE);
+                dirty = false;
+            }
+        }
+
+        void clear() {
+            cached = false;
+            checked = false;
+            dirty = false;
+        }
+    }
+
+    /**
+     * An element of an INT32 or DOUBLE array, at the index
+     * computed by an array reference earlier in the block.
+     */
+    private final class Element extends Operand {
+        private final int array;
+        private final int index;
+
+        Element(PuffinBasicAtomTypeId type, int array, int index) {
+            super(type);
+            this.array = array;
+            this.index = index;
+        }
+
+        @Override
+        void load(int pc) {
+            loadArrayAndIndex();
+            mv.visitInsn(asmType().getOpcode(IALOAD));
+        }
+
+        @Override
+        void beginStore() {
+            loadArrayAndIndex();
+        }
+
+        private void loadArrayAndIndex() {
+            loadValue(array);
+            if (type == INT32) {
+                mv.visitTypeInsn(CHECKCAST, INT32_ARRAY);
+                mv.visitMethodInsn(INVOKEVIRTUAL, INT32_ARRAY, "getValue", "()[I", false);
+            } else {
+                mv.visitTypeInsn(CHECKCAST, FLOAT64_ARRAY);
+                mv.visitMethodInsn(INVOKEVIRTUAL, FLOAT64_ARRAY, "getValue", "()[D", false);
+            }
+            mv.visitVarInsn(ILOAD, index);
+        }
+
+        @Override
+        void endStore() {
+            mv.visitInsn(asmType().getOpcode(IASTORE));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package org.puffinbasic.runtime;
+
+import org.puffinbasic.domain.RegisterFile;
+import org.puffinbasic.domain.STObjects.STValue;
+import org.puffinbasic.error.PuffinBasicRuntimeError;
+
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.NOT_INITIALIZED;
+
+/**
+ * Base class of the programs generated by {@link BytecodeCompiler}.
+ * It's public, since the generated class is defined by its own class loader,
+ * and its members are what the generated code may use.
+ */
+public abstract class BytecodeProgram {
+
+    /**
+     * Runs instructions the generated code doesn't handle.
+     */
+    public interface Callbacks {
+        /**
+         * Runs the instructions from pc until end through the interpreter,
+         * and returns the next instruction#, or -1 if the program ended.
+         * A branch stops the run early. lastBlock is the instruction# whose
+         * block result was recorded last by the generated code, or -1.
+         */
+        int run(int pc, int end, int lastBlock);
+    }
+
+    protected final Callbacks callbacks;
+    protected final int[] chunks;
+    protected final Object[] constants;
+    protected final int[] int32s;
+    protected final boolean[] int32sSet;
+    protected final long[] int64s;
+    protected final boolean[] int64sSet;
+    protected final float[] float32s;
+    protected final boolean[] float32sSet;
+    protected final double[] float64s;
+    protected final boolean[] float64sSet;
+    protected int lastBlock = -1;
+    protected long numJumps;
+    private int faultProgramCounter = -1;
+
+    protected BytecodeProgram(Callbacks callbacks, RegisterFile registers, int[] chunks, Object[] constants) {
+        this.callbacks = callbacks;
+        this.chunks = chunks;
+        this.constants = constants;
+        this.int32s = registers.getInt32s();
+        this.int32sSet = registers.getInt32sSet();
+        this.int64s = registers.getInt64s();
+        this.int64sSet = registers.getInt64sSet();
+        this.float32s = registers.getFloat32s();
+        this.float32sSet = registers.getFloat32sSet();
+        this.float64s = registers.getFloat64s();
+        this.float64sSet = registers.getFloat64sSet();
+    }
+
+    /**
+     * Runs the program from instruction# pc until it ends.
+     */
+    public abstract void run(int pc);
+
+    protected final int interpret(int pc, int end) {
+        int block = lastBlock;
+        lastBlock = -1;
+        return callbacks.run(pc, end, block);
+    }
+
+    protected final RuntimeException notInitialized(int pc) {
+        faultProgramCounter = pc;
+        return new PuffinBasicRuntimeError(
+                NOT_INITIALIZED,
+                "Value cannot be read without initializing"
+        );
+    }
+
+    protected final int arrayIndex1D(int pc, STValue array, int index) {
+        try {
+            return array.getArrayIndex1D(index);
+        } catch (RuntimeException e) {
+            faultProgramCounter = pc;
+            throw e;
+        }
+    }
+
+    protected final int arrayIndex1D(int pc, STValue array, int rowOffset, int index) {
+        try {
+            return array.getArrayIndex1D(rowOffset, index);
+        } catch (RuntimeException e) {
+            faultProgramCounter = pc;
+            throw e;
+        }
+    }
+
+    int getLastBlock() {
+        return lastBlock;
+    }
+
+    long getNumJumps() {
+        return numJumps;
+    }
+
+    /**
+     * @return the instruction# the generated code faulted at, or -1.
+     */
+    int getFaultProgramCounter() {
+        return faultProgramCounter;
+    }
+}
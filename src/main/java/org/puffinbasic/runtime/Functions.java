@@ -2,7 +2,6 @@ package org.puffinbasic.runtime;
 
 import com.google.common.base.Strings;
 import it.unimi.dsi.fastutil.doubles.Double2DoubleFunction;
-import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.domain.STObjects;
 import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
 import org.puffinbasic.error.PuffinBasicInternalError;
@@ -30,10 +29,10 @@ import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.INDEX_OUT_
 
 public class Functions {
 
-    public static void abs(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry op1Entry = symbolTable.get(instruction.op1);
+    public static void abs(Instruction instruction) {
+        STObjects.STEntry op1Entry = instruction.getOp1Entry();
         STObjects.STValue op1 = op1Entry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         switch (op1Entry.getType().getAtomTypeId()) {
             case INT32:
                 result.setInt32(Math.abs(op1.getInt32()));
@@ -52,8 +51,8 @@ public class Functions {
         }
     }
 
-    public static void asc(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String value = symbolTable.get(instruction.op1).getValue().getString();
+    public static void asc(Instruction instruction) {
+        String value = instruction.getOp1Entry().getValue().getString();
         if (value == null || value.isEmpty()) {
             throw new PuffinBasicRuntimeError(
                     ILLEGAL_FUNCTION_PARAM,
@@ -61,103 +60,103 @@ public class Functions {
             );
         }
         int ascii = value.charAt(0);
-        symbolTable.get(instruction.result).getValue().setInt32(ascii);
+        instruction.getResultEntry().getValue().setInt32(ascii);
     }
 
-    public static void sin(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::sin);
+    public static void sin(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::sin);
     }
 
-    public static void cos(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::cos);
+    public static void cos(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::cos);
     }
 
-    public static void tan(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::tan);
+    public static void tan(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::tan);
     }
 
-    public static void asin(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::asin);
+    public static void asin(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::asin);
     }
 
-    public static void acos(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::acos);
+    public static void acos(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::acos);
     }
 
-    public static void atn(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::atan);
+    public static void atn(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::atan);
     }
 
-    public static void sinh(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::sinh);
+    public static void sinh(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::sinh);
     }
 
-    public static void cosh(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::cosh);
+    public static void cosh(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::cosh);
     }
 
-    public static void tanh(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::tanh);
+    public static void tanh(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::tanh);
     }
 
-    public static void sqr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::sqrt);
+    public static void sqr(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::sqrt);
     }
 
-    public static void log(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::log);
+    public static void log(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::log);
     }
 
-    public static void log10(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::log10);
+    public static void log10(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::log10);
     }
 
-    public static void log2(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Functions::mathLog2);
+    public static void log2(Instruction instruction) {
+        applyDoubleFunction(instruction, Functions::mathLog2);
     }
 
     private static double mathLog2(double x) {
         return Math.log(x) / Math.log(2);
     }
 
-    public static void exp(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::exp);
+    public static void exp(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::exp);
     }
 
-    public static void toRad(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::toRadians);
+    public static void toRad(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::toRadians);
     }
 
-    public static void toDeg(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::toDegrees);
+    public static void toDeg(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::toDegrees);
     }
 
-    public static void floor(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::floor);
+    public static void floor(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::floor);
     }
 
-    public static void ceil(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::ceil);
+    public static void ceil(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::ceil);
     }
 
-    public static void round(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        applyDoubleFunction(symbolTable, instruction, Math::round);
+    public static void round(Instruction instruction) {
+        applyDoubleFunction(instruction, Math::round);
     }
 
-    public static void e(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void e(Instruction instruction) {
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat64(Math.E);
     }
 
-    public static void pi(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void pi(Instruction instruction) {
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat64(Math.PI);
     }
 
-    public static void min(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STEntry resultEntry = symbolTable.get(instruction.result);
+    public static void min(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STEntry resultEntry = instruction.getResultEntry();
         STObjects.STValue result = resultEntry.getValue();
 
         switch (resultEntry.getType().getAtomTypeId()) {
@@ -178,10 +177,10 @@ public class Functions {
         }
     }
 
-    public static void max(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STEntry resultEntry = symbolTable.get(instruction.result);
+    public static void max(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STEntry resultEntry = instruction.getResultEntry();
         STObjects.STValue result = resultEntry.getValue();
 
         switch (resultEntry.getType().getAtomTypeId()) {
@@ -203,17 +202,16 @@ public class Functions {
     }
 
     private static void applyDoubleFunction(
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction,
             Double2DoubleFunction function)
     {
-        double value = symbolTable.get(instruction.op1).getValue().getFloat64();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        double value = instruction.getOp1Entry().getValue().getFloat64();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat64(function.applyAsDouble(value));
     }
 
-    public static void cint(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STValue entry = symbolTable.get(instruction.op1).getValue();
+    public static void cint(Instruction instruction) {
+        STObjects.STValue entry = instruction.getOp1Entry().getValue();
         double value = entry.getFloat64();
         if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
             throw new PuffinBasicRuntimeError(
@@ -221,11 +219,11 @@ public class Functions {
                     "CINT: value: " + value + " overflows an int32"
             );
         }
-        symbolTable.get(instruction.result).getValue().setInt32(entry.getRoundedInt32());
+        instruction.getResultEntry().getValue().setInt32(entry.getRoundedInt32());
     }
 
-    public static void clng(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STValue entry = symbolTable.get(instruction.op1).getValue();
+    public static void clng(Instruction instruction) {
+        STObjects.STValue entry = instruction.getOp1Entry().getValue();
         double value = entry.getFloat64();
         if (value < Long.MIN_VALUE || value > Long.MAX_VALUE) {
             throw new PuffinBasicRuntimeError(
@@ -233,52 +231,52 @@ public class Functions {
                     "CLONG: value: " + value + " overflows an int64"
             );
         }
-        symbolTable.get(instruction.result).getValue().setInt64(entry.getRoundedInt64());
+        instruction.getResultEntry().getValue().setInt64(entry.getRoundedInt64());
     }
 
-    public static void csng(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        symbolTable.get(instruction.result).getValue().setFloat32(
-                symbolTable.get(instruction.op1).getValue().getFloat32());
+    public static void csng(Instruction instruction) {
+        instruction.getResultEntry().getValue().setFloat32(
+                instruction.getOp1Entry().getValue().getFloat32());
     }
 
-    public static void cdbl(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        symbolTable.get(instruction.result).getValue().setFloat64(
-                symbolTable.get(instruction.op1).getValue().getFloat64());
+    public static void cdbl(Instruction instruction) {
+        instruction.getResultEntry().getValue().setFloat64(
+                instruction.getOp1Entry().getValue().getFloat64());
     }
 
-    public static void chrdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        int intValue = symbolTable.get(instruction.op1).getValue().getInt32();
+    public static void chrdlr(Instruction instruction) {
+        int intValue = instruction.getOp1Entry().getValue().getInt32();
         char charValue = (char) intValue;
-        symbolTable.get(instruction.result).getValue().setString(
+        instruction.getResultEntry().getValue().setString(
                 String.valueOf(charValue));
     }
 
-    public static void mkidlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        int value = symbolTable.get(instruction.op1).getValue().getInt32();
+    public static void mkidlr(Instruction instruction) {
+        int value = instruction.getOp1Entry().getValue().getInt32();
         String str = new String(ByteBuffer.allocate(4).putInt(value).array(), StandardCharsets.ISO_8859_1);
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void mkldlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        long value = symbolTable.get(instruction.op1).getValue().getInt64();
+    public static void mkldlr(Instruction instruction) {
+        long value = instruction.getOp1Entry().getValue().getInt64();
         String str = new String(ByteBuffer.allocate(8).putLong(value).array(), StandardCharsets.ISO_8859_1);
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void mksdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        float value = symbolTable.get(instruction.op1).getValue().getFloat32();
+    public static void mksdlr(Instruction instruction) {
+        float value = instruction.getOp1Entry().getValue().getFloat32();
         String str = new String(ByteBuffer.allocate(4).putFloat(value).array(), StandardCharsets.ISO_8859_1);
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void mkddlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        double value = symbolTable.get(instruction.op1).getValue().getFloat64();
+    public static void mkddlr(Instruction instruction) {
+        double value = instruction.getOp1Entry().getValue().getFloat64();
         String str = new String(ByteBuffer.allocate(8).putDouble(value).array(), StandardCharsets.ISO_8859_1);
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void cvi(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String value = symbolTable.get(instruction.op1).getValue().getString();
+    public static void cvi(Instruction instruction) {
+        String value = instruction.getOp1Entry().getValue().getString();
         if (value.length() != 4) {
             throw new PuffinBasicRuntimeError(
                     DATA_OUT_OF_RANGE,
@@ -286,11 +284,11 @@ public class Functions {
             );
         }
         int intValue = ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1), 0, 4).getInt();
-        symbolTable.get(instruction.result).getValue().setInt32(intValue);
+        instruction.getResultEntry().getValue().setInt32(intValue);
     }
 
-    public static void cvl(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String value = symbolTable.get(instruction.op1).getValue().getString();
+    public static void cvl(Instruction instruction) {
+        String value = instruction.getOp1Entry().getValue().getString();
         if (value.length() != 8) {
             throw new PuffinBasicRuntimeError(
                     DATA_OUT_OF_RANGE,
@@ -298,11 +296,11 @@ public class Functions {
             );
         }
         long longValue = ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1), 0, 8).getLong();
-        symbolTable.get(instruction.result).getValue().setInt64(longValue);
+        instruction.getResultEntry().getValue().setInt64(longValue);
     }
 
-    public static void cvs(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String value = symbolTable.get(instruction.op1).getValue().getString();
+    public static void cvs(Instruction instruction) {
+        String value = instruction.getOp1Entry().getValue().getString();
         if (value.length() != 4) {
             throw new PuffinBasicRuntimeError(
                     DATA_OUT_OF_RANGE,
@@ -310,11 +308,11 @@ public class Functions {
             );
         }
         float floatValue = ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1), 0, 4).getFloat();
-        symbolTable.get(instruction.result).getValue().setFloat32(floatValue);
+        instruction.getResultEntry().getValue().setFloat32(floatValue);
     }
 
-    public static void cvd(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String value = symbolTable.get(instruction.op1).getValue().getString();
+    public static void cvd(Instruction instruction) {
+        String value = instruction.getOp1Entry().getValue().getString();
         if (value.length() != 8) {
             throw new PuffinBasicRuntimeError(
                     DATA_OUT_OF_RANGE,
@@ -322,22 +320,22 @@ public class Functions {
             );
         }
         double doubleValue = ByteBuffer.wrap(value.getBytes(StandardCharsets.ISO_8859_1), 0, 8).getDouble();
-        symbolTable.get(instruction.result).getValue().setFloat64(doubleValue);
+        instruction.getResultEntry().getValue().setFloat64(doubleValue);
     }
 
-    public static void spacedlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        int len = symbolTable.get(instruction.op1).getValue().getInt32();
+    public static void spacedlr(Instruction instruction) {
+        int len = instruction.getOp1Entry().getValue().getInt32();
         byte[] bytes = new byte[len];
         for (int i = 0; i < len; i++) {
             bytes[i] = ' ';
         }
         String str = new String(bytes);
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void val(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String str = symbolTable.get(instruction.op1).getValue().getString();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void val(Instruction instruction) {
+        String str = instruction.getOp1Entry().getValue().getString();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         try {
             result.setFloat64(Double.parseDouble(str));
         } catch (NumberFormatException e) {
@@ -348,10 +346,10 @@ public class Functions {
         }
     }
 
-    public static void fnint(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry vEntry = symbolTable.get(instruction.op1);
+    public static void fnint(Instruction instruction) {
+        STObjects.STEntry vEntry = instruction.getOp1Entry();
         STObjects.STValue v = vEntry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         switch (vEntry.getType().getAtomTypeId()) {
             case INT32:
                 result.setInt32(v.getInt32());
@@ -370,10 +368,10 @@ public class Functions {
         }
     }
 
-    public static void fix(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry vEntry = symbolTable.get(instruction.op1);
+    public static void fix(Instruction instruction) {
+        STObjects.STEntry vEntry = instruction.getOp1Entry();
         STObjects.STValue v = vEntry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         switch (vEntry.getType().getAtomTypeId()) {
             case INT32:
                 result.setInt32(v.getInt32());
@@ -392,12 +390,12 @@ public class Functions {
         }
     }
 
-    public static void len(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry stEntry = symbolTable.get(instruction.op1);
+    public static void len(Instruction instruction) {
+        STObjects.STEntry stEntry = instruction.getOp1Entry();
         STObjects.STValue value = stEntry.getValue();
         int len;
         if (stEntry.getType().getTypeId() == ARRAY) {
-            int axis = instruction.op2 != NULL_ID ? symbolTable.get(instruction.op2).getValue().getInt32() : 0;
+            int axis = instruction.op2 != NULL_ID ? instruction.getOp2Entry().getValue().getInt32() : 0;
             if (axis < 0 || axis >= value.getNumArrayDimensions()) {
                 throw new PuffinBasicRuntimeError(
                         ILLEGAL_FUNCTION_PARAM,
@@ -411,11 +409,11 @@ public class Functions {
             throw new PuffinBasicRuntimeError(ILLEGAL_FUNCTION_PARAM,
                     "Bad LEN() call!");
         }
-        symbolTable.get(instruction.result).getValue().setInt32(len);
+        instruction.getResultEntry().getValue().setInt32(len);
     }
 
-    public static void strdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry numericEntry = symbolTable.get(instruction.op1);
+    public static void strdlr(Instruction instruction) {
+        STObjects.STEntry numericEntry = instruction.getOp1Entry();
         STObjects.STValue numeric = numericEntry.getValue();
         PuffinBasicAtomTypeId dt = numericEntry.getType().getAtomTypeId();
         String str;
@@ -428,11 +426,11 @@ public class Functions {
         } else {
             str = Double.toString(numeric.getFloat64());
         }
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void hexdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry numericEntry = symbolTable.get(instruction.op1);
+    public static void hexdlr(Instruction instruction) {
+        STObjects.STEntry numericEntry = instruction.getOp1Entry();
         STObjects.STValue numeric = numericEntry.getValue();
         PuffinBasicAtomTypeId dt = numericEntry.getType().getAtomTypeId();
         String str;
@@ -445,11 +443,11 @@ public class Functions {
         } else {
             str = Double.toHexString(numeric.getFloat64());
         }
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void octdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry numericEntry = symbolTable.get(instruction.op1);
+    public static void octdlr(Instruction instruction) {
+        STObjects.STEntry numericEntry = instruction.getOp1Entry();
         STObjects.STValue numeric = numericEntry.getValue();
         PuffinBasicAtomTypeId dt = numericEntry.getType().getAtomTypeId();
         String str;
@@ -458,12 +456,12 @@ public class Functions {
         } else {
             str = Long.toOctalString(numeric.getInt64());
         }
-        symbolTable.get(instruction.result).getValue().setString(str);
+        instruction.getResultEntry().getValue().setString(str);
     }
 
-    public static void leftdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String x = symbolTable.get(instruction.op1).getValue().getString();
-        int n = symbolTable.get(instruction.op2).getValue().getInt32();
+    public static void leftdlr(Instruction instruction) {
+        String x = instruction.getOp1Entry().getValue().getString();
+        int n = instruction.getOp2Entry().getValue().getInt32();
         String result;
         if (n < 0) {
             throw new PuffinBasicRuntimeError(
@@ -477,12 +475,12 @@ public class Functions {
         } else {
             result = x.substring(0, n);
         }
-        symbolTable.get(instruction.result).getValue().setString(result);
+        instruction.getResultEntry().getValue().setString(result);
     }
 
-    public static void rightdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String x = symbolTable.get(instruction.op1).getValue().getString();
-        int n = symbolTable.get(instruction.op2).getValue().getInt32();
+    public static void rightdlr(Instruction instruction) {
+        String x = instruction.getOp1Entry().getValue().getString();
+        int n = instruction.getOp2Entry().getValue().getInt32();
         int xlen = x.length();
         String result;
         if (n < 0) {
@@ -497,16 +495,15 @@ public class Functions {
         } else {
             result = x.substring(xlen - n, xlen);
         }
-        symbolTable.get(instruction.result).getValue().setString(result);
+        instruction.getResultEntry().getValue().setString(result);
     }
 
     public static void instr(
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instr) {
-        String x = symbolTable.get(instr0.op1).getValue().getString();
-        String y = symbolTable.get(instr0.op2).getValue().getString();
-        int n = symbolTable.get(instr.op1).getValue().getInt32();
+        String x = instr0.getOp1Entry().getValue().getString();
+        String y = instr0.getOp2Entry().getValue().getString();
+        int n = instr.getOp1Entry().getValue().getInt32();
         int xlen = x.length();
         int ylen = y.length();
         int result;
@@ -522,16 +519,15 @@ public class Functions {
         } else {
             result = x.indexOf(y, n - 1) + 1;
         }
-        symbolTable.get(instr.result).getValue().setInt32(result);
+        instr.getResultEntry().getValue().setInt32(result);
     }
 
     public static void middlr(
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instr) {
-        String x = symbolTable.get(instr0.op1).getValue().getString();
-        int n = symbolTable.get(instr0.op2).getValue().getInt32();
-        int m = symbolTable.get(instr.op1).getValue().getInt32();
+        String x = instr0.getOp1Entry().getValue().getString();
+        int n = instr0.getOp2Entry().getValue().getInt32();
+        int m = instr.getOp1Entry().getValue().getInt32();
         int xlen = x.length();
         String result;
         if (n <= 0) {
@@ -544,15 +540,15 @@ public class Functions {
         } else {
             result = x.substring(n - 1, Math.min(xlen, n + m - 1));
         }
-        symbolTable.get(instr.result).getValue().setString(result);
+        instr.getResultEntry().getValue().setString(result);
     }
 
-    public static void rnd(Random random, PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        symbolTable.get(instruction.result).getValue().setFloat64(random.nextDouble());
+    public static void rnd(Random random, Instruction instruction) {
+        instruction.getResultEntry().getValue().setFloat64(random.nextDouble());
     }
 
-    public static void sgn(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry entry = symbolTable.get(instruction.op1);
+    public static void sgn(Instruction instruction) {
+        STObjects.STEntry entry = instruction.getOp1Entry();
         STObjects.STValue numeric = entry.getValue();
         PuffinBasicAtomTypeId dt = entry.getType().getAtomTypeId();
         int result;
@@ -570,28 +566,28 @@ public class Functions {
         } else if (result > 0) {
             result = 1;
         }
-        symbolTable.get(instruction.result).getValue().setInt32(result);
+        instruction.getResultEntry().getValue().setInt32(result);
     }
 
-    public static void timer(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    public static void timer(Instruction instruction) {
         ZonedDateTime nowZoned = ZonedDateTime.now();
         Instant midnight = nowZoned.toLocalDate().atStartOfDay(nowZoned.getZone()).toInstant();
         Duration duration = Duration.between(midnight, Instant.now());
         double seconds = duration.getSeconds() + duration.getNano() / 1000_000_000.0;
-        symbolTable.get(instruction.result).getValue().setFloat64(seconds);
+        instruction.getResultEntry().getValue().setFloat64(seconds);
     }
 
-    public static void timerMillis(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
+    public static void timerMillis(Instruction instruction) {
         ZonedDateTime nowZoned = ZonedDateTime.now();
         Instant midnight = nowZoned.toLocalDate().atStartOfDay(nowZoned.getZone()).toInstant();
         Duration duration = Duration.between(midnight, Instant.now());
         long millis = TimeUnit.SECONDS.toMillis(duration.getSeconds()) + TimeUnit.NANOSECONDS.toMillis(duration.getNano());
-        symbolTable.get(instruction.result).getValue().setInt64(millis);
+        instruction.getResultEntry().getValue().setInt64(millis);
     }
 
-    public static void stringdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        int n = symbolTable.get(instruction.op1).getValue().getInt32();
-        STObjects.STEntry jOrxdlrEntry = symbolTable.get(instruction.op2);
+    public static void stringdlr(Instruction instruction) {
+        int n = instruction.getOp1Entry().getValue().getInt32();
+        STObjects.STEntry jOrxdlrEntry = instruction.getOp2Entry();
         STObjects.STValue jOrxdlr = jOrxdlrEntry.getValue();
         String c;
         if (jOrxdlrEntry.getType().getAtomTypeId() == STRING) {
@@ -623,46 +619,42 @@ public class Functions {
         } else {
             result = Strings.repeat(c, n);
         }
-        symbolTable.get(instruction.result).getValue().setString(result);
+        instruction.getResultEntry().getValue().setString(result);
     }
 
     public static void loc(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+        int fileNumber = instruction.getOp1Entry().getValue().getInt32();
         int loc = files.get(fileNumber).getCurrentRecordNumber();
-        symbolTable.get(instruction.result).getValue().setInt32(loc);
+        instruction.getResultEntry().getValue().setInt32(loc);
     }
 
     public static void lof(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+        int fileNumber = instruction.getOp1Entry().getValue().getInt32();
         long lof = files.get(fileNumber).getFileSizeInBytes();
-        symbolTable.get(instruction.result).getValue().setInt64(lof);
+        instruction.getResultEntry().getValue().setInt64(lof);
     }
 
     public static void eof(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+        int fileNumber = instruction.getOp1Entry().getValue().getInt32();
         boolean eof = files.get(fileNumber).eof();
-        symbolTable.get(instruction.result).getValue().setInt32(eof ? -1 : 0);
+        instruction.getResultEntry().getValue().setInt32(eof ? -1 : 0);
     }
 
     public static void inputdlr(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int x = symbolTable.get(instruction.op1).getValue().getInt32();
-        int fileNumber = symbolTable.get(instruction.op2).getValue().getInt32();
+        int x = instruction.getOp1Entry().getValue().getInt32();
+        int fileNumber = instruction.getOp2Entry().getValue().getInt32();
 
         byte[] read;
         if (fileNumber < 0) {
@@ -670,24 +662,23 @@ public class Functions {
         } else {
             throw new UnsupportedOperationException();
         }
-        symbolTable.get(instruction.result).getValue().setString(new String(read));
+        instruction.getResultEntry().getValue().setString(new String(read));
     }
 
     public static void environdlr(
             Environment env,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        String envvar = symbolTable.get(instruction.op1).getValue().getString();
+        String envvar = instruction.getOp1Entry().getValue().getString();
         String result = env.get(envvar);
-        symbolTable.get(instruction.result).getValue().setString(result);
+        instruction.getResultEntry().getValue().setString(result);
     }
 
-    static void splitdlr(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        String str = symbolTable.get(instruction.op1).getValue().getString();
-        String regex = symbolTable.get(instruction.op2).getValue().getString();
+    static void splitdlr(Instruction instruction) {
+        String str = instruction.getOp1Entry().getValue().getString();
+        String regex = instruction.getOp2Entry().getValue().getString();
         String[] tokens = str.split(regex);
-        STRING.copyArray(tokens, symbolTable.get(instruction.result).getValue());
+        STRING.copyArray(tokens, instruction.getResultEntry().getValue());
     }
 
     static void throwUnsupportedType(PuffinBasicAtomTypeId type) {
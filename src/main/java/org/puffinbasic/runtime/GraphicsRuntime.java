@@ -97,7 +97,7 @@ class GraphicsRuntime {
             PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        String path = symbolTable.get(instruction.op1).getValue().getString();
+        String path = instruction.getOp1Entry().getValue().getString();
         STObjects.STEntry entry = symbolTable.getVariable(instruction.op2);
         STObjects.STValue variableValue = entry.getValue();
         if (variableValue.getNumArrayDimensions() != 2 || entry.getType().getAtomTypeId() != INT32) {
@@ -128,7 +128,7 @@ class GraphicsRuntime {
             PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        String path = symbolTable.get(instruction.op1).getValue().getString();
+        String path = instruction.getOp1Entry().getValue().getString();
         STObjects.STEntry entry = symbolTable.getVariable(instruction.op2);
         STObjects.STValue variableValue = entry.getValue();
         if (variableValue.getNumArrayDimensions() != 2 || entry.getType().getAtomTypeId() != INT32) {
@@ -164,18 +164,17 @@ class GraphicsRuntime {
 
     public static void screen(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> instr0,
             Instruction instruction)
     {
         Instruction i0 = instr0.get(0);
         Instruction i1 = instr0.get(1);
         Instruction i2 = instr0.get(2);
-        int w = symbolTable.get(i0.op1).getValue().getInt32();
-        int h = symbolTable.get(i0.op2).getValue().getInt32();
-        int iw = symbolTable.get(i1.op1).getValue().getInt32();
-        int ih = symbolTable.get(i1.op2).getValue().getInt32();
-        String title = symbolTable.get(instruction.op1).getValue().getString();
+        int w = i0.getOp1Entry().getValue().getInt32();
+        int h = i0.getOp2Entry().getValue().getInt32();
+        int iw = i1.getOp1Entry().getValue().getInt32();
+        int ih = i1.getOp2Entry().getValue().getInt32();
+        String title = instruction.getOp1Entry().getValue().getString();
         if (w <= 0 || h <= 0 || w > GraphicsUtil.MAX_WIDTH || h > GraphicsUtil.MAX_HEIGHT) {
             throw new PuffinBasicRuntimeError(
                     GRAPHICS_ERROR,
@@ -188,22 +187,21 @@ class GraphicsRuntime {
                     "Image size out-of-bounds: " + iw + ", " + ih
             );
         }
-        boolean autoRepaint = symbolTable.get(i2.op1).getValue().getInt32() == -1;
-        boolean doubleBuffer = symbolTable.get(i2.op2).getValue().getInt32() == -1;
+        boolean autoRepaint = i2.getOp1Entry().getValue().getInt32() == -1;
+        boolean doubleBuffer = i2.getOp2Entry().getValue().getInt32() == -1;
 
         graphicsState.setFrame(new BasicFrame(title, w, h, iw, ih, autoRepaint, doubleBuffer));
         EventQueue.invokeLater(() -> graphicsState.getFrame().setVisible(true));
     }
 
     public static void hsb2rgb(
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instruction)
     {
-        float h = symbolTable.get(instr0.op1).getValue().getFloat32();
-        float s = symbolTable.get(instr0.op2).getValue().getFloat32();
-        float b = symbolTable.get(instruction.op1).getValue().getFloat32();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        float h = instr0.getOp1Entry().getValue().getFloat32();
+        float s = instr0.getOp2Entry().getValue().getFloat32();
+        float b = instruction.getOp1Entry().getValue().getFloat32();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt32(Color.HSBtoRGB(h, s, b));
     }
 
@@ -224,7 +222,6 @@ class GraphicsRuntime {
 
     public static void circle(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> instr0,
             Instruction instruction)
     {
@@ -232,13 +229,13 @@ class GraphicsRuntime {
         Instruction i1 = instr0.get(1);
         Instruction i2 = instr0.get(2);
 
-        int x = symbolTable.get(i0.op1).getValue().getInt32();
-        int y = symbolTable.get(i0.op2).getValue().getInt32();
-        Integer s = i1.op1 != NULL_ID ? symbolTable.get(i1.op1).getValue().getInt32() : null;
-        Integer e = i1.op1 != NULL_ID ? symbolTable.get(i1.op2).getValue().getInt32() : null;
-        int r1 = Math.max(0, symbolTable.get(instruction.op1).getValue().getInt32());
-        int r2 = Math.max(0, symbolTable.get(instruction.op2).getValue().getInt32());
-        boolean fill = i2.op1 != NULL_ID && symbolTable.get(i2.op1).getValue().getString().equalsIgnoreCase("F");
+        int x = i0.getOp1Entry().getValue().getInt32();
+        int y = i0.getOp2Entry().getValue().getInt32();
+        Integer s = i1.op1 != NULL_ID ? i1.getOp1Entry().getValue().getInt32() : null;
+        Integer e = i1.op1 != NULL_ID ? i1.getOp2Entry().getValue().getInt32() : null;
+        int r1 = Math.max(0, instruction.getOp1Entry().getValue().getInt32());
+        int r2 = Math.max(0, instruction.getOp2Entry().getValue().getInt32());
+        boolean fill = i2.op1 != NULL_ID && i2.getOp1Entry().getValue().getString().equalsIgnoreCase("F");
 
         int w = r1 * 2;
         int h = r2 * 2;
@@ -263,13 +260,12 @@ class GraphicsRuntime {
 
     public static void font(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instruction)
     {
-        String style = symbolTable.get(instr0.op1).getValue().getString().toLowerCase();
-        int size = symbolTable.get(instr0.op2).getValue().getInt32();
-        String name = symbolTable.get(instruction.op1).getValue().getString();
+        String style = instr0.getOp1Entry().getValue().getString().toLowerCase();
+        int size = instr0.getOp2Entry().getValue().getInt32();
+        String name = instruction.getOp1Entry().getValue().getString();
 
         if (name.isEmpty() || size <= 0 || size > GraphicsUtil.MAX_WIDTH) {
             throw new PuffinBasicRuntimeError(
@@ -290,23 +286,21 @@ class GraphicsRuntime {
 
     public static void drawstr(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instruction)
     {
-        int x = symbolTable.get(instr0.op1).getValue().getInt32();
-        int y = symbolTable.get(instr0.op2).getValue().getInt32();
-        String text = symbolTable.get(instruction.op1).getValue().getString();
+        int x = instr0.getOp1Entry().getValue().getInt32();
+        int y = instr0.getOp2Entry().getValue().getInt32();
+        String text = instruction.getOp1Entry().getValue().getString();
 
         graphicsState.getGraphics2D().drawString(text, x, y);
     }
 
     public static void draw(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        String str = symbolTable.get(instruction.op1).getValue().getString();
+        String str = instruction.getOp1Entry().getValue().getString();
         if (str.isEmpty()) {
             throw new PuffinBasicRuntimeError(
                     GRAPHICS_ERROR,
@@ -404,19 +398,18 @@ class GraphicsRuntime {
 
     public static void line(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> instr0,
             Instruction instruction)
     {
         Instruction i0 = instr0.get(0);
         Instruction i1 = instr0.get(1);
 
-        int x1 = symbolTable.get(i0.op1).getValue().getInt32();
-        int y1 = symbolTable.get(i0.op2).getValue().getInt32();
-        int x2 = symbolTable.get(i1.op1).getValue().getInt32();
-        int y2 = symbolTable.get(i1.op2).getValue().getInt32();
+        int x1 = i0.getOp1Entry().getValue().getInt32();
+        int y1 = i0.getOp2Entry().getValue().getInt32();
+        int x2 = i1.getOp1Entry().getValue().getInt32();
+        int y2 = i1.getOp2Entry().getValue().getInt32();
         String bf = instruction.op1 != NULL_ID
-                ? symbolTable.get(instruction.op1).getValue().getString().toUpperCase()
+                ? instruction.getOp1Entry().getValue().getString().toUpperCase()
                 : "";
 
         if (bf.isEmpty()) {
@@ -439,13 +432,12 @@ class GraphicsRuntime {
 
     public static void color(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instruction)
     {
-        int r = symbolTable.get(instr0.op1).getValue().getInt32();
-        int g = symbolTable.get(instr0.op2).getValue().getInt32();
-        int b = symbolTable.get(instruction.op1).getValue().getInt32();
+        int r = instr0.getOp1Entry().getValue().getInt32();
+        int g = instr0.getOp2Entry().getValue().getInt32();
+        int b = instruction.getOp1Entry().getValue().getInt32();
 
         r = applyColorBounds(r);
         g = applyColorBounds(g);
@@ -460,18 +452,17 @@ class GraphicsRuntime {
 
     public static void paint(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> instr0,
             Instruction instruction)
     {
         Instruction i0 = instr0.get(0);
         Instruction i1 = instr0.get(1);
 
-        int r = symbolTable.get(i0.op1).getValue().getInt32();
-        int g = symbolTable.get(i0.op2).getValue().getInt32();
-        int b = symbolTable.get(i1.op1).getValue().getInt32();
-        int x = symbolTable.get(instruction.op1).getValue().getInt32();
-        int y = symbolTable.get(instruction.op2).getValue().getInt32();
+        int r = i0.getOp1Entry().getValue().getInt32();
+        int g = i0.getOp2Entry().getValue().getInt32();
+        int b = i1.getOp1Entry().getValue().getInt32();
+        int x = instruction.getOp1Entry().getValue().getInt32();
+        int y = instruction.getOp2Entry().getValue().getInt32();
 
         if (x < 0 || y < 0 || x > graphicsState.getImageWidth() || y > graphicsState.getImageHeight()) {
             throw new PuffinBasicRuntimeError(
@@ -489,18 +480,17 @@ class GraphicsRuntime {
 
     public static void pset(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> instr0,
             Instruction instruction)
     {
         Instruction i0 = instr0.get(0);
         Instruction i1 = instr0.get(1);
 
-        int r = i0.op1 != NULL_ID ? symbolTable.get(i0.op1).getValue().getInt32() : -1;
-        int g = i0.op2 != NULL_ID ? symbolTable.get(i0.op2).getValue().getInt32() : -1;
-        int b = i1.op1 != NULL_ID ? symbolTable.get(i1.op1).getValue().getInt32() : -1;
-        int x = symbolTable.get(instruction.op1).getValue().getInt32();
-        int y = symbolTable.get(instruction.op2).getValue().getInt32();
+        int r = i0.op1 != NULL_ID ? i0.getOp1Entry().getValue().getInt32() : -1;
+        int g = i0.op2 != NULL_ID ? i0.getOp2Entry().getValue().getInt32() : -1;
+        int b = i1.op1 != NULL_ID ? i1.getOp1Entry().getValue().getInt32() : -1;
+        int x = instruction.getOp1Entry().getValue().getInt32();
+        int y = instruction.getOp2Entry().getValue().getInt32();
 
         r = applyColorBounds(r);
         g = applyColorBounds(g);
@@ -519,13 +509,12 @@ class GraphicsRuntime {
 
     public static void bufferCopyHor(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instruction)
     {
-        int srcx = symbolTable.get(instr0.op1).getValue().getInt32();
-        int dstx = symbolTable.get(instr0.op2).getValue().getInt32();
-        int w = symbolTable.get(instruction.op1).getValue().getInt32();
+        int srcx = instr0.getOp1Entry().getValue().getInt32();
+        int dstx = instr0.getOp2Entry().getValue().getInt32();
+        int w = instruction.getOp1Entry().getValue().getInt32();
 
         if (srcx < 0 || dstx < 0 || w < 0
                 || srcx > graphicsState.getImageWidth()
@@ -550,10 +539,10 @@ class GraphicsRuntime {
         Instruction i0 = instr0.get(0);
         Instruction i1 = instr0.get(1);
 
-        int x1 = symbolTable.get(i0.op1).getValue().getInt32();
-        int y1 = symbolTable.get(i0.op2).getValue().getInt32();
-        int x2 = symbolTable.get(i1.op1).getValue().getInt32();
-        int y2 = symbolTable.get(i1.op2).getValue().getInt32();
+        int x1 = i0.getOp1Entry().getValue().getInt32();
+        int y1 = i0.getOp2Entry().getValue().getInt32();
+        int x2 = i1.getOp1Entry().getValue().getInt32();
+        int y2 = i1.getOp2Entry().getValue().getInt32();
 
         STObjects.STEntry variable = symbolTable.getVariable(instruction.op1);
         if (variable.getType().getTypeId() != ARRAY
@@ -579,7 +568,7 @@ class GraphicsRuntime {
             );
         }
 
-        int bufferNumber = symbolTable.get(instruction.op2).getValue().getInt32();
+        int bufferNumber = instruction.getOp2Entry().getValue().getInt32();
 
         graphicsState.getFrame().getDrawingCanvas().copyGraphicsToArray(
                 bufferNumber, x1, y1, x2, y2, variable.getValue().getInt32Array1D()
@@ -593,13 +582,13 @@ class GraphicsRuntime {
             Instruction instr1,
             Instruction instruction)
     {
-        int x = symbolTable.get(instr0.op1).getValue().getInt32();
-        int y = symbolTable.get(instr0.op2).getValue().getInt32();
+        int x = instr0.getOp1Entry().getValue().getInt32();
+        int y = instr0.getOp2Entry().getValue().getInt32();
         String action = instruction.op1 != NULL_ID
-                ? symbolTable.get(instruction.op1).getValue().getString()
+                ? instruction.getOp1Entry().getValue().getString()
                 : PUT_XOR;
         action = action.toUpperCase();
-        int bufferNumber = symbolTable.get(instr1.op1).getValue().getInt32();
+        int bufferNumber = instr1.getOp1Entry().getValue().getInt32();
 
         STObjects.STEntry variable = symbolTable.getVariable(instruction.op2);
         STObjects.STValue value = variable.getValue();
@@ -653,11 +642,10 @@ class GraphicsRuntime {
 
     public static void inkeydlr(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
         String key = graphicsState.getFrame().getDrawingCanvas().takeNextKey();
-        symbolTable.get(instruction.result).getValue().setString(key);
+        instruction.getResultEntry().getValue().setString(key);
     }
 
     public static void loadwav(
@@ -665,108 +653,97 @@ class GraphicsRuntime {
             PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        String file = symbolTable.get(instruction.op1).getValue().getString();
+        String file = instruction.getOp1Entry().getValue().getString();
         STObjects.STValue variable = symbolTable.getVariable(instruction.op2).getValue();
         variable.setInt32(soundState.load(file));
     }
 
     public static void playwav(
             SoundState soundState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int id = symbolTable.get(instruction.op1).getValue().getInt32();
+        int id = instruction.getOp1Entry().getValue().getInt32();
         soundState.play(id);
     }
 
     public static void stopwav(
             SoundState soundState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int id = symbolTable.get(instruction.op1).getValue().getInt32();
+        int id = instruction.getOp1Entry().getValue().getInt32();
         soundState.stop(id);
     }
 
     public static void loopwav(
             SoundState soundState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int id = symbolTable.get(instruction.op1).getValue().getInt32();
+        int id = instruction.getOp1Entry().getValue().getInt32();
         soundState.loop(id);
     }
 
     public static void mouseMovedX(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        symbolTable.get(instruction.result).getValue().setInt32(
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().getMouseState().getMovedX());
     }
 
     public static void mouseMovedY(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        symbolTable.get(instruction.result).getValue().setInt32(
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().getMouseState().getMovedY());
     }
 
     public static void mouseDraggedX(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        symbolTable.get(instruction.result).getValue().setInt32(
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().getMouseState().getDraggedX());
     }
 
     public static void mouseDraggedY(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        symbolTable.get(instruction.result).getValue().setInt32(
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().getMouseState().getDraggedY());
     }
 
     public static void mouseButtonClicked(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        symbolTable.get(instruction.result).getValue().setInt32(
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().getMouseState().getButtonClicked());
     }
 
     public static void mouseButtonPressed(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        symbolTable.get(instruction.result).getValue().setInt32(
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().getMouseState().getButtonPressed());
     }
 
     public static void mouseButtonReleased(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        symbolTable.get(instruction.result).getValue().setInt32(
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().getMouseState().getButtonReleased());
     }
 
     public static void isKeyPressed(
             GraphicsState graphicsState,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        String key = symbolTable.get(instruction.op1).getValue().getString();
-        symbolTable.get(instruction.result).getValue().setInt32(
+        String key = instruction.getOp1Entry().getValue().getString();
+        instruction.getResultEntry().getValue().setInt32(
                 graphicsState.getFrame().getDrawingCanvas().isKeyPressed(key) ? -1 : 0);
     }
 }
@@ -1,7 +1,7 @@
 package org.puffinbasic.runtime;
 
-import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.domain.STObjects;
+import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
 import org.puffinbasic.error.PuffinBasicInternalError;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.parser.PuffinBasicIR.Instruction;
@@ -9,15 +9,12 @@ import org.puffinbasic.parser.PuffinBasicIR.Instruction;
 import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT32;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.DIVISION_BY_ZERO;
 
-final class Operators {
+public final class Operators {
 
-    public static void unaryMinus(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STEntry op1Entry = symbolTable.get(instruction.op1);
+    public static void unaryMinus(Instruction instruction) {
+        STObjects.STEntry op1Entry = instruction.getOp1Entry();
         STObjects.STValue op1 = op1Entry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         switch (op1Entry.getType().getAtomTypeId()) {
             case INT32:
                 result.setInt32(-op1.getInt32());
@@ -38,25 +35,24 @@ final class Operators {
         }
     }
 
-    public static void concat(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        String v1 = symbolTable.get(instruction.op1).getValue().getString();
-        String v2 = symbolTable.get(instruction.op2).getValue().getString();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void concat(Instruction instruction) {
+        String v1 = instruction.getOp1Entry().getValue().getString();
+        String v2 = instruction.getOp2Entry().getValue().getString();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setString(v1 + v2);
     }
 
-    public static void leftShift(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STEntry v1Entry = symbolTable.get(instruction.op1);
+    public static void append(Instruction instruction) {
+        String v2 = instruction.getOp2Entry().getValue().getString();
+        instruction.getOp1Entry().getValue().append(v2);
+    }
+
+    public static void leftShift(Instruction instruction) {
+        STObjects.STEntry v1Entry = instruction.getOp1Entry();
         STObjects.STValue v1 = v1Entry.getValue();
-        STObjects.STEntry v2Entry = symbolTable.get(instruction.op2);
+        STObjects.STEntry v2Entry = instruction.getOp2Entry();
         STObjects.STValue v2 = v2Entry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         if (v1Entry.getType().getAtomTypeId() == INT32 && v2Entry.getType().getAtomTypeId() == INT32) {
             result.setInt32(v1.getRoundedInt32() << v2.getRoundedInt32());
         } else {
@@ -64,15 +60,12 @@ final class Operators {
         }
     }
 
-    public static void rightShift(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STEntry v1Entry = symbolTable.get(instruction.op1);
+    public static void rightShift(Instruction instruction) {
+        STObjects.STEntry v1Entry = instruction.getOp1Entry();
         STObjects.STValue v1 = v1Entry.getValue();
-        STObjects.STEntry v2Entry = symbolTable.get(instruction.op2);
+        STObjects.STEntry v2Entry = instruction.getOp2Entry();
         STObjects.STValue v2 = v2Entry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         if (v1Entry.getType().getAtomTypeId() == INT32 && v2Entry.getType().getAtomTypeId() == INT32) {
             result.setInt32(v1.getRoundedInt32() >> v2.getRoundedInt32());
         } else {
@@ -80,15 +73,12 @@ final class Operators {
         }
     }
 
-    public static void mod(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STEntry v1Entry = symbolTable.get(instruction.op1);
+    public static void mod(Instruction instruction) {
+        STObjects.STEntry v1Entry = instruction.getOp1Entry();
         STObjects.STValue v1 = v1Entry.getValue();
-        STObjects.STEntry v2Entry = symbolTable.get(instruction.op2);
+        STObjects.STEntry v2Entry = instruction.getOp2Entry();
         STObjects.STValue v2 = v2Entry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         if (v1Entry.getType().getAtomTypeId() == INT32 && v2Entry.getType().getAtomTypeId() == INT32) {
             result.setInt32(v1.getRoundedInt32() % v2.getRoundedInt32());
         } else {
@@ -96,15 +86,12 @@ final class Operators {
         }
     }
 
-    public static void idiv(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STEntry v1Entry = symbolTable.get(instruction.op1);
+    public static void idiv(Instruction instruction) {
+        STObjects.STEntry v1Entry = instruction.getOp1Entry();
         STObjects.STValue v1 = v1Entry.getValue();
-        STObjects.STEntry v2Entry = symbolTable.get(instruction.op2);
+        STObjects.STEntry v2Entry = instruction.getOp2Entry();
         STObjects.STValue v2 = v2Entry.getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         if (v1Entry.getType().getAtomTypeId() == INT32 && v2Entry.getType().getAtomTypeId() == INT32) {
             if (v2.getRoundedInt32() == 0) {
                 throw new PuffinBasicRuntimeError(
@@ -124,132 +111,95 @@ final class Operators {
         }
     }
 
-    public static void addInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void addInt32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt32(v1.getInt32() + v2.getInt32());
     }
 
-    public static void addInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void addInt64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(v1.getInt64() + v2.getInt64());
     }
 
-    public static void addFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void addFloat32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat32(v1.getFloat32() + v2.getFloat32());
     }
 
-    public static void addFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void addFloat64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat64(v1.getFloat64() + v2.getFloat64());
     }
 
-    public static void subInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void subInt32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt32(v1.getInt32() - v2.getInt32());
     }
 
-    public static void subInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void subInt64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(v1.getInt64() - v2.getInt64());
     }
 
-    public static void subFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void subFloat32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat32(v1.getFloat32() - v2.getFloat32());
     }
 
-    public static void subFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void subFloat64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat64(v1.getFloat64() - v2.getFloat64());
     }
 
-    public static void mulInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void mulInt32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt32(v1.getInt32() * v2.getInt32());
     }
 
-    public static void mulInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void mulInt64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(v1.getInt64() * v2.getInt64());
     }
 
-    public static void mulFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void mulFloat32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat32(v1.getFloat32() * v2.getFloat32());
     }
 
-    public static void mulFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void mulFloat64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat64(v1.getFloat64() * v2.getFloat64());
     }
 
     public static void fdiv(
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction) {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         if (v2.getFloat64() == 0) {
             throw new PuffinBasicRuntimeError(
                     DIVISION_BY_ZERO,
@@ -259,50 +209,38 @@ final class Operators {
         result.setFloat64(v1.getFloat64() / v2.getFloat64());
     }
 
-    public static void expInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void expInt32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt32((int) Math.pow(v1.getInt32(), v2.getInt32()));
     }
 
-    public static void expInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void expInt64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64((long) Math.pow(v1.getInt64(), v2.getInt64()));
     }
 
-    public static void expFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void expFloat32(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat32((float) Math.pow(v1.getFloat32(), v2.getFloat32()));
     }
 
-    public static void expFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue v1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue v2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void expFloat64(Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setFloat64(Math.pow(v1.getFloat64(), v2.getFloat64()));
     }
 
-    public static void and(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        long v1 = symbolTable.get(instruction.op1).getValue().getInt64();
-        long v2 = symbolTable.get(instruction.op2).getValue().getInt64();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void and(Instruction instruction) {
+        long v1 = instruction.getOp1Entry().getValue().getInt64();
+        long v2 = instruction.getOp2Entry().getValue().getInt64();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
 
         if ((v1 == -1 || v1 == 0) && (v2 == -1 || v2 == 0)) {
             boolean b1 = v1 == -1;
@@ -313,10 +251,10 @@ final class Operators {
         }
     }
 
-    public static void or(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        long v1 = symbolTable.get(instruction.op1).getValue().getInt64();
-        long v2 = symbolTable.get(instruction.op2).getValue().getInt64();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void or(Instruction instruction) {
+        long v1 = instruction.getOp1Entry().getValue().getInt64();
+        long v2 = instruction.getOp2Entry().getValue().getInt64();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
 
         if ((v1 == -1 || v1 == 0) && (v2 == -1 || v2 == 0)) {
             boolean b1 = v1 == -1;
@@ -327,10 +265,10 @@ final class Operators {
         }
     }
 
-    public static void xor(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        long v1 = symbolTable.get(instruction.op1).getValue().getInt64();
-        long v2 = symbolTable.get(instruction.op2).getValue().getInt64();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void xor(Instruction instruction) {
+        long v1 = instruction.getOp1Entry().getValue().getInt64();
+        long v2 = instruction.getOp2Entry().getValue().getInt64();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
 
         if ((v1 == -1 || v1 == 0) && (v2 == -1 || v2 == 0)) {
             boolean b1 = v1 == -1;
@@ -341,10 +279,10 @@ final class Operators {
         }
     }
 
-    public static void eqv(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        long v1 = symbolTable.get(instruction.op1).getValue().getInt64();
-        long v2 = symbolTable.get(instruction.op2).getValue().getInt64();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void eqv(Instruction instruction) {
+        long v1 = instruction.getOp1Entry().getValue().getInt64();
+        long v2 = instruction.getOp2Entry().getValue().getInt64();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
 
         if ((v1 == -1 || v1 == 0) && (v2 == -1 || v2 == 0)) {
             boolean b1 = v1 == -1;
@@ -355,10 +293,10 @@ final class Operators {
         }
     }
 
-    public static void imp(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        long v1 = symbolTable.get(instruction.op1).getValue().getInt64();
-        long v2 = symbolTable.get(instruction.op2).getValue().getInt64();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void imp(Instruction instruction) {
+        long v1 = instruction.getOp1Entry().getValue().getInt64();
+        long v2 = instruction.getOp2Entry().getValue().getInt64();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
 
         if ((v1 == -1 || v1 == 0) && (v2 == -1 || v2 == 0)) {
             boolean b1 = v1 == -1;
@@ -369,314 +307,221 @@ final class Operators {
         }
     }
 
-    public static void ltInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void ltInt32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt32() < e2.getInt32() ? -1 : 0);
     }
 
-    public static void ltInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void ltInt64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt64() < e2.getInt64() ? -1 : 0);
     }
 
-    public static void ltFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void ltFloat32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Float.compare(e1.getFloat32(), e2.getFloat32()) < 0 ? -1 : 0);
     }
 
-    public static void ltFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void ltFloat64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Double.compare(e1.getFloat64(), e2.getFloat64()) < 0 ? -1 : 0);
     }
 
-    public static void ltStr(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void ltStr(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getString().compareTo(e2.getString()) < 0 ? -1 : 0);
     }
 
-    public static void leInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void leInt32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt32() <= e2.getInt32() ? -1 : 0);
     }
 
-    public static void leInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void leInt64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt64() <= e2.getInt64() ? -1 : 0);
     }
 
-    public static void leFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void leFloat32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Float.compare(e1.getFloat32(), e2.getFloat32()) <= 0 ? -1 : 0);
     }
 
-    public static void leFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void leFloat64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Double.compare(e1.getFloat64(), e2.getFloat64()) <= 0 ? -1 : 0);
     }
 
-    public static void leStr(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void leStr(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getString().compareTo(e2.getString()) <= 0 ? -1 : 0);
     }
 
-    public static void gtInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void gtInt32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt32() > e2.getInt32() ? -1 : 0);
     }
 
-    public static void gtInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void gtInt64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         long longResult;
                 longResult = e1.getInt64() > e2.getInt64() ? -1 : 0;
         result.setInt64(longResult);
     }
 
-    public static void gtFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void gtFloat32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Float.compare(e1.getFloat32(), e2.getFloat32()) > 0 ? -1 : 0);
     }
 
-    public static void gtFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void gtFloat64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Double.compare(e1.getFloat64(), e2.getFloat64()) > 0 ? -1 : 0);
     }
 
-    public static void gtStr(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void gtStr(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getString().compareTo(e2.getString()) > 0 ? -1 : 0);
     }
 
-    public static void geInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void geInt32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt32() >= e2.getInt32() ? -1 : 0);
     }
 
-    public static void geInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void geInt64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt64() >= e2.getInt64() ? -1 : 0);
     }
 
-    public static void geFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void geFloat32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Float.compare(e1.getFloat32(), e2.getFloat32()) >= 0 ? -1 : 0);
     }
 
-    public static void geFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void geFloat64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Double.compare(e1.getFloat64(), e2.getFloat64()) >= 0 ? -1 : 0);
     }
 
-    public static void geStr(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void geStr(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getString().compareTo(e2.getString()) >= 0 ? -1 : 0);
     }
 
-    public static void eqInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void eqInt32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt32() == e2.getInt32() ? -1 : 0);
     }
 
-    public static void eqInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void eqInt64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt64() == e2.getInt64() ? -1 : 0);
     }
 
-    public static void eqFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void eqFloat32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Float.compare(e1.getFloat32(), e2.getFloat32()) == 0 ? -1 : 0);
     }
 
-    public static void eqFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void eqFloat64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Double.compare(e1.getFloat64(), e2.getFloat64()) == 0 ? -1 : 0);
     }
 
-    public static void eqStr(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void eqStr(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getString().equals(e2.getString()) ? -1 : 0);
     }
 
-    public static void neInt32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void neInt32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt32() != e2.getInt32() ? -1 : 0);
     }
 
-    public static void neInt64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void neInt64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(e1.getInt64() != e2.getInt64() ? -1 : 0);
     }
 
-    public static void neFloat32(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void neFloat32(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Float.compare(e1.getFloat32(), e2.getFloat32()) != 0 ? -1 : 0);
     }
 
-    public static void neFloat64(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void neFloat64(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(Double.compare(e1.getFloat64(), e2.getFloat64()) != 0 ? -1 : 0);
     }
 
-    public static void neStr(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        STObjects.STValue e1 = symbolTable.get(instruction.op1).getValue();
-        STObjects.STValue e2 = symbolTable.get(instruction.op2).getValue();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void neStr(Instruction instruction) {
+        STObjects.STValue e1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue e2 = instruction.getOp2Entry().getValue();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         result.setInt64(!e1.getString().equals(e2.getString()) ? -1 : 0);
     }
 
-    public static void unaryNot(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        long v = symbolTable.get(instruction.op1).getValue().getInt64();
-        STObjects.STValue result = symbolTable.get(instruction.result).getValue();
+    public static void unaryNot(Instruction instruction) {
+        long v = instruction.getOp1Entry().getValue().getInt64();
+        STObjects.STValue result = instruction.getResultEntry().getValue();
         if (v == -1) {
             result.setInt64(0);
         } else if (v == 0) {
@@ -685,4 +530,28 @@ final class Operators {
             result.setInt64(~v);
         }
     }
+
+    /**
+     * Compares op1 with op2, both of the given type, and returns
+     * a negative int, zero or a positive int like compareTo().
+     * Floats are compared with a total order.
+     */
+    public static int compare(PuffinBasicAtomTypeId type, Instruction instruction) {
+        STObjects.STValue v1 = instruction.getOp1Entry().getValue();
+        STObjects.STValue v2 = instruction.getOp2Entry().getValue();
+        switch (type) {
+            case INT32:
+                return Integer.compare(v1.getInt32(), v2.getInt32());
+            case INT64:
+                return Long.compare(v1.getInt64(), v2.getInt64());
+            case FLOAT:
+                return Float.compare(v1.getFloat32(), v2.getFloat32());
+            case DOUBLE:
+                return Double.compare(v1.getFloat64(), v2.getFloat64());
+            case STRING:
+                return v1.getString().compareTo(v2.getString());
+            default:
+                throw new PuffinBasicInternalError("Can't compare values of type: " + type);
+        }
+    }
 }
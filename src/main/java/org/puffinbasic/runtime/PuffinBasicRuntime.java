@@ -2,20 +2,28 @@ package org.puffinbasic.runtime;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.stream.Collectors;
 
 import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.ints.IntStack;
+import org.puffinbasic.domain.RegisterFile;
 import org.puffinbasic.domain.STObjects;
 import org.puffinbasic.error.PuffinBasicInternalError;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
 import org.puffinbasic.file.PuffinBasicFiles;
 import org.puffinbasic.file.SystemInputOutputFile;
 import org.puffinbasic.parser.PuffinBasicIR;
+import org.puffinbasic.parser.PuffinBasicIR.Condition;
 import org.puffinbasic.parser.PuffinBasicIR.Instruction;
 import org.puffinbasic.runtime.ArraysUtil.ArrayState;
 import org.puffinbasic.runtime.Formatter.FormatterCache;
@@ -23,20 +31,84 @@ import org.puffinbasic.runtime.GraphicsRuntime.GraphicsState;
 import org.puffinbasic.runtime.Statements.ReadData;
 
 import static org.puffinbasic.domain.PuffinBasicSymbolTable.NULL_ID;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.DOUBLE;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.FLOAT;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT32;
+import static org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId.INT64;
+import static org.puffinbasic.domain.STObjects.PuffinBasicTypeId.SCALAR;
+import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.NOT_INITIALIZED;
 import static org.puffinbasic.parser.PuffinBasicIR.OpCode.DATA;
+import static org.puffinbasic.parser.PuffinBasicIR.OpCode.FOR_NEXT_UP_I32;
 import static org.puffinbasic.parser.PuffinBasicIR.OpCode.LABEL;
+import static org.puffinbasic.parser.PuffinBasicIR.OpCode.PUSH_RT_SCOPE;
+import static org.puffinbasic.parser.PuffinBasicIR.OpCode.VARREF;
+import static org.puffinbasic.parser.PuffinBasicIR.UNRESOLVED;
 
 public class PuffinBasicRuntime {
 
+    public enum Engine {
+        SWITCH,
+        CLOSURE,
+        TIERED,
+        BYTECODE
+    }
+
+    public static final int DEFAULT_COMPILE_THRESHOLD = 1000;
+
+    /**
+     * A compiled instruction, returns the index of the next instruction.
+     */
+    @FunctionalInterface
+    private interface Node {
+        int execute(int pc);
+    }
+
+    /**
+     * Runs a basic block, i.e. straight-line nodes followed by
+     * at most one branch, with a single dispatch.
+     */
+    private final class BlockNode implements Node {
+        private final Node[] body;
+
+        BlockNode(Node[] body) {
+            this.body = body;
+        }
+
+        @Override
+        public int execute(int pc) {
+            int last = body.length - 1;
+            int i = 0;
+            try {
+                for (; i < last; i++) {
+                    body[i].execute(pc + i);
+                }
+                return body[last].execute(pc + last);
+            } catch (RuntimeException e) {
+                faultProgramCounter = pc + i;
+                throw e;
+            }
+        }
+    }
+
+    private static final int HALT = -1;
+    static final int NO_REGISTER = -1;
+
     private final PuffinBasicIR ir;
+    private final Engine engine;
+    private final TieredMetrics tieredMetrics;
+    private final boolean countJumps;
     private PrintBuffer printBuffer;
     private ArrayState arrayState;
-    private IntStack gosubReturnLabelStack;
+    private IntStack gosubReturnStack;
     private int programCounter;
+    private int faultProgramCounter = HALT;
+    private STObjects.STEntry lastResultEntry;
     private Random random;
-    private Int2IntMap labelToInstrNum;
     private Int2IntMap lineNumToInstrNum;
+    private long numJumps;
+    private long numComputedJumps;
     private List<Instruction> params;
+    private IntSet aliasedVariables;
     private FormatterCache formatterCache;
     private PuffinBasicFiles files;
     private ReadData readData;
@@ -46,58 +118,89 @@ public class PuffinBasicRuntime {
     private SoundState soundState;
 
     public PuffinBasicRuntime(PuffinBasicIR ir, PrintStream out, Environment env) {
+        this(ir, out, env, Engine.SWITCH);
+    }
+
+    public PuffinBasicRuntime(PuffinBasicIR ir, PrintStream out, Environment env, Engine engine) {
+        this(ir, out, env, engine, DEFAULT_COMPILE_THRESHOLD);
+    }
+
+    public PuffinBasicRuntime(
+            PuffinBasicIR ir, PrintStream out, Environment env, Engine engine, int compileThreshold)
+    {
+        this(ir, out, env, engine, compileThreshold, false);
+    }
+
+    /**
+     * @param countJumps whether to count the jumps taken, see {@link #getNumJumps()}.
+     *                   It's off by default, to keep the count off the hot paths.
+     */
+    public PuffinBasicRuntime(
+            PuffinBasicIR ir,
+            PrintStream out,
+            Environment env,
+            Engine engine,
+            int compileThreshold,
+            boolean countJumps)
+    {
         this.ir = ir;
         this.out = out;
         this.env = env;
+        this.engine = engine;
+        this.tieredMetrics = new TieredMetrics(compileThreshold);
+        this.countJumps = countJumps;
     }
 
-    private Int2IntMap computeLabelToInstructionNumber(List<Instruction> instructions) {
-        Int2IntMap labelToInstrNum = new Int2IntOpenHashMap();
-        for (int i = 0; i < instructions.size(); i++) {
-            Instruction instr = instructions.get(i);
-            if (instr.opCode == LABEL) {
-                labelToInstrNum.put(instr.op1, i);
-            }
+    private int getInstrNumForBranch(Instruction instruction, int labelId) {
+        int instrNum = instruction.getBranchTarget();
+        if (instrNum == UNRESOLVED) {
+            throw new PuffinBasicInternalError("Failed to find instruction# for label: " + labelId);
         }
-        return labelToInstrNum;
+        return instrNum;
     }
 
-    private int getInstrNumForLabel(int id) {
-        int instrNum = labelToInstrNum.getOrDefault(id, -1);
-        if (instrNum == -1) {
-            throw new PuffinBasicInternalError("Failed to find instruction# for label: " + id);
+    private int getInstrNumForLineNumber(Instruction instruction) {
+        int instrNum = instruction.getBranchTarget();
+        if (instrNum == UNRESOLVED) {
+            int lineNumber = instruction.getOp1Entry().getValue().getInt32();
+            if (countJumps) {
+                ++numComputedJumps;
+            }
+            instrNum = lineNumToInstrNum.get(lineNumber);
+            if (instrNum == UNRESOLVED) {
+                throw new PuffinBasicInternalError("Failed to find instruction# for line#: " + lineNumber);
+            }
         }
         return instrNum;
     }
 
-    private Int2IntMap computeLineNumberToInstructionNumber(List<Instruction> instructions) {
-        Int2IntOpenHashMap linenumToInstrNum = new Int2IntOpenHashMap();
-        int instrNum = 0;
-        for (Instruction instruction : instructions) {
-            int lineNumber = instruction.getInputRef().lineNumber;
-            if (lineNumber >= 0) {
-                linenumToInstrNum.putIfAbsent(lineNumber, instrNum);
-            }
-            ++instrNum;
+    private void countJump() {
+        if (countJumps) {
+            ++numJumps;
         }
-        return linenumToInstrNum;
     }
 
-    private int getInstrNumForLineNumber(int lineNumber) {
-        int instrNum = lineNumToInstrNum.getOrDefault(lineNumber, -1);
-        if (instrNum == -1) {
-            throw new PuffinBasicInternalError("Failed to find instruction# for line#: " + lineNumber);
-        }
-        return instrNum;
+    /**
+     * @return the number of jumps taken, or 0 if jumps aren't counted.
+     */
+    public long getNumJumps() {
+        return numJumps;
+    }
+
+    public long getNumComputedJumps() {
+        return numComputedJumps;
+    }
+
+    public TieredMetrics getTieredMetrics() {
+        return tieredMetrics;
     }
 
     public STObjects.STEntry run() {
         List<Instruction> instructions = ir.getInstructions();
-        this.labelToInstrNum = computeLabelToInstructionNumber(instructions);
-        this.lineNumToInstrNum = computeLineNumberToInstructionNumber(instructions);
+        this.lineNumToInstrNum = ir.computeLineNumberToInstructionNumber();
         this.printBuffer = new PrintBuffer();
         this.arrayState = new ArrayState();
-        this.gosubReturnLabelStack = new IntArrayList();
+        this.gosubReturnStack = new IntArrayList();
         this.random = new Random();
         this.formatterCache = new FormatterCache();
         this.params = new ArrayList<>(4);
@@ -105,21 +208,24 @@ public class PuffinBasicRuntime {
         this.readData = processDataInstructions(instructions);
         this.graphicsState = new GraphicsState();
         this.soundState = new SoundState();
+        this.aliasedVariables = findAliasedVariables(instructions);
 
         try {
-            int numInstructions = instructions.size();
-            boolean end = false;
-            while (!end && programCounter < numInstructions) {
-                Instruction instruction = instructions.get(programCounter);
-                try {
-                    end = runInstruction(instruction);
-                } catch (PuffinBasicRuntimeError e) {
-                    throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
-                } catch (Exception e) {
-                    throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
-                }
+            switch (engine) {
+                case CLOSURE:
+                    runCompiled(instructions);
+                    break;
+                case TIERED:
+                    runTiered(instructions);
+                    break;
+                case BYTECODE:
+                    runBytecode(instructions);
+                    break;
+                default:
+                    runInterpreted(instructions);
+                    break;
             }
-            return ir.getSymbolTable().getLastEntry();
+            return lastResultEntry;
         } catch (Exception e) {
             e.printStackTrace(System.err);
             return null;
@@ -129,9 +235,1081 @@ public class PuffinBasicRuntime {
         }
     }
 
+    private void runInterpreted(List<Instruction> instructions) {
+        int numInstructions = instructions.size();
+        // Ops on registers read and write primitives directly, as in the closure engine.
+        Node[] registerNodes = new Node[numInstructions];
+        for (int i = 0; i < numInstructions; i++) {
+            registerNodes[i] = compileRegisterOp(instructions.get(i));
+        }
+        boolean end = false;
+        while (!end && programCounter < numInstructions) {
+            Instruction instruction = instructions.get(programCounter);
+            STObjects.STEntry result = getResultEntry(instruction);
+            if (result != null) {
+                lastResultEntry = result;
+            }
+            try {
+                Node registerNode = registerNodes[programCounter];
+                if (registerNode != null) {
+                    programCounter = registerNode.execute(programCounter);
+                    continue;
+                }
+                end = runInstruction(instruction);
+            } catch (PuffinBasicRuntimeError e) {
+                throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+            } catch (Exception e) {
+                throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+            }
+        }
+    }
+
+    private void runCompiled(List<Instruction> instructions) {
+        Node[] nodes = compile(instructions);
+        STObjects.STEntry[] blockResults = findBlockResults(instructions, findBlockLeaders(instructions));
+        int numInstructions = nodes.length;
+        int pc = programCounter;
+        try {
+            while (pc < numInstructions) {
+                if (blockResults[pc] != null) {
+                    lastResultEntry = blockResults[pc];
+                }
+                int nextPc = nodes[pc].execute(pc);
+                if (nextPc == HALT) {
+                    break;
+                }
+                pc = nextPc;
+            }
+        } catch (PuffinBasicRuntimeError e) {
+            Instruction instruction = instructions.get(getFaultProgramCounter(pc));
+            throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+        } catch (Exception e) {
+            Instruction instruction = instructions.get(getFaultProgramCounter(pc));
+            throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+        } finally {
+            programCounter = pc;
+        }
+    }
+
+    /**
+     * Runs the program as a generated class, see {@link BytecodeCompiler}.
+     * Falls back to the closure engine if the program is too large for a class.
+     */
+    private void runBytecode(List<Instruction> instructions) {
+        BitSet leaders = findBlockLeaders(instructions);
+        STObjects.STEntry[] blockResults = findBlockResults(instructions, leaders);
+        BytecodeProgram program = new BytecodeCompiler(
+                instructions, leaders, blockResults, aliasedVariables, this::registerSlot, countJumps
+        ).compile(
+                (pc, end, lastBlock) -> runFallback(instructions, blockResults, pc, end, lastBlock),
+                ir.getSymbolTable().getRegisters());
+        if (program == null) {
+            runCompiled(instructions);
+            return;
+        }
+        try {
+            program.run(programCounter);
+            if (program.getLastBlock() != HALT) {
+                lastResultEntry = blockResults[program.getLastBlock()];
+            }
+        } catch (PuffinBasicRuntimeError e) {
+            Instruction instruction = instructions.get(getBytecodeFaultProgramCounter(program));
+            throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+        } catch (Exception e) {
+            Instruction instruction = instructions.get(getBytecodeFaultProgramCounter(program));
+            throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+        } finally {
+            numJumps += program.getNumJumps();
+        }
+    }
+
+    /**
+     * Runs instructions the generated class doesn't compile,
+     * see {@link BytecodeProgram.Callbacks#run(int, int, int)}.
+     */
+    private int runFallback(
+            List<Instruction> instructions, STObjects.STEntry[] blockResults, int pc, int end, int lastBlock)
+    {
+        if (lastBlock != HALT) {
+            lastResultEntry = blockResults[lastBlock];
+        }
+        programCounter = pc;
+        try {
+            do {
+                Instruction instruction = instructions.get(programCounter);
+                STObjects.STEntry result = getResultEntry(instruction);
+                if (result != null) {
+                    lastResultEntry = result;
+                }
+                if (runInstruction(instruction)) {
+                    return HALT;
+                }
+                if (instruction.opCode.branch) {
+                    break;
+                }
+            } while (programCounter < end);
+        } catch (RuntimeException e) {
+            faultProgramCounter = programCounter;
+            throw e;
+        }
+        return programCounter;
+    }
+
+    private int getBytecodeFaultProgramCounter(BytecodeProgram program) {
+        int faultPc = program.getFaultProgramCounter();
+        return getFaultProgramCounter(faultPc != HALT ? faultPc : programCounter);
+    }
+
+    /**
+     * Interprets the program, and counts entries into basic blocks through
+     * branches. Once a block is entered compileThreshold times, the region
+     * it belongs to is compiled in the background and the compiled blocks
+     * are used from their next entry on.
+     */
+    private void runTiered(List<Instruction> instructions) {
+        int numInstructions = instructions.size();
+        int compileThreshold = tieredMetrics.getCompileThreshold();
+        BitSet leaders = findBlockLeaders(instructions);
+        STObjects.STEntry[] blockResults = findBlockResults(instructions, leaders);
+        AtomicReferenceArray<Node> compiledNodes = new AtomicReferenceArray<>(numInstructions);
+        int[] entryCounts = new int[numInstructions];
+        ExecutorService compiler = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "PuffinBasicTieredCompiler");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int pc = programCounter;
+        try {
+            boolean end = false;
+            while (!end && programCounter < numInstructions) {
+                pc = programCounter;
+                Node node = compiledNodes.get(pc);
+                boolean transfer;
+                if (node != null) {
+                    tieredMetrics.compiledBlockRun();
+                    if (blockResults[pc] != null) {
+                        lastResultEntry = blockResults[pc];
+                    }
+                    int nextPc = node.execute(pc);
+                    if (nextPc == HALT) {
+                        end = true;
+                    } else {
+                        programCounter = nextPc;
+                    }
+                    transfer = true;
+                } else {
+                    Instruction instruction = instructions.get(pc);
+                    STObjects.STEntry result = getResultEntry(instruction);
+                    if (result != null) {
+                        lastResultEntry = result;
+                    }
+                    end = runInstruction(instruction);
+                    if (instruction.opCode == PUSH_RT_SCOPE) {
+                        tieredMetrics.functionCalled(instruction.op1);
+                    }
+                    transfer = instruction.opCode.branch;
+                }
+                if (transfer && !end && programCounter < numInstructions) {
+                    int target = programCounter;
+                    if (target <= pc) {
+                        tieredMetrics.backEdgeTaken();
+                    }
+                    if (compiledNodes.get(target) == null && ++entryCounts[target] == compileThreshold) {
+                        int last = target <= pc ? pc : target;
+                        compiler.execute(() -> compileRegion(instructions, leaders, compiledNodes, target, last));
+                    }
+                }
+            }
+        } catch (PuffinBasicRuntimeError e) {
+            Instruction instruction = instructions.get(getFaultProgramCounter(pc));
+            throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+        } catch (Exception e) {
+            Instruction instruction = instructions.get(getFaultProgramCounter(pc));
+            throw new PuffinBasicRuntimeError(e, instruction, ir.getCodeStreamFor(instruction));
+        } finally {
+            compiler.shutdownNow();
+        }
+    }
+
+    private void compileRegion(
+            List<Instruction> instructions,
+            BitSet leaders,
+            AtomicReferenceArray<Node> compiledNodes,
+            int first,
+            int last)
+    {
+        long t0 = System.nanoTime();
+        int numBlocks = 0;
+        for (int start = first; start != -1 && start <= last; start = leaders.nextSetBit(start + 1)) {
+            if (compiledNodes.get(start) == null) {
+                compiledNodes.set(start, compileBlock(instructions, leaders, start));
+                ++numBlocks;
+            }
+        }
+        tieredMetrics.compiled(new TieredMetrics.CompileEvent(
+                first, last, instructions.get(first).getInputRef().lineNumber,
+                numBlocks, System.nanoTime() - t0));
+    }
+
+    private Node compileBlock(List<Instruction> instructions, BitSet leaders, int start) {
+        int end = leaders.nextSetBit(start + 1);
+        if (end == -1 || end > instructions.size()) {
+            end = instructions.size();
+        }
+        if (end - start == 1) {
+            return compile(instructions.get(start));
+        }
+        Node[] body = new Node[end - start];
+        for (int i = start; i < end; i++) {
+            body[i - start] = compile(instructions.get(i));
+        }
+        return new BlockNode(body);
+    }
+
+    /**
+     * Returns the instruction# a block faulted at, or pc if the fault
+     * wasn't in a block, and clears the fault for the next error.
+     */
+    private int getFaultProgramCounter(int pc) {
+        int faultPc = faultProgramCounter != HALT ? faultProgramCounter : pc;
+        faultProgramCounter = HALT;
+        return faultPc;
+    }
+
+    private Node[] compile(List<Instruction> instructions) {
+        Node[] nodes = new Node[instructions.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = compile(instructions.get(i));
+        }
+        BitSet leaders = findBlockLeaders(instructions);
+        int start = 0;
+        while (start < nodes.length) {
+            int end = start + 1;
+            while (end < nodes.length && !leaders.get(end)) {
+                end++;
+            }
+            if (end - start > 1) {
+                nodes[start] = new BlockNode(Arrays.copyOfRange(nodes, start, end));
+            }
+            start = end;
+        }
+        return nodes;
+    }
+
+    /**
+     * A basic block starts at every possible branch target
+     * and after every branch.
+     */
+    private BitSet findBlockLeaders(List<Instruction> instructions) {
+        BitSet leaders = new BitSet(instructions.size());
+        leaders.set(0);
+        for (int instrNum : lineNumToInstrNum.values()) {
+            leaders.set(instrNum);
+        }
+        for (int i = 0; i < instructions.size(); i++) {
+            Instruction instruction = instructions.get(i);
+            if (instruction.opCode == LABEL) {
+                leaders.set(i);
+            }
+            if (instruction.getBranchTarget() != UNRESOLVED) {
+                leaders.set(instruction.getBranchTarget());
+            }
+            if (instruction.opCode.branch) {
+                leaders.set(i + 1);
+            }
+        }
+        return leaders;
+    }
+
+    /**
+     * Writes the result register of an op from its operand registers.
+     */
+    @FunctionalInterface
+    private interface RegisterOp {
+        void apply(int r, int a, int b);
+    }
+
+    /**
+     * Compares two registers like compareTo().
+     */
+    @FunctionalInterface
+    private interface RegisterCompare {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Compiles typed ops whose operands all live in the register file
+     * of the op's type, so that they read and write primitives directly.
+     * Returns null if the op has no such form or an operand isn't a register.
+     */
+    private Node compileRegisterOp(Instruction instruction) {
+        RegisterFile registers = ir.getSymbolTable().getRegisters();
+        int[] i32 = registers.getInt32s();
+        long[] i64 = registers.getInt64s();
+        float[] f32 = registers.getFloat32s();
+        double[] f64 = registers.getFloat64s();
+        switch (instruction.opCode) {
+            case ADDI32:
+                return compileRegisterOp(instruction, INT32, (r, a, b) -> i32[r] = i32[a] + i32[b]);
+            case ADDI64:
+                return compileRegisterOp(instruction, INT64, (r, a, b) -> i64[r] = i64[a] + i64[b]);
+            case ADDF32:
+                return compileRegisterOp(instruction, FLOAT, (r, a, b) -> f32[r] = f32[a] + f32[b]);
+            case ADDF64:
+                return compileRegisterOp(instruction, DOUBLE, (r, a, b) -> f64[r] = f64[a] + f64[b]);
+            case SUBI32:
+                return compileRegisterOp(instruction, INT32, (r, a, b) -> i32[r] = i32[a] - i32[b]);
+            case SUBI64:
+                return compileRegisterOp(instruction, INT64, (r, a, b) -> i64[r] = i64[a] - i64[b]);
+            case SUBF32:
+                return compileRegisterOp(instruction, FLOAT, (r, a, b) -> f32[r] = f32[a] - f32[b]);
+            case SUBF64:
+                return compileRegisterOp(instruction, DOUBLE, (r, a, b) -> f64[r] = f64[a] - f64[b]);
+            case MULI32:
+                return compileRegisterOp(instruction, INT32, (r, a, b) -> i32[r] = i32[a] * i32[b]);
+            case MULI64:
+                return compileRegisterOp(instruction, INT64, (r, a, b) -> i64[r] = i64[a] * i64[b]);
+            case MULF32:
+                return compileRegisterOp(instruction, FLOAT, (r, a, b) -> f32[r] = f32[a] * f32[b]);
+            case MULF64:
+                return compileRegisterOp(instruction, DOUBLE, (r, a, b) -> f64[r] = f64[a] * f64[b]);
+            case ASSIGN:
+            case COPY: {
+                STObjects.PuffinBasicAtomTypeId type = registerType(instruction.getOp1Entry());
+                if (type == null) {
+                    return null;
+                }
+                int a = registerSlot(instruction.op1, instruction.getOp1Entry(), type);
+                int r = registerSlot(instruction.op2, instruction.getOp2Entry(), type);
+                RegisterOp copy;
+                switch (type) {
+                    case INT32:
+                        copy = (r1, a1, b1) -> i32[r1] = i32[a1];
+                        break;
+                    case INT64:
+                        copy = (r1, a1, b1) -> i64[r1] = i64[a1];
+                        break;
+                    case FLOAT:
+                        copy = (r1, a1, b1) -> f32[r1] = f32[a1];
+                        break;
+                    case DOUBLE:
+                        copy = (r1, a1, b1) -> f64[r1] = f64[a1];
+                        break;
+                    default:
+                        return null;
+                }
+                return compileRegisterOp(registers.getSet(type), a, a, r, copy);
+            }
+            case FOR_NEXT_UP_I32:
+            case FOR_NEXT_DOWN_I32: {
+                int i = registerSlot(instruction.op1, instruction.getOp1Entry(), INT32);
+                int e = registerSlot(instruction.op2, instruction.getOp2Entry(), INT32);
+                int step = registerSlot(instruction.getOp3(), instruction.getOp3Entry(), INT32);
+                int target = instruction.getBranchTarget();
+                if (i == NO_REGISTER || e == NO_REGISTER || step == NO_REGISTER || target == UNRESOLVED) {
+                    return null;
+                }
+                boolean[] set = registers.getInt32sSet();
+                boolean up = instruction.opCode == FOR_NEXT_UP_I32;
+                return pc -> {
+                    checkRegisters(set, i, step);
+                    checkRegisters(set, e, e);
+                    i32[i] += i32[step];
+                    if (up ? i32[i] <= i32[e] : i32[i] >= i32[e]) {
+                        countJump();
+                        return target;
+                    }
+                    return pc + 1;
+                };
+            }
+            default:
+                if (instruction.opCode.isCompareAndBranch()) {
+                    return compileRegisterCompareAndBranch(instruction, registers);
+                }
+                return null;
+        }
+    }
+
+    private Node compileRegisterOp(Instruction instruction, STObjects.PuffinBasicAtomTypeId type, RegisterOp op) {
+        int a = registerSlot(instruction.op1, instruction.getOp1Entry(), type);
+        int b = registerSlot(instruction.op2, instruction.getOp2Entry(), type);
+        int r = registerSlot(instruction.result, instruction.getResultEntry(), type);
+        return compileRegisterOp(ir.getSymbolTable().getRegisters().getSet(type), a, b, r, op);
+    }
+
+    private static Node compileRegisterOp(boolean[] set, int a, int b, int r, RegisterOp op) {
+        if (a == NO_REGISTER || b == NO_REGISTER || r == NO_REGISTER) {
+            return null;
+        }
+        return pc -> {
+            checkRegisters(set, a, b);
+            op.apply(r, a, b);
+            set[r] = true;
+            return pc + 1;
+        };
+    }
+
+    private Node compileRegisterCompareAndBranch(Instruction instruction, RegisterFile registers) {
+        STObjects.PuffinBasicAtomTypeId type = instruction.opCode.compareType;
+        int a = registerSlot(instruction.op1, instruction.getOp1Entry(), type);
+        int b = registerSlot(instruction.op2, instruction.getOp2Entry(), type);
+        int target = instruction.getBranchTarget();
+        if (a == NO_REGISTER || b == NO_REGISTER || target == UNRESOLVED) {
+            return null;
+        }
+        RegisterCompare compare;
+        switch (type) {
+            case INT32: {
+                int[] v = registers.getInt32s();
+                compare = (x, y) -> Integer.compare(v[x], v[y]);
+                break;
+            }
+            case INT64: {
+                long[] v = registers.getInt64s();
+                compare = (x, y) -> Long.compare(v[x], v[y]);
+                break;
+            }
+            case FLOAT: {
+                float[] v = registers.getFloat32s();
+                compare = (x, y) -> Float.compare(v[x], v[y]);
+                break;
+            }
+            case DOUBLE: {
+                double[] v = registers.getFloat64s();
+                compare = (x, y) -> Double.compare(v[x], v[y]);
+                break;
+            }
+            default:
+                return null;
+        }
+        boolean[] set = registers.getSet(type);
+        Condition condition = instruction.opCode.condition;
+        return pc -> {
+            checkRegisters(set, a, b);
+            if (condition.test(compare.compare(a, b))) {
+                countJump();
+                return target;
+            }
+            return pc + 1;
+        };
+    }
+
+    private int registerSlot(int id, STObjects.STEntry entry, STObjects.PuffinBasicAtomTypeId type) {
+        // Variables whose value is replaced at runtime (AUTO) can't be bound to a slot.
+        if (entry == null
+                || (entry.isLValue() && entry.getClass() != STObjects.STVariable.class)
+                || aliasedVariables.contains(id)
+                || registerType(entry) != type)
+        {
+            return NO_REGISTER;
+        }
+        return ((STObjects.STRegisterValue) entry.getValue()).getRegisterSlot();
+    }
+
+    static STObjects.PuffinBasicAtomTypeId registerType(STObjects.STEntry entry) {
+        if (entry == null
+                || entry.getType().getTypeId() != SCALAR
+                || !(entry.getValue() instanceof STObjects.STRegisterValue))
+        {
+            return null;
+        }
+        return entry.getType().getAtomTypeId();
+    }
+
+    private static void checkRegisters(boolean[] set, int a, int b) {
+        if (!set[a] || !set[b]) {
+            throw new PuffinBasicRuntimeError(
+                    NOT_INITIALIZED,
+                    "Value cannot be read without initializing"
+            );
+        }
+    }
+
+    private static IntSet findAliasedVariables(List<Instruction> instructions) {
+        IntSet aliased = new IntOpenHashSet();
+        for (Instruction instruction : instructions) {
+            if (instruction.opCode == VARREF) {
+                aliased.add(instruction.op2);
+            }
+        }
+        return aliased;
+    }
+
+    private Node compileBranch(Instruction instruction) {
+        int target = instruction.getBranchTarget();
+        if (target == UNRESOLVED) {
+            return null;
+        }
+        if (instruction.opCode.isForLoop()) {
+            return pc -> {
+                if (Statements.forLoop(instruction)) {
+                    countJump();
+                    return target;
+                }
+                return pc + 1;
+            };
+        }
+        STObjects.PuffinBasicAtomTypeId type = instruction.opCode.compareType;
+        Condition condition = instruction.opCode.condition;
+        return pc -> {
+            if (condition.test(Operators.compare(type, instruction))) {
+                countJump();
+                return target;
+            }
+            return pc + 1;
+        };
+    }
+
+    private Node compile(Instruction instruction) {
+        Node registerNode = compileRegisterOp(instruction);
+        if (registerNode != null) {
+            return registerNode;
+        }
+        if (instruction.opCode.isCompareAndBranch() || instruction.opCode.isForLoop()) {
+            Node branchNode = compileBranch(instruction);
+            if (branchNode != null) {
+                return branchNode;
+            }
+            return interpret(instruction);
+        }
+        switch (instruction.opCode) {
+            case COMMENT:
+            case VARIABLE:
+            case VALUE:
+            case LABEL:
+                return pc -> pc + 1;
+            case END:
+                return pc -> HALT;
+            case PARAM1:
+            case PARAM2:
+                return pc -> {
+                    params.add(instruction);
+                    return pc + 1;
+                };
+            case PRINT:
+                return pc -> {
+                    Statements.print(printBuffer, instruction);
+                    return pc + 1;
+                };
+            case RESET_ARRAY_IDX:
+                return pc -> {
+                    ArraysUtil.resetIndex(arrayState, instruction);
+                    return pc + 1;
+                };
+            case SET_ARRAY_IDX:
+                return pc -> {
+                    ArraysUtil.setIndex(arrayState, instruction);
+                    return pc + 1;
+                };
+            case GOTO_LABEL:
+            case GOTO_LINENUM: {
+                int target = instruction.getBranchTarget();
+                if (target == UNRESOLVED) {
+                    break;
+                }
+                return pc -> {
+                    countJump();
+                    return target;
+                };
+            }
+            case GOTO_LABEL_IF: {
+                int target = instruction.getBranchTarget();
+                if (target == UNRESOLVED) {
+                    break;
+                }
+                STObjects.STEntry condition = instruction.getOp1Entry();
+                return pc -> {
+                    if (condition.getValue().getInt64() != 0) {
+                        countJump();
+                        return target;
+                    }
+                    return pc + 1;
+                };
+            }
+            case VARREF:
+                return pc -> {
+                    Types.varref(instruction);
+                    return pc + 1;
+                };
+            case ASSIGN:
+            case COPY:
+                return pc -> {
+                    Types.copy(instruction);
+                    return pc + 1;
+                };
+            case PARAM_COPY:
+                return pc -> {
+                    Types.paramCopy(instruction);
+                    return pc + 1;
+                };
+            case UNARY_MINUS:
+                return pc -> {
+                    Operators.unaryMinus(instruction);
+                    return pc + 1;
+                };
+            case ARRAYREF:
+                return pc -> {
+                    ArraysUtil.arrayref(instruction);
+                    return pc + 1;
+                };
+            case ARRAYREF1D:
+                return pc -> {
+                    ArraysUtil.arrayref1d(instruction);
+                    return pc + 1;
+                };
+            case ARRAYROW:
+                return pc -> {
+                    ArraysUtil.arrayRow(instruction);
+                    return pc + 1;
+                };
+            case ARRAYREF2D:
+                return pc -> {
+                    ArraysUtil.arrayref2d(instruction);
+                    return pc + 1;
+                };
+            case EXPI32:
+                return pc -> {
+                    Operators.expInt32(instruction);
+                    return pc + 1;
+                };
+            case EXPI64:
+                return pc -> {
+                    Operators.expInt64(instruction);
+                    return pc + 1;
+                };
+            case EXPF32:
+                return pc -> {
+                    Operators.expFloat32(instruction);
+                    return pc + 1;
+                };
+            case EXPF64:
+                return pc -> {
+                    Operators.expFloat64(instruction);
+                    return pc + 1;
+                };
+            case MULI32:
+                return pc -> {
+                    Operators.mulInt32(instruction);
+                    return pc + 1;
+                };
+            case MULI64:
+                return pc -> {
+                    Operators.mulInt64(instruction);
+                    return pc + 1;
+                };
+            case MULF32:
+                return pc -> {
+                    Operators.mulFloat32(instruction);
+                    return pc + 1;
+                };
+            case MULF64:
+                return pc -> {
+                    Operators.mulFloat64(instruction);
+                    return pc + 1;
+                };
+            case IDIV:
+                return pc -> {
+                    Operators.idiv(instruction);
+                    return pc + 1;
+                };
+            case FDIV:
+                return pc -> {
+                    Operators.fdiv(instruction);
+                    return pc + 1;
+                };
+            case ADDI32:
+                return pc -> {
+                    Operators.addInt32(instruction);
+                    return pc + 1;
+                };
+            case ADDI64:
+                return pc -> {
+                    Operators.addInt64(instruction);
+                    return pc + 1;
+                };
+            case ADDF32:
+                return pc -> {
+                    Operators.addFloat32(instruction);
+                    return pc + 1;
+                };
+            case ADDF64:
+                return pc -> {
+                    Operators.addFloat64(instruction);
+                    return pc + 1;
+                };
+            case SUBI32:
+                return pc -> {
+                    Operators.subInt32(instruction);
+                    return pc + 1;
+                };
+            case SUBI64:
+                return pc -> {
+                    Operators.subInt64(instruction);
+                    return pc + 1;
+                };
+            case SUBF32:
+                return pc -> {
+                    Operators.subFloat32(instruction);
+                    return pc + 1;
+                };
+            case SUBF64:
+                return pc -> {
+                    Operators.subFloat64(instruction);
+                    return pc + 1;
+                };
+            case MOD:
+                return pc -> {
+                    Operators.mod(instruction);
+                    return pc + 1;
+                };
+            case EQI32:
+                return pc -> {
+                    Operators.eqInt32(instruction);
+                    return pc + 1;
+                };
+            case EQI64:
+                return pc -> {
+                    Operators.eqInt64(instruction);
+                    return pc + 1;
+                };
+            case EQF32:
+                return pc -> {
+                    Operators.eqFloat32(instruction);
+                    return pc + 1;
+                };
+            case EQF64:
+                return pc -> {
+                    Operators.eqFloat64(instruction);
+                    return pc + 1;
+                };
+            case EQSTR:
+                return pc -> {
+                    Operators.eqStr(instruction);
+                    return pc + 1;
+                };
+            case NEI32:
+                return pc -> {
+                    Operators.neInt32(instruction);
+                    return pc + 1;
+                };
+            case NEI64:
+                return pc -> {
+                    Operators.neInt64(instruction);
+                    return pc + 1;
+                };
+            case NEF32:
+                return pc -> {
+                    Operators.neFloat32(instruction);
+                    return pc + 1;
+                };
+            case NEF64:
+                return pc -> {
+                    Operators.neFloat64(instruction);
+                    return pc + 1;
+                };
+            case NESTR:
+                return pc -> {
+                    Operators.neStr(instruction);
+                    return pc + 1;
+                };
+            case LTI32:
+                return pc -> {
+                    Operators.ltInt32(instruction);
+                    return pc + 1;
+                };
+            case LTI64:
+                return pc -> {
+                    Operators.ltInt64(instruction);
+                    return pc + 1;
+                };
+            case LTF32:
+                return pc -> {
+                    Operators.ltFloat32(instruction);
+                    return pc + 1;
+                };
+            case LTF64:
+                return pc -> {
+                    Operators.ltFloat64(instruction);
+                    return pc + 1;
+                };
+            case LTSTR:
+                return pc -> {
+                    Operators.ltStr(instruction);
+                    return pc + 1;
+                };
+            case LEI32:
+                return pc -> {
+                    Operators.leInt32(instruction);
+                    return pc + 1;
+                };
+            case LEI64:
+                return pc -> {
+                    Operators.leInt64(instruction);
+                    return pc + 1;
+                };
+            case LEF32:
+                return pc -> {
+                    Operators.leFloat32(instruction);
+                    return pc + 1;
+                };
+            case LEF64:
+                return pc -> {
+                    Operators.leFloat64(instruction);
+                    return pc + 1;
+                };
+            case LESTR:
+                return pc -> {
+                    Operators.leStr(instruction);
+                    return pc + 1;
+                };
+            case GTI32:
+                return pc -> {
+                    Operators.gtInt32(instruction);
+                    return pc + 1;
+                };
+            case GTI64:
+                return pc -> {
+                    Operators.gtInt64(instruction);
+                    return pc + 1;
+                };
+            case GTF32:
+                return pc -> {
+                    Operators.gtFloat32(instruction);
+                    return pc + 1;
+                };
+            case GTF64:
+                return pc -> {
+                    Operators.gtFloat64(instruction);
+                    return pc + 1;
+                };
+            case GTSTR:
+                return pc -> {
+                    Operators.gtStr(instruction);
+                    return pc + 1;
+                };
+            case GEI32:
+                return pc -> {
+                    Operators.geInt32(instruction);
+                    return pc + 1;
+                };
+            case GEI64:
+                return pc -> {
+                    Operators.geInt64(instruction);
+                    return pc + 1;
+                };
+            case GEF32:
+                return pc -> {
+                    Operators.geFloat32(instruction);
+                    return pc + 1;
+                };
+            case GEF64:
+                return pc -> {
+                    Operators.geFloat64(instruction);
+                    return pc + 1;
+                };
+            case GESTR:
+                return pc -> {
+                    Operators.geStr(instruction);
+                    return pc + 1;
+                };
+            case NOT:
+                return pc -> {
+                    Operators.unaryNot(instruction);
+                    return pc + 1;
+                };
+            case AND:
+                return pc -> {
+                    Operators.and(instruction);
+                    return pc + 1;
+                };
+            case OR:
+                return pc -> {
+                    Operators.or(instruction);
+                    return pc + 1;
+                };
+            case XOR:
+                return pc -> {
+                    Operators.xor(instruction);
+                    return pc + 1;
+                };
+            case EQV:
+                return pc -> {
+                    Operators.eqv(instruction);
+                    return pc + 1;
+                };
+            case IMP:
+                return pc -> {
+                    Operators.imp(instruction);
+                    return pc + 1;
+                };
+            case LEFTSHIFT:
+                return pc -> {
+                    Operators.leftShift(instruction);
+                    return pc + 1;
+                };
+            case RIGHTSHIFT:
+                return pc -> {
+                    Operators.rightShift(instruction);
+                    return pc + 1;
+                };
+            case ABS:
+                return pc -> {
+                    Functions.abs(instruction);
+                    return pc + 1;
+                };
+            case SIN:
+                return pc -> {
+                    Functions.sin(instruction);
+                    return pc + 1;
+                };
+            case COS:
+                return pc -> {
+                    Functions.cos(instruction);
+                    return pc + 1;
+                };
+            case TAN:
+                return pc -> {
+                    Functions.tan(instruction);
+                    return pc + 1;
+                };
+            case ATN:
+                return pc -> {
+                    Functions.atn(instruction);
+                    return pc + 1;
+                };
+            case SQR:
+                return pc -> {
+                    Functions.sqr(instruction);
+                    return pc + 1;
+                };
+            case LOG:
+                return pc -> {
+                    Functions.log(instruction);
+                    return pc + 1;
+                };
+            case EEXP:
+                return pc -> {
+                    Functions.exp(instruction);
+                    return pc + 1;
+                };
+            case FLOOR:
+                return pc -> {
+                    Functions.floor(instruction);
+                    return pc + 1;
+                };
+            case CEIL:
+                return pc -> {
+                    Functions.ceil(instruction);
+                    return pc + 1;
+                };
+            case ROUND:
+                return pc -> {
+                    Functions.round(instruction);
+                    return pc + 1;
+                };
+            case MIN:
+                return pc -> {
+                    Functions.min(instruction);
+                    return pc + 1;
+                };
+            case MAX:
+                return pc -> {
+                    Functions.max(instruction);
+                    return pc + 1;
+                };
+            case CINT:
+                return pc -> {
+                    Functions.cint(instruction);
+                    return pc + 1;
+                };
+            case CLNG:
+                return pc -> {
+                    Functions.clng(instruction);
+                    return pc + 1;
+                };
+            case CSNG:
+                return pc -> {
+                    Functions.csng(instruction);
+                    return pc + 1;
+                };
+            case CDBL:
+                return pc -> {
+                    Functions.cdbl(instruction);
+                    return pc + 1;
+                };
+            case INT:
+                return pc -> {
+                    Functions.fnint(instruction);
+                    return pc + 1;
+                };
+            case FIX:
+                return pc -> {
+                    Functions.fix(instruction);
+                    return pc + 1;
+                };
+            case LEN:
+                return pc -> {
+                    Functions.len(instruction);
+                    return pc + 1;
+                };
+            case SGN:
+                return pc -> {
+                    Functions.sgn(instruction);
+                    return pc + 1;
+                };
+            case CONCAT:
+                return pc -> {
+                    Operators.concat(instruction);
+                    return pc + 1;
+                };
+            case APPEND:
+                return pc -> {
+                    Operators.append(instruction);
+                    return pc + 1;
+                };
+        }
+        // Everything else goes through the interpreter switch.
+        return interpret(instruction);
+    }
+
+    private Node interpret(Instruction instruction) {
+        return pc -> {
+            programCounter = pc;
+            return runInstruction(instruction) ? HALT : programCounter;
+        };
+    }
+
+    /**
+     * Returns the entry an instruction writes its result to,
+     * or null if it doesn't produce a result.
+     */
+    private static STObjects.STEntry getResultEntry(Instruction instruction) {
+        return instruction.opCode.branch ? null : instruction.getResultEntry();
+    }
+
+    /**
+     * Returns, for each instruction, the result entry of the last instruction
+     * which produces a result in the rest of its basic block, so that a
+     * compiled block records the result when it's dispatched.
+     */
+    private static STObjects.STEntry[] findBlockResults(List<Instruction> instructions, BitSet leaders) {
+        STObjects.STEntry[] blockResults = new STObjects.STEntry[instructions.size()];
+        STObjects.STEntry result = null;
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            if (leaders.get(i + 1)) {
+                result = null;
+            }
+            if (result == null) {
+                result = getResultEntry(instructions.get(i));
+            }
+            blockResults[i] = result;
+        }
+        return blockResults;
+    }
+
     private ReadData processDataInstructions(List<Instruction> instructions) {
         return new ReadData(instructions.stream().filter(i -> i.opCode == DATA).map(instruction ->
-                ir.getSymbolTable().get(instruction.op1)
+                instruction.getOp1Entry()
         ).collect(Collectors.toList()));
     }
 
@@ -140,13 +1318,13 @@ public class PuffinBasicRuntime {
 
         switch (instruction.opCode) {
             case VARREF:
-                Types.varref(ir.getSymbolTable(), instruction);
+                Types.varref(instruction);
                 break;
             case DIM: {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                ArraysUtil.dim(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.dim(params, instruction);
                 params.clear();
             }
             break;
@@ -154,7 +1332,7 @@ public class PuffinBasicRuntime {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                ArraysUtil.allocArray(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.allocArray(params, instruction);
                 params.clear();
             }
             break;
@@ -173,12 +1351,12 @@ public class PuffinBasicRuntime {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                Statements.structLValue(ir.getSymbolTable(), params, instruction);
+                Statements.structLValue(params, instruction);
                 params.clear();
             }
                 break;
             case MEMBER_FUNC_CALL: {
-                Statements.memberFuncCall(ir.getSymbolTable(), params, instruction);
+                Statements.memberFuncCall(params, instruction);
                 params.clear();
             }
                 break;
@@ -186,369 +1364,428 @@ public class PuffinBasicRuntime {
                 if (params.isEmpty()) {
                     throw new PuffinBasicInternalError("Expected >0 params, but found none!");
                 }
-                Statements.structMemberRef(ir.getSymbolTable(), params, instruction);
+                Statements.structMemberRef(params, instruction);
                 params.clear();
             }
                 break;
             case ASSIGN:
             case COPY:
-                Types.copy(ir.getSymbolTable(), instruction);
+                Types.copy(instruction);
                 break;
             case PARAM_COPY:
-                Types.paramCopy(ir.getSymbolTable(), instruction);
+                Types.paramCopy(instruction);
                 break;
             case UNARY_MINUS:
-                Operators.unaryMinus(ir.getSymbolTable(), instruction);
+                Operators.unaryMinus(instruction);
                 break;
             case PRINT:
-                Statements.print(printBuffer, ir.getSymbolTable(), instruction);
+                Statements.print(printBuffer, instruction);
                 break;
             case PRINTUSING:
-                Statements.printusing(formatterCache, printBuffer, ir.getSymbolTable(), instruction);
+                Statements.printusing(formatterCache, printBuffer, instruction);
                 break;
             case FLUSH:
-                Statements.flush(files, printBuffer, ir.getSymbolTable(), instruction);
+                Statements.flush(files, printBuffer, instruction);
                 break;
             case RESET_ARRAY_IDX:
-                ArraysUtil.resetIndex(arrayState, ir.getSymbolTable(), instruction);
+                ArraysUtil.resetIndex(arrayState, instruction);
                 break;
             case SET_ARRAY_IDX:
-                ArraysUtil.setIndex(arrayState, ir.getSymbolTable(), instruction);
+                ArraysUtil.setIndex(arrayState, instruction);
                 break;
             case ARRAYREF:
-                ArraysUtil.arrayref(ir.getSymbolTable(), instruction);
+                ArraysUtil.arrayref(instruction);
+                break;
+            case ARRAYREF1D:
+                ArraysUtil.arrayref1d(instruction);
+                break;
+            case ARRAYROW:
+                ArraysUtil.arrayRow(instruction);
+                break;
+            case ARRAYREF2D:
+                ArraysUtil.arrayref2d(instruction);
                 break;
             case LABEL:
                 break;
-            case GOTO_LINENUM: {
-                int lineNumber = ir.getSymbolTable().get(instruction.op1).getValue().getInt32();
-                nextProgramCounter = getInstrNumForLineNumber(lineNumber);
-            }
+            case GOTO_LINENUM:
+                countJump();
+                nextProgramCounter = getInstrNumForLineNumber(instruction);
                 break;
             case GOTO_LABEL_IF: {
-                if (ir.getSymbolTable().get(instruction.op1).getValue().getInt64() != 0) {
-                    nextProgramCounter = getInstrNumForLabel(instruction.op2);
+                if (instruction.getOp1Entry().getValue().getInt64() != 0) {
+                    countJump();
+                    nextProgramCounter = getInstrNumForBranch(instruction, instruction.op2);
                 }
             }
                 break;
             case GOTO_LABEL:
-                nextProgramCounter = getInstrNumForLabel(instruction.op1);
+                countJump();
+                nextProgramCounter = getInstrNumForBranch(instruction, instruction.op1);
+                break;
+            case FOR_INIT:
+            case FOR_INIT_UP:
+            case FOR_INIT_DOWN:
+            case FOR_NEXT:
+            case FOR_NEXT_UP:
+            case FOR_NEXT_DOWN:
+            case FOR_NEXT_UP_I32:
+            case FOR_NEXT_DOWN_I32:
+                if (Statements.forLoop(instruction)) {
+                    countJump();
+                    nextProgramCounter = getInstrNumForBranch(instruction, instruction.result);
+                }
+                break;
+            case JEQ_I32:
+            case JEQ_I64:
+            case JEQ_F32:
+            case JEQ_F64:
+            case JEQ_STR:
+            case JNE_I32:
+            case JNE_I64:
+            case JNE_F32:
+            case JNE_F64:
+            case JNE_STR:
+            case JLT_I32:
+            case JLT_I64:
+            case JLT_F32:
+            case JLT_F64:
+            case JLT_STR:
+            case JLE_I32:
+            case JLE_I64:
+            case JLE_F32:
+            case JLE_F64:
+            case JLE_STR:
+            case JGT_I32:
+            case JGT_I64:
+            case JGT_F32:
+            case JGT_F64:
+            case JGT_STR:
+            case JGE_I32:
+            case JGE_I64:
+            case JGE_F32:
+            case JGE_F64:
+            case JGE_STR:
+                if (instruction.opCode.condition.test(Operators.compare(instruction.opCode.compareType, instruction))) {
+                    countJump();
+                    nextProgramCounter = getInstrNumForBranch(instruction, instruction.result);
+                }
                 break;
             case GOTO_CALLER:
-                nextProgramCounter = ir.getSymbolTable().getCurrentScope().getCallerInstrId();
+                countJump();
+                nextProgramCounter = ir.getSymbolTable().getCallerInstrId();
                 break;
             case PUSH_RT_SCOPE:
-                ir.getSymbolTable().pushRuntimeScope(instruction.op1, getInstrNumForLabel(instruction.op2));
+                ir.getSymbolTable().pushRuntimeScope(instruction.op1, getInstrNumForBranch(instruction, instruction.op2));
                 break;
             case POP_RT_SCOPE:
-                ir.getSymbolTable().popScope();
+                ir.getSymbolTable().popRuntimeScope();
                 break;
             case PUSH_RETLABEL:
-                gosubReturnLabelStack.push(instruction.op1);
+                gosubReturnStack.push(getInstrNumForBranch(instruction, instruction.op1));
                 break;
             case RETURN: {
+                countJump();
                 if (instruction.op1 == NULL_ID) {
-                    nextProgramCounter = getInstrNumForLabel(gosubReturnLabelStack.popInt());
+                    nextProgramCounter = gosubReturnStack.popInt();
                 } else {
-                    // Ignore label because we need to return to the lineNumber
-                    gosubReturnLabelStack.popInt();
-                    int lineNumber = ir.getSymbolTable().get(instruction.op1).getValue().getInt32();
-                    nextProgramCounter = getInstrNumForLineNumber(lineNumber);
+                    // Ignore return address because we need to return to the lineNumber
+                    gosubReturnStack.popInt();
+                    nextProgramCounter = getInstrNumForLineNumber(instruction);
                 }
             }
                 break;
             case EXPI32:
-                Operators.expInt32(ir.getSymbolTable(), instruction);
+                Operators.expInt32(instruction);
                 break;
             case EXPI64:
-                Operators.expInt64(ir.getSymbolTable(), instruction);
+                Operators.expInt64(instruction);
                 break;
             case EXPF32:
-                Operators.expFloat32(ir.getSymbolTable(), instruction);
+                Operators.expFloat32(instruction);
                 break;
             case EXPF64:
-                Operators.expFloat64(ir.getSymbolTable(), instruction);
+                Operators.expFloat64(instruction);
                 break;
             case MULI32:
-                Operators.mulInt32(ir.getSymbolTable(), instruction);
+                Operators.mulInt32(instruction);
                 break;
             case MULI64:
-                Operators.mulInt64(ir.getSymbolTable(), instruction);
+                Operators.mulInt64(instruction);
                 break;
             case MULF32:
-                Operators.mulFloat32(ir.getSymbolTable(), instruction);
+                Operators.mulFloat32(instruction);
                 break;
             case MULF64:
-                Operators.mulFloat64(ir.getSymbolTable(), instruction);
+                Operators.mulFloat64(instruction);
                 break;
             case IDIV:
-                Operators.idiv(ir.getSymbolTable(), instruction);
+                Operators.idiv(instruction);
                 break;
             case FDIV:
-                Operators.fdiv(ir.getSymbolTable(), instruction);
+                Operators.fdiv(instruction);
                 break;
             case ADDI32:
-                Operators.addInt32(ir.getSymbolTable(), instruction);
+                Operators.addInt32(instruction);
                 break;
             case ADDI64:
-                Operators.addInt64(ir.getSymbolTable(), instruction);
+                Operators.addInt64(instruction);
                 break;
             case ADDF32:
-                Operators.addFloat32(ir.getSymbolTable(), instruction);
+                Operators.addFloat32(instruction);
                 break;
             case ADDF64:
-                Operators.addFloat64(ir.getSymbolTable(), instruction);
+                Operators.addFloat64(instruction);
                 break;
             case SUBI32:
-                Operators.subInt32(ir.getSymbolTable(), instruction);
+                Operators.subInt32(instruction);
                 break;
             case SUBI64:
-                Operators.subInt64(ir.getSymbolTable(), instruction);
+                Operators.subInt64(instruction);
                 break;
             case SUBF32:
-                Operators.subFloat32(ir.getSymbolTable(), instruction);
+                Operators.subFloat32(instruction);
                 break;
             case SUBF64:
-                Operators.subFloat64(ir.getSymbolTable(), instruction);
+                Operators.subFloat64(instruction);
                 break;
             case MOD:
-                Operators.mod(ir.getSymbolTable(), instruction);
+                Operators.mod(instruction);
                 break;
             case EQI32:
-                Operators.eqInt32(ir.getSymbolTable(), instruction);
+                Operators.eqInt32(instruction);
                 break;
             case EQI64:
-                Operators.eqInt64(ir.getSymbolTable(), instruction);
+                Operators.eqInt64(instruction);
                 break;
             case EQF32:
-                Operators.eqFloat32(ir.getSymbolTable(), instruction);
+                Operators.eqFloat32(instruction);
                 break;
             case EQF64:
-                Operators.eqFloat64(ir.getSymbolTable(), instruction);
+                Operators.eqFloat64(instruction);
                 break;
             case EQSTR:
-                Operators.eqStr(ir.getSymbolTable(), instruction);
+                Operators.eqStr(instruction);
                 break;
             case NEI32:
-                Operators.neInt32(ir.getSymbolTable(), instruction);
+                Operators.neInt32(instruction);
                 break;
             case NEI64:
-                Operators.neInt64(ir.getSymbolTable(), instruction);
+                Operators.neInt64(instruction);
                 break;
             case NEF32:
-                Operators.neFloat32(ir.getSymbolTable(), instruction);
+                Operators.neFloat32(instruction);
                 break;
             case NEF64:
-                Operators.neFloat64(ir.getSymbolTable(), instruction);
+                Operators.neFloat64(instruction);
                 break;
             case NESTR:
-                Operators.neStr(ir.getSymbolTable(), instruction);
+                Operators.neStr(instruction);
                 break;
             case LTI32:
-                Operators.ltInt32(ir.getSymbolTable(), instruction);
+                Operators.ltInt32(instruction);
                 break;
             case LTI64:
-                Operators.ltInt64(ir.getSymbolTable(), instruction);
+                Operators.ltInt64(instruction);
                 break;
             case LTF32:
-                Operators.ltFloat32(ir.getSymbolTable(), instruction);
+                Operators.ltFloat32(instruction);
                 break;
             case LTF64:
-                Operators.ltFloat64(ir.getSymbolTable(), instruction);
+                Operators.ltFloat64(instruction);
                 break;
             case LTSTR:
-                Operators.ltStr(ir.getSymbolTable(), instruction);
+                Operators.ltStr(instruction);
                 break;
             case LEI32:
-                Operators.leInt32(ir.getSymbolTable(), instruction);
+                Operators.leInt32(instruction);
                 break;
             case LEI64:
-                Operators.leInt64(ir.getSymbolTable(), instruction);
+                Operators.leInt64(instruction);
                 break;
             case LEF32:
-                Operators.leFloat32(ir.getSymbolTable(), instruction);
+                Operators.leFloat32(instruction);
                 break;
             case LEF64:
-                Operators.leFloat64(ir.getSymbolTable(), instruction);
+                Operators.leFloat64(instruction);
                 break;
             case LESTR:
-                Operators.leStr(ir.getSymbolTable(), instruction);
+                Operators.leStr(instruction);
                 break;
             case GTI32:
-                Operators.gtInt32(ir.getSymbolTable(), instruction);
+                Operators.gtInt32(instruction);
                 break;
             case GTI64:
-                Operators.gtInt64(ir.getSymbolTable(), instruction);
+                Operators.gtInt64(instruction);
                 break;
             case GTF32:
-                Operators.gtFloat32(ir.getSymbolTable(), instruction);
+                Operators.gtFloat32(instruction);
                 break;
             case GTF64:
-                Operators.gtFloat64(ir.getSymbolTable(), instruction);
+                Operators.gtFloat64(instruction);
                 break;
             case GTSTR:
-                Operators.gtStr(ir.getSymbolTable(), instruction);
+                Operators.gtStr(instruction);
                 break;
             case GEI32:
-                Operators.geInt32(ir.getSymbolTable(), instruction);
+                Operators.geInt32(instruction);
                 break;
             case GEI64:
-                Operators.geInt64(ir.getSymbolTable(), instruction);
+                Operators.geInt64(instruction);
                 break;
             case GEF32:
-                Operators.geFloat32(ir.getSymbolTable(), instruction);
+                Operators.geFloat32(instruction);
                 break;
             case GEF64:
-                Operators.geFloat64(ir.getSymbolTable(), instruction);
+                Operators.geFloat64(instruction);
                 break;
             case GESTR:
-                Operators.geStr(ir.getSymbolTable(), instruction);
+                Operators.geStr(instruction);
                 break;
             case NOT:
-                Operators.unaryNot(ir.getSymbolTable(), instruction);
+                Operators.unaryNot(instruction);
                 break;
             case AND:
-                Operators.and(ir.getSymbolTable(), instruction);
+                Operators.and(instruction);
                 break;
             case OR:
-                Operators.or(ir.getSymbolTable(), instruction);
+                Operators.or(instruction);
                 break;
             case XOR:
-                Operators.xor(ir.getSymbolTable(), instruction);
+                Operators.xor(instruction);
                 break;
             case EQV:
-                Operators.eqv(ir.getSymbolTable(), instruction);
+                Operators.eqv(instruction);
                 break;
             case IMP:
-                Operators.imp(ir.getSymbolTable(), instruction);
+                Operators.imp(instruction);
                 break;
             case LEFTSHIFT:
-                Operators.leftShift(ir.getSymbolTable(), instruction);
+                Operators.leftShift(instruction);
                 break;
             case RIGHTSHIFT:
-                Operators.rightShift(ir.getSymbolTable(), instruction);
+                Operators.rightShift(instruction);
                 break;
             case END:
                 return true;
             case ABS:
-                Functions.abs(ir.getSymbolTable(), instruction);
+                Functions.abs(instruction);
                 break;
             case ASC:
-                Functions.asc(ir.getSymbolTable(), instruction);
+                Functions.asc(instruction);
                 break;
             case SIN:
-                Functions.sin(ir.getSymbolTable(), instruction);
+                Functions.sin(instruction);
                 break;
             case COS:
-                Functions.cos(ir.getSymbolTable(), instruction);
+                Functions.cos(instruction);
                 break;
             case TAN:
-                Functions.tan(ir.getSymbolTable(), instruction);
+                Functions.tan(instruction);
                 break;
             case ASIN:
-                Functions.asin(ir.getSymbolTable(), instruction);
+                Functions.asin(instruction);
                 break;
             case ACOS:
-                Functions.acos(ir.getSymbolTable(), instruction);
+                Functions.acos(instruction);
                 break;
             case ATN:
-                Functions.atn(ir.getSymbolTable(), instruction);
+                Functions.atn(instruction);
                 break;
             case SINH:
-                Functions.sinh(ir.getSymbolTable(), instruction);
+                Functions.sinh(instruction);
                 break;
             case COSH:
-                Functions.cosh(ir.getSymbolTable(), instruction);
+                Functions.cosh(instruction);
                 break;
             case TANH:
-                Functions.tanh(ir.getSymbolTable(), instruction);
+                Functions.tanh(instruction);
                 break;
             case SQR:
-                Functions.sqr(ir.getSymbolTable(), instruction);
+                Functions.sqr(instruction);
                 break;
             case LOG:
-                Functions.log(ir.getSymbolTable(), instruction);
+                Functions.log(instruction);
                 break;
             case LOG10:
-                Functions.log10(ir.getSymbolTable(), instruction);
+                Functions.log10(instruction);
                 break;
             case LOG2:
-                Functions.log2(ir.getSymbolTable(), instruction);
+                Functions.log2(instruction);
                 break;
             case EEXP:
-                Functions.exp(ir.getSymbolTable(), instruction);
+                Functions.exp(instruction);
                 break;
             case TORAD:
-                Functions.toRad(ir.getSymbolTable(), instruction);
+                Functions.toRad(instruction);
                 break;
             case TODEG:
-                Functions.toDeg(ir.getSymbolTable(), instruction);
+                Functions.toDeg(instruction);
                 break;
             case FLOOR:
-                Functions.floor(ir.getSymbolTable(), instruction);
+                Functions.floor(instruction);
                 break;
             case CEIL:
-                Functions.ceil(ir.getSymbolTable(), instruction);
+                Functions.ceil(instruction);
                 break;
             case ROUND:
-                Functions.round(ir.getSymbolTable(), instruction);
+                Functions.round(instruction);
                 break;
             case E:
-                Functions.e(ir.getSymbolTable(), instruction);
+                Functions.e(instruction);
                 break;
             case PI:
-                Functions.pi(ir.getSymbolTable(), instruction);
+                Functions.pi(instruction);
                 break;
             case MIN:
-                Functions.min(ir.getSymbolTable(), instruction);
+                Functions.min(instruction);
                 break;
             case MAX:
-                Functions.max(ir.getSymbolTable(), instruction);
+                Functions.max(instruction);
                 break;
             case ARRAYFILL:
-                ArraysUtil.arrayfill(ir.getSymbolTable(), instruction);
+                ArraysUtil.arrayfill(instruction);
                 break;
             case ARRAYCOPY:
-                ArraysUtil.arrayCopy(ir.getSymbolTable(), instruction);
+                ArraysUtil.arrayCopy(instruction);
                 break;
             case ARRAY1DMIN:
-                ArraysUtil.array1dMin(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMin(instruction);
                 break;
             case ARRAY1DMAX:
-                ArraysUtil.array1dMax(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMax(instruction);
                 break;
             case ARRAY1DMEAN:
-                ArraysUtil.array1dMean(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMean(instruction);
                 break;
             case ARRAY1DSUM:
-                ArraysUtil.array1dSum(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dSum(instruction);
                 break;
             case ARRAY1DSTD:
-                ArraysUtil.array1dStddev(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dStddev(instruction);
                 break;
             case ARRAY1DMEDIAN:
-                ArraysUtil.array1dMedian(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dMedian(instruction);
                 break;
             case ARRAY1DPCT:
-                ArraysUtil.array1dPercentile(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dPercentile(instruction);
                 break;
             case ARRAY1DSORT:
-                ArraysUtil.array1dSort(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dSort(instruction);
                 break;
             case ARRAY1DBINSEARCH:
-                ArraysUtil.array1dBinSearch(ir.getSymbolTable(), instruction);
+                ArraysUtil.array1dBinSearch(instruction);
                 break;
             case ARRAY2DSHIFTVER:
-                ArraysUtil.array2dShiftVertical(ir.getSymbolTable(), instruction);
+                ArraysUtil.array2dShiftVertical(instruction);
                 break;
             case ARRAY2DSHIFTHOR:
-                ArraysUtil.array2dShiftHorizontal(ir.getSymbolTable(), instruction);
+                ArraysUtil.array2dShiftHorizontal(instruction);
                 break;
             case ARRAY1DCOPY: {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                ArraysUtil.array1DCopy(ir.getSymbolTable(), params.get(0), params.get(1), instruction);
+                ArraysUtil.array1DCopy(params.get(0), params.get(1), instruction);
                 params.clear();
             }
             break;
@@ -556,7 +1793,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                ArraysUtil.array2dFindRow(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.array2dFindRow(params, instruction);
                 params.clear();
             }
             break;
@@ -564,81 +1801,81 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                ArraysUtil.array2dFindColumn(ir.getSymbolTable(), params, instruction);
+                ArraysUtil.array2dFindColumn(params, instruction);
                 params.clear();
             }
             break;
             case CINT:
-                Functions.cint(ir.getSymbolTable(), instruction);
+                Functions.cint(instruction);
                 break;
             case CLNG:
-                Functions.clng(ir.getSymbolTable(), instruction);
+                Functions.clng(instruction);
                 break;
             case CSNG:
-                Functions.csng(ir.getSymbolTable(), instruction);
+                Functions.csng(instruction);
                 break;
             case CDBL:
-                Functions.cdbl(ir.getSymbolTable(), instruction);
+                Functions.cdbl(instruction);
                 break;
             case CHRDLR:
-                Functions.chrdlr(ir.getSymbolTable(), instruction);
+                Functions.chrdlr(instruction);
                 break;
             case CVI:
-                Functions.cvi(ir.getSymbolTable(), instruction);
+                Functions.cvi(instruction);
                 break;
             case CVL:
-                Functions.cvl(ir.getSymbolTable(), instruction);
+                Functions.cvl(instruction);
                 break;
             case CVS:
-                Functions.cvs(ir.getSymbolTable(), instruction);
+                Functions.cvs(instruction);
                 break;
             case CVD:
-                Functions.cvd(ir.getSymbolTable(), instruction);
+                Functions.cvd(instruction);
                 break;
             case MKIDLR:
-                Functions.mkidlr(ir.getSymbolTable(), instruction);
+                Functions.mkidlr(instruction);
                 break;
             case MKLDLR:
-                Functions.mkldlr(ir.getSymbolTable(), instruction);
+                Functions.mkldlr(instruction);
                 break;
             case MKSDLR:
-                Functions.mksdlr(ir.getSymbolTable(), instruction);
+                Functions.mksdlr(instruction);
                 break;
             case MKDDLR:
-                Functions.mkddlr(ir.getSymbolTable(), instruction);
+                Functions.mkddlr(instruction);
                 break;
             case SPACEDLR:
-                Functions.spacedlr(ir.getSymbolTable(), instruction);
+                Functions.spacedlr(instruction);
                 break;
             case STRDLR:
-                Functions.strdlr(ir.getSymbolTable(), instruction);
+                Functions.strdlr(instruction);
                 break;
             case VAL:
-                Functions.val(ir.getSymbolTable(), instruction);
+                Functions.val(instruction);
                 break;
             case INT:
-                Functions.fnint(ir.getSymbolTable(), instruction);
+                Functions.fnint(instruction);
                 break;
             case FIX:
-                Functions.fix(ir.getSymbolTable(), instruction);
+                Functions.fix(instruction);
                 break;
             case LEN:
-                Functions.len(ir.getSymbolTable(), instruction);
+                Functions.len(instruction);
                 break;
             case HEXDLR:
-                Functions.hexdlr(ir.getSymbolTable(), instruction);
+                Functions.hexdlr(instruction);
                 break;
             case OCTDLR:
-                Functions.octdlr(ir.getSymbolTable(), instruction);
+                Functions.octdlr(instruction);
                 break;
             case LEFTDLR:
-                Functions.leftdlr(ir.getSymbolTable(), instruction);
+                Functions.leftdlr(instruction);
                 break;
             case RIGHTDLR:
-                Functions.rightdlr(ir.getSymbolTable(), instruction);
+                Functions.rightdlr(instruction);
                 break;
             case SPLITDLR:
-                Functions.splitdlr(ir.getSymbolTable(), instruction);
+                Functions.splitdlr(instruction);
                 break;
             case PARAM1:
             case PARAM2:
@@ -648,7 +1885,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Functions.instr(ir.getSymbolTable(), params.get(0), instruction);
+                Functions.instr(params.get(0), instruction);
                 params.clear();
             }
                 break;
@@ -656,7 +1893,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Functions.middlr(ir.getSymbolTable(), params.get(0), instruction);
+                Functions.middlr(params.get(0), instruction);
                 params.clear();
             }
                 break;
@@ -664,7 +1901,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Statements.middlr(ir.getSymbolTable(), params.get(0), instruction);
+                Statements.middlr(params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -672,7 +1909,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                Statements.open(files, ir.getSymbolTable(), params.get(0), params.get(1), instruction);
+                Statements.open(files, params.get(0), params.get(1), instruction);
                 params.clear();
             }
                 break;
@@ -680,7 +1917,7 @@ public class PuffinBasicRuntime {
                 Statements.closeAll(files);
                 break;
             case CLOSE:
-                Statements.close(files, ir.getSymbolTable(), instruction);
+                Statements.close(files, instruction);
                 break;
             case FIELD: {
                 Statements.field(files, ir.getSymbolTable(), params, instruction);
@@ -691,7 +1928,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.hsb2rgb(ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.hsb2rgb(params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -702,52 +1939,55 @@ public class PuffinBasicRuntime {
                 Statements.getf(files, ir.getSymbolTable(), instruction);
                 break;
             case LOC:
-                Functions.loc(files, ir.getSymbolTable(), instruction);
+                Functions.loc(files, instruction);
                 break;
             case LOF:
-                Functions.lof(files, ir.getSymbolTable(), instruction);
+                Functions.lof(files, instruction);
                 break;
             case EOF:
-                Functions.eof(files, ir.getSymbolTable(), instruction);
+                Functions.eof(files, instruction);
                 break;
             case RND:
-                Functions.rnd(random, ir.getSymbolTable(), instruction);
+                Functions.rnd(random, instruction);
                 break;
             case RANDOMIZE:
-                Statements.randomize(random, ir.getSymbolTable(), instruction);
+                Statements.randomize(random, instruction);
                 break;
             case RANDOMIZE_TIMER:
                 Statements.randomizeTimer(random);
                 break;
             case SGN:
-                Functions.sgn(ir.getSymbolTable(), instruction);
+                Functions.sgn(instruction);
                 break;
             case LSET:
-                Statements.lset(ir.getSymbolTable(), instruction);
+                Statements.lset(instruction);
                 break;
             case RSET:
-                Statements.rset(ir.getSymbolTable(), instruction);
+                Statements.rset(instruction);
                 break;
             case TIMER:
-                Functions.timer(ir.getSymbolTable(), instruction);
+                Functions.timer(instruction);
                 break;
             case TIMERMILLIS:
-                Functions.timerMillis(ir.getSymbolTable(), instruction);
+                Functions.timerMillis(instruction);
                 break;
             case STRINGDLR:
-                Functions.stringdlr(ir.getSymbolTable(), instruction);
+                Functions.stringdlr(instruction);
                 break;
             case SWAP:
-                Statements.swap(ir.getSymbolTable(), instruction);
+                Statements.swap(instruction);
                 break;
             case CONCAT:
-                Operators.concat(ir.getSymbolTable(), instruction);
+                Operators.concat(instruction);
+                break;
+            case APPEND:
+                Operators.append(instruction);
                 break;
             case INPUTDLR:
-                Functions.inputdlr(files, ir.getSymbolTable(), instruction);
+                Functions.inputdlr(files, instruction);
                 break;
             case INPUT: {
-                Statements.input(files, ir.getSymbolTable(), params, instruction);
+                Statements.input(files, params, instruction);
                 params.clear();
             }
                 break;
@@ -755,12 +1995,12 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                Statements.lineinput(files, ir.getSymbolTable(), params.get(0), instruction);
+                Statements.lineinput(files, params.get(0), instruction);
                 params.clear();
             }
             break;
             case WRITE:
-                Statements.write(printBuffer, ir.getSymbolTable(), instruction);
+                Statements.write(printBuffer, instruction);
                 break;
             case DATA:
                 break;
@@ -771,16 +2011,16 @@ public class PuffinBasicRuntime {
                 Statements.read(readData, ir.getSymbolTable(), instruction);
                 break;
             case ENVIRONDLR:
-                Functions.environdlr(env, ir.getSymbolTable(), instruction);
+                Functions.environdlr(env, instruction);
                 break;
             case SLEEP:
-                Statements.sleep(ir.getSymbolTable(), instruction);
+                Statements.sleep(instruction);
                 break;
             case SCREEN: {
                 if (params.size() != 3) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.screen(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.screen(graphicsState, params, instruction);
                 params.clear();
             }
             break;
@@ -791,7 +2031,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 3) {
                         throw new PuffinBasicInternalError("Expected 3 params, but found: " + params);
                 }
-                GraphicsRuntime.circle(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.circle(graphicsState, params, instruction);
                 params.clear();
             }
             break;
@@ -799,7 +2039,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.line(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.line(graphicsState, params, instruction);
                 params.clear();
             }
             break;
@@ -807,7 +2047,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 params, but found: " + params);
                 }
-                GraphicsRuntime.color(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.color(graphicsState, params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -815,7 +2055,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.paint(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.paint(graphicsState, params, instruction);
                 params.clear();
             }
             break;
@@ -823,7 +2063,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 2) {
                     throw new PuffinBasicInternalError("Expected 2 params, but found: " + params);
                 }
-                GraphicsRuntime.pset(graphicsState, ir.getSymbolTable(), params, instruction);
+                GraphicsRuntime.pset(graphicsState, params, instruction);
                 params.clear();
             }
             break;
@@ -847,7 +2087,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.bufferCopyHor(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.bufferCopyHor(graphicsState, params.get(0), instruction);
                 params.clear();
             }
                 break;
@@ -855,7 +2095,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.font(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.font(graphicsState, params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -863,7 +2103,7 @@ public class PuffinBasicRuntime {
                 if (params.size() != 1) {
                     throw new PuffinBasicInternalError("Expected 1 param, but found: " + params);
                 }
-                GraphicsRuntime.drawstr(graphicsState, ir.getSymbolTable(), params.get(0), instruction);
+                GraphicsRuntime.drawstr(graphicsState, params.get(0), instruction);
                 params.clear();
             }
             break;
@@ -874,10 +2114,10 @@ public class PuffinBasicRuntime {
                 GraphicsRuntime.saveimg(ir.getSymbolTable(), instruction);
                 break;
             case DRAW:
-                GraphicsRuntime.draw(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.draw(graphicsState, instruction);
                 break;
             case INKEYDLR:
-                GraphicsRuntime.inkeydlr(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.inkeydlr(graphicsState, instruction);
                 break;
             case CLS:
                 GraphicsRuntime.cls(graphicsState);
@@ -889,37 +2129,37 @@ public class PuffinBasicRuntime {
                 GraphicsRuntime.loadwav(soundState, ir.getSymbolTable(), instruction);
                 break;
             case PLAYWAV:
-                GraphicsRuntime.playwav(soundState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.playwav(soundState, instruction);
                 break;
             case STOPWAV:
-                GraphicsRuntime.stopwav(soundState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.stopwav(soundState, instruction);
                 break;
             case LOOPWAV:
-                GraphicsRuntime.loopwav(soundState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.loopwav(soundState, instruction);
                 break;
             case MOUSEMOVEDX:
-                GraphicsRuntime.mouseMovedX(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseMovedX(graphicsState, instruction);
                 break;
             case MOUSEMOVEDY:
-                GraphicsRuntime.mouseMovedY(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseMovedY(graphicsState, instruction);
                 break;
             case MOUSEDRAGGEDX:
-                GraphicsRuntime.mouseDraggedX(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseDraggedX(graphicsState, instruction);
                 break;
             case MOUSEDRAGGEDY:
-                GraphicsRuntime.mouseDraggedY(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseDraggedY(graphicsState, instruction);
                 break;
             case MOUSEBUTTONCLICKED:
-                GraphicsRuntime.mouseButtonClicked(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseButtonClicked(graphicsState, instruction);
                 break;
             case MOUSEBUTTONPRESSED:
-                GraphicsRuntime.mouseButtonPressed(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseButtonPressed(graphicsState, instruction);
                 break;
             case MOUSEBUTTONRELEASED:
-                GraphicsRuntime.mouseButtonReleased(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.mouseButtonReleased(graphicsState, instruction);
                 break;
             case ISKEYPRESSED:
-                GraphicsRuntime.isKeyPressed(graphicsState, ir.getSymbolTable(), instruction);
+                GraphicsRuntime.isKeyPressed(graphicsState, instruction);
                 break;
         }
 
@@ -41,11 +41,8 @@ import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.OUT_OF_DAT
 
 public class Statements {
 
-    public static void sleep(
-            PuffinBasicSymbolTable symbolTable,
-            Instruction instruction)
-    {
-        int millis = symbolTable.get(instruction.op1).getValue().getInt32();
+    public static void sleep(Instruction instruction) {
+        int millis = instruction.getOp1Entry().getValue().getInt32();
         if (millis < 0) {
             throw new PuffinBasicRuntimeError(
                     DATA_OUT_OF_RANGE,
@@ -56,6 +53,110 @@ public class Statements {
         LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(millis));
     }
 
+    /*
+     * FOR loop opcodes: loop variable in op1, end in op2 and step in op3.
+     * The end is copied to a tmp of the variable's and end's common type,
+     * so the comparison type is the type of op2.
+     * Each returns true if the loop body should run (again).
+     */
+
+    /**
+     * Runs a FOR_INIT* or FOR_NEXT* op, and returns true if it jumps to its label,
+     * i.e. past the loop for FOR_INIT* and back to the body for FOR_NEXT*.
+     */
+    public static boolean forLoop(Instruction instruction) {
+        switch (instruction.opCode) {
+            case FOR_INIT:
+                return !isWithinForEnd(instruction, isForStepNegative(instruction.getOp3Entry()));
+            case FOR_INIT_UP:
+                return !isWithinForEnd(instruction, false);
+            case FOR_INIT_DOWN:
+                return !isWithinForEnd(instruction, true);
+            case FOR_NEXT:
+                applyForStep(instruction);
+                return isWithinForEnd(instruction, isForStepNegative(instruction.getOp3Entry()));
+            case FOR_NEXT_UP:
+                applyForStep(instruction);
+                return isWithinForEnd(instruction, false);
+            case FOR_NEXT_DOWN:
+                applyForStep(instruction);
+                return isWithinForEnd(instruction, true);
+            case FOR_NEXT_UP_I32:
+                return applyForStepInt32(instruction) <= instruction.getOp2Entry().getValue().getInt32();
+            case FOR_NEXT_DOWN_I32:
+                return applyForStepInt32(instruction) >= instruction.getOp2Entry().getValue().getInt32();
+            default:
+                throw new PuffinBasicInternalError("Not a FOR op: " + instruction.opCode);
+        }
+    }
+
+    private static boolean isWithinForEnd(Instruction instruction, boolean down) {
+        int c = compareForVariable(instruction);
+        return down ? c >= 0 : c <= 0;
+    }
+
+    private static int applyForStepInt32(Instruction instruction) {
+        STValue variable = instruction.getOp1Entry().getValue();
+        int value = variable.getInt32() + instruction.getOp3Entry().getValue().getInt32();
+        variable.setInt32(value);
+        return value;
+    }
+
+    private static boolean isForStepNegative(STEntry step) {
+        STValue value = step.getValue();
+        switch (step.getType().getAtomTypeId()) {
+            case INT32:
+                return value.getInt32() < 0;
+            case INT64:
+                return value.getInt64() < 0;
+            case FLOAT:
+                return Float.compare(value.getFloat32(), 0) < 0;
+            case DOUBLE:
+                return Double.compare(value.getFloat64(), 0) < 0;
+            default:
+                throw new PuffinBasicInternalError("Bad step type: " + step.getType());
+        }
+    }
+
+    private static void applyForStep(Instruction instruction) {
+        STEntry variable = instruction.getOp1Entry();
+        STValue value = variable.getValue();
+        STValue step = instruction.getOp3Entry().getValue();
+        switch (variable.getType().getAtomTypeId()) {
+            case INT32:
+                value.setInt32(value.getInt32() + step.getInt32());
+                break;
+            case INT64:
+                value.setInt64(value.getInt64() + step.getInt64());
+                break;
+            case FLOAT:
+                value.setFloat32(value.getFloat32() + step.getFloat32());
+                break;
+            case DOUBLE:
+                value.setFloat64(value.getFloat64() + step.getFloat64());
+                break;
+            default:
+                throw new PuffinBasicInternalError("Bad loop variable type: " + variable.getType());
+        }
+    }
+
+    private static int compareForVariable(Instruction instruction) {
+        STValue variable = instruction.getOp1Entry().getValue();
+        STEntry end = instruction.getOp2Entry();
+        switch (end.getType().getAtomTypeId()) {
+            case INT32:
+                return Integer.compare(variable.getInt32(), end.getValue().getInt32());
+            case INT64:
+                return Long.compare(variable.getInt64(), end.getValue().getInt64());
+            case FLOAT:
+                return Float.compare(variable.getFloat32(), end.getValue().getFloat32());
+            case DOUBLE:
+                return Double.compare(variable.getFloat64(), end.getValue().getFloat64());
+            default:
+                throw new PuffinBasicInternalError("Bad loop end type: " + end.getType());
+        }
+    }
+
     public static final class ReadData {
         private final List<STEntry> data;
         private int cursor;
@@ -82,29 +183,26 @@ public class Statements {
 
     public static void print(
             PrintBuffer printBuffer,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        printBuffer.appendAtCursor(symbolTable.get(instruction.op1).getValue().printFormat());
+        printBuffer.appendAtCursor(instruction.getOp1Entry().getValue().printFormat());
     }
 
     public static void write(
             PrintBuffer printBuffer,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        printBuffer.appendAtCursor(symbolTable.get(instruction.op1).getValue().writeFormat());
+        printBuffer.appendAtCursor(instruction.getOp1Entry().getValue().writeFormat());
     }
 
     public static void printusing(
             FormatterCache cache,
             PrintBuffer printBuffer,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        String format = symbolTable.get(instruction.op1).getValue().getString();
+        String format = instruction.getOp1Entry().getValue().getString();
         Formatter.IFormatter formatter = cache.get(format);
-        STEntry entry = symbolTable.get(instruction.op2);
+        STEntry entry = instruction.getOp2Entry();
         STValue value = entry.getValue();
         String result;
         switch (entry.getType().getAtomTypeId()) {
@@ -148,21 +246,20 @@ public class Statements {
     public static void flush(
             PuffinBasicFiles files,
             PrintBuffer printBuffer,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
         if (instruction.op1 == NULL_ID) {
             printBuffer.flush(files.sys);
         } else {
-            int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+            int fileNumber = instruction.getOp1Entry().getValue().getInt32();
             printBuffer.flush(files.get(fileNumber));
         }
     }
 
-    public static void swap(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STEntry op1Entry = symbolTable.get(instruction.op1);
+    public static void swap(Instruction instruction) {
+        STEntry op1Entry = instruction.getOp1Entry();
         STValue op1 = op1Entry.getValue();
-        STEntry op2Entry = symbolTable.get(instruction.op2);
+        STEntry op2Entry = instruction.getOp2Entry();
         STValue op2 = op2Entry.getValue();
         STObjects.PuffinBasicAtomTypeId dt1 = op1Entry.getType().getAtomTypeId();
         STObjects.PuffinBasicAtomTypeId dt2 = op2Entry.getType().getAtomTypeId();
@@ -192,10 +289,10 @@ public class Statements {
         }
     }
 
-    public static void lset(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STValue destEntry = symbolTable.get(instruction.op1).getValue();
+    public static void lset(Instruction instruction) {
+        STValue destEntry = instruction.getOp1Entry().getValue();
 
-        String value = symbolTable.get(instruction.op2).getValue().getString();
+        String value = instruction.getOp2Entry().getValue().getString();
         int valLen = value.length();
 
         int destLen = destEntry.getFieldLength();
@@ -218,10 +315,10 @@ public class Statements {
         destEntry.setString(result);
     }
 
-    public static void rset(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STValue destEntry = symbolTable.get(instruction.op1).getValue();
+    public static void rset(Instruction instruction) {
+        STValue destEntry = instruction.getOp1Entry().getValue();
 
-        String value = symbolTable.get(instruction.op2).getValue().getString();
+        String value = instruction.getOp2Entry().getValue().getString();
         int valLen = value.length();
 
         int destLen = destEntry.getFieldLength();
@@ -247,23 +344,22 @@ public class Statements {
 
     public static void open(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr_fn_fn_0,
             Instruction instr_om_am_1,
             Instruction instr_lm_rl_2)
     {
-        String fileName = symbolTable.get(instr_fn_fn_0.op1).getValue().getString();
-        int fileNumber = symbolTable.get(instr_fn_fn_0.op2).getValue().getInt32();
+        String fileName = instr_fn_fn_0.getOp1Entry().getValue().getString();
+        int fileNumber = instr_fn_fn_0.getOp2Entry().getValue().getInt32();
         FileOpenMode fileOpenMode = FileOpenMode.valueOf(
-                symbolTable.get(instr_om_am_1.op1).getValue().getString()
+                instr_om_am_1.getOp1Entry().getValue().getString()
         );
         FileAccessMode fileAccessMode = FileAccessMode.valueOf(
-                symbolTable.get(instr_om_am_1.op2).getValue().getString()
+                instr_om_am_1.getOp2Entry().getValue().getString()
         );
         LockMode fileLockMode = LockMode.valueOf(
-                symbolTable.get(instr_lm_rl_2.op1).getValue().getString()
+                instr_lm_rl_2.getOp1Entry().getValue().getString()
         );
-        int recordLen = symbolTable.get(instr_lm_rl_2.op2).getValue().getInt32();
+        int recordLen = instr_lm_rl_2.getOp2Entry().getValue().getInt32();
 
         files.open(
                 fileNumber,
@@ -280,10 +376,9 @@ public class Statements {
 
     public static void close(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+        int fileNumber = instruction.getOp1Entry().getValue().getInt32();
         files.get(fileNumber).close();
     }
 
@@ -295,11 +390,11 @@ public class Statements {
     {
         IntArrayList varList = new IntArrayList(fields.size());
         for (Instruction instrI : fields) {
-            int recordPartLen = symbolTable.get(instrI.op2).getValue().getInt32();
-            symbolTable.get(instrI.op1).getValue().setFieldLength(recordPartLen);
+            int recordPartLen = instrI.getOp2Entry().getValue().getInt32();
+            instrI.getOp1Entry().getValue().setFieldLength(recordPartLen);
             varList.add(instrI.op1);
         }
-        int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+        int fileNumber = instruction.getOp1Entry().getValue().getInt32();
         files.get(fileNumber).setFieldParams(
                 symbolTable,
                 varList
@@ -311,10 +406,10 @@ public class Statements {
             PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+        int fileNumber = instruction.getOp1Entry().getValue().getInt32();
         Integer recordNumber = instruction.op2 == NULL_ID
                 ? null
-                : symbolTable.get(instruction.op2).getValue().getInt32();
+                : instruction.getOp2Entry().getValue().getInt32();
         files.get(fileNumber).put(recordNumber, symbolTable);
     }
 
@@ -323,19 +418,18 @@ public class Statements {
             PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        int fileNumber = symbolTable.get(instruction.op1).getValue().getInt32();
+        int fileNumber = instruction.getOp1Entry().getValue().getInt32();
         Integer recordNumber = instruction.op2 == NULL_ID
                 ? null
-                : symbolTable.get(instruction.op2).getValue().getInt32();
+                : instruction.getOp2Entry().getValue().getInt32();
         files.get(fileNumber).get(recordNumber, symbolTable);
     }
 
     public static void randomize(
             Random random,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instruction)
     {
-        long seed = symbolTable.get(instruction.op1).getValue().getInt64();
+        long seed = instruction.getOp1Entry().getValue().getInt64();
         random.setSeed(seed);
     }
 
@@ -346,19 +440,18 @@ public class Statements {
 
     public static void input(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> instructions,
             Instruction instruction)
     {
         boolean printPrompt = false;
         if (instruction.op1 != NULL_ID) {
-            String prompt = symbolTable.get(instruction.op1).getValue().getString();
+            String prompt = instruction.getOp1Entry().getValue().getString();
             files.sys.print(prompt);
             printPrompt = true;
         }
         PuffinBasicFile file;
         if (instruction.op2 != NULL_ID) {
-            int fileNumber = symbolTable.get(instruction.op2).getValue().getInt32();
+            int fileNumber = instruction.getOp2Entry().getValue().getInt32();
             file = files.get(fileNumber);
         } else {
             file = files.sys;
@@ -394,7 +487,7 @@ public class Statements {
 
         int i = 0;
         for (Instruction instr0 : instructions) {
-            STEntry entry = symbolTable.get(instr0.op1);
+            STEntry entry = instr0.getOp1Entry();
             STValue value = entry.getValue();
             switch (entry.getType().getAtomTypeId()) {
                 case INT32:
@@ -419,34 +512,32 @@ public class Statements {
 
     public static void lineinput(
             PuffinBasicFiles files,
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instruction)
     {
         if (instruction.op1 != NULL_ID) {
-            String prompt = symbolTable.get(instruction.op1).getValue().getString();
+            String prompt = instruction.getOp1Entry().getValue().getString();
             if (!prompt.isEmpty()) {
                 files.sys.print(prompt);
             }
         }
         PuffinBasicFile file;
         if (instruction.op2 != NULL_ID) {
-            int fileNumber = symbolTable.get(instruction.op2).getValue().getInt32();
+            int fileNumber = instruction.getOp2Entry().getValue().getInt32();
             file = files.get(fileNumber);
         } else {
             file = files.sys;
         }
-        symbolTable.get(instr0.op1).getValue().setString(file.readLine());
+        instr0.getOp1Entry().getValue().setString(file.readLine());
     }
 
     public static void middlr(
-            PuffinBasicSymbolTable symbolTable,
             Instruction instr0,
             Instruction instr) {
-        STValue dest = symbolTable.get(instr0.op1).getValue();
-        int n = symbolTable.get(instr0.op2).getValue().getInt32();
-        int m = symbolTable.get(instr.op1).getValue().getInt32();
-        String replacement = symbolTable.get(instr.op2).getValue().getString();
+        STValue dest = instr0.getOp1Entry().getValue();
+        int n = instr0.getOp2Entry().getValue().getInt32();
+        int m = instr.getOp1Entry().getValue().getInt32();
+        String replacement = instr.getOp2Entry().getValue().getString();
         String varValue = dest.getString();
         int varlen = varValue.length();
         String result;
@@ -488,56 +579,42 @@ public class Statements {
     static void createInstance(
             PuffinBasicSymbolTable symbolTable, Instruction instruction)
     {
-        STVariable entry = (STVariable) symbolTable.get(instruction.op1);
+        STVariable entry = (STVariable) instruction.getOp1Entry();
         entry.createAndSetInstance(symbolTable);
     }
 
     static void structLValue(
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> params,
             Instruction instruction)
     {
-        STObjects.STStruct root = (STObjects.STStruct) symbolTable.get(instruction.op1).getValue();
-        for (int i = 0; i < params.size() - 1; i++) {
-            int childId = symbolTable.get(params.get(i).op1).getValue().getInt32();
-            int valueId = root.getMember(childId);
-            root = (STObjects.STStruct) symbolTable.get(valueId).getValue();
-        }
-        int childId = symbolTable.get(params.get(params.size() - 1).op1).getValue().getInt32();
-        int valueId = root.getMember(childId);
-        ((STRef) symbolTable.get(instruction.result)).setRef(symbolTable.get(valueId));
+        ((STRef) instruction.getResultEntry()).setRef(getStructField(params, instruction));
     }
 
     static void memberFuncCall(
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> params,
             Instruction instruction)
     {
-        STValue[] funcParams = new STValue[params.size()];
-        STValue object = symbolTable.get(instruction.op1).getValue();
-        String funcName = symbolTable.get(instruction.op2).getValue().getString();
-        STValue result = symbolTable.get(instruction.result).getValue();
-
+        STObjects.MemberFuncCallValue call = (STObjects.MemberFuncCallValue) instruction.getOp2Entry().getValue();
         for (int i = 0; i < params.size(); i++) {
-            funcParams[i] = symbolTable.get(params.get(i).op1).getValue();
+            call.setParam(i, params.get(i).getOp1Entry().getValue());
         }
-
-        object.call(funcName, funcParams, result);
+        call.call(instruction.getOp1Entry().getValue(), instruction.getResultEntry().getValue());
     }
 
     static void structMemberRef(
-            PuffinBasicSymbolTable symbolTable,
             List<Instruction> params,
             Instruction instruction)
     {
-        STObjects.STStruct root = (STObjects.STStruct) symbolTable.get(instruction.op1).getValue();
-        for (int i = 0; i < params.size() -1; i++) {
-            int childId = symbolTable.get(params.get(i).op1).getValue().getInt32();
-            int valueId = root.getMember(childId);
-            root = (STObjects.STStruct) symbolTable.get(valueId).getValue();
+        instruction.getResultEntry().getValue().assign(getStructField(params, instruction));
+    }
+
+    // Params hold the offsets of the fields along the path from the root.
+    private static STValue getStructField(List<Instruction> params, Instruction instruction) {
+        STObjects.STStruct root = (STObjects.STStruct) instruction.getOp1Entry().getValue();
+        int last = params.size() - 1;
+        for (int i = 0; i < last; i++) {
+            root = (STObjects.STStruct) root.getField(params.get(i).getOp1Entry().getValue().getInt32());
         }
-        int childId = symbolTable.get(params.get(params.size() - 1).op1).getValue().getInt32();
-        int valueId = root.getMember(childId);
-        symbolTable.get(instruction.result).getValue().assign(symbolTable.get(valueId).getValue());
+        return root.getField(params.get(last).getOp1Entry().getValue().getInt32());
     }
 }
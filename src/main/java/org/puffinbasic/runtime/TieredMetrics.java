@@ -0,0 +1,100 @@
+package org.puffinbasic.runtime;
+
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Counters and compile events of the tiered engine.
+ */
+public final class TieredMetrics {
+
+    public static final class CompileEvent {
+        public final int startInstrNum;
+        public final int endInstrNum;
+        public final int lineNumber;
+        public final int numBlocks;
+        public final long compileNanos;
+
+        CompileEvent(int startInstrNum, int endInstrNum, int lineNumber, int numBlocks, long compileNanos) {
+            this.startInstrNum = startInstrNum;
+            this.endInstrNum = endInstrNum;
+            this.lineNumber = lineNumber;
+            this.numBlocks = numBlocks;
+            this.compileNanos = compileNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + startInstrNum + "-" + endInstrNum + "] line=" + lineNumber
+                    + ", blocks=" + numBlocks + ", time=" + compileNanos / 1000 + " us";
+        }
+    }
+
+    private final int compileThreshold;
+    private final Int2LongMap functionCalls;
+    private final List<CompileEvent> compileEvents;
+    private long backEdges;
+    private long totalFunctionCalls;
+    private long compiledBlockRuns;
+
+    TieredMetrics(int compileThreshold) {
+        this.compileThreshold = compileThreshold;
+        this.functionCalls = new Int2LongOpenHashMap();
+        this.compileEvents = Collections.synchronizedList(new ArrayList<>());
+    }
+
+    void backEdgeTaken() {
+        ++backEdges;
+    }
+
+    void functionCalled(int funcId) {
+        functionCalls.put(funcId, functionCalls.get(funcId) + 1);
+        ++totalFunctionCalls;
+    }
+
+    void compiledBlockRun() {
+        ++compiledBlockRuns;
+    }
+
+    void compiled(CompileEvent event) {
+        compileEvents.add(event);
+    }
+
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    public long getBackEdges() {
+        return backEdges;
+    }
+
+    /**
+     * Number of calls per function, keyed by the function's symbol table id.
+     */
+    public Int2LongMap getFunctionCalls() {
+        return functionCalls;
+    }
+
+    public long getCompiledBlockRuns() {
+        return compiledBlockRuns;
+    }
+
+    public List<CompileEvent> getCompileEvents() {
+        synchronized (compileEvents) {
+            return new ArrayList<>(compileEvents);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "threshold=" + compileThreshold
+                + ", backEdges=" + backEdges
+                + ", functionCalls=" + totalFunctionCalls
+                + ", compiledRegions=" + compileEvents.size()
+                + ", compiledBlockRuns=" + compiledBlockRuns;
+    }
+}
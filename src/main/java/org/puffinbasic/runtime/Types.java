@@ -2,7 +2,6 @@ package org.puffinbasic.runtime;
 
 import java.util.function.Supplier;
 
-import org.puffinbasic.domain.PuffinBasicSymbolTable;
 import org.puffinbasic.domain.STObjects;
 import org.puffinbasic.domain.STObjects.PuffinBasicAtomTypeId;
 import org.puffinbasic.domain.STObjects.STLValue;
@@ -19,15 +18,15 @@ import static org.puffinbasic.error.PuffinBasicSemanticError.ErrorCode.DATA_TYPE
 
 public class Types {
 
-    public static void copy(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry fromEntry = symbolTable.get(instruction.op1);
-        STObjects.STEntry toEntry = symbolTable.get(instruction.op2);
+    public static void copy(Instruction instruction) {
+        STObjects.STEntry fromEntry = instruction.getOp1Entry();
+        STObjects.STEntry toEntry = instruction.getOp2Entry();
         toEntry.getValue().assign(fromEntry.getValue());
     }
 
-    public static void paramCopy(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry fromEntry = symbolTable.get(instruction.op1);
-        STObjects.STEntry toEntry = symbolTable.get(instruction.op2);
+    public static void paramCopy(Instruction instruction) {
+        STObjects.STEntry fromEntry = instruction.getOp1Entry();
+        STObjects.STEntry toEntry = instruction.getOp2Entry();
         if (toEntry.getType().getTypeId() == SCALAR) {
             toEntry.getValue().assign(fromEntry.getValue());
         } else if (toEntry.isLValue()) {
@@ -40,9 +39,9 @@ public class Types {
         }
     }
 
-    public static void varref(PuffinBasicSymbolTable symbolTable, Instruction instruction) {
-        STObjects.STEntry src = symbolTable.get(instruction.op1);
-        STObjects.STEntry dst = symbolTable.get(instruction.op2);
+    public static void varref(Instruction instruction) {
+        STObjects.STEntry src = instruction.getOp1Entry();
+        STObjects.STEntry dst = instruction.getOp2Entry();
         if (dst.isLValue()) {
             ((STLValue) dst).setValue(src.getValue());
         } else {
@@ -6,15 +6,19 @@ import java.io.PrintStream;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.Instant;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.puffinbasic.PuffinBasicInterpreter.UserOptions;
 import org.puffinbasic.error.PuffinBasicRuntimeError;
+import org.puffinbasic.parser.IRPipeline;
 import org.puffinbasic.runtime.Environment;
 import org.puffinbasic.runtime.Environment.SystemEnv;
+import org.puffinbasic.runtime.PuffinBasicRuntime.Engine;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.puffinbasic.error.PuffinBasicRuntimeError.ErrorCode.IO_ERROR;
@@ -35,6 +39,11 @@ public class IntegrationTest {
         runTest("forloop.bas", "forloop.bas.output");
     }
 
+    @Test
+    public void testForLoopStep() {
+        runTest("forloop_step.bas", "forloop_step.bas.output");
+    }
+
     @Test
     public void testNestedForLoop() {
         runTest("nested_forloop.bas", "nested_forloop.bas.output");
@@ -65,6 +74,31 @@ public class IntegrationTest {
         runTest("while.bas", "while.bas.output");
     }
 
+    @Test
+    public void testCompareAndBranch() {
+        runTest("compare_branch.bas", "compare_branch.bas.output");
+    }
+
+    @Test
+    public void testOptimizer() {
+        runTest("opt.bas", "opt.bas.output");
+    }
+
+    @Test
+    public void testArray2D() {
+        runTest("array2d.bas", "array2d.bas.output");
+    }
+
+    @Test
+    public void testRecursion() {
+        runTest("recursion.bas", "recursion.bas.output");
+    }
+
+    @Test
+    public void testTempReuse() {
+        runTest("tempreuse.bas", "tempreuse.bas.output");
+    }
+
     @Test
     public void testExpr() {
         runTest("expr.bas", "expr.bas.output");
@@ -125,6 +159,11 @@ public class IntegrationTest {
         runTest("strstmt.bas", "strstmt.bas.output");
     }
 
+    @Test
+    public void testStrAppend() {
+        runTest("strappend.bas", "strappend.bas.output");
+    }
+
     @Test
     public void testPrintUsing() {
         runTest("printusing.bas", "printusing.bas.output");
@@ -152,8 +191,12 @@ public class IntegrationTest {
                 + Instant.now().getEpochSecond() + ".data";
         env.set("TEST_TMP_DIR", tmpdir);
         env.set("TEST_FILENAME", filename);
-        runTest("randomaccessfile.bas", "randomaccessfile.bas.output");
-        Files.delete(Paths.get(tmpdir, filename));
+        for (Engine engine : Engine.values()) {
+            for (int optLevel = 0; optLevel <= IRPipeline.MAX_LEVEL; optLevel++) {
+                runTest(engine, optLevel, "randomaccessfile.bas", "randomaccessfile.bas.output");
+                Files.delete(Paths.get(tmpdir, filename));
+            }
+        }
     }
 
     @Test
@@ -163,8 +206,12 @@ public class IntegrationTest {
                 + Instant.now().getEpochSecond() + ".data";
         env.set("TEST_TMP_DIR", tmpdir);
         env.set("TEST_SEQ_FILENAME", filename);
-        runTest("sequentialaccessfile.bas", "sequentialaccessfile.bas.output");
-        Files.delete(Paths.get(tmpdir, filename));
+        for (Engine engine : Engine.values()) {
+            for (int optLevel = 0; optLevel <= IRPipeline.MAX_LEVEL; optLevel++) {
+                runTest(engine, optLevel, "sequentialaccessfile.bas", "sequentialaccessfile.bas.output");
+                Files.delete(Paths.get(tmpdir, filename));
+            }
+        }
     }
 
     @Test
@@ -187,11 +234,123 @@ public class IntegrationTest {
         runTest("dict.bas", "dict.bas.output");
     }
 
+    @Test
+    public void testSortedDict() {
+        runTest("sorteddict.bas", "sorteddict.bas.output");
+    }
+
+    @Test
+    public void testDequeAndPriorityQueue() {
+        runTest("deque.bas", "deque.bas.output");
+    }
+
+    @Test
+    public void testCompiledProgram() throws IOException {
+        Path compiled = Files.createTempFile("puffin_basic_test_compiled_program_", ".pbc");
+        try {
+            for (String source : new String[] {"func.bas", "dict.bas", "strappend.bas"}) {
+                for (int optLevel = 0; optLevel <= IRPipeline.MAX_LEVEL; optLevel++) {
+                    assertNull(interpreter.interpretAndRun(
+                            UserOptions.ofTestCompile(optLevel, compiled.toString()),
+                            loadSourceCodeFromResource(source),
+                            System.out,
+                            env));
+                    for (Engine engine : Engine.values()) {
+                        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                        PrintStream out = new PrintStream(bos);
+                        interpreter.runCompiled(UserOptions.ofTest(engine), compiled.toString(), out, env);
+                        out.close();
+
+                        assertEquals(
+                                loadOutputFromResource(source + ".output"),
+                                bos.toString(),
+                                "source: " + source + ", optLevel: " + optLevel + ", engine: " + engine
+                        );
+                    }
+                }
+            }
+        } finally {
+            Files.delete(compiled);
+        }
+    }
+
+    @Test
+    public void testIRCache() throws IOException {
+        Path cacheDir = Files.createTempDirectory("puffin_basic_test_ir_cache_");
+        try {
+            // The opt level is part of the key, so each level misses once.
+            int numLevels = IRPipeline.MAX_LEVEL + 1;
+            for (int optLevel = 0; optLevel < numLevels; optLevel++) {
+                for (Engine engine : Engine.values()) {
+                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                    PrintStream out = new PrintStream(bos);
+                    interpreter.interpretAndRun(
+                            UserOptions.ofTestCache(engine, optLevel, cacheDir.toString()),
+                            loadSourceCodeFromResource("func.bas"),
+                            out,
+                            env);
+                    out.close();
+
+                    assertEquals(
+                            loadOutputFromResource("func.bas.output"),
+                            bos.toString(),
+                            "optLevel: " + optLevel + ", engine: " + engine
+                    );
+                }
+            }
+            assertEquals(numLevels * (Engine.values().length - 1), interpreter.getNumCacheHits());
+            assertEquals(numLevels, interpreter.getNumCacheMisses());
+        } finally {
+            try (Stream<Path> entries = Files.list(cacheDir)) {
+                for (Path entry : (Iterable<Path>) entries::iterator) {
+                    Files.delete(entry);
+                }
+            }
+            Files.delete(cacheDir);
+        }
+    }
+
+    @Test
+    public void testImport() {
+        String source = getResourcePath("import.bas");
+        for (Engine engine : Engine.values()) {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            PrintStream out = new PrintStream(bos);
+            interpreter.interpretAndRun(
+                    UserOptions.ofTest(engine),
+                    source,
+                    loadSourceCodeFromResource("import.bas"),
+                    out,
+                    env);
+            out.close();
+
+            assertEquals(loadOutputFromResource("import.bas.output"), bos.toString(), "engine: " + engine);
+        }
+    }
+
+    @Test
+    public void testImportCycle() {
+        assertThrows(PuffinBasicRuntimeError.class, () -> interpreter.interpretAndRun(
+                UserOptions.ofTest(),
+                getResourcePath("import_cycle.bas"),
+                loadSourceCodeFromResource("import_cycle.bas"),
+                System.out,
+                env));
+    }
+
     private void runTest(String source, String output) {
+        for (Engine engine : Engine.values()) {
+            for (int optLevel = 0; optLevel <= IRPipeline.MAX_LEVEL; optLevel++) {
+                runTest(engine, optLevel, source, output);
+            }
+        }
+    }
+
+    private void runTest(Engine engine, int optLevel, String source, String output) {
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         PrintStream out = new PrintStream(bos);
         interpreter.interpretAndRun(
-                UserOptions.ofTest(),
+                UserOptions.ofTest(engine, optLevel),
                 loadSourceCodeFromResource(source),
                 out,
                 env);
@@ -199,7 +358,8 @@ public class IntegrationTest {
 
         assertEquals(
                 loadOutputFromResource(output),
-                bos.toString()
+                bos.toString(),
+                "engine: " + engine + ", optLevel: " + optLevel
         );
     }
 
@@ -211,6 +371,14 @@ public class IntegrationTest {
         return loadResource(getClass().getClassLoader().getResource(filename));
     }
 
+    private String getResourcePath(String filename) {
+        try {
+            return Paths.get(getClass().getClassLoader().getResource(filename).toURI()).toString();
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private static String loadResource(URL resource) {
         try {
             return new String(Files.readAllBytes(Paths.get(resource.toURI())));
@@ -0,0 +1,19 @@
+10 DIM G%(3, 4)
+20 FOR I% = 0 TO 2
+30 FOR J% = 0 TO 3
+40 G%(I%, J%) = I% * 10 + J%
+50 NEXT J%, I%
+60 FOR I% = 0 TO 2
+70 S% = 0
+80 FOR J% = 0 TO 3 : S% = S% + G%(I%, J%) : NEXT J%
+90 PRINT S%;
+100 NEXT I% : PRINT
+110 R% = 0 : T% = 0
+120 FOR J% = 0 TO 3 : T% = T% + G%(R%, J%) : R% = R% + 1 : IF R% > 2 THEN R% = 0
+130 NEXT J% : PRINT T%
+140 DIM M%(2, 2) : M%(1, 1) = 9 : N% = 0
+150 FOR I% = 0 TO 1 : FOR J% = 0 TO 2 : N% = N% + M%(1, 1) : NEXT J%, I% : PRINT N%
+160 DIM C%(2, 2, 2) : DIM V%(4)
+170 FOR K% = 0 TO 1 : C%(1, K%, K%) = K% + 7 : V%(K% + 2) = K% * 3 : NEXT K%
+180 PRINT C%(1, 0, 0); C%(1, 1, 1); V%(2); V%(3)
+190 FOR J% = 0 TO 1 : REALLOCARRAY G%(2 + J%, 2) : G%(1, 1) = J% + 5 : PRINT G%(1, 1); : NEXT J% : PRINT
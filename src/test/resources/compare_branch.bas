@@ -0,0 +1,24 @@
+10 I@ = 0 : N% = 0
+20 WHILE I@ < 5
+30 I@ = I@ + 1 : N% = N% + 1
+40 WEND
+50 PRINT N%
+60 F! = 0.5
+70 WHILE F! <= 2.0
+80 F! = F! * 2
+90 WEND
+100 PRINT F!
+110 D# = 16
+120 WHILE D# > 1
+130 D# = D# / 2
+140 WEND
+150 PRINT D#
+160 A$ = "ABC" : B$ = "ABD"
+170 IF A$ < B$ THEN PRINT "LT" ELSE PRINT "GE"
+180 IF A$ = B$ THEN PRINT "EQ" ELSE PRINT "NE"
+190 IF A$ <> B$ THEN PRINT "NE"
+200 IF B$ >= A$ THEN PRINT "GE"
+210 IF N% <> 5 THEN PRINT "BAD" ELSE PRINT "OK"
+220 FOR J% = 1 TO 3
+230 IF J% = 2 THEN PRINT "TWO" ELSE PRINT J%
+240 NEXT J%
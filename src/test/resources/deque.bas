@@ -0,0 +1,79 @@
+PRINT "DEQUE of INT32"
+
+DEQUE<%> dq1
+
+dq1.pushBack(2)
+dq1.pushBack(3)
+dq1.pushFront(1)
+PRINT LEN(dq1)
+
+PRINT dq1.front(), dq1.back()
+PRINT dq1.popFront(), dq1.popBack(), dq1.popFront()
+PRINT LEN(dq1)
+
+PRINT "DEQUE of STRING"
+
+DEQUE<$> dq2
+
+dq2.pushBack("b")
+dq2.pushFront("a")
+dq2.pushBack("c")
+PRINT dq2.popBack(), dq2.popFront(), dq2.front()
+
+dq2.clear()
+PRINT LEN(dq2)
+
+PRINT "DEQUE of INT64"
+
+DEQUE<@> dq3
+
+FOR I% = 1 TO 100
+  dq3.pushBack(I%)
+NEXT
+S@ = 0
+WHILE LEN(dq3) > 0
+  S@ = S@ + dq3.popFront()
+WEND
+PRINT S@
+
+PRINT "PQ of FLOAT64"
+
+PQ<#> pq1
+
+pq1.push(2.5)
+pq1.push(-1.5)
+pq1.push(0.5)
+pq1.push(-3.5)
+PRINT LEN(pq1)
+PRINT pq1.peek()
+
+WHILE LEN(pq1) > 0
+  PRINT pq1.pop(),
+WEND
+PRINT ""
+
+PRINT "PQ of INT32"
+
+PQ<%> pq2
+
+pq2.push(5)
+pq2.push(1)
+pq2.push(4)
+pq2.push(1)
+
+WHILE LEN(pq2) > 0
+  PRINT pq2.pop(),
+WEND
+PRINT ""
+
+PRINT "PQ of STRING"
+
+PQ<$> pq3
+
+pq3.push("pear")
+pq3.push("apple")
+pq3.push("fig")
+PRINT pq3.peek()
+
+pq3.clear()
+PRINT LEN(pq3)
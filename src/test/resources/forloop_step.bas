@@ -0,0 +1,20 @@
+10 FOR F! = 1 TO 0 STEP -0.5
+20 PRINT F!
+30 NEXT F!
+40 S% = -3
+50 FOR I% = 9 TO 1 STEP S%
+60 PRINT I%
+70 NEXT
+80 FOR L@ = 1 TO 2
+90 PRINT L@
+100 NEXT L@
+110 FOR I% = 1 TO 0
+120 PRINT "SKIPPED"
+130 NEXT I%
+140 PRINT I%
+150 FOR D# = 0 TO 1.5 STEP 0.75
+160 PRINT D#
+170 NEXT D#
+180 FOR I% = 1 TO 2.5
+190 PRINT I%
+200 NEXT I%
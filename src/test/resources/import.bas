@@ -0,0 +1,4 @@
+IMPORT "import_b.bas"
+IMPORT "import_c.bas"
+
+PRINT "in main"
@@ -0,0 +1,3 @@
+LIBTAG "_import_a_"
+
+PRINT "in import_a"
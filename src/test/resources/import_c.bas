@@ -0,0 +1,5 @@
+LIBTAG "_import_c_"
+
+IMPORT "import_a.bas"
+
+PRINT "in import_c"
@@ -0,0 +1,3 @@
+IMPORT "import_cycle_lib.bas"
+
+PRINT "in main"
@@ -0,0 +1,3 @@
+LIBTAG "_import_cycle_lib_"
+
+IMPORT "import_cycle_lib.bas"
@@ -0,0 +1,14 @@
+10 PRINT 2 + 3 * 4
+20 PRINT "AB" + "CD" + "E"
+30 PRINT 10 < 20, 3 = 4
+40 PRINT -5 + 8
+50 A% = 7 : B% = -A% + 1 : PRINT B%
+60 GOTO 80 : PRINT "DEAD"
+70 PRINT "SKIPPED"
+80 IF 1 > 2 THEN PRINT 1 \ 0 ELSE PRINT "NO DIVISION"
+90 X# = 1# / 4 : PRINT X#
+100 FOR I% = 1 TO 2 + 1 : PRINT I%; : NEXT I%
+110 PRINT
+120 GOSUB 200 : PRINT "BACK"
+130 END : PRINT "DEAD"
+200 PRINT "SUB" : RETURN : PRINT "DEAD"
@@ -0,0 +1,36 @@
+FUNCTION fib% (N%) {
+  IF N% < 2 THEN RETURN N%
+  RETURN fib%(N% - 1) + fib%(N% - 2)
+}
+
+FUNCTION sumto% (N%) {
+  IF N% = 0 THEN RETURN 0
+  T% = N% * 10
+  R% = sumto%(N% - 1)
+  RETURN T% + R%
+}
+
+FUNCTION rev$ (S$) {
+  IF LEN(S$) <= 1 THEN RETURN S$
+  RETURN rev$(RIGHT$(S$, LEN(S$) - 1)) + LEFT$(S$, 1)
+}
+
+FUNCTION fill% (N%) {
+  IF N% = 0 THEN RETURN 0
+  DIM A%(3)
+  FOR I% = 0 TO 2
+    A%(I%) = N% * 10 + I%
+  NEXT I%
+  R% = fill%(N% - 1)
+  RETURN A%(0) + A%(1) + A%(2) + R%
+}
+
+FUNCTION twice% (N%) {
+  RETURN fib%(N%) * 2
+}
+
+PRINT fib%(15)
+PRINT sumto%(4)
+PRINT rev$("PUFFIN")
+PRINT twice%(10)
+PRINT fill%(3)
@@ -0,0 +1,65 @@
+PRINT "SORTEDDICT of INT32 to STRING"
+
+SORTEDDICT<%,$> sd1
+
+sd1.put(30, "c")
+sd1.put(10, "a")
+sd1.put(20, "b")
+sd1.put(-5, "z")
+PRINT LEN(sd1)
+
+auto sd1keys = sd1.keys()
+FOR I% = 0 TO LEN(sd1keys) - 1
+  PRINT sd1keys(I%),
+NEXT : PRINT ""
+
+PRINT sd1.firstKey(), sd1.lastKey()
+PRINT sd1.floorKey(25, -1), sd1.floorKey(20, -1), sd1.floorKey(-10, -1)
+PRINT sd1.ceilingKey(25, -1), sd1.ceilingKey(20, -1), sd1.ceilingKey(31, -1)
+
+auto sd1range = sd1.rangeKeys(0, 30)
+FOR I% = 0 TO LEN(sd1range) - 1
+  PRINT sd1range(I%),
+NEXT : PRINT ""
+
+PRINT sd1.getOrDefault(20, "")
+PRINT sd1.removeKey(20)
+PRINT sd1.containsKey(20)
+PRINT sd1.floorKey(25, -1)
+
+PRINT "SORTEDDICT of FLOAT64 to INT32"
+
+SORTEDDICT<#,%> sd2
+
+sd2.put(1.5, 1)
+sd2.put(-2.5, 2)
+sd2.put(0.25, 3)
+sd2.put(-0.5, 4)
+
+auto sd2keys = sd2.keys()
+FOR I% = 0 TO LEN(sd2keys) - 1
+  PRINT sd2keys(I%),
+NEXT : PRINT ""
+
+PRINT sd2.firstKey(), sd2.lastKey()
+PRINT sd2.floorKey(0.0, 0.0), sd2.ceilingKey(0.0, 0.0)
+PRINT sd2.getOrDefault(-0.5, 0)
+
+PRINT "SORTEDDICT of STRING to INT32"
+
+SORTEDDICT<$,%> sd3
+
+sd3.put("pear", 3)
+sd3.put("apple", 1)
+sd3.put("fig", 2)
+
+auto sd3keys = sd3.rangeKeys("b", "z")
+FOR I% = 0 TO LEN(sd3keys) - 1
+  PRINT sd3keys(I%),
+NEXT : PRINT ""
+
+PRINT sd3.firstKey(), sd3.lastKey()
+PRINT sd3.ceilingKey("c", "")
+
+sd3.clear()
+PRINT LEN(sd3)
@@ -0,0 +1,24 @@
+S$ = ""
+FOR I% = 1 TO 3
+  S$ = S$ + "ab"
+  PRINT LEN(S$),
+NEXT
+PRINT ""
+PRINT S$
+
+S$ = S$ + S$
+PRINT S$
+
+T$ = S$
+S$ = S$ + "!"
+PRINT T$
+PRINT S$
+
+S$ = "x"
+S$ = S$ + "y" + "z"
+PRINT S$
+
+DIM A$(2)
+A$(1) = "p"
+A$(1) = A$(1) + "q"
+PRINT A$(1)
@@ -0,0 +1,9 @@
+A% = 3 : B% = 4 : C# = 1.5 : S$ = "AB"
+X% = (A% + B%) * (A% - B%) + (A% * B%) * (B% - A%)
+Y# = (C# + A%) * (C# - B%) + (C# * C#)
+Z$ = S$ + "-" + S$ + "-" + S$
+PRINT X%, Y#, Z$
+FOR I% = 1 TO 3
+  W% = (I% + A%) * (I% + B%) - (I% * I%)
+  PRINT W%
+NEXT I%